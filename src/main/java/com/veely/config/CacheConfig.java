@@ -1,6 +1,10 @@
 package com.veely.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.veely.repository.EmployeeRepository;
+import com.veely.repository.VehicleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -8,50 +12,117 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
-import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Cache applicative Caffeine, ciascuna configurata da
+ * {@code veely.cache.specs[nome]} ({@link CacheProperties}).
+ * <p>
+ * Le statistiche sono attive salvo {@code record-stats=false}: Actuator
+ * collega ogni cache a Micrometer ({@code cache.gets}, {@code cache.evictions},
+ * ... con tag {@code cache}). Le cache con {@code refresh-after-write}
+ * ricaricano le voci con il {@link NamedCacheLoader} dello stesso nome.
+ */
+@Slf4j
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
-    
+
     @Bean
     @Primary
-    public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCacheNames(Arrays.asList(
-            "countries",
-            "locations", 
-            "suppliers",
-            "taskTypes",
-            "employeeRoles",
-            "vehicleDetails",
-            "employeeDetails",
-            "documentTypes"
-        ));
-        cacheManager.setCaffeine(caffeineCacheBuilder());
-        return cacheManager;
+    public CacheManager cacheManager(CacheProperties properties, List<NamedCacheLoader> loaders) {
+        return buildCacheManager(properties, loaders);
     }
-    
+
+    /** Il dettaglio con documenti e ruoli viene riletto con la stessa query con fetch. */
     @Bean
-    public Caffeine<Object, Object> caffeineCacheBuilder() {
-        return Caffeine.newBuilder()
-            .initialCapacity(100)
-            .maximumSize(500)
-            .expireAfterAccess(30, TimeUnit.MINUTES)
-            .recordStats(); // Abilita statistiche per monitoring
+    public NamedCacheLoader employeeDetailsLoader(EmployeeRepository employeeRepo) {
+        return NamedCacheLoader.of("employeeDetails",
+                key -> employeeRepo.findByIdWithAllRelations((Long) key).orElse(null));
     }
-    
-    // Cache specifica per dati che cambiano raramente
+
     @Bean
-    public CacheManager staticDataCacheManager() {
+    public NamedCacheLoader vehicleDetailsLoader(VehicleRepository vehicleRepo) {
+        return NamedCacheLoader.of("vehicleDetails", key -> vehicleRepo.findById((Long) key).orElse(null));
+    }
+
+    static CaffeineCacheManager buildCacheManager(CacheProperties properties, List<NamedCacheLoader> loaders) {
+        Map<String, NamedCacheLoader> loadersByName = loaders.stream()
+                .collect(Collectors.toMap(NamedCacheLoader::cacheName, Function.identity()));
+
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCacheNames(Arrays.asList("staticData"));
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-            .maximumSize(200)
-            .expireAfterWrite(24, TimeUnit.HOURS) // Cache per 24 ore
-            .recordStats());
+        // solo le cache configurate: un nome sconosciuto in @Cacheable è un errore
+        cacheManager.setCacheNames(properties.specs().keySet());
+        properties.specs().forEach((name, own) -> {
+            CacheProperties.Spec spec = own.orElse(properties.defaults());
+            NamedCacheLoader loader = null;
+            if (spec.refreshAfterWrite() != null) {
+                loader = loadersByName.get(name);
+                if (loader == null) {
+                    throw new IllegalStateException("La cache " + name
+                            + " ha refresh-after-write ma nessun NamedCacheLoader");
+                }
+            }
+            Caffeine<Object, Object> builder = builder(name, spec);
+            if (Boolean.TRUE.equals(spec.async())) {
+                cacheManager.registerCustomCache(name,
+                        loader != null ? builder.buildAsync(loader) : builder.buildAsync());
+            } else {
+                cacheManager.registerCustomCache(name,
+                        loader != null ? builder.build(loader) : builder.build());
+            }
+            log.debug("Cache {}: {}", name, spec);
+        });
         return cacheManager;
     }
-}
 
+    private static Caffeine<Object, Object> builder(String name, CacheProperties.Spec spec) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (spec.maximumWeight() != null) {
+            builder.maximumWeight(spec.maximumWeight());
+            if (spec.weigher() == CacheProperties.Weigher.ELEMENTS) {
+                builder.weigher((key, value) -> elements(value));
+            } else {
+                builder.weigher((key, value) -> 1);
+            }
+        } else if (spec.maximumSize() != null) {
+            builder.maximumSize(spec.maximumSize());
+        } else {
+            log.warn("Cache {} senza limite di dimensione", name);
+        }
+        if (spec.expireAfterWrite() != null) {
+            builder.expireAfterWrite(spec.expireAfterWrite());
+        }
+        if (spec.expireAfterAccess() != null) {
+            builder.expireAfterAccess(spec.expireAfterAccess());
+        }
+        if (spec.refreshAfterWrite() != null) {
+            builder.refreshAfterWrite(spec.refreshAfterWrite());
+        }
+        if (!Boolean.FALSE.equals(spec.recordStats())) {
+            builder.recordStats();
+        }
+        return builder;
+    }
+
+    /** Numero di elementi di liste, mappe e array; 1 per gli altri valori. */
+    static int elements(Object value) {
+        int size;
+        if (value instanceof Collection<?> collection) {
+            size = collection.size();
+        } else if (value instanceof Map<?, ?> map) {
+            size = map.size();
+        } else if (value != null && value.getClass().isArray()) {
+            size = Array.getLength(value);
+        } else {
+            size = 1;
+        }
+        return Math.max(1, size);
+    }
+}
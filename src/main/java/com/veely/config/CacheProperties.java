@@ -0,0 +1,67 @@
+package com.veely.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Configurazione delle cache applicative ({@code veely.cache.*}).
+ * <p>
+ * Ogni cache in {@code specs} dichiara capacità, scadenze, ricarica in
+ * background e modalità asincrona; i valori non indicati vengono da
+ * {@code defaults}. Capacità ({@code maximum-size}/{@code maximum-weight})
+ * e scadenze ({@code expire-after-*}) si ereditano a coppie: una cache che
+ * ne dichiara una non prende l'altra dai default.
+ */
+@ConfigurationProperties("veely.cache")
+public record CacheProperties(Spec defaults, Map<String, Spec> specs) {
+
+    public CacheProperties {
+        defaults = defaults != null ? defaults : Spec.EMPTY;
+        specs = specs != null ? Map.copyOf(specs) : Map.of();
+    }
+
+    /** Come pesare le voci quando è indicato {@code maximum-weight}. */
+    public enum Weigher {
+        /** Ogni voce pesa 1. */
+        ENTRIES,
+        /** Liste, insiemi, mappe e array pesano quanto il numero di elementi. */
+        ELEMENTS
+    }
+
+    /**
+     * Impostazioni di una cache; i campi nulli non sono configurati.
+     *
+     * @param refreshAfterWrite dopo quanto una voce letta viene ricaricata in
+     *                          background: richiede un {@link NamedCacheLoader}
+     * @param async             cache asincrona, per i metodi {@code @Cacheable}
+     *                          che restituiscono {@code CompletableFuture}
+     */
+    public record Spec(Long maximumSize,
+                       Long maximumWeight,
+                       Weigher weigher,
+                       Duration expireAfterWrite,
+                       Duration expireAfterAccess,
+                       Duration refreshAfterWrite,
+                       Boolean async,
+                       Boolean recordStats) {
+
+        static final Spec EMPTY = new Spec(null, null, null, null, null, null, null, null);
+
+        /** Completa questa configurazione con i valori di {@code defaults}. */
+        public Spec orElse(Spec defaults) {
+            boolean sized = maximumSize != null || maximumWeight != null;
+            boolean expiring = expireAfterWrite != null || expireAfterAccess != null;
+            return new Spec(
+                    sized ? maximumSize : defaults.maximumSize(),
+                    sized ? maximumWeight : defaults.maximumWeight(),
+                    weigher != null ? weigher : defaults.weigher(),
+                    expiring ? expireAfterWrite : defaults.expireAfterWrite(),
+                    expiring ? expireAfterAccess : defaults.expireAfterAccess(),
+                    refreshAfterWrite != null ? refreshAfterWrite : defaults.refreshAfterWrite(),
+                    async != null ? async : defaults.async(),
+                    recordStats != null ? recordStats : defaults.recordStats());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.veely.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread in background dei servizi, gestiti da Spring: vengono creati
+ * all'avvio e chiusi (interrompendo i lavori in corso) alla chiusura del
+ * contesto. I pool con un solo thread eseguono i lavori uno alla volta,
+ * nell'ordine in cui sono accodati.
+ * <p>
+ * I bean non sono candidati predefiniti: si iniettano solo per nome
+ * ({@code @Qualifier}), così non sostituiscono l'executor di Spring Boot
+ * usato da MVC e da {@code @Async}.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    public static final String FILE_DELETIONS = "fileDeletionsExecutor";
+    public static final String STORAGE_SWEEPER = "storageSweeperExecutor";
+    public static final String STORAGE_MIGRATION = "storageMigrationExecutor";
+    public static final String STORAGE_USAGE = "storageUsageExecutor";
+    public static final String DOCUMENT_INDEX = "documentIndexExecutor";
+    public static final String DOCUMENT_INDEX_REBUILD = "documentIndexRebuildExecutor";
+    public static final String IMAGE_DERIVATIVES = "imageDerivativesExecutor";
+    public static final String DOCUMENT_INGEST = "documentIngestExecutor";
+    public static final String PAYSLIP_DISPATCH = "payslipDispatchExecutor";
+    public static final String PAYSLIP_DISPATCH_WORKERS = "payslipDispatchWorkersExecutor";
+    public static final String EXPENSE_EXPORT = "expenseExportExecutor";
+    public static final String EXPENSE_EXPORT_RENDERERS = "expenseExportRenderersExecutor";
+
+    @Bean(name = FILE_DELETIONS, defaultCandidate = false)
+    public ThreadPoolTaskExecutor fileDeletionsExecutor() {
+        return virtual("file-deletions", 1);
+    }
+
+    @Bean(name = STORAGE_SWEEPER, defaultCandidate = false)
+    public ThreadPoolTaskExecutor storageSweeperExecutor() {
+        return virtual("storage-sweeper", 1);
+    }
+
+    @Bean(name = STORAGE_MIGRATION, defaultCandidate = false)
+    public ThreadPoolTaskExecutor storageMigrationExecutor() {
+        return virtual("storage-migration", 1);
+    }
+
+    @Bean(name = STORAGE_USAGE, defaultCandidate = false)
+    public ThreadPoolTaskExecutor storageUsageExecutor() {
+        return virtual("storage-usage", 1);
+    }
+
+    @Bean(name = DOCUMENT_INDEX, defaultCandidate = false)
+    public ThreadPoolTaskExecutor documentIndexExecutor() {
+        ThreadPoolTaskExecutor executor = virtual("document-index", 1);
+        // lascia al lavoro in corso il tempo di chiudere il log dell'indice
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    /** Ricostruzione completa dell'indice documenti, separata dagli aggiornamenti. */
+    @Bean(name = DOCUMENT_INDEX_REBUILD, defaultCandidate = false)
+    public ThreadPoolTaskExecutor documentIndexRebuildExecutor() {
+        return virtual("document-index-rebuild", 1);
+    }
+
+    /** Miniature: lavoro di CPU, su thread di piattaforma. */
+    @Bean(name = IMAGE_DERIVATIVES, defaultCandidate = false)
+    public ThreadPoolTaskExecutor imageDerivativesExecutor(@Value("${veely.images.workers:2}") int workers) {
+        return platform("image-derivatives", workers);
+    }
+
+    @Bean(name = DOCUMENT_INGEST, defaultCandidate = false)
+    public ThreadPoolTaskExecutor documentIngestExecutor(@Value("${veely.ingest.writers:4}") int writers) {
+        return virtual("document-ingest", writers);
+    }
+
+    /** Coordinatore dei job di invio cedolini: un job alla volta. */
+    @Bean(name = PAYSLIP_DISPATCH, defaultCandidate = false)
+    public ThreadPoolTaskExecutor payslipDispatchExecutor() {
+        return virtual("payslip-dispatch", 1);
+    }
+
+    /**
+     * Invii SMTP: Jakarta Mail legge e scrive sul socket dentro metodi
+     * synchronized, che su un thread virtuale bloccano il carrier; su thread
+     * di piattaforma.
+     */
+    @Bean(name = PAYSLIP_DISPATCH_WORKERS, defaultCandidate = false)
+    public ThreadPoolTaskExecutor payslipDispatchWorkersExecutor(
+            @Value("${veely.payslips.dispatch.workers:4}") int workers) {
+        return platform("payslip-dispatch-worker", workers);
+    }
+
+    /** Coordinatore degli export ZIP delle note spese: un job alla volta. */
+    @Bean(name = EXPENSE_EXPORT, defaultCandidate = false)
+    public ThreadPoolTaskExecutor expenseExportExecutor() {
+        return virtual("expense-batch-export", 1);
+    }
+
+    /** Generazione dei PDF degli export: lavoro di CPU, su thread di piattaforma. */
+    @Bean(name = EXPENSE_EXPORT_RENDERERS, defaultCandidate = false)
+    public ThreadPoolTaskExecutor expenseExportRenderersExecutor(
+            @Value("${veely.expenses.batch-export.workers:2}") int workers) {
+        return platform("expense-batch-export", workers);
+    }
+
+    /** Pool di thread virtuali {@code <nome>-N}; va inizializzato (per i bean lo fa Spring). */
+    public static ThreadPoolTaskExecutor virtual(String name, int threads) {
+        ThreadPoolTaskExecutor executor = pool(name, threads);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /** Pool di thread di piattaforma daemon {@code <nome>-N}; va inizializzato (per i bean lo fa Spring). */
+    public static ThreadPoolTaskExecutor platform(String name, int threads) {
+        ThreadPoolTaskExecutor executor = pool(name, threads);
+        executor.setDaemon(true);
+        return executor;
+    }
+
+    private static ThreadPoolTaskExecutor pool(String name, int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(name + "-");
+        executor.setCorePoolSize(Math.max(1, threads));
+        executor.setMaxPoolSize(Math.max(1, threads));
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
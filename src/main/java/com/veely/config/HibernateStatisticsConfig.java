@@ -3,12 +3,15 @@ package com.veely.config;
 import jakarta.persistence.EntityManagerFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
 import org.hibernate.stat.Statistics;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
+import java.util.Locale;
+
 @Slf4j
 @Configuration
 @EnableScheduling
@@ -28,7 +31,7 @@ public class HibernateStatisticsConfig {
         
         if (stats.getQueryExecutionCount() > 0) {
             log.info("=== Hibernate Statistics ===");
-            log.info("Query eseguite: {}", stats.getQueryExecutionCount());
+            log.info("Query eseguite dall'avvio: {}", stats.getQueryExecutionCount());
             log.info("Tempo max query: {} ms", stats.getQueryExecutionMaxTime());
             log.info("Entity caricate: {}", stats.getEntityLoadCount());
             log.info("Entity fetchate: {}", stats.getEntityFetchCount());
@@ -42,8 +45,39 @@ public class HibernateStatisticsConfig {
                     slowestQuery, stats.getQueryExecutionMaxTime());
             }
             
-            // Reset statistiche dopo il log
-            stats.clear();
+            logSecondLevelCache(stats);
         }
     }
+
+    /**
+     * Hit ratio della cache di secondo livello per regione e della cache
+     * delle query. I contatori non vengono azzerati: sono esportati anche
+     * come metriche ({@code hibernate.second.level.cache.requests} per
+     * regione, {@code hibernate.cache.query.requests}) e valgono dall'avvio.
+     */
+    private void logSecondLevelCache(Statistics stats) {
+        for (String region : stats.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = stats.getCacheRegionStatistics(region);
+            if (regionStats == null) {
+                continue;
+            }
+            long hits = regionStats.getHitCount();
+            long misses = regionStats.getMissCount();
+            if (hits + misses > 0) {
+                log.info("Cache L2 {}: hit ratio {}% ({} hit, {} miss, {} put, {} in memoria)",
+                        region, ratio(hits, misses), hits, misses, regionStats.getPutCount(),
+                        regionStats.getElementCountInMemory());
+            }
+        }
+        long queryHits = stats.getQueryCacheHitCount();
+        long queryMisses = stats.getQueryCacheMissCount();
+        if (queryHits + queryMisses > 0) {
+            log.info("Cache query: hit ratio {}% ({} hit, {} miss)",
+                    ratio(queryHits, queryMisses), queryHits, queryMisses);
+        }
+    }
+
+    private static String ratio(long hits, long misses) {
+        return String.format(Locale.ROOT, "%.1f", hits * 100.0 / (hits + misses));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.veely.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+import java.util.function.Function;
+
+/**
+ * Caricamento di una voce di una cache per chiave, usato da
+ * {@link CacheConfig} per le cache con {@code refresh-after-write}: la voce
+ * viene ricaricata in background mentre si continua a servire quella vecchia.
+ * Restituire {@code null} rimuove la voce (es. entità eliminata).
+ */
+public interface NamedCacheLoader extends CacheLoader<Object, Object> {
+
+    /** Nome della cache servita. */
+    String cacheName();
+
+    static NamedCacheLoader of(String cacheName, Function<Object, Object> loader) {
+        return new NamedCacheLoader() {
+            @Override
+            public String cacheName() {
+                return cacheName;
+            }
+
+            @Override
+            public Object load(Object key) {
+                return loader.apply(key);
+            }
+        };
+    }
+}
@@ -83,6 +83,7 @@ public class SecurityConfig {
                 .requestMatchers("/fleet/expense_report/**").hasAnyRole("Administrator", "HR Manager","Expense Report User")
                 .requestMatchers("/payslips/**").hasAnyRole("Administrator", "HR Manager")
                 .requestMatchers("/correspondence/**").hasAnyRole("Administrator","Mail Manager")
+                .requestMatchers("/api/documents/**").hasRole("Administrator")
                 .requestMatchers("/h2-console/**").permitAll() // solo dev
                 .anyRequest().authenticated()
         )
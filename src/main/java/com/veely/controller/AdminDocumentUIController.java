@@ -7,6 +7,7 @@ import com.veely.service.AdminDocumentTypeService;
 import com.veely.service.DocumentService;
 import com.veely.service.PublicAuthorityService;
 import com.veely.service.EmployeeService;
+import com.veely.service.storage.FileDownloadService;
 import com.veely.validation.FileValidator;
 import com.veely.model.DocumentType;
 import jakarta.validation.Valid;
@@ -17,10 +18,8 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import java.io.IOException;
 import java.time.LocalDate;
@@ -37,6 +36,7 @@ public class AdminDocumentUIController {
     private final EmployeeService employeeService;
     private final DocumentService documentService;
     private final FileValidator fileValidator;
+    private final FileDownloadService fileDownloadService;
     
 
 
@@ -118,18 +118,12 @@ public class AdminDocumentUIController {
     }
 
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> download(@PathVariable Long id,
-                                             @PathVariable String filename,
-                                             HttpServletRequest request) throws IOException {
+    public void download(@PathVariable Long id,
+                         @PathVariable String filename,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
         Resource resource = documentService.loadAdminDocumentDocumentAsResource(id, filename);
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     @GetMapping("/{id}/docs/{docId}/delete")
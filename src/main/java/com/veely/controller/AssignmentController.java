@@ -8,6 +8,7 @@ import com.veely.service.DocumentService;
 import com.veely.service.EmploymentService;
 import com.veely.service.ProjectService;
 import com.veely.service.VehicleService;
+import com.veely.service.storage.FileDownloadService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -15,10 +16,8 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
@@ -36,6 +35,7 @@ public class AssignmentController {
     private final VehicleService vehicleService;
     private final DocumentService documentService;
     private final ProjectService projectService;
+    private final FileDownloadService fileDownloadService;
     
     private static final DocumentType[] ASSIGN_DOC_TYPES = {
             DocumentType.ASSIGNMENT_PHOTO,
@@ -122,18 +122,12 @@ public class AssignmentController {
     }
 
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable Long id,
-                                              @PathVariable String filename,
-                                              HttpServletRequest request) throws IOException {
+    public void serveFile(@PathVariable Long id,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
         Resource resource = documentService.loadAssignmentDocumentAsResource(id, filename);
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     @GetMapping("/{asgId}/docs/{docId}/delete")
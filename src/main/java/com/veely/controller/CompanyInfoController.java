@@ -3,13 +3,12 @@ package com.veely.controller;
 import com.veely.entity.CompanyInfo;
 import com.veely.service.CompanyInfoService;
 import com.veely.service.DocumentService;
+import com.veely.service.FileSystemStorageService;
+import com.veely.service.storage.FileDownloadService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -21,17 +20,15 @@ import org.springframework.util.AntPathMatcher;
 import org.springframework.web.servlet.HandlerMapping;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/settings/company")
@@ -41,6 +38,8 @@ public class CompanyInfoController {
 
     private final CompanyInfoService companyInfoService;
     private final DocumentService documentService;
+    private final FileSystemStorageService storageService;
+    private final FileDownloadService fileDownloadService;
 
     /**
      * Lista delle configurazioni aziendali
@@ -262,57 +261,13 @@ public class CompanyInfoController {
      * Download file (logo, watermark, ecc.)
      */
     @GetMapping("/files/**")
-    public ResponseEntity<Resource> downloadFile(HttpServletRequest request) {
-        try {
-            // Estrae il percorso relativo richiesto dopo /files/
-            String bestMatchPattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
-            String pathWithinHandler = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
-            String relativePath = new AntPathMatcher().extractPathWithinPattern(bestMatchPattern, pathWithinHandler);
-
-            log.info("Richiesta download file: {}", relativePath);
+    public void downloadFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Estrae il percorso relativo richiesto dopo /files/
+        String bestMatchPattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String pathWithinHandler = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String relativePath = new AntPathMatcher().extractPathWithinPattern(bestMatchPattern, pathWithinHandler);
 
-            // Costruisci il path completo
-            Path uploadsDir = Paths.get("uploads").toAbsolutePath().normalize();
-            Path filePath = uploadsDir.resolve(relativePath).normalize();
-            
-            log.info("Path uploads: {}", uploadsDir);
-            log.info("Path file richiesto: {}", filePath);
-            
-            // Verifica che il file sia nella directory uploads per sicurezza
-            if (!filePath.startsWith(uploadsDir)) {
-                log.warn("Tentativo di accesso a file fuori dalla directory uploads. Uploads: {}, File: {}", 
-                         uploadsDir, filePath);
-                return ResponseEntity.notFound().build();
-            }
-            
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (!resource.exists()) {
-                log.warn("File non trovato: {}", filePath);
-                
-                // Debug: lista il contenuto della directory
-                Path parentDir = filePath.getParent();
-                if (Files.exists(parentDir)) {
-                    log.info("Contenuto directory {}:", parentDir);
-                    try {
-                        Files.list(parentDir).forEach(file -> 
-                            log.info("  - {}", file.getFileName()));
-                    } catch (IOException e) {
-                        log.warn("Errore nella lettura directory", e);
-                    }
-                } else {
-                    log.warn("Directory padre non esiste: {}", parentDir);
-                }
-                
-                return ResponseEntity.notFound().build();
-            }
-
-            return buildFileResponse(resource, request);
-                        
-        } catch (Exception ex) {
-            log.error("Errore nel download del file", ex);
-            return ResponseEntity.notFound().build();
-        }
+        fileDownloadService.inline(storageService.loadAsResource(relativePath, ""), request, response);
     }
 
     /**
@@ -379,55 +334,31 @@ public class CompanyInfoController {
             debugInfo.put("hasLogo", company.hasLogo());
             debugInfo.put("workingDirectory", System.getProperty("user.dir"));
             
-            // Verifica esistenza file
+            // Verifica esistenza file nell'archivio
             List<Map<String, Object>> pathTests = new ArrayList<>();
             
-            if (company.getLogoPath() != null) {
-                String[] possiblePaths = {
-                	"uploads/" + company.getLogoPath(),
-                    company.getLogoPath(),
-                    Paths.get("uploads", company.getLogoPath()).toString()
-                };
-                
-                for (String path : possiblePaths) {
-                    Map<String, Object> pathTest = new HashMap<>();
-                    Path fullPath = Paths.get(path);
-                    boolean exists = Files.exists(fullPath);
-                    
-                    pathTest.put("path", path);
-                    pathTest.put("exists", exists);
-                    pathTest.put("absolutePath", fullPath.toAbsolutePath().toString());
-                    
-                    if (exists) {
-                        try {
-                            pathTest.put("size", Files.size(fullPath));
-                            pathTest.put("lastModified", Files.getLastModifiedTime(fullPath).toString());
-                        } catch (IOException e) {
-                            pathTest.put("error", e.getMessage());
-                        }
+            for (String path : new String[] {
+                    company.getLogoPath(), company.getHeaderLogoPath(), company.getWatermarkPath() }) {
+                if (path == null) {
+                    continue;
+                }
+                Map<String, Object> pathTest = new HashMap<>();
+                pathTest.put("path", path);
+                Optional<Resource> stored = storageService.find(path);
+                pathTest.put("exists", stored.isPresent());
+                if (stored.isPresent()) {
+                    try {
+                        pathTest.put("size", stored.get().contentLength());
+                        pathTest.put("lastModified", Instant.ofEpochMilli(stored.get().lastModified()).toString());
+                    } catch (IOException e) {
+                        pathTest.put("error", e.getMessage());
                     }
-                    
-                    pathTests.add(pathTest);
                 }
+                pathTests.add(pathTest);
             }
             
             debugInfo.put("pathTests", pathTests);
             
-            // Lista contenuto directory
-            try {
-        	Path uploadsDir = Paths.get("uploads", "company_logos");
-                if (Files.exists(uploadsDir)) {
-                    List<String> files = Files.list(uploadsDir)
-                        .map(path -> path.getFileName().toString())
-                        .collect(Collectors.toList());
-                    debugInfo.put("logoDirectoryContents", files);
-                } else {
-                    debugInfo.put("logoDirectoryContents", "Directory non esiste");
-                }
-            } catch (IOException e) {
-                debugInfo.put("logoDirectoryError", e.getMessage());
-            }
-            
             // Log le informazioni
             companyInfoService.debugFileStatus(id);
             
@@ -538,19 +469,16 @@ public class CompanyInfoController {
             if (company.hasLogo()) {
                 // Prova a caricare il logo come farebbe il PDF
                 try {
-                    String logoPath = Paths.get("uploads", company.getLogoPath()).toString();
-                    Path fullPath = Paths.get(logoPath);
+                    Optional<Resource> stored = storageService.find(company.getLogoPath());
+                    result.put("logoExistsForPdf", stored.isPresent());
                     
-                    result.put("logoPathUsedInPdf", logoPath);
-                    result.put("logoExistsForPdf", Files.exists(fullPath));
-                    result.put("logoAbsolutePathForPdf", fullPath.toAbsolutePath().toString());
-                    
-                    if (Files.exists(fullPath)) {
-                        result.put("logoSizeForPdf", Files.size(fullPath));
+                    if (stored.isPresent()) {
+                        byte[] content = stored.get().getContentAsByteArray();
+                        result.put("logoSizeForPdf", content.length);
                         
                         // Prova a caricare come Image
                         try {
-                            com.lowagie.text.Image logo = com.lowagie.text.Image.getInstance(logoPath);
+                            com.lowagie.text.Image logo = com.lowagie.text.Image.getInstance(content);
                             result.put("logoLoadedSuccessfully", true);
                             result.put("logoWidth", logo.getWidth());
                             result.put("logoHeight", logo.getHeight());
@@ -575,33 +503,4 @@ public class CompanyInfoController {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
-    /**
-     * Costruisce la risposta HTTP per il download del file
-     */
-    private ResponseEntity<Resource> buildFileResponse(Resource resource, HttpServletRequest request) {
-	    try {
-	        // Determina il content type
-	        String contentType = null;
-	        try {
-	            contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-	        } catch (IOException ex) {
-	            log.info("Could not determine file type.");
-	        }
-
-	        if (contentType == null) {
-	            contentType = "application/octet-stream";
-	        }
-
-	        log.info("Serving file: {} with content type: {}", resource.getFilename(), contentType);
-
-	        return ResponseEntity.ok()
-	                .contentType(MediaType.parseMediaType(contentType))
-	                .header(HttpHeaders.CONTENT_DISPOSITION,
-	                        "inline; filename=\"" + resource.getFilename() + "\"")
-	                .body(resource);
-	    } catch (Exception e) {
-	        log.error("Errore nella costruzione della risposta file", e);
-	        return ResponseEntity.notFound().build();
-	    }
-	}
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import com.veely.service.ComplianceCategoryService;
 import com.veely.service.ProjectService;
 import com.veely.service.EmployeeService;
 import com.veely.service.DocumentService;
+import com.veely.service.storage.FileDownloadService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,12 +15,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.MediaType;
-import org.springframework.http.HttpHeaders;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 import java.io.IOException;
 
@@ -32,6 +31,7 @@ public class ComplianceItemController {
     private final ProjectService projectService;
     private final EmployeeService employeeService;
     private final DocumentService documentService;
+    private final FileDownloadService fileDownloadService;
 
     @GetMapping
     public String list(@RequestParam(required = false) Long categoryId,
@@ -108,18 +108,12 @@ public class ComplianceItemController {
     }
 
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable Long id,
-                                              @PathVariable String filename,
-                                              HttpServletRequest request) throws IOException {
+    public void serveFile(@PathVariable Long id,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
         Resource resource = documentService.loadComplianceItemDocumentAsResource(id, filename);
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     @GetMapping("/{itemId}/docs/{docId}/delete")
@@ -6,13 +6,14 @@ import com.veely.service.ContractService;
 import com.veely.service.DocumentService;
 import com.veely.service.ProjectService;
 import com.veely.service.SupplierService;
+import com.veely.service.storage.FileDownloadService;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -32,6 +33,7 @@ public class ContractController {
     private final SupplierService supplierService;
     private final ProjectService projectService;
     private final DocumentService documentService;
+    private final FileDownloadService fileDownloadService;
 
     @GetMapping
     public String list(Model model) {
@@ -132,10 +134,12 @@ public class ContractController {
     }
 
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> downloadDoc(@PathVariable Long id,
-                                                @PathVariable String filename) {
+    public void downloadDoc(@PathVariable Long id,
+                            @PathVariable String filename,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
         Resource res = documentService.loadContractDocumentAsResource(id, filename);
-        return ResponseEntity.ok(res);
+        fileDownloadService.attachment(res, request, response);
     }
 
     @GetMapping("/{contractId}/docs/{docId}/delete")
@@ -5,6 +5,7 @@ import com.veely.model.CorrespondenceType;
 import com.veely.model.DocumentType;
 import com.veely.service.CorrespondenceService;
 import com.veely.service.DocumentService;
+import com.veely.service.storage.FileDownloadService;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -16,12 +17,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.bind.annotation.PathVariable;
 
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
 
+import java.io.IOException;
 import java.time.LocalDate;
 
 @Controller
@@ -30,6 +30,7 @@ import java.time.LocalDate;
 public class CorrespondenceController {
     private final CorrespondenceService service;
     private final DocumentService documentService;
+    private final FileDownloadService fileDownloadService;
     
     private static final DocumentType[] CORR_DOC_TYPES = {
             DocumentType.OTHER
@@ -66,11 +67,7 @@ public class CorrespondenceController {
         int progress = progressivo == null ? 0 : progressivo;
         Correspondence saved = service.register(tipo, progress, descrizione, d, sender, recipient, notes);
         if (files != null) {
-            for (MultipartFile f : files) {
-                if (f != null && !f.isEmpty()) {
-                    documentService.uploadCorrespondenceDocument(saved.getId(), f, DocumentType.OTHER, null, null);
-                }
-            }
+            documentService.uploadCorrespondenceDocuments(saved.getId(), java.util.Arrays.asList(files), DocumentType.OTHER, null, null);
         }
         return "redirect:/correspondence";
     }
@@ -107,11 +104,7 @@ public class CorrespondenceController {
         LocalDate d = (data == null || data.isBlank()) ? LocalDate.now() : LocalDate.parse(data);
         service.update(id, progressivo, tipo, descrizione, d, sender, recipient, notes);
         if (files != null) {
-            for (MultipartFile f : files) {
-                if (f != null && !f.isEmpty()) {
-                    documentService.uploadCorrespondenceDocument(id, f, DocumentType.OTHER, null, null);
-                }
-            }
+            documentService.uploadCorrespondenceDocuments(id, java.util.Arrays.asList(files), DocumentType.OTHER, null, null);
         }
         return "redirect:/correspondence";
     }
@@ -136,11 +129,7 @@ public class CorrespondenceController {
 				if (files != null) {
 				LocalDate issue = (issueDate == null || issueDate.isBlank()) ? null : LocalDate.parse(issueDate);
             LocalDate expiry = (expiryDate == null || expiryDate.isBlank()) ? null : LocalDate.parse(expiryDate);
-            for (MultipartFile file : files) {
-                if (file != null && !file.isEmpty()) {
-                    documentService.uploadCorrespondenceDocument(id, file, type, issue, expiry);
-                }
-            }
+            documentService.uploadCorrespondenceDocuments(id, java.util.Arrays.asList(files), type, issue, expiry);
         }
         //return "redirect:/correspondence/" + id + "/edit";
         return editForm(id, model);
@@ -154,13 +143,10 @@ public class CorrespondenceController {
     }
     
     @GetMapping("/docs/{docId}")
-    public ResponseEntity<Resource> downloadDoc(@PathVariable Long docId, HttpServletRequest request) throws java.io.IOException {
+    public void downloadDoc(@PathVariable Long docId,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
         Resource res = documentService.loadDocument(docId);
-        String contentType = request.getServletContext().getMimeType(res.getFile().getAbsolutePath());
-        if (contentType == null) contentType = "application/octet-stream";
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + res.getFilename() + "\"")
-                .body(res);
+        fileDownloadService.attachment(res, request, response);
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.veely.controller;
 
 import com.veely.service.DashboardService;
+import com.veely.service.DashboardSnapshotService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -11,10 +12,10 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class DashboardController {
 
-    private final DashboardService dashboardService;
+    private final DashboardSnapshotService dashboardSnapshotService;
 
     @GetMapping
     public DashboardService.DashboardMetrics metrics() {
-        return dashboardService.getMetrics();
+        return dashboardSnapshotService.current().metrics();
     }
 }
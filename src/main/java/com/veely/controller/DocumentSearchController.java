@@ -0,0 +1,37 @@
+package com.veely.controller;
+
+import com.veely.service.search.DocumentSearchIndex;
+import com.veely.service.search.DocumentSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/documents/search")
+@RequiredArgsConstructor
+public class DocumentSearchController {
+
+    private final DocumentSearchService searchService;
+    private final DocumentSearchIndex searchIndex;
+
+    @GetMapping
+    public List<DocumentSearchService.Hit> search(@RequestParam("q") String query,
+                                                  @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return searchService.search(query, limit);
+    }
+
+    @GetMapping("/status")
+    public DocumentSearchIndex.Status status() {
+        return searchIndex.status();
+    }
+
+    /** Avvia la ricostruzione dell'indice in background; 409 se è già in corso. */
+    @PostMapping("/rebuild")
+    public ResponseEntity<DocumentSearchIndex.Status> rebuild() {
+        HttpStatus status = searchIndex.rebuild() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(searchIndex.status());
+    }
+}
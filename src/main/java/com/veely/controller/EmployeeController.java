@@ -3,6 +3,7 @@ package com.veely.controller;
 import com.veely.entity.Document;
 import com.veely.entity.Employee;
 import com.veely.entity.Employment;
+import com.veely.model.AttachmentOwner;
 import com.veely.model.DocumentType;
 import com.veely.model.EducationLevel;
 import com.veely.model.EmploymentStatus;
@@ -19,8 +20,12 @@ import com.veely.service.LocationService.CityDto;
 import com.veely.service.LocationService.ProvinceDto;
 import com.veely.service.LocationService.RegionDto;
 import com.veely.service.EmployeeRoleService;
+import com.veely.service.attachment.DocumentArchiveService;
+import com.veely.service.pdf.PdfStreamingService;
+import com.veely.service.storage.FileDownloadService;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -37,6 +42,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import java.io.IOException;
 import java.time.LocalDate;
@@ -59,6 +65,9 @@ public class EmployeeController {
     private final CountryService countryService;
     private final LocationService locationService;
     private final EmployeeRoleService employeeRoleService;
+    private final FileDownloadService fileDownloadService;
+    private final DocumentArchiveService documentArchiveService;
+    private final PdfStreamingService pdfStreamingService;
     
     private static final DocumentType[] EMPLOYEE_DOC_TYPES = {
             DocumentType.IDENTITY_PHOTO,
@@ -176,12 +185,8 @@ public class EmployeeController {
     }
 
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportPdf() throws IOException {
-        byte[] pdf = employeeService.exportStyledPdf();
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=Elenco_dipendenti.pdf")
-                .body(pdf);
+    public ResponseEntity<StreamingResponseBody> exportPdf() {
+        return pdfStreamingService.download("Elenco_dipendenti.pdf", employeeService::exportStyledPdf);
     }
 
 
@@ -422,24 +427,27 @@ public class EmployeeController {
      *    GET /fleet/employees/{id}/docs/{filename}
      */
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(
-            @PathVariable Long id,
-            @PathVariable String filename,
-            HttpServletRequest request
-    ) throws IOException {
-       // Resource resource = documentService.loadEmployeeDocumentAsResource(id, "employees/" + id + "/docs/" + filename);
-    	Resource resource = documentService.loadEmployeeDocumentAsResource(id, filename);
-    	
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
+    public void serveFile(@PathVariable Long id,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        Resource resource = documentService.loadEmployeeDocumentAsResource(id, filename);
+        fileDownloadService.attachment(resource, request, response);
+    }
+
+    /** Miniatura della foto profilo, usata negli elenchi */
+    @GetMapping("/{id}/thumbs/{filename:.+}")
+    public void serveThumbnail(@PathVariable Long id,
+                               @PathVariable String filename,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        fileDownloadService.inline(documentService.loadEmployeeThumbnail(id, filename), request, response);
+    }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+    /** Tutti i documenti in un unico archivio ZIP */
+    @GetMapping("/{id}/documents.zip")
+    public ResponseEntity<StreamingResponseBody> downloadAllDocuments(@PathVariable Long id) {
+        return documentArchiveService.ownerArchive(AttachmentOwner.EMPLOYEE, id);
     }
     
     @PostMapping("/{id}/delete")
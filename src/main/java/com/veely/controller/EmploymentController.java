@@ -1,7 +1,9 @@
 package com.veely.controller;
 
+import com.veely.dto.employee.EmploymentExportRow;
 import com.veely.entity.Employment;
 import com.veely.service.ProjectService;
+import com.veely.model.AttachmentOwner;
 import com.veely.model.CcnlType;
 import com.veely.model.ContractType;
 import com.veely.model.DocumentType;
@@ -11,21 +13,27 @@ import com.veely.service.EmploymentService;
 import com.veely.service.LaborUnionService;
 import com.veely.service.PdfEmploymentService;
 import com.veely.service.EmployeeService;
+import com.veely.service.export.ExportDefinitions;
+import com.veely.service.export.ExportFormat;
+import com.veely.service.export.StreamingExportService;
+import com.veely.service.attachment.DocumentArchiveService;
+import com.veely.service.pdf.PdfStreamingService;
+import com.veely.service.storage.FileDownloadService;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
@@ -41,6 +49,10 @@ public class EmploymentController {
     private final DocumentService documentService;
     private final ProjectService projectService;
     private final LaborUnionService unionService;
+    private final StreamingExportService exportService;
+    private final FileDownloadService fileDownloadService;
+    private final DocumentArchiveService documentArchiveService;
+    private final PdfStreamingService pdfStreamingService;
     
     private static final DocumentType[] EMPLOYEE_DOC_TYPES = {
             DocumentType.EMPLOYMENT_CONTRACT,
@@ -78,16 +90,27 @@ public class EmploymentController {
     }
     
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportPdf(@RequestParam(required = false) String keyword,
+    public ResponseEntity<StreamingResponseBody> exportPdf(@RequestParam(required = false) String keyword,
             @RequestParam(required = false) EmploymentStatus status,
-            @RequestParam(required = false, name = "project") Long projectId) throws IOException {
-    	byte[] pdf = employmentService.exportStyledPdf(keyword, status, projectId);
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=Prospetto_Rapporti_di_lavoro.pdf")
-                .body(pdf);
+            @RequestParam(required = false, name = "project") Long projectId) {
+        employmentService.autoTerminateExpired();
+        return pdfStreamingService.download("Prospetto_Rapporti_di_lavoro.pdf",
+                out -> employmentService.exportStyledPdf(keyword, status, projectId, out));
     }
     
+    /** Export CSV/XLSX con gli stessi filtri dell'elenco (senza {@code format} resta il PDF). */
+    @GetMapping(value = "/export", params = "format")
+    public ResponseEntity<StreamingResponseBody> exportTable(@RequestParam("format") String format,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) EmploymentStatus status,
+            @RequestParam(required = false, name = "project") Long projectId) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        employmentService.autoTerminateExpired();
+        return exportService.export("rapporti_di_lavoro", exportFormat, ExportDefinitions.EMPLOYMENTS,
+                () -> employmentService.streamForExport(keyword, status, projectId)
+                        .map(EmploymentExportRow::employment));
+    }
+
     @GetMapping("/new")
     public String newForm(Model model) {
     	Employment employment = new Employment();
@@ -219,18 +242,18 @@ public class EmploymentController {
     }
 
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable Long id,
-                                              @PathVariable String filename,
-                                              HttpServletRequest request) throws IOException {
+    public void serveFile(@PathVariable Long id,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
         Resource resource = documentService.loadEmploymentDocumentAsResource(id, filename);
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
+    }
+
+    /** Tutti i documenti in un unico archivio ZIP */
+    @GetMapping("/{id}/documents.zip")
+    public ResponseEntity<StreamingResponseBody> downloadAllDocuments(@PathVariable Long id) {
+        return documentArchiveService.ownerArchive(AttachmentOwner.EMPLOYMENT, id);
     }
 
     @GetMapping("/{empId}/docs/{docId}/delete")
@@ -1,5 +1,6 @@
 package com.veely.controller;
 
+import com.veely.dto.expense.ExpenseBatchExportProgress;
 import com.veely.entity.Employee;
 import com.veely.entity.ExpenseItem;
 import com.veely.entity.ExpenseReport;
@@ -7,12 +8,18 @@ import com.veely.entity.Supplier;
 import com.veely.entity.Document;
 import com.veely.model.ExpenseStatus;
 import com.veely.service.EmployeeService;
+import com.veely.service.ExpenseReportBatchExportService;
 import com.veely.service.ExpenseReportService;
 import com.veely.service.SupplierService;
 import com.veely.service.DocumentService;
 import com.veely.model.PaymentMethod;
 import com.veely.service.ProjectService;
 import com.veely.model.DocumentType;
+import com.veely.service.export.ExportDefinitions;
+import com.veely.service.export.ExportFormat;
+import com.veely.service.export.StreamingExportService;
+import com.veely.service.pdf.PdfStreamingService;
+import com.veely.service.storage.FileDownloadService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -22,6 +29,8 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.MediaType;
 import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
@@ -34,10 +43,12 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import java.io.IOException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.http.ResponseEntity;
 
@@ -52,11 +63,19 @@ public class ExpenseReportController {
     private final SupplierService supplierService;
     private final ProjectService projectService;
     private final DocumentService documentService;
+    private final StreamingExportService exportService;
+    private final FileDownloadService fileDownloadService;
+    private final PdfStreamingService pdfStreamingService;
+    private final ExpenseReportBatchExportService batchExportService;
 
     @GetMapping
     public String list(Model model, Authentication auth) {
         if (isAdminOrExpenseManager(auth)) {
             model.addAttribute("reports", reportService.findAll());
+            model.addAttribute("canBatchExport", true);
+            model.addAttribute("batchEmployees", employeeService.findAll());
+            model.addAttribute("batchProjects", projectService.findAll());
+            model.addAttribute("expenseStatuses", ExpenseStatus.values());
         } else {
             Employee current = employeeService.findByEmail(auth.getName());
             model.addAttribute("reports", reportService.findByEmployeeId(current.getId()));
@@ -64,6 +83,18 @@ public class ExpenseReportController {
         return "fleet/expense_reports/index";
     }
 
+    /** Export CSV/XLSX delle note spese visibili all'utente corrente. */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            Authentication auth) {
+        Long employeeId = isAdminOrExpenseManager(auth)
+                ? null
+                : employeeService.findByEmail(auth.getName()).getId();
+        return exportService.export("note_spese", ExportFormat.from(format), ExportDefinitions.EXPENSE_REPORTS,
+                () -> reportService.streamForExport(employeeId));
+    }
+
     @GetMapping("/new")
     public String newForm(Model model, Authentication auth) {
         List<Employee> employees;
@@ -143,10 +174,8 @@ public class ExpenseReportController {
     public String editForm(@PathVariable Long id, Model model) {
         ExpenseReport r = reportService.findByIdOrThrow(id);
         List<ExpenseItem> items = reportService.findItems(id);
-        Map<Long, List<com.veely.model.DocumentInfo>> docs = new java.util.HashMap<>();
-        for (ExpenseItem it : items) {
-        	docs.put(it.getId(), documentService.getExpenseItemDocumentInfo(it.getId()));
-        }
+        Map<Long, List<com.veely.model.DocumentInfo>> docs = documentService.getExpenseItemDocumentInfo(
+                items.stream().map(ExpenseItem::getId).toList());
         model.addAttribute("report", r);
         model.addAttribute("items", items);
         model.addAttribute("itemDocs", docs);
@@ -177,10 +206,8 @@ public class ExpenseReportController {
             model.addAttribute("suppliers", supplierService.findAll());
             model.addAttribute("projects", projectService.findAll());
             List<ExpenseItem> items = reportService.findItems(id);
-            Map<Long, List<com.veely.entity.Document>> itemDocs = new HashMap<>();
-            for (ExpenseItem it : items) {
-                itemDocs.put(it.getId(), documentService.getExpenseItemDocuments(it.getId()));
-            }
+            Map<Long, List<com.veely.entity.Document>> itemDocs = documentService.getExpenseItemDocuments(
+                    items.stream().map(ExpenseItem::getId).toList());
             model.addAttribute("items", items);
             model.addAttribute("itemDocs", itemDocs);
             model.addAttribute("docTypes", new DocumentType[]{DocumentType.INVOICE, DocumentType.RECEIPT, DocumentType.OTHER});
@@ -194,10 +221,8 @@ public class ExpenseReportController {
             model.addAttribute("suppliers", supplierService.findAll());
             model.addAttribute("projects", projectService.findAll());
             List<ExpenseItem> existing = reportService.findItems(id);
-            Map<Long, List<com.veely.entity.Document>> itemDocs = new HashMap<>();
-            for (ExpenseItem it : existing) {
-                itemDocs.put(it.getId(), documentService.getExpenseItemDocuments(it.getId()));
-            }
+            Map<Long, List<com.veely.entity.Document>> itemDocs = documentService.getExpenseItemDocuments(
+                    existing.stream().map(ExpenseItem::getId).toList());
             model.addAttribute("items", existing);
             model.addAttribute("itemDocs", itemDocs);
             model.addAttribute("docTypes", new DocumentType[]{DocumentType.INVOICE, DocumentType.RECEIPT, DocumentType.OTHER});
@@ -222,23 +247,56 @@ public class ExpenseReportController {
     }
     
     @GetMapping("/{id}/export")
-    public ResponseEntity<byte[]> exportPdf(@PathVariable Long id) throws IOException {
-        byte[] pdf = reportService.exportPdf(id);
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=expense-report-" + id + ".pdf")
-                .body(pdf);
+    public ResponseEntity<StreamingResponseBody> exportPdf(@PathVariable Long id) {
+        reportService.findByIdOrThrow(id); // 404 prima di iniziare lo streaming
+        return pdfStreamingService.download("expense-report-" + id + ".pdf",
+                out -> reportService.exportPdf(id, out));
     }
     
+    /** Export in PDF di tutte le note spese del filtro, in un unico ZIP generato in background. */
+    @PostMapping("/batch-export")
+    public String batchExport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) ExpenseStatus status,
+            @RequestParam(required = false) Long employeeId,
+            @RequestParam(required = false) Long projectId,
+            Authentication auth,
+            RedirectAttributes redirectAttributes) {
+        requireExpenseManager(auth);
+        try {
+            String jobId = batchExportService.submit(
+                    new ExpenseReportBatchExportService.Filter(from, to, status, employeeId, projectId),
+                    auth.getName());
+            redirectAttributes.addFlashAttribute("batchExportJobId", jobId);
+        } catch (IllegalArgumentException ex) {
+            redirectAttributes.addFlashAttribute("batchExportError", ex.getMessage());
+        }
+        return "redirect:/fleet/expense-reports";
+    }
+
+    @GetMapping("/batch-export/{jobId}")
+    @ResponseBody
+    public ExpenseBatchExportProgress batchExportProgress(@PathVariable String jobId, Authentication auth) {
+        requireExpenseManager(auth);
+        return batchExportService.getProgress(jobId);
+    }
+
+    @GetMapping("/batch-export/{jobId}/download")
+    public void downloadBatchExport(@PathVariable String jobId,
+                                    Authentication auth,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        requireExpenseManager(auth);
+        fileDownloadService.attachment(batchExportService.getArchive(jobId), request, response);
+    }
+
     @GetMapping("/docs/{docId}")
-    public ResponseEntity<Resource> downloadItemDocument(@PathVariable Long docId, HttpServletRequest request) throws IOException {
+    public void downloadItemDocument(@PathVariable Long docId,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
         Resource res = documentService.loadDocument(docId);
-        String ct = request.getServletContext().getMimeType(res.getFile().getAbsolutePath());
-        if (ct == null) ct = "application/octet-stream";
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(ct))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + res.getFilename() + "\"")
-                .body(res);
+        fileDownloadService.attachment(res, request, response);
     }
 
     @GetMapping("/items/{itemId}/docs/{docId}/delete")
@@ -329,6 +387,12 @@ public class ExpenseReportController {
         return "" + li + fi;
     }
     
+    private void requireExpenseManager(Authentication auth) {
+        if (!isAdminOrExpenseManager(auth)) {
+            throw new AccessDeniedException("Export massivo riservato ai gestori delle note spese");
+        }
+    }
+
     private boolean isAdminOrExpenseManager(Authentication auth) {
         if (auth == null) return false;
         return auth.getAuthorities().stream().anyMatch(a ->
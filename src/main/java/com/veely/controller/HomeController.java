@@ -5,7 +5,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
-import com.veely.service.DashboardService;
+import com.veely.dto.dashboard.DashboardSnapshot;
+import com.veely.service.DashboardSnapshotService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -13,20 +14,21 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class HomeController {
 	
-	private final DashboardService dashboardService;
+	private final DashboardSnapshotService dashboardSnapshotService;
 	
     @GetMapping({"/", "/welcome"})
     public String home(Model model) {
-        model.addAttribute("metrics", dashboardService.getMetrics());
-        model.addAttribute("vehicleStatusLabels", dashboardService.getVehicleStatusCounts().keySet());
-        model.addAttribute("vehicleStatusValues", dashboardService.getVehicleStatusCounts().values());
-        model.addAttribute("fuelCosts", dashboardService.getFuelCosts(6));
-        model.addAttribute("reportBalances", dashboardService.getExpenseReportBalances(6));
-        model.addAttribute("pendingReports", dashboardService.getPendingExpenseReports(5));
-        model.addAttribute("upcomingSafety", dashboardService.getUpcomingComplianceItems(5));
-        model.addAttribute("upcomingTasks", dashboardService.getUpcomingTasks(5));
-        model.addAttribute("upcomingAdminDocuments", dashboardService.getUpcomingAdminDocuments(5));
-        model.addAttribute("expiringPolicies", dashboardService.getExpiringPolicies(5));
+        DashboardSnapshot snapshot = dashboardSnapshotService.current();
+        model.addAttribute("metrics", snapshot.metrics());
+        model.addAttribute("vehicleStatusLabels", snapshot.vehicleStatusCounts().keySet());
+        model.addAttribute("vehicleStatusValues", snapshot.vehicleStatusCounts().values());
+        model.addAttribute("fuelCosts", snapshot.fuelCosts());
+        model.addAttribute("reportBalances", snapshot.reportBalances());
+        model.addAttribute("pendingReports", snapshot.pendingReports());
+        model.addAttribute("upcomingSafety", snapshot.upcomingSafety());
+        model.addAttribute("upcomingTasks", snapshot.upcomingTasks());
+        model.addAttribute("upcomingAdminDocuments", snapshot.upcomingAdminDocuments());
+        model.addAttribute("expiringPolicies", snapshot.expiringPolicies());
         return "welcome";   // template: src/main/resources/templates/welcome.html
     }
 
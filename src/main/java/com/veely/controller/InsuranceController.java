@@ -10,11 +10,12 @@ import com.veely.service.DocumentService;
 import com.veely.service.InsuranceService;
 import com.veely.service.ProjectService;
 import com.veely.service.SupplierService;
+import com.veely.service.storage.FileDownloadService;
 import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -24,7 +25,6 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
 import java.time.LocalDate;
-import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 
@@ -37,6 +37,7 @@ public class InsuranceController {
     private final SupplierService supplierService;
     private final ProjectService projectService;
     private final DocumentService documentService;
+    private final FileDownloadService fileDownloadService;
 
     @GetMapping
     public String list(Model model) {
@@ -126,13 +127,12 @@ public class InsuranceController {
     }
 
     @GetMapping("/{policyId}/docs/{docId}/download")
-    public ResponseEntity<Resource> downloadDoc(@PathVariable Long policyId,
-                                                @PathVariable Long docId) {
+    public void downloadDoc(@PathVariable Long policyId,
+                            @PathVariable Long docId,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
         Resource resource = documentService.loadDocument(docId);
-        String filename = Path.of(resource.getFilename() != null ? resource.getFilename() : "documento").getFileName().toString();
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     @PostMapping("/{policyId}/docs/{docId}/delete")
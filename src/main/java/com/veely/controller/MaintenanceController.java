@@ -10,6 +10,10 @@ import com.veely.service.SupplierService;
 import com.veely.service.TaskTypeService;
 import com.veely.service.VehicleService;
 import com.veely.service.VehicleTaskService;
+import com.veely.service.export.ExportDefinitions;
+import com.veely.service.export.ExportFormat;
+import com.veely.service.export.StreamingExportService;
+import com.veely.service.storage.FileDownloadService;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -18,10 +22,10 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import jakarta.validation.Valid;
 
@@ -44,6 +48,8 @@ public class MaintenanceController {
     private final VehicleTaskService vehicleTaskService;
     private final TaskTypeService taskTypeService;
     private final MaintenanceRepository maintenanceRepository;
+    private final StreamingExportService exportService;
+    private final FileDownloadService fileDownloadService;
 
 
     @GetMapping
@@ -60,6 +66,17 @@ public class MaintenanceController {
         addOptions(model);
         return "fleet/maintenance/index";
     }
+    /** Export CSV/XLSX delle manutenzioni con gli stessi filtri dell'elenco. */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "plate", required = false) String plate,
+            @RequestParam(value = "year", required = false) Integer year,
+            @RequestParam(value = "typeId", required = false) Long typeId) {
+        return exportService.export("manutenzioni", ExportFormat.from(format), ExportDefinitions.MAINTENANCE,
+                () -> maintenanceService.streamForExport(plate, year, typeId));
+    }
+
     @GetMapping("/new")
     public String newForm(@RequestParam(value = "taskId", required = false) Long taskId,
             @RequestParam(value = "vehicleId", required = false) Long vehicleId,
@@ -126,30 +143,24 @@ public class MaintenanceController {
     /** Upload documento di manutenzione */
     @PostMapping("/{id}/docs")
     public String uploadDoc(@PathVariable Long id,
-                            @RequestParam("file") MultipartFile file,
+                            @RequestParam("file") List<MultipartFile> files,
                             @RequestParam("type") DocumentType type,
                             @RequestParam(value = "issueDate", required = false) String issueDate,
                             @RequestParam(value = "expiryDate", required = false) String expiryDate) throws IOException {
         LocalDate issued = (issueDate == null || issueDate.isBlank()) ? null : LocalDate.parse(issueDate);
         LocalDate exp = (expiryDate == null || expiryDate.isBlank()) ? null : LocalDate.parse(expiryDate);
-        documentService.uploadMaintenanceDocument(id, file, type, issued, exp);
+        documentService.uploadMaintenanceDocuments(id, files, type, issued, exp);
         return "redirect:/fleet/maintenance/" + id + "/edit";
     }
 
     /** Download di un documento di manutenzione */
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable Long id,
-                                              @PathVariable String filename,
-                                              HttpServletRequest request) throws IOException {
+    public void serveFile(@PathVariable Long id,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
         Resource resource = documentService.loadMaintenanceDocumentAsResource(id, filename);
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     @GetMapping("/{mId}/docs/{docId}/delete")
@@ -1,18 +1,26 @@
 package com.veely.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veely.dto.payslip.PayslipDispatchProgress;
 import com.veely.dto.payslip.PayslipSendResult;
 import com.veely.dto.payslip.PayslipUploadResult;
 import com.veely.entity.Payslip;
+import com.veely.entity.PayslipDispatchJob;
 import com.veely.entity.UniqueCertification;
-import com.veely.service.PayslipEmailService;
+import com.veely.service.PayslipDispatchService;
 import com.veely.service.PayslipService;
 import com.veely.service.PdfPayslipDispatchReportService;
 import com.veely.service.UniqueCertificationEmailService;
 import com.veely.service.UniqueCertificationService;
+import com.veely.service.attachment.DocumentArchiveService;
+import com.veely.service.ingest.IngestProgress;
+import com.veely.service.pdf.PdfStreamingService;
+import com.veely.service.storage.FileDownloadService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
-import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -24,10 +32,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Principal;
 import java.time.Year;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
@@ -36,6 +49,10 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Controller
@@ -45,10 +62,14 @@ public class PayslipController {
 
     // Servizi
     private final PayslipService payslipService;
-    private final PayslipEmailService payslipEmailService;
+    private final PayslipDispatchService payslipDispatchService;
     private final PdfPayslipDispatchReportService pdfPayslipDispatchReportService;
     private final UniqueCertificationService uniqueCertificationService;
     private final UniqueCertificationEmailService uniqueCertificationEmailService;
+    private final ObjectMapper objectMapper;
+    private final FileDownloadService fileDownloadService;
+    private final DocumentArchiveService documentArchiveService;
+    private final PdfStreamingService pdfStreamingService;
 
     // Formattatori per date
     private static final DateTimeFormatter MONTH_INPUT_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
@@ -72,6 +93,9 @@ public class PayslipController {
         model.addAttribute("selectedMonth", selectedMonth);
         model.addAttribute("selectedMonthValue", selectedMonth.format(MONTH_INPUT_FORMATTER));
         model.addAttribute("availableMonths", payslipService.getAvailableMonths());
+        if (!model.containsAttribute("dispatchJobId")) {
+            payslipDispatchService.findActiveJobId().ifPresent(id -> model.addAttribute("dispatchJobId", id));
+        }
 
         // Attributi per la sezione Certificazioni Uniche
         List<Year> availableYears = new ArrayList<>(uniqueCertificationService.getAvailableYears());
@@ -142,21 +166,58 @@ public class PayslipController {
                 + "&year=" + year.format(YEAR_FORMATTER);
     }
 
+    @PostMapping(value = "/upload/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> uploadStream(@RequestParam("referenceMonth") String referenceMonth,
+                                                              @RequestParam(value = "files", required = false) MultipartFile[] files) {
+        YearMonth month = resolveMonth(referenceMonth);
+        return streamUpload(listener -> payslipService.uploadPayslips(month, files, listener));
+    }
+
+    @PostMapping("/upload/zip")
+    public String uploadArchive(@RequestParam("referenceMonth") String referenceMonth,
+                                @RequestParam("archive") MultipartFile archive,
+                                @RequestParam(value = "currentYear", required = false) String currentYear,
+                                RedirectAttributes redirectAttributes) throws IOException {
+        YearMonth month = resolveMonth(referenceMonth);
+        PayslipUploadResult result;
+        try (InputStream in = archive.getInputStream()) {
+            result = payslipService.uploadPayslipArchive(month, in, progress -> { });
+        }
+        redirectAttributes.addFlashAttribute("uploadResult", result);
+        redirectAttributes.addFlashAttribute("selectedMonth", month);
+        Year year = resolveYear(currentYear);
+        return "redirect:/payslips?month=" + month.format(MONTH_INPUT_FORMATTER)
+                + "&year=" + year.format(YEAR_FORMATTER);
+    }
+
+    /** Archivio ZIP inviato come corpo della richiesta, letto senza passare dal multipart. */
+    @PostMapping(value = "/upload/zip/stream", consumes = {"application/zip", "application/x-zip-compressed",
+            MediaType.APPLICATION_OCTET_STREAM_VALUE}, produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> uploadArchiveStream(@RequestParam("referenceMonth") String referenceMonth,
+                                                                     InputStream archive) {
+        YearMonth month = resolveMonth(referenceMonth);
+        return streamUpload(listener -> payslipService.uploadPayslipArchive(month, archive, listener));
+    }
+
     @PostMapping("/send")
     public String send(@RequestParam("referenceMonth") String referenceMonth,
                        @RequestParam(value = "payslipIds", required = false) List<Long> payslipIds,
                        @RequestParam(value = "subject", required = false) String subject,
                        @RequestParam(value = "body", required = false) String body,
                        @RequestParam(value = "currentYear", required = false) String currentYear,
+                       Principal principal,
                        RedirectAttributes redirectAttributes) {
         YearMonth month = resolveMonth(referenceMonth);
         String sanitizedSubject = subject != null ? subject.trim() : "";
         String sanitizedBody = body != null ? body.trim() : "";
-        PayslipSendResult result = payslipEmailService.sendPayslips(
-                payslipIds == null ? List.of() : payslipIds,
-                sanitizedSubject,
-                sanitizedBody);
-        redirectAttributes.addFlashAttribute("sendResult", result);
+        if (payslipIds == null || payslipIds.isEmpty()) {
+            redirectAttributes.addFlashAttribute("sendError", "Nessun cedolino selezionato");
+        } else {
+            // l'invio prosegue in background: la pagina ne segue l'avanzamento
+            PayslipDispatchJob job = payslipDispatchService.submit(payslipIds, sanitizedSubject, sanitizedBody,
+                    principal != null ? principal.getName() : null);
+            redirectAttributes.addFlashAttribute("dispatchJobId", job.getId());
+        }
         redirectAttributes.addFlashAttribute("lastSubject", sanitizedSubject);
         redirectAttributes.addFlashAttribute("lastBody", sanitizedBody);
         Year year = resolveYear(currentYear);
@@ -164,35 +225,32 @@ public class PayslipController {
                 + "&year=" + year.format(YEAR_FORMATTER);
     }
     
+    @GetMapping("/dispatch/{jobId}")
+    @ResponseBody
+    public PayslipDispatchProgress dispatchProgress(@PathVariable Long jobId) {
+        return payslipDispatchService.getProgress(jobId);
+    }
+
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportMonthlyReport(@RequestParam("month") String month) throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportMonthlyReport(@RequestParam("month") String month) {
         YearMonth referenceMonth = resolveMonth(month);
-        List<Payslip> payslips = payslipService.findSentByReferenceMonth(referenceMonth);
-        byte[] pdf = pdfPayslipDispatchReportService.exportMonthlyReport(referenceMonth, payslips);
-
         String filename = String.format("cedolini-inviati-%s.pdf", referenceMonth.format(MONTH_FILE_FORMATTER));
-        ContentDisposition disposition = ContentDisposition.attachment()
-                .filename(filename)
-                .build();
+        return pdfStreamingService.download(filename, out -> pdfPayslipDispatchReportService.writeMonthlyReport(
+                referenceMonth, payslipService.findSentByReferenceMonth(referenceMonth), out));
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .contentType(MediaType.APPLICATION_PDF)
-                .body(pdf);
+    @GetMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> downloadArchive(@RequestParam("referenceMonth") String referenceMonth) {
+        return documentArchiveService.payslipArchive(resolveMonth(referenceMonth));
     }
 
 
     @GetMapping("/{id}/download")
-    public ResponseEntity<Resource> download(@PathVariable Long id) {
+    public void download(@PathVariable Long id,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
         Resource resource = payslipService.loadPayslipFile(id);
-        String filename = resource.getFilename();
-        ContentDisposition disposition = ContentDisposition.attachment()
-                .filename(filename != null ? filename : "cedolino.pdf")
-                .build();
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     @PostMapping("/{id}/delete")
@@ -242,6 +300,40 @@ public class PayslipController {
                 + "&year=" + year.format(YEAR_FORMATTER);
     }
 
+    @PostMapping(value = "/certifications/upload/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> uploadCertificationsStream(
+            @RequestParam("referenceYear") String referenceYear,
+            @RequestParam(value = "files", required = false) MultipartFile[] files) {
+        Year year = resolveYear(referenceYear);
+        return streamUpload(listener -> uniqueCertificationService.uploadCertifications(year, files, listener));
+    }
+
+    @PostMapping("/certifications/upload/zip")
+    public String uploadCertificationArchive(@RequestParam("referenceYear") String referenceYear,
+                                             @RequestParam("archive") MultipartFile archive,
+                                             @RequestParam(value = "currentMonth", required = false) String currentMonth,
+                                             RedirectAttributes redirectAttributes) throws IOException {
+        Year year = resolveYear(referenceYear);
+        YearMonth month = resolveMonth(currentMonth);
+        PayslipUploadResult result;
+        try (InputStream in = archive.getInputStream()) {
+            result = uniqueCertificationService.uploadCertificationArchive(year, in, progress -> { });
+        }
+        redirectAttributes.addFlashAttribute("certificationUploadResult", result);
+        redirectAttributes.addFlashAttribute("selectedYear", year);
+        return "redirect:/payslips?month=" + month.format(MONTH_INPUT_FORMATTER)
+                + "&year=" + year.format(YEAR_FORMATTER);
+    }
+
+    @PostMapping(value = "/certifications/upload/zip/stream", consumes = {"application/zip",
+            "application/x-zip-compressed", MediaType.APPLICATION_OCTET_STREAM_VALUE}, produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> uploadCertificationArchiveStream(
+            @RequestParam("referenceYear") String referenceYear,
+            InputStream archive) {
+        Year year = resolveYear(referenceYear);
+        return streamUpload(listener -> uniqueCertificationService.uploadCertificationArchive(year, archive, listener));
+    }
+
     @PostMapping("/certifications/send")
     public String sendCertifications(@RequestParam("referenceYear") String referenceYear,
                                      @RequestParam(value = "certificationIds", required = false) List<Long> certificationIds,
@@ -266,16 +358,11 @@ public class PayslipController {
     }
 
     @GetMapping("/certifications/{id}/download")
-    public ResponseEntity<Resource> downloadCertification(@PathVariable Long id) {
+    public void downloadCertification(@PathVariable Long id,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
         Resource resource = uniqueCertificationService.loadCertificationFile(id);
-        String filename = resource.getFilename();
-        ContentDisposition disposition = ContentDisposition.attachment()
-                .filename(filename != null ? filename : "certificazione-unica.pdf")
-                .build();
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     @PostMapping("/certifications/{id}/delete")
@@ -310,6 +397,40 @@ public class PayslipController {
     // --- METODI PRIVATI DI UTILITÀ ---
     // NOTA: Anche questi metodi erano fuori dalla classe e sono stati spostati qui.
 
+    /**
+     * Caricamento con avanzamento in streaming: una riga JSON per file
+     * elaborato ({@code type=progress}) e una finale con il riepilogo
+     * ({@code type=result}).
+     */
+    private ResponseEntity<StreamingResponseBody> streamUpload(
+            Function<Consumer<IngestProgress>, PayslipUploadResult> upload) {
+        StreamingResponseBody body = out -> {
+            // se il client si disconnette il caricamento prosegue comunque fino in fondo
+            AtomicBoolean connected = new AtomicBoolean(true);
+            PayslipUploadResult result = upload.apply(progress ->
+                    writeLine(out, Map.of("type", "progress", "progress", progress), connected));
+            writeLine(out, Map.of("type", "result", "result", result), connected);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(body);
+    }
+
+    private void writeLine(OutputStream out, Object line, AtomicBoolean connected) {
+        if (!connected.get()) {
+            return;
+        }
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+            out.flush();
+        } catch (IOException ex) {
+            connected.set(false);
+            log.debug("Avanzamento caricamento non consegnato: {}", ex.getMessage());
+        }
+    }
+
     /**
      * Converte una stringa nel formato "yyyy-MM" in un oggetto YearMonth.
      * Se la stringa è nulla, vuota o non valida, restituisce il mese corrente.
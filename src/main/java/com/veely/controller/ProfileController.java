@@ -16,8 +16,10 @@ import com.veely.service.EmployeeRoleService;
 import com.veely.service.LocationService.CityDto;
 import com.veely.service.LocationService.ProvinceDto;
 import com.veely.service.LocationService.RegionDto;
+import com.veely.service.storage.FileDownloadService;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,9 +32,6 @@ import java.util.stream.Collectors;
 
 import org.springframework.core.io.Resource;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -59,6 +58,7 @@ public class ProfileController {
     private final CountryService countryService;
     private final LocationService locationService;
     private final EmployeeRoleService employeeRoleService;
+    private final FileDownloadService fileDownloadService;
 
     @GetMapping
     public String profile(Model model, Authentication authentication) {
@@ -226,24 +226,13 @@ public class ProfileController {
      *    GET /fleet/employees/{id}/docs/{filename}
      */
     @GetMapping("/docs/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(
-    		Authentication authentication,
-            @PathVariable String filename,
-            HttpServletRequest request
-    ) throws IOException {
-    	Employee emp = employeeService.findByEmail(authentication.getName());
+    public void serveFile(Authentication authentication,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        Employee emp = employeeService.findByEmail(authentication.getName());
         Resource resource = documentService.loadEmployeeDocumentAsResource(emp.getId(), filename);
-    	
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
     
     @GetMapping("/docs/{docId}/delete")
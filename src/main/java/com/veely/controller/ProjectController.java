@@ -1,6 +1,7 @@
 package com.veely.controller;
 
 import com.veely.entity.Project;
+import com.veely.model.AttachmentOwner;
 import com.veely.model.DocumentType;
 import com.veely.model.ProjectStatus;
 import com.veely.service.DocumentService;
@@ -8,10 +9,15 @@ import com.veely.service.EmployeeService;
 import com.veely.service.ProjectService;
 import com.veely.service.SupplierService;
 import com.veely.service.InsuranceService;
+import com.veely.service.attachment.DocumentArchiveService;
+import com.veely.service.storage.FileDownloadService;
 
 import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 
+import java.io.IOException;
 import java.util.Map;
 
 import org.springframework.core.io.Resource;
@@ -21,6 +27,7 @@ import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
@@ -33,6 +40,8 @@ public class ProjectController {
     private final DocumentService documentService;
     private final SupplierService supplierService;
     private final InsuranceService insuranceService;
+    private final FileDownloadService fileDownloadService;
+    private final DocumentArchiveService documentArchiveService;
 
     @GetMapping
     public String list(Model model) {
@@ -97,22 +106,31 @@ public class ProjectController {
     
     @PostMapping("/{id}/docs")
     public String uploadDoc(@PathVariable Long id,
-                            @RequestParam("file") MultipartFile file,
+                            @RequestParam("file") java.util.List<MultipartFile> files,
                             @RequestParam("type") DocumentType type,
                             @RequestParam(value = "issueDate", required = false) String issueDate,
                             @RequestParam(value = "expiryDate", required = false) String expiryDate,
                             RedirectAttributes ra) throws java.io.IOException {
         java.time.LocalDate issued = (issueDate == null || issueDate.isBlank()) ? null : java.time.LocalDate.parse(issueDate);
         java.time.LocalDate exp = (expiryDate == null || expiryDate.isBlank()) ? null : java.time.LocalDate.parse(expiryDate);
-        documentService.uploadProjectDocument(id, file, type, issued, exp);
+        documentService.uploadProjectDocuments(id, files, type, issued, exp);
         ra.addFlashAttribute("success", "Documento caricato");
         return "redirect:/settings/projects/" + id + "/edit";
     }
 
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> downloadDoc(@PathVariable Long id, @PathVariable String filename) {
+    public void downloadDoc(@PathVariable Long id,
+                            @PathVariable String filename,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
         Resource res = documentService.loadProjectDocumentAsResource(id, filename);
-        return ResponseEntity.ok(res);
+        fileDownloadService.attachment(res, request, response);
+    }
+
+    /** Tutti i documenti in un unico archivio ZIP */
+    @GetMapping("/{id}/documents.zip")
+    public ResponseEntity<StreamingResponseBody> downloadAllDocuments(@PathVariable Long id) {
+        return documentArchiveService.ownerArchive(AttachmentOwner.PROJECT, id);
     }
 
     @GetMapping("/{projId}/docs/{docId}/delete")
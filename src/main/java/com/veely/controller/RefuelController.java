@@ -5,11 +5,16 @@ import com.veely.exception.BusinessValidationException;
 import com.veely.service.FuelCardService;
 import com.veely.service.RefuelService;
 import com.veely.service.VehicleService;
+import com.veely.service.export.ExportDefinitions;
+import com.veely.service.export.ExportFormat;
+import com.veely.service.export.StreamingExportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.validation.Valid;
@@ -22,6 +27,7 @@ public class RefuelController {
     private final RefuelService refuelService;
     private final VehicleService vehicleService;
     private final FuelCardService fuelCardService;
+    private final StreamingExportService exportService;
 
     @GetMapping
     public String list(@RequestParam(value = "vehicleId", required = false) Long vehicleId,
@@ -40,6 +46,23 @@ public class RefuelController {
         return "fleet/refuels/index";
     }
 
+    /** Export CSV/XLSX dei rifornimenti con gli stessi filtri dell'elenco. */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "vehicleId", required = false) Long vehicleId,
+            @RequestParam(value = "cardId", required = false) Long cardId,
+            @RequestParam(value = "year", required = false) Integer year,
+            @RequestParam(value = "from", required = false)
+            @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE)
+                    java.time.LocalDate from,
+            @RequestParam(value = "to", required = false)
+            @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE)
+                    java.time.LocalDate to) {
+        return exportService.export("rifornimenti", ExportFormat.from(format), ExportDefinitions.REFUELS,
+                () -> refuelService.streamForExport(vehicleId, cardId, year, from, to));
+    }
+
     @GetMapping("/new")
     public String newForm(Model model) {
         model.addAttribute("refuel", new Refuel());
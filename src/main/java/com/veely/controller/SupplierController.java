@@ -4,12 +4,10 @@ import com.veely.entity.Supplier;
 import com.veely.service.SupplierService;
 import com.veely.model.DocumentType;
 import com.veely.service.DocumentService;
+import com.veely.service.storage.FileDownloadService;
 import com.veely.entity.SupplierReferent;
 import lombok.*;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -21,6 +19,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 @Controller
@@ -30,6 +29,7 @@ public class SupplierController {
 
     private final SupplierService supplierService;
     private final DocumentService documentService;
+    private final FileDownloadService fileDownloadService;
 
     @GetMapping
     public String list(Model model) {
@@ -71,30 +71,24 @@ public class SupplierController {
     /** Upload documento fornitore */
     @PostMapping("/{id}/docs")
     public String uploadDoc(@PathVariable Long id,
-                            @RequestParam("file") MultipartFile file,
+                            @RequestParam("file") List<MultipartFile> files,
                             @RequestParam("type") DocumentType type,
                             @RequestParam(value = "issueDate", required = false) String issueDate,
                             @RequestParam(value = "expiryDate", required = false) String expiryDate) throws IOException {
         LocalDate issued = (issueDate == null || issueDate.isBlank()) ? null : LocalDate.parse(issueDate);
         LocalDate exp = (expiryDate == null || expiryDate.isBlank()) ? null : LocalDate.parse(expiryDate);
-        documentService.uploadSupplierDocument(id, file, type, issued, exp);
+        documentService.uploadSupplierDocuments(id, files, type, issued, exp);
         return "redirect:/fleet/suppliers/" + id + "/edit";
     }
 
     /** Download documento fornitore */
     @GetMapping("/{id}/docs/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable Long id,
-                                              @PathVariable String filename,
-                                              HttpServletRequest request) throws IOException {
+    public void serveFile(@PathVariable Long id,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
         Resource resource = documentService.loadSupplierDocumentAsResource(id, filename);
-        String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileDownloadService.attachment(resource, request, response);
     }
 
     /** Delete documento fornitore */
@@ -4,9 +4,13 @@ import com.veely.entity.Assignment;
 import com.veely.entity.Document;
 import com.veely.entity.Vehicle;
 import com.veely.entity.VehicleTask;
+import com.veely.model.AttachmentOwner;
 import com.veely.model.DocumentType;
 import com.veely.model.OwnershipType;
 import com.veely.model.VehicleStatus;
+import com.veely.model.VehicleType;
+import com.veely.dto.vehicle.BulkStatusUpdateResult;
+import com.veely.dto.vehicle.VehicleListStatistics;
 import com.veely.repository.DocumentRepository;
 import com.veely.service.AssignmentService;
 import com.veely.service.DocumentService;
@@ -14,8 +18,14 @@ import com.veely.service.FuelCardService;
 import com.veely.service.SecureFileUploadService;
 import com.veely.service.SupplierService;
 import com.veely.service.TaskTypeService;
+import com.veely.service.VehicleSearchIndex;
 import com.veely.service.VehicleService;
 import com.veely.service.VehicleTaskService;
+import com.veely.service.export.ExportDefinitions;
+import com.veely.service.export.ExportFormat;
+import com.veely.service.export.StreamingExportService;
+import com.veely.service.attachment.DocumentArchiveService;
+import com.veely.service.storage.FileDownloadService;
 import com.veely.validation.FileValidator;
 
 import java.util.stream.Collectors;
@@ -26,23 +36,22 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.time.format.DateTimeFormatter;
-import java.nio.charset.StandardCharsets;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import jakarta.servlet.http.HttpServletResponse; 
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.io.IOException;
 import java.time.LocalDate;
@@ -55,6 +64,8 @@ import java.util.List;
 public class VehicleController {
 
     private final VehicleService vehicleService;
+    private final VehicleSearchIndex vehicleSearchIndex;
+    private final StreamingExportService exportService;
     private final DocumentService documentService;
     private final DocumentRepository documentRepo; // per eventuali operazioni dirette
     private final SupplierService supplierService;
@@ -64,6 +75,11 @@ public class VehicleController {
     private final TaskTypeService taskTypeService;
     private final SecureFileUploadService fileUploadService;
     private final FileValidator fileValidator;
+    private final FileDownloadService fileDownloadService;
+    private final DocumentArchiveService documentArchiveService;
+    
+    /** Veicoli per pagina nella lista. */
+    private static final int PAGE_SIZE = 48;
     
     private static final DocumentType[] VEHICLE_DOC_TYPES = {
             DocumentType.VEHICLE_REGISTRATION,
@@ -75,92 +91,48 @@ public class VehicleController {
             DocumentType.MAINT_INVOICE
         };
     
-    /** Mostra la lista (tabella) di tutti i veicoli **/
+    /** Mostra la lista dei veicoli, una pagina alla volta (paginazione keyset sulla targa) **/
     @GetMapping
     public String list(Model model,
                        @RequestParam(value = "status", required = false) String status,
                        @RequestParam(value = "type", required = false) String type,
-                       @RequestParam(value = "search", required = false) String search) {
-        
-        List<Vehicle> allVehicles = vehicleService.findAll();
-        List<Vehicle> filteredVehicles = allVehicles;
-        
-        // Apply filters if provided
-        if (status != null && !status.isEmpty()) {
-            filteredVehicles = filteredVehicles.stream()
-                .filter(v -> v.getStatus().name().equals(status))
-                .collect(Collectors.toList());
-        }
-        
-        if (type != null && !type.isEmpty()) {
-            filteredVehicles = filteredVehicles.stream()
-                .filter(v -> v.getType().name().equals(type))
-                .collect(Collectors.toList());
-        }
-        
-        if (search != null && !search.trim().isEmpty()) {
-            String searchLower = search.toLowerCase().trim();
-            filteredVehicles = filteredVehicles.stream()
-                .filter(v -> 
-                    v.getPlate().toLowerCase().contains(searchLower) ||
-                    v.getBrand().toLowerCase().contains(searchLower) ||
-                    v.getModel().toLowerCase().contains(searchLower) ||
-                    (v.getChassisNumber() != null && v.getChassisNumber().toLowerCase().contains(searchLower))
-                )
-                .collect(Collectors.toList());
-        }
-        
-        // Calculate statistics
-        Map<String, Long> statusStats = allVehicles.stream()
-            .collect(Collectors.groupingBy(
-                vehicle -> vehicle.getStatus().name(),
-                Collectors.counting()
-            ));
-        
-        Map<String, Long> typeStats = allVehicles.stream()
-            .collect(Collectors.groupingBy(
-                vehicle -> vehicle.getType().name(),
-                Collectors.counting()
-            ));
-        
-        // Count vehicles with upcoming deadlines
-        LocalDate now = LocalDate.now();
-        LocalDate thirtyDaysFromNow = now.plusDays(30);
-        
-        long vehiclesWithUpcomingDeadlines = allVehicles.stream()
-            .mapToLong(v -> {
-                long count = 0;
-                if (v.getInsuranceExpiryDate() != null && 
-                    v.getInsuranceExpiryDate().isBefore(thirtyDaysFromNow)) {
-                    count++;
-                }
-                if (v.getCarTaxExpiryDate() != null && 
-                    v.getCarTaxExpiryDate().isBefore(thirtyDaysFromNow)) {
-                    count++;
-                }
-                return count > 0 ? 1 : 0;
-            })
-            .sum();
-        
-     // *** AGGIUNTA: Carica le immagini dei veicoli ***
-        Map<Long, Document> vehicleImages = new HashMap<>();
-        for (Vehicle vehicle : filteredVehicles) {
-            List<Document> docs = documentService.getVehicleDocuments(vehicle.getId());
-            Document image = docs.stream()
-                .filter(d -> d.getType() == DocumentType.VEHICLE_IMAGE)
-                .findFirst()
-                .orElse(null);
-            if (image != null) {
-                vehicleImages.put(vehicle.getId(), image);
-            }
+                       @RequestParam(value = "search", required = false) String search,
+                       @RequestParam(value = "after", required = false) String after) {
+        
+        VehicleStatus statusFilter = parseEnum(VehicleStatus.class, status);
+        VehicleType typeFilter = parseEnum(VehicleType.class, type);
+        // Un valore di filtro sconosciuto non corrisponde a nessun veicolo
+        boolean unknownFilter = (StringUtils.hasText(status) && statusFilter == null)
+                || (StringUtils.hasText(type) && typeFilter == null);
+        
+        // Statistiche con un'unica query raggruppata per stato e tipo
+        VehicleListStatistics stats = vehicleService.getListStatistics(LocalDate.now().plusDays(30));
+        
+        List<Vehicle> vehicles = List.of();
+        boolean hasNext = false;
+        long matching = 0;
+        if (!unknownFilter) {
+            Slice<Vehicle> page = vehicleService.searchPage(search, statusFilter, typeFilter, after, PAGE_SIZE);
+            vehicles = page.getContent();
+            hasNext = page.hasNext();
+            matching = StringUtils.hasText(search)
+                    ? vehicleService.countMatching(search, statusFilter, typeFilter)
+                    : stats.count(statusFilter, typeFilter);
         }
         
-        model.addAttribute("vehicles", filteredVehicles);
-        model.addAttribute("totalVehicles", allVehicles.size());
-        model.addAttribute("statusStats", statusStats);
-        model.addAttribute("typeStats", typeStats);
-        model.addAttribute("upcomingDeadlines", vehiclesWithUpcomingDeadlines);
-        model.addAttribute("vehicleImages", vehicleImages); // *** AGGIUNTA ***
+        // Foto dei veicoli della pagina con una sola query
+        Map<Long, String> vehicleImages = vehicleService.findPhotoFilenames(
+                vehicles.stream().map(Vehicle::getId).toList());
+        
+        model.addAttribute("vehicles", vehicles);
+        model.addAttribute("matchingVehicles", matching);
+        model.addAttribute("nextCursor", hasNext ? vehicles.get(vehicles.size() - 1).getPlate() : null);
+        model.addAttribute("firstPage", !StringUtils.hasText(after));
+        model.addAttribute("totalVehicles", stats.total());
+        model.addAttribute("statusStats", stats.statusStats());
+        model.addAttribute("typeStats", stats.typeStats());
+        model.addAttribute("upcomingDeadlines", stats.upcomingDeadlines());
+        model.addAttribute("vehicleImages", vehicleImages);
         model.addAttribute("currentFilters", Map.of(
             "status", status != null ? status : "",
             "type", type != null ? type : "",
@@ -170,6 +142,17 @@ public class VehicleController {
         return "fleet/vehicles/index";
     }
 
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /** Form di creazione veicolo */
     @GetMapping("/new")
     public String createForm(Model model) {
@@ -420,13 +403,28 @@ public class VehicleController {
         return "redirect:/fleet/vehicles/" + id;
     }
     
-    /** Download di un file (foto o doc): restituirà il Resource e header content disposition */
+    /** Download di un file (foto o doc), mostrato nel browser; area = vehicleId */
     @GetMapping("/files/{area}/{filename:.+}")
-    @ResponseBody
-    public Resource serveFile(@PathVariable String area,
-                              @PathVariable String filename) {
-        return vehicleService.loadDocument(Long.valueOf(area), filename);
-        // Si assume area = vehicleId, per foto cambiare loadPhoto se necessario.
+    public void serveFile(@PathVariable String area,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        fileDownloadService.inline(vehicleService.loadFile(Long.valueOf(area), filename), request, response);
+    }
+
+    /** Miniatura di una foto, per gli elenchi */
+    @GetMapping("/files/{area}/thumbs/{filename:.+}")
+    public void serveThumbnail(@PathVariable String area,
+                               @PathVariable String filename,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        fileDownloadService.inline(vehicleService.loadThumbnail(Long.valueOf(area), filename), request, response);
+    }
+
+    /** Tutti i documenti in un unico archivio ZIP */
+    @GetMapping("/{id}/documents.zip")
+    public ResponseEntity<StreamingResponseBody> downloadAllDocuments(@PathVariable Long id) {
+        return documentArchiveService.ownerArchive(AttachmentOwner.VEHICLE, id);
     }
     
     /** Elimina un documento veicolo */
@@ -454,69 +452,24 @@ public class VehicleController {
     @GetMapping("/api/stats")
     @ResponseBody
     public Map<String, Object> getVehicleStats() {
-        List<Vehicle> vehicles = vehicleService.findAll();
-        
-        Map<String, Long> statusStats = vehicles.stream()
-            .collect(Collectors.groupingBy(
-                vehicle -> vehicle.getStatus().name(),
-                Collectors.counting()
-            ));
-        
-        Map<String, Long> typeStats = vehicles.stream()
-            .collect(Collectors.groupingBy(
-                vehicle -> vehicle.getType().name(),
-                Collectors.counting()
-            ));
+        VehicleListStatistics vehicleStats = vehicleService.getListStatistics(LocalDate.now().plusDays(30));
         
         Map<String, Object> stats = new HashMap<>();
-        stats.put("total", vehicles.size());
-        stats.put("byStatus", statusStats);
-        stats.put("byType", typeStats);
+        stats.put("total", vehicleStats.total());
+        stats.put("byStatus", vehicleStats.statusStats());
+        stats.put("byType", vehicleStats.typeStats());
         
         return stats;
     }
 
     /**
-     * Export vehicles data as CSV
+     * Export vehicles data as CSV or XLSX, streamed to the client
      */
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportVehicles(
-            @RequestParam(value = "format", defaultValue = "csv") String format,
-            HttpServletResponse response) throws IOException {
-        
-        List<Vehicle> vehicles = vehicleService.findAll();
-        
-        if ("csv".equalsIgnoreCase(format)) {
-            StringBuilder csv = new StringBuilder();
-            csv.append("Targa,Marca,Modello,Tipo,Anno,Stato,Chilometraggio,Assicurazione,Bollo\n");
-            
-            for (Vehicle v : vehicles) {
-                csv.append(String.format("%s,%s,%s,%s,%d,%s,%s,%s,%s\n",
-                    v.getPlate(),
-                    v.getBrand(),
-                    v.getModel(),
-                    v.getType().getDisplayName(),
-                    v.getYear(),
-                    v.getStatus().getDisplayName(),
-                    v.getCurrentMileage() != null ? v.getCurrentMileage().toString() : "N/D",
-                    v.getInsuranceExpiryDate() != null ? v.getInsuranceExpiryDate().toString() : "N/D",
-                    v.getCarTaxExpiryDate() != null ? v.getCarTaxExpiryDate().toString() : "N/D"
-                ));
-            }
-            
-            byte[] data = csv.toString().getBytes(StandardCharsets.UTF_8);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("text/csv"));
-            headers.setContentDispositionFormData("attachment", "veicoli_" + 
-                LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".csv");
-            
-            return ResponseEntity.ok()
-                .headers(headers)
-                .body(data);
-        }
-        
-        throw new IllegalArgumentException("Formato non supportato: " + format);
+    public ResponseEntity<StreamingResponseBody> exportVehicles(
+            @RequestParam(value = "format", defaultValue = "csv") String format) {
+        return exportService.export("veicoli", ExportFormat.from(format),
+                ExportDefinitions.VEHICLES, vehicleService::streamForExport);
     }
 
     /**
@@ -527,16 +480,16 @@ public class VehicleController {
                                   @RequestParam("newStatus") VehicleStatus newStatus,
                                   RedirectAttributes redirectAttributes) {
         try {
-            int updatedCount = 0;
-            for (Long id : vehicleIds) {
-                Vehicle vehicle = vehicleService.findByIdOrThrow(id);
-                vehicle.setStatus(newStatus);
-                vehicleService.update(id, vehicle);
-                updatedCount++;
+            BulkStatusUpdateResult result = vehicleService.bulkUpdateStatus(vehicleIds, newStatus);
+            StringBuilder msg = new StringBuilder("Aggiornati " + result.updated() + " veicoli con successo");
+            if (result.unchanged() > 0) {
+                msg.append(", ").append(result.unchanged()).append(" già in stato ").append(newStatus.getDisplayName());
             }
-            
-            redirectAttributes.addFlashAttribute("successMessage", 
-                "Aggiornati " + updatedCount + " veicoli con successo");
+            if (result.notFound() > 0) {
+                msg.append(", ").append(result.notFound()).append(" non trovati");
+            }
+            redirectAttributes.addFlashAttribute("successMessage", msg.toString());
+            redirectAttributes.addFlashAttribute("bulkUpdateResult", result);
                 
         } catch (Exception e) {
             log.error("Errore durante l'aggiornamento bulk", e);
@@ -547,6 +500,16 @@ public class VehicleController {
         return "redirect:/fleet/vehicles";
     }
 
+    /**
+     * Bulk update vehicle status, returning the per-vehicle report as JSON
+     */
+    @PostMapping("/api/bulk-update")
+    @ResponseBody
+    public BulkStatusUpdateResult bulkUpdateStatusApi(@RequestParam("vehicleIds") List<Long> vehicleIds,
+                                                      @RequestParam("newStatus") VehicleStatus newStatus) {
+        return vehicleService.bulkUpdateStatus(vehicleIds, newStatus);
+    }
+
     /**
      * Get vehicle quick info for tooltips/popups
      */
@@ -603,24 +566,14 @@ public class VehicleController {
             return Collections.emptyList();
         }
         
-        String searchTerm = query.toLowerCase().trim();
-        List<Vehicle> vehicles = vehicleService.findAll().stream()
-            .filter(v -> 
-                v.getPlate().toLowerCase().contains(searchTerm) ||
-                v.getBrand().toLowerCase().contains(searchTerm) ||
-                v.getModel().toLowerCase().contains(searchTerm)
-            )
-            .limit(10)
-            .collect(Collectors.toList());
-        
-        return vehicles.stream()
+        return vehicleSearchIndex.search(query, 10).stream()
             .map(v -> {
                 Map<String, Object> item = new HashMap<>();
-                item.put("id", v.getId());
-                item.put("plate", v.getPlate());
-                item.put("brand", v.getBrand());
-                item.put("model", v.getModel());
-                item.put("displayText", v.getPlate() + " - " + v.getBrand() + " " + v.getModel());
+                item.put("id", v.id());
+                item.put("plate", v.plate());
+                item.put("brand", v.brand());
+                item.put("model", v.model());
+                item.put("displayText", v.displayText());
                 return item;
             })
             .collect(Collectors.toList());
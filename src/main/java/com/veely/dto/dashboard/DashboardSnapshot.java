@@ -0,0 +1,64 @@
+package com.veely.dto.dashboard;
+
+import com.veely.service.DashboardService.DashboardMetrics;
+import com.veely.service.DashboardService.MonthAmount;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fotografia immutabile della dashboard di benvenuto.
+ * Contiene solo valori già calcolati e righe "piatte", così la pagina
+ * può essere servita senza sessione Hibernate né accessi al database.
+ */
+public record DashboardSnapshot(
+        long version,
+        Instant builtAt,
+        LocalDate referenceDate,
+        DashboardMetrics metrics,
+        Map<String, Long> vehicleStatusCounts,
+        List<MonthAmount> fuelCosts,
+        List<MonthAmount> reportBalances,
+        List<PendingReportRow> pendingReports,
+        List<ComplianceRow> upcomingSafety,
+        List<TaskRow> upcomingTasks,
+        List<AdminDocumentRow> upcomingAdminDocuments,
+        List<PolicyRow> expiringPolicies) {
+
+    public DashboardSnapshot {
+        vehicleStatusCounts = Collections.unmodifiableMap(new LinkedHashMap<>(vehicleStatusCounts));
+        fuelCosts = List.copyOf(fuelCosts);
+        reportBalances = List.copyOf(reportBalances);
+        pendingReports = List.copyOf(pendingReports);
+        upcomingSafety = List.copyOf(upcomingSafety);
+        upcomingTasks = List.copyOf(upcomingTasks);
+        upcomingAdminDocuments = List.copyOf(upcomingAdminDocuments);
+        expiringPolicies = List.copyOf(expiringPolicies);
+    }
+
+    /** Nota spese in attesa di approvazione. */
+    public record PendingReportRow(Long id, String number, String employeeName,
+                                   LocalDate submitDate, BigDecimal total) {}
+
+    /** Adempimento sicurezza in scadenza. */
+    public record ComplianceRow(Long id, String categoryName, String employeeName,
+                                LocalDate dueDate) {}
+
+    /** Scadenza di manutenzione di un veicolo. */
+    public record TaskRow(Long id, Long vehicleId, String vehiclePlate, String vehicleModel,
+                          Integer vehicleMileage, String typeDescription,
+                          LocalDate dueDate, Integer dueMileage) {}
+
+    /** Documento amministrativo in scadenza. */
+    public record AdminDocumentRow(Long id, String typeName, String documentNumber,
+                                   String responsibleName, LocalDate expiryDate) {}
+
+    /** Polizza assicurativa di commessa in scadenza. */
+    public record PolicyRow(Long id, String projectName, String projectCode,
+                            String policyType, String policyNumber, LocalDate expiryDate) {}
+}
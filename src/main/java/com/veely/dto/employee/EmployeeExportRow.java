@@ -0,0 +1,32 @@
+package com.veely.dto.employee;
+
+/**
+ * Riga dell'elenco PDF dei dipendenti: solo i campi stampati e lo stato,
+ * letti con una proiezione senza caricare entità né rapporti di lavoro.
+ */
+public record EmployeeExportRow(String firstName,
+                                String lastName,
+                                String fiscalCode,
+                                String email,
+                                String mobile,
+                                String phone,
+                                boolean active) {
+
+    public String fullName() {
+        if (firstName == null && lastName == null) {
+            return "";
+        }
+        if (firstName == null) {
+            return lastName;
+        }
+        if (lastName == null) {
+            return firstName;
+        }
+        return firstName + " " + lastName;
+    }
+
+    /** Cellulare, o in mancanza il telefono fisso. */
+    public String contactNumber() {
+        return mobile != null ? mobile : phone;
+    }
+}
@@ -0,0 +1,10 @@
+package com.veely.dto.employee;
+
+import com.veely.entity.Employment;
+
+/**
+ * Riga dell'export dei rapporti di lavoro: il rapporto (con la persona) e il
+ * nome della commessa attuale, letto dalla query dell'export.
+ */
+public record EmploymentExportRow(Employment employment, String currentProjectName) {
+}
@@ -0,0 +1,26 @@
+package com.veely.dto.expense;
+
+import com.veely.model.DispatchJobStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Avanzamento di un export massivo di note spese in PDF, interrogato
+ * periodicamente dalla pagina. {@code downloadable} indica che lo ZIP è
+ * pronto; {@code messages} contiene le note spese non esportate.
+ */
+public record ExpenseBatchExportProgress(String jobId,
+                                         DispatchJobStatus status,
+                                         String statusLabel,
+                                         int requested,
+                                         int rendered,
+                                         int failed,
+                                         int percent,
+                                         boolean finished,
+                                         boolean downloadable,
+                                         LocalDateTime startedAt,
+                                         LocalDateTime finishedAt,
+                                         String error,
+                                         List<String> messages) {
+}
@@ -0,0 +1,35 @@
+package com.veely.dto.payslip;
+
+import com.veely.entity.PayslipDispatchJob;
+import com.veely.model.DispatchJobStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Avanzamento di un job di invio cedolini, interrogato periodicamente dalla pagina.
+ * {@code messages} contiene gli ultimi errori/scarti registrati dal dispatcher.
+ */
+public record PayslipDispatchProgress(Long jobId,
+                                      DispatchJobStatus status,
+                                      String statusLabel,
+                                      int requested,
+                                      int sent,
+                                      int skipped,
+                                      int failed,
+                                      int percent,
+                                      boolean finished,
+                                      LocalDateTime startedAt,
+                                      LocalDateTime finishedAt,
+                                      String error,
+                                      List<String> messages) {
+
+    public static PayslipDispatchProgress of(PayslipDispatchJob job, List<String> messages) {
+        int processed = job.getProcessed();
+        int percent = job.getRequested() == 0 ? 100 : Math.min(100, processed * 100 / job.getRequested());
+        return new PayslipDispatchProgress(job.getId(), job.getStatus(), job.getStatus().getLabel(),
+                job.getRequested(), job.getSent(), job.getSkipped(), job.getFailed(), percent,
+                job.getStatus().isFinished(), job.getStartedAt(), job.getFinishedAt(), job.getLastError(),
+                messages);
+    }
+}
@@ -0,0 +1,40 @@
+package com.veely.dto.vehicle;
+
+import com.veely.model.VehicleStatus;
+
+import java.util.List;
+
+/**
+ * Esito di un aggiornamento massivo dello stato dei veicoli, con una riga
+ * per ciascun id richiesto (nello stesso ordine della richiesta).
+ */
+public record BulkStatusUpdateResult(VehicleStatus newStatus, List<Item> items) {
+
+    public enum Outcome {
+        /** Stato modificato. */
+        UPDATED,
+        /** Il veicolo era già nello stato richiesto. */
+        UNCHANGED,
+        /** Nessun veicolo con questo id. */
+        NOT_FOUND
+    }
+
+    /** Esito per un singolo veicolo; {@code plate} e {@code previousStatus} sono nulli se non trovato. */
+    public record Item(Long vehicleId, String plate, VehicleStatus previousStatus, Outcome outcome) {}
+
+    public long count(Outcome outcome) {
+        return items.stream().filter(i -> i.outcome() == outcome).count();
+    }
+
+    public long updated() {
+        return count(Outcome.UPDATED);
+    }
+
+    public long unchanged() {
+        return count(Outcome.UNCHANGED);
+    }
+
+    public long notFound() {
+        return count(Outcome.NOT_FOUND);
+    }
+}
@@ -0,0 +1,48 @@
+package com.veely.dto.vehicle;
+
+import com.veely.model.VehicleStatus;
+import com.veely.model.VehicleType;
+import com.veely.repository.custom.VehicleRepositoryCustom.StatusTypeCount;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistiche della lista veicoli (totali per stato e tipo, scadenze imminenti)
+ * ricavate dal risultato di un'unica query raggruppata per stato e tipo.
+ */
+public record VehicleListStatistics(long total,
+                                    Map<String, Long> statusStats,
+                                    Map<String, Long> typeStats,
+                                    long upcomingDeadlines,
+                                    List<StatusTypeCount> rows) {
+
+    public static VehicleListStatistics of(List<StatusTypeCount> rows) {
+        long total = 0;
+        long deadlines = 0;
+        Map<String, Long> byStatus = new HashMap<>();
+        Map<String, Long> byType = new HashMap<>();
+        for (StatusTypeCount row : rows) {
+            total += row.count();
+            deadlines += row.withDeadlines() != null ? row.withDeadlines() : 0;
+            if (row.status() != null) {
+                byStatus.merge(row.status().name(), row.count(), Long::sum);
+            }
+            if (row.type() != null) {
+                byType.merge(row.type().name(), row.count(), Long::sum);
+            }
+        }
+        return new VehicleListStatistics(total, Map.copyOf(byStatus), Map.copyOf(byType),
+                deadlines, List.copyOf(rows));
+    }
+
+    /** Numero di veicoli che corrispondono ai filtri di stato e tipo (null = qualsiasi). */
+    public long count(VehicleStatus status, VehicleType type) {
+        return rows.stream()
+                .filter(r -> status == null || r.status() == status)
+                .filter(r -> type == null || r.type() == type)
+                .mapToLong(StatusTypeCount::count)
+                .sum();
+    }
+}
@@ -1,5 +1,6 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -8,6 +9,7 @@ import java.time.LocalDate;
 
 @Entity
 @Table(name = "admin_document")
+@EntityListeners(DashboardChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
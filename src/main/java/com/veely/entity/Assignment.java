@@ -1,5 +1,7 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
+import com.veely.entity.listener.FleetCounterListener;
 import com.veely.model.*;
 import jakarta.persistence.*;
 import lombok.*;
@@ -13,6 +15,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 
 @Entity
 @Table(name = "assignments")
+@EntityListeners({DashboardChangeListener.class, FleetCounterListener.class})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Assignment {
 
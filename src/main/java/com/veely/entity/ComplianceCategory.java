@@ -1,10 +1,16 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.*;
 
 @Entity
 @Table(name = "compliance_categories")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "complianceCategories")
+@EntityListeners(DashboardChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
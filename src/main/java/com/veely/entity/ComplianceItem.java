@@ -1,5 +1,6 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDate;
@@ -8,6 +9,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 
 @Entity
 @Table(name = "compliance_items")
+@EntityListeners(DashboardChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
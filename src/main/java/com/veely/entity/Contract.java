@@ -1,5 +1,6 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
 import com.veely.model.*;
 import jakarta.persistence.*;
 import lombok.*;
@@ -16,6 +17,7 @@ import java.util.List;
  */
 @Entity
 @Table(name = "contracts")
+@EntityListeners(DashboardChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -1,5 +1,6 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
 import com.veely.model.CorrespondenceType;
 import jakarta.persistence.*;
 import lombok.*;
@@ -11,6 +12,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "correspondence")
+@EntityListeners(DashboardChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
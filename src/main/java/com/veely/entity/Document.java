@@ -5,12 +5,15 @@ import jakarta.persistence.*;
 import lombok.*;
 import com.veely.entity.ComplianceItem;
 import com.veely.entity.Contract;
+import com.veely.entity.listener.DocumentIndexListener;
 import java.time.LocalDate;
 
 import org.springframework.format.annotation.DateTimeFormat;
 
 @Entity
-@Table(name = "documents")
+@EntityListeners(DocumentIndexListener.class)
+@Table(name = "documents",
+       indexes = @Index(name = "idx_documents_vehicle_type", columnList = "vehicle_id, type"))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Document {
 
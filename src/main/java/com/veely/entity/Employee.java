@@ -1,6 +1,7 @@
 package com.veely.entity;
 
 
+import com.veely.entity.listener.DashboardChangeListener;
 import com.veely.model.DocumentType;
 import com.veely.model.EducationLevel;
 import com.veely.model.FullAddress;
@@ -29,6 +30,7 @@ import org.springframework.format.annotation.DateTimeFormat;
  */
 @Entity
 @Table(name = "employees")
+@EntityListeners(DashboardChangeListener.class)
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Employee {
 
@@ -1,10 +1,14 @@
 package com.veely.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.*;
 
 @Entity
 @Table(name = "employee_roles")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "employeeRoles")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class EmployeeRole {
 
@@ -1,5 +1,6 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
@@ -10,6 +11,7 @@ import jakarta.validation.constraints.PastOrPresent;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
@@ -25,6 +27,7 @@ import lombok.Setter;
 
 @Entity
 @Table(name = "expense_report")
+@EntityListeners(DashboardChangeListener.class)
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class ExpenseReport {
 	
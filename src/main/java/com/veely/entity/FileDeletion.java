@@ -0,0 +1,63 @@
+package com.veely.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * File o cartella dell'archivio da eliminare, registrato nella stessa
+ * transazione che cancella l'entità proprietaria e rimosso dal worker di
+ * {@link com.veely.service.storage.FileDeletionOutbox} dopo il commit.
+ */
+@Entity
+@Table(name = "file_deletions",
+       indexes = @Index(name = "idx_file_deletions_next_attempt", columnList = "next_attempt_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FileDeletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Percorso relativo alla cartella uploads (file o cartella). */
+    @Column(nullable = false, length = 512)
+    private String path;
+
+    /** True se va eliminata l'intera cartella. */
+    @Column(nullable = false)
+    private boolean directory;
+
+    /**
+     * Hash del contenuto dell'archivio da eliminare se nessun percorso lo usa
+     * più; in questo caso {@code path} è la sua chiave nel backend.
+     */
+    @Column(name = "blob_hash", length = 64)
+    private String blobHash;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+}
@@ -1,6 +1,8 @@
 package com.veely.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.*;
 
 /**
@@ -8,6 +10,8 @@ import lombok.*;
  */
 @Entity
 @Table(name = "labor_unions")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "laborUnions")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,91 @@
+package com.veely.entity;
+
+import com.veely.model.DispatchJobStatus;
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.Lob;
+import jakarta.persistence.OrderColumn;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Job di invio massivo dei cedolini. I contatori vengono incrementati
+ * dai worker del dispatcher man mano che i messaggi sono elaborati,
+ * così l'avanzamento resta consultabile anche dopo un riavvio.
+ */
+@Entity
+@Table(name = "payslip_dispatch_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayslipDispatchJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private DispatchJobStatus status;
+
+    @Column(length = 255)
+    private String subject;
+
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "payslip_dispatch_job_items", joinColumns = @JoinColumn(name = "job_id"))
+    @OrderColumn(name = "position")
+    @Column(name = "payslip_id", nullable = false)
+    @Builder.Default
+    private List<Long> payslipIds = new ArrayList<>();
+
+    private int requested;
+
+    private int sent;
+
+    private int skipped;
+
+    private int failed;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Lob
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    public int getProcessed() {
+        return sent + skipped + failed;
+    }
+}
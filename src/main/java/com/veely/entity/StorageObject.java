@@ -0,0 +1,39 @@
+package com.veely.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Percorso logico di un file (quello salvato in {@code Document.path},
+ * {@code Payslip.storagePath}, ...) e contenuto a cui punta.
+ */
+@Entity
+@Table(name = "storage_objects",
+       indexes = @Index(name = "idx_storage_objects_blob", columnList = "blob_hash"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageObject {
+
+    @Id
+    @Column(length = 512)
+    private String path;
+
+    @Column(name = "blob_hash", length = 64, nullable = false)
+    private String blobHash;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
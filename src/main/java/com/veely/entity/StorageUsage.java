@@ -0,0 +1,42 @@
+package com.veely.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Spazio occupato da un proprietario dell'archivio file (es.
+ * {@code vehicles/12}, {@code payslips/2025/03}): somma delle dimensioni dei
+ * percorsi logici sotto la sua cartella, aggiornata a ogni collegamento e
+ * rimozione. I contenuti condivisi contano per ogni percorso che li usa.
+ */
+@Entity
+@Table(name = "storage_usage",
+       indexes = @Index(name = "idx_storage_usage_area", columnList = "area"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageUsage {
+
+    @Id
+    @Column(length = 512)
+    private String owner;
+
+    @Column(length = 100, nullable = false)
+    private String area;
+
+    @Column(nullable = false)
+    private long bytes;
+
+    @Column(nullable = false)
+    private long files;
+}
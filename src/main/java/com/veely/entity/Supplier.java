@@ -3,6 +3,8 @@ package com.veely.entity;
 import com.veely.model.FullAddress;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +15,8 @@ import java.util.List;
  */
 @Entity
 @Table(name = "suppliers")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "suppliers")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -48,6 +52,7 @@ public class Supplier {
     private String sdiCode;
 
     @OneToMany(mappedBy = "supplier", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "supplierReferentLists")
     private List<SupplierReferent> referents = new ArrayList<>();
        
     @Embedded
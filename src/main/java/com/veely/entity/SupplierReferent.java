@@ -3,6 +3,8 @@ package com.veely.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.*;
 
 /**
@@ -10,6 +12,8 @@ import lombok.*;
  */
 @Entity
 @Table(name = "supplier_referents")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "supplierReferents")
 @Getter
 @Setter
 @NoArgsConstructor
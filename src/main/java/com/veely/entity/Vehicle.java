@@ -1,5 +1,7 @@
 package com.veely.entity;
 
+import com.veely.entity.listener.DashboardChangeListener;
+import com.veely.entity.listener.FleetCounterListener;
 import com.veely.model.*;
 import com.veely.entity.VehicleBooking;
 import jakarta.persistence.*;
@@ -10,7 +12,6 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Set;
 
-import org.hibernate.annotations.Formula;
 import org.springframework.format.annotation.DateTimeFormat;
 
 /**
@@ -19,7 +20,10 @@ import org.springframework.format.annotation.DateTimeFormat;
  * fuel-card, telepass, ecc.:contentReference[oaicite:2]{index=2}
  */
 @Entity
-@Table(name = "vehicles")
+@Table(name = "vehicles", indexes = {
+        @Index(name = "idx_vehicles_status_type", columnList = "status, type")
+})
+@EntityListeners({DashboardChangeListener.class, FleetCounterListener.class})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Vehicle {
 
@@ -113,14 +117,6 @@ public class Vehicle {
     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
     private LocalDate carTaxExpiryDate;
     
-    /** Numero totale di veicoli attualmente in servizio. */
-    @Formula("(SELECT COUNT(*) FROM vehicles v WHERE v.status = 'IN_SERVICE')")
-    private Long inServiceCount;
-
-    /** Numero totale di veicoli assegnati. */
-    @Formula("(SELECT COUNT(DISTINCT a.vehicle_id) FROM assignments a WHERE a.status = 'ASSIGNED')")
-    private Long assignedCount;
-    
     private String imagePath;             // Path immagine del veicolo
 
     // -----------------------------------
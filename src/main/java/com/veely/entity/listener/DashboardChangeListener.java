@@ -0,0 +1,59 @@
+package com.veely.entity.listener;
+
+import com.veely.entity.*;
+import com.veely.model.DashboardSection;
+import com.veely.service.DashboardSnapshotService.SectionsChanged;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+import org.hibernate.Hibernate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.veely.model.DashboardSection.*;
+
+/**
+ * Listener JPA registrato sulle entità mostrate nella dashboard di benvenuto.
+ * Ad ogni inserimento, modifica o cancellazione pubblica un
+ * {@link SectionsChanged} con le sole sezioni interessate; l'evento viene
+ * consegnato a {@link com.veely.service.DashboardSnapshotService} dopo il commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class DashboardChangeListener {
+
+    private static final Map<Class<?>, Set<DashboardSection>> SECTIONS = Map.ofEntries(
+            Map.entry(Vehicle.class, EnumSet.of(METRICS, VEHICLE_STATUS, TASKS)),
+            Map.entry(Assignment.class, EnumSet.of(METRICS)),
+            Map.entry(Refuel.class, EnumSet.of(METRICS, FUEL_COSTS)),
+            Map.entry(ExpenseReport.class, EnumSet.of(EXPENSE_BALANCES, PENDING_REPORTS)),
+            Map.entry(ComplianceItem.class, EnumSet.of(COMPLIANCE)),
+            Map.entry(ComplianceCategory.class, EnumSet.of(COMPLIANCE)),
+            Map.entry(AdminDocument.class, EnumSet.of(ADMIN_DOCUMENTS)),
+            Map.entry(AdminDocumentType.class, EnumSet.of(ADMIN_DOCUMENTS)),
+            Map.entry(Insurance.class, EnumSet.of(POLICIES)),
+            Map.entry(VehicleTask.class, EnumSet.of(TASKS)),
+            Map.entry(TaskType.class, EnumSet.of(TASKS)),
+            Map.entry(Project.class, EnumSet.of(METRICS, POLICIES)),
+            Map.entry(Contract.class, EnumSet.of(METRICS)),
+            Map.entry(Correspondence.class, EnumSet.of(METRICS)),
+            Map.entry(Employee.class, EnumSet.of(COMPLIANCE, ADMIN_DOCUMENTS, PENDING_REPORTS)));
+
+    private final ApplicationEventPublisher publisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        Set<DashboardSection> sections = SECTIONS.get(Hibernate.getClass(entity));
+        if (sections != null) {
+            publisher.publishEvent(new SectionsChanged(sections));
+        }
+    }
+}
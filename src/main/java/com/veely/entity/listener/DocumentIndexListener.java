@@ -0,0 +1,34 @@
+package com.veely.entity.listener;
+
+import com.veely.entity.Document;
+import com.veely.service.search.DocumentSearchIndex.DocumentChanged;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener JPA di {@link Document}: pubblica un {@link DocumentChanged} ad
+ * ogni inserimento, modifica o cancellazione, consegnato all'indice di
+ * ricerca dopo il commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentIndexListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Document document) {
+        publisher.publishEvent(new DocumentChanged(document.getId(), document.getPath(), false));
+    }
+
+    @PostRemove
+    public void onRemove(Document document) {
+        publisher.publishEvent(new DocumentChanged(document.getId(), document.getPath(), true));
+    }
+}
@@ -0,0 +1,45 @@
+package com.veely.entity.listener;
+
+import com.veely.entity.Assignment;
+import com.veely.entity.Vehicle;
+import com.veely.service.FleetCounterService.AssignmentChanged;
+import com.veely.service.FleetCounterService.VehicleChanged;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener JPA su {@link Vehicle} e {@link Assignment}: comunica a
+ * {@link com.veely.service.FleetCounterService} lo stato aggiornato della
+ * singola riga, così i contatori di flotta restano allineati senza query.
+ */
+@Component
+@RequiredArgsConstructor
+public class FleetCounterListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        publish(entity, false);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        publish(entity, true);
+    }
+
+    private void publish(Object entity, boolean removed) {
+        if (entity instanceof Vehicle v) {
+            publisher.publishEvent(new VehicleChanged(v.getId(), v.getStatus(), removed));
+        } else if (entity instanceof Assignment a) {
+            Long vehicleId = a.getVehicle() != null ? a.getVehicle().getId() : null;
+            publisher.publishEvent(new AssignmentChanged(a.getId(), vehicleId, a.getStatus(), removed));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.veely.exception;
+
+/** Il file supera lo spazio assegnato alla sua area o al suo proprietario nell'archivio. */
+public class StorageQuotaExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 4112650231947763019L;
+
+    public StorageQuotaExceededException(String msg) { super(msg); }
+}
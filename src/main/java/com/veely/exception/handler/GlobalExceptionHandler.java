@@ -2,6 +2,7 @@ package com.veely.exception.handler;
 
 import com.veely.exception.ResourceNotFoundException;
 import com.veely.exception.BusinessValidationException;
+import com.veely.exception.StorageQuotaExceededException;
 import com.veely.validation.FileValidator;
 
 import lombok.extern.slf4j.Slf4j;
@@ -124,6 +125,23 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.PAYLOAD_TOO_LARGE);
     }
 
+    @ExceptionHandler(StorageQuotaExceededException.class)
+    public ResponseEntity<ErrorResponse> handleStorageQuotaExceeded(
+            StorageQuotaExceededException ex,
+            HttpServletRequest request) {
+        
+        log.warn("Quota archivio superata: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            HttpStatus.INSUFFICIENT_STORAGE.value(),
+            "Spazio esaurito",
+            ex.getMessage(),
+            request.getRequestURI()
+        );
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.INSUFFICIENT_STORAGE);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(
             Exception ex,
@@ -34,8 +34,6 @@ public abstract class VehicleMapper {
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "totalFee", ignore = true)
     @Mapping(target = "imagePath", ignore = true)
-    @Mapping(target = "inServiceCount", ignore = true)
-    @Mapping(target = "assignedCount", ignore = true)
     public abstract Vehicle toEntity(VehicleCreateDTO dto);
     
     // Entity to DTO
@@ -0,0 +1,30 @@
+package com.veely.model;
+
+/**
+ * Entità a cui possono essere allegati documenti.
+ */
+public enum AttachmentOwner {
+    EMPLOYEE("Dipendente"),
+    EMPLOYMENT("Rapporto di lavoro"),
+    VEHICLE("Veicolo"),
+    ASSIGNMENT("Assegnazione"),
+    PROJECT("Commessa"),
+    INSURANCE("Polizza"),
+    CONTRACT("Contratto"),
+    SUPPLIER("Fornitore"),
+    ADMIN_DOCUMENT("Documento amministrativo"),
+    EXPENSE_ITEM("Voce spesa"),
+    MAINTENANCE("Manutenzione"),
+    CORRESPONDENCE("Protocollo"),
+    COMPLIANCE_ITEM("Adempimento");
+
+    private final String displayName;
+
+    AttachmentOwner(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,17 @@
+package com.veely.model;
+
+/**
+ * Sezioni della dashboard di benvenuto che possono essere ricalcolate
+ * indipendentemente l'una dall'altra.
+ */
+public enum DashboardSection {
+    METRICS,
+    VEHICLE_STATUS,
+    FUEL_COSTS,
+    EXPENSE_BALANCES,
+    PENDING_REPORTS,
+    COMPLIANCE,
+    TASKS,
+    ADMIN_DOCUMENTS,
+    POLICIES
+}
@@ -0,0 +1,28 @@
+package com.veely.model;
+
+import lombok.Getter;
+
+/**
+ * Stato di un job massivo in background (invio email, export PDF).
+ */
+@Getter
+public enum DispatchJobStatus {
+    /** Job registrato, in attesa che si liberi il dispatcher. */
+    QUEUED("In coda"),
+    /** Invio in corso. */
+    RUNNING("In corso"),
+    /** Tutti gli elementi sono stati elaborati (anche con errori puntuali). */
+    COMPLETED("Completato"),
+    /** Job interrotto da un errore non recuperabile. */
+    FAILED("Interrotto");
+
+    private final String label;
+
+    DispatchJobStatus(String label) {
+        this.label = label;
+    }
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
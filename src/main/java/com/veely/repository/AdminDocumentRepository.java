@@ -5,6 +5,8 @@ import com.veely.entity.AdminDocument;
 import java.time.LocalDate;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,6 +28,12 @@ public interface AdminDocumentRepository extends JpaRepository<AdminDocument, Lo
      */
     List<AdminDocument> findByExpiryDateIsNull();
     
+    /**
+     * First documents expiring from the given date, with type and responsible fetched
+     */
+    @EntityGraph(attributePaths = {"type", "responsible"})
+    List<AdminDocument> findByExpiryDateGreaterThanEqualOrderByExpiryDateAsc(LocalDate date, Pageable pageable);
+    
     /**
      * Count documents by expiry status - for performance optimization
      */
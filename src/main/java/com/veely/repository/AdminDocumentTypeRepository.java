@@ -1,7 +1,16 @@
 package com.veely.repository;
 
 import com.veely.entity.AdminDocumentType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.List;
 
 public interface AdminDocumentTypeRepository extends JpaRepository<AdminDocumentType, Long> {
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<AdminDocumentType> findAll();
 }
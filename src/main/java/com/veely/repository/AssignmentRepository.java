@@ -7,6 +7,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -23,6 +24,10 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
     /** Numero di veicoli distinti con assegnazioni in uno stato specifico. */
     @Query("SELECT COUNT(DISTINCT a.vehicle.id) FROM Assignment a WHERE a.status = :status")
     long countDistinctVehicleByStatus(AssignmentStatus status);
+
+    /** Coppie [id assegnazione, id veicolo] per le assegnazioni in uno stato. */
+    @Query("SELECT a.id, a.vehicle.id FROM Assignment a WHERE a.status = :status")
+    List<Object[]> findVehicleIdsByStatus(@Param("status") AssignmentStatus status);
     
     /** Assegnazioni terminate prima di una certa data per stato specifico. */
     List<Assignment> findByStatusAndEndDateBefore(AssignmentStatus status, java.time.LocalDate date);
@@ -1,6 +1,8 @@
 package com.veely.repository;
 
 import com.veely.entity.ComplianceItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,6 +28,10 @@ public interface ComplianceItemRepository extends JpaRepository<ComplianceItem,
                                 @Param("expired") Boolean expired);
 
     List<ComplianceItem> findByDueDateBefore(LocalDate date);
+
+    /** Prossimi adempimenti non scaduti, con categoria e dipendente già caricati. */
+    @EntityGraph(attributePaths = {"category", "employee"})
+    List<ComplianceItem> findByDueDateGreaterThanEqualOrderByDueDateAsc(LocalDate date, Pageable pageable);
     
     void deleteByEmployeeId(Long employeeId);
 }
@@ -1,7 +1,16 @@
 package com.veely.repository;
 
 import com.veely.entity.DocumentCategory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.List;
 
 public interface DocumentCategoryRepository extends JpaRepository<DocumentCategory, Long> {
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<DocumentCategory> findAll();
 }
\ No newline at end of file
@@ -3,10 +3,12 @@ package com.veely.repository;
 
 import com.veely.entity.Document;
 import com.veely.model.DocumentType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +16,13 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
 
     List<Document> findByVehicleId(Long vehicleId);
 
+    /** Coppie [vehicleId, path] dei documenti di un tipo per più veicoli, in una sola query. */
+    @Query("SELECT d.vehicle.id, d.path FROM Document d " +
+           "WHERE d.vehicle.id IN :vehicleIds AND d.type = :type " +
+           "ORDER BY d.id")
+    List<Object[]> findPathsByVehicleIdInAndType(@Param("vehicleIds") Collection<Long> vehicleIds,
+                                                 @Param("type") DocumentType type);
+
     List<Document> findByEmploymentIdAndType(Long employmentId, DocumentType type);
 
     List<Document> findByEmployeeIdAndType(Long employeeId, DocumentType type);
@@ -79,4 +88,12 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
     List<Document> findByInsuranceId(Long insuranceId);
     
     List<Document> findByAdminDocumentId(Long adminDocumentId);
+
+    /** Coppie [id, path] dei documenti con id maggiore di {@code afterId}, per id crescente. */
+    @Query("SELECT d.id, d.path FROM Document d WHERE d.id > :afterId ORDER BY d.id")
+    List<Object[]> findIdAndPathAfter(@Param("afterId") Long afterId, Pageable page);
+
+    /** Percorsi tra quelli indicati usati da almeno un documento. */
+    @Query("SELECT d.path FROM Document d WHERE d.path IN :paths")
+    List<String> findPathsIn(@Param("paths") Collection<String> paths);
 }
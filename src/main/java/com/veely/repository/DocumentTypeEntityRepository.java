@@ -2,11 +2,19 @@ package com.veely.repository;
 
 import com.veely.entity.DocumentCategory;
 import com.veely.entity.DocumentTypeEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 
 public interface DocumentTypeEntityRepository extends JpaRepository<DocumentTypeEntity, Long> {
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<DocumentTypeEntity> findAll();
+
     List<DocumentTypeEntity> findByCategory(DocumentCategory category);
     DocumentTypeEntity findByCode(String code);
 }
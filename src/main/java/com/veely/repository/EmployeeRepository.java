@@ -1,17 +1,24 @@
 package com.veely.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import com.veely.dto.employee.EmployeeExportRow;
 import com.veely.entity.Employee;
 import com.veely.model.EmploymentStatus;
 
+import jakarta.persistence.QueryHint;
+
 
 public interface EmployeeRepository extends JpaRepository<Employee, Long> {
     
@@ -43,6 +50,10 @@ public interface EmployeeRepository extends JpaRepository<Employee, Long> {
     boolean existsByFiscalCode(String fiscalCode);
 	
     Optional<Employee> findByFiscalCodeIgnoreCase(String fiscalCode);
+
+    /** Coppie [id, codice fiscale maiuscolo] per i codici indicati (già in maiuscolo). */
+    @Query("SELECT e.id, UPPER(e.fiscalCode) FROM Employee e WHERE UPPER(e.fiscalCode) IN :codes")
+    List<Object[]> findIdsByFiscalCodes(@Param("codes") Collection<String> codes);
     
     Page<Employee> findByFirstNameIgnoreCaseContainingOrLastNameIgnoreCaseContaining(
         String firstName, String lastName, Pageable pageable);
@@ -61,4 +72,21 @@ public interface EmployeeRepository extends JpaRepository<Employee, Long> {
     List<Employee> findWithoutFuelCard();
     
     boolean existsByRoles_Id(Long roleId);
+
+    /** Righe dell'elenco PDF in streaming; lo stato attivo è calcolato in query. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            SELECT new com.veely.dto.employee.EmployeeExportRow(
+                e.firstName, e.lastName, e.fiscalCode, e.email, e.mobile, e.phone,
+                CASE WHEN EXISTS (
+                    SELECT 1 FROM Employment emp
+                    WHERE emp.employee = e AND emp.status = com.veely.model.EmploymentStatus.ACTIVE
+                ) THEN true ELSE false END)
+            FROM Employee e
+            ORDER BY e.lastName, e.firstName, e.id
+            """)
+    Stream<EmployeeExportRow> streamForExport();
 }
@@ -4,19 +4,24 @@ import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import com.veely.entity.Employee;
 import com.veely.entity.Employment;
 import com.veely.model.EmploymentStatus;
 
+import jakarta.persistence.QueryHint;
+
 public interface EmploymentRepository extends JpaRepository<Employment, Long> {
 	/** Rapporto di lavoro attivo per una persona – ce ne può essere al massimo uno. */
     Optional<Employment> findFirstByEmployeeIdAndStatus(Long employeeId, EmploymentStatus status);
@@ -113,5 +118,44 @@ public interface EmploymentRepository extends JpaRepository<Employment, Long> {
                                      @Param("today") LocalDate today,
                                      Pageable pageable);
 
-    
+    /**
+     * Stessi filtri di {@link #searchByFilters}, letti in streaming per
+     * l'export: ogni riga è il rapporto con il nome della commessa attuale,
+     * letto nella stessa query invece di caricare le assegnazioni di ogni
+     * rapporto.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("""
+            select distinct emp, (
+                    select min(cp.name) from EmploymentWorkplace cw
+                    join cw.project cp
+                    where cw.employment = emp
+                    and (cw.startDate is null or cw.startDate <= :today)
+                    and (cw.endDate is null or cw.endDate >= :today))
+            from Employment emp
+            join fetch emp.employee person
+            left join emp.workplaces w
+            left join w.project p
+            where (:keyword is null or (
+                    lower(person.firstName) like lower(concat('%', :keyword, '%'))
+                    or lower(person.lastName) like lower(concat('%', :keyword, '%'))
+                    or lower(emp.matricola) like lower(concat('%', :keyword, '%'))
+                    or lower(emp.jobTitle) like lower(concat('%', :keyword, '%'))
+                    or lower(emp.contractLevel) like lower(concat('%', :keyword, '%'))
+                    or lower(emp.branch) like lower(concat('%', :keyword, '%'))
+            ))
+            and (:status is null or emp.status = :status)
+            and (:projectId is null or (
+                    p.id = :projectId
+                    and (w.startDate is null or w.startDate <= :today)
+                    and (w.endDate is null or w.endDate >= :today)
+            ))
+            order by person.lastName, person.firstName
+        """)
+    Stream<Object[]> streamByFilters(@Param("keyword") String keyword,
+                                     @Param("status") EmploymentStatus status,
+                                     @Param("projectId") Long projectId,
+                                     @Param("today") LocalDate today);
 }
@@ -2,12 +2,17 @@ package com.veely.repository;
 
 import com.veely.entity.ExpenseReport;
 import com.veely.model.ExpenseStatus;
+import jakarta.persistence.QueryHint;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 public interface ExpenseReportRepository extends JpaRepository<ExpenseReport, Long> {
@@ -23,4 +28,42 @@ public interface ExpenseReportRepository extends JpaRepository<ExpenseReport, Lo
              "order by yr, mth")
     List<Object[]> sumBalancesByMonth(@Param("start") LocalDate start,
             @Param("end") LocalDate end);
+
+    /**
+     * Note spese dalla più recente, lette in streaming per l'export;
+     * con {@code employeeId} nullo vengono restituite tutte.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("""
+            SELECT r FROM ExpenseReport r
+            JOIN FETCH r.employee
+            LEFT JOIN FETCH r.project
+            WHERE (:employeeId IS NULL OR r.employee.id = :employeeId)
+            ORDER BY r.creationDate DESC, r.id DESC
+            """)
+    Stream<ExpenseReport> streamForExport(@Param("employeeId") Long employeeId);
+
+    /**
+     * Note spese per l'export massivo in PDF, come righe
+     * [id, numero, cognome, nome]; i filtri nulli non vengono applicati.
+     * Il periodo coperto dalla nota deve ricadere tra {@code from} e {@code to}.
+     */
+    @Query("""
+            SELECT r.id, r.expenseReportNum, e.lastName, e.firstName FROM ExpenseReport r
+            JOIN r.employee e
+            LEFT JOIN r.project p
+            WHERE (:from IS NULL OR r.startDate >= :from)
+              AND (:to IS NULL OR r.endDate <= :to)
+              AND (:status IS NULL OR r.expenseStatus = :status)
+              AND (:employeeId IS NULL OR e.id = :employeeId)
+              AND (:projectId IS NULL OR p.id = :projectId)
+            ORDER BY e.lastName, e.firstName, r.startDate, r.id
+            """)
+    List<Object[]> findBatchExportEntries(@Param("from") LocalDate from,
+                                          @Param("to") LocalDate to,
+                                          @Param("status") ExpenseStatus status,
+                                          @Param("employeeId") Long employeeId,
+                                          @Param("projectId") Long projectId);
 }
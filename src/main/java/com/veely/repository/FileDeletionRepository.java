@@ -0,0 +1,26 @@
+package com.veely.repository;
+
+import com.veely.entity.FileDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface FileDeletionRepository extends JpaRepository<FileDeletion, Long> {
+
+    boolean existsByPath(String path);
+
+    /** Eliminazioni da eseguire, nell'ordine in cui sono state registrate. */
+    @Query("select f from FileDeletion f where f.nextAttemptAt <= :now order by f.id")
+    List<FileDeletion> findDue(@Param("now") LocalDateTime now, Pageable page);
+
+    /** Registra un tentativo fallito e rimanda il successivo. */
+    @Modifying
+    @Query("update FileDeletion f set f.attempts = f.attempts + 1, f.nextAttemptAt = :next, f.lastError = :error "
+            + "where f.id = :id")
+    int markFailed(@Param("id") Long id, @Param("next") LocalDateTime next, @Param("error") String error);
+}
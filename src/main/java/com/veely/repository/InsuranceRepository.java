@@ -2,8 +2,10 @@ package com.veely.repository;
 
 import com.veely.entity.Insurance;
 
+import java.time.LocalDate;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -20,4 +22,7 @@ public interface InsuranceRepository extends JpaRepository<Insurance, Long> {
 
     @EntityGraph(attributePaths = {"project", "supplier", "supplierReferent", "documents"})
     List<Insurance> findByProjectId(Long projectId);
+
+    @EntityGraph(attributePaths = {"project"})
+    List<Insurance> findByExpiryDateGreaterThanEqualOrderByExpiryDateAsc(LocalDate date, Pageable pageable);
 }
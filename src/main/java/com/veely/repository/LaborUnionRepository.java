@@ -1,7 +1,16 @@
 package com.veely.repository;
 
 import com.veely.entity.LaborUnion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.List;
 
 public interface LaborUnionRepository extends JpaRepository<LaborUnion, Long> {
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<LaborUnion> findAll();
 }
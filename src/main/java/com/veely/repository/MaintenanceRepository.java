@@ -1,13 +1,17 @@
 package com.veely.repository;
 
 import com.veely.entity.Maintenance;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MaintenanceRepository extends JpaRepository<Maintenance, Long> {
     List<Maintenance> findByVehicleId(Long vehicleId);
@@ -60,5 +64,24 @@ public interface MaintenanceRepository extends JpaRepository<Maintenance, Long>
                                       @Param("end") LocalDate end,
                                       @Param("plate") String plate,
                                       @Param("typeId") Long typeId);
-    
+
+    /** Stessi filtri di {@link #search}, letti in streaming per l'export. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("""
+            SELECT m FROM Maintenance m
+            JOIN FETCH m.vehicle v
+            LEFT JOIN FETCH v.supplier
+            LEFT JOIN FETCH v.fuelCard
+            LEFT JOIN FETCH m.supplier
+            LEFT JOIN FETCH m.type
+            WHERE (:plate IS NULL OR lower(v.plate) LIKE lower(concat('%', :plate, '%')))
+              AND (:year IS NULL OR year(m.date) = :year)
+              AND (:typeId IS NULL OR m.type.id = :typeId)
+            ORDER BY m.date DESC, m.id DESC
+            """)
+    Stream<Maintenance> streamForExport(@Param("plate") String plate,
+                                        @Param("year") Integer year,
+                                        @Param("typeId") Long typeId);
 }
@@ -0,0 +1,37 @@
+package com.veely.repository;
+
+import com.veely.entity.PayslipDispatchJob;
+import com.veely.model.DispatchJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface PayslipDispatchJobRepository extends JpaRepository<PayslipDispatchJob, Long> {
+
+    List<PayslipDispatchJob> findByStatusInOrderByCreatedAtAsc(Collection<DispatchJobStatus> statuses);
+
+    @Query("select i from PayslipDispatchJob j join j.payslipIds i where j.id = :id")
+    List<Long> findPayslipIds(@Param("id") Long id);
+
+    /** Incremento atomico dei contatori: più worker aggiornano lo stesso job. */
+    @Modifying
+    @Query("update PayslipDispatchJob j set j.sent = j.sent + :sent, j.skipped = j.skipped + :skipped, "
+            + "j.failed = j.failed + :failed where j.id = :id")
+    int addProgress(@Param("id") Long id,
+                    @Param("sent") int sent,
+                    @Param("skipped") int skipped,
+                    @Param("failed") int failed);
+
+    @Modifying
+    @Query("update PayslipDispatchJob j set j.status = :status, j.finishedAt = :finishedAt, "
+            + "j.lastError = :error where j.id = :id")
+    int markFinished(@Param("id") Long id,
+                     @Param("status") DispatchJobStatus status,
+                     @Param("finishedAt") LocalDateTime finishedAt,
+                     @Param("error") String error);
+}
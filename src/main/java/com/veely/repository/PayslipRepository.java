@@ -4,10 +4,13 @@ import com.veely.entity.Payslip;
 import com.veely.model.PayslipStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface PayslipRepository extends JpaRepository<Payslip, Long> {
 
@@ -15,8 +18,24 @@ public interface PayslipRepository extends JpaRepository<Payslip, Long> {
 
     List<Payslip> findByIdIn(Collection<Long> ids);
 
+    @Query("select p from Payslip p left join fetch p.employee where p.id = :id")
+    Optional<Payslip> findWithEmployeeById(@Param("id") Long id);
+
+    @Query("select p.id from Payslip p where p.id in :ids and p.status = com.veely.model.PayslipStatus.SENT "
+            + "and p.sentAt >= :since")
+    List<Long> findIdsSentSince(@Param("ids") Collection<Long> ids, @Param("since") LocalDateTime since);
+
     List<Payslip> findByReferenceMonthAndStatus(LocalDate referenceMonth, PayslipStatus status);
 
     @Query("select distinct p.referenceMonth from Payslip p order by p.referenceMonth desc")
     List<LocalDate> findAvailableMonths();
+
+    /** Percorsi tra quelli indicati usati da almeno un cedolino. */
+    @Query("select p.storagePath from Payslip p where p.storagePath in :paths")
+    List<String> findStoragePathsIn(@Param("paths") Collection<String> paths);
+
+    /** Percorso, codice fiscale, cognome e nome dei cedolini del mese, per l'archivio ZIP. */
+    @Query("select p.storagePath, p.fiscalCode, e.lastName, e.firstName from Payslip p left join p.employee e "
+            + "where p.referenceMonth = :month order by e.lastName, e.firstName, p.fiscalCode, p.id")
+    List<Object[]> findArchiveEntries(@Param("month") LocalDate month);
 }
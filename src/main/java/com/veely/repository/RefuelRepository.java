@@ -1,12 +1,16 @@
 package com.veely.repository;
 
 import com.veely.entity.Refuel;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface RefuelRepository extends JpaRepository<Refuel, Long> {
 
@@ -56,4 +60,27 @@ public interface RefuelRepository extends JpaRepository<Refuel, Long> {
            ") as combined_mileage", nativeQuery = true)
     Integer findLastMileageFromAllSources(@Param("vehicleId") Long vehicleId, 
                                          @Param("beforeDate") LocalDate beforeDate);
+
+    /** Stessi filtri di {@link #search}, letti in streaming per l'export. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("""
+            SELECT r FROM Refuel r
+            JOIN FETCH r.vehicle v
+            LEFT JOIN FETCH v.supplier
+            LEFT JOIN FETCH v.fuelCard
+            LEFT JOIN FETCH r.fuelCard
+            WHERE (:vehicleId IS NULL OR v.id = :vehicleId)
+              AND (:cardId IS NULL OR r.fuelCard.id = :cardId)
+              AND (:year IS NULL OR year(r.date) = :year)
+              AND (:start IS NULL OR r.date >= :start)
+              AND (:end IS NULL OR r.date <= :end)
+            ORDER BY r.date DESC, r.id DESC
+            """)
+    Stream<Refuel> streamForExport(@Param("vehicleId") Long vehicleId,
+                                   @Param("cardId") Long cardId,
+                                   @Param("year") Integer year,
+                                   @Param("start") LocalDate start,
+                                   @Param("end") LocalDate end);
 }
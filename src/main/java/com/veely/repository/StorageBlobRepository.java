@@ -0,0 +1,53 @@
+package com.veely.repository;
+
+import com.veely.entity.StorageBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface StorageBlobRepository extends JpaRepository<StorageBlob, String> {
+
+    /**
+     * Crea la riga del contenuto con un riferimento o, se esiste già, ne
+     * aggiunge uno: ripetibile anche quando due nodi caricano lo stesso
+     * contenuto insieme.
+     */
+    @Modifying
+    @Query(value = "insert into storage_blobs (hash, size, ref_count, created_at) values (:hash, :size, 1, :createdAt) "
+            + "on duplicate key update ref_count = ref_count + 1", nativeQuery = true)
+    int insertOrAddReference(@Param("hash") String hash, @Param("size") long size,
+                             @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Query("update StorageBlob b set b.refCount = b.refCount + :delta where b.hash = :hash")
+    int addReferences(@Param("hash") String hash, @Param("delta") int delta);
+
+    /** Elimina il contenuto solo se nessun percorso lo usa più. */
+    @Modifying
+    @Query("delete from StorageBlob b where b.hash = :hash and b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    /**
+     * Blocca la riga del contenuto fino alla fine della transazione,
+     * creandola senza riferimenti se non esiste.
+     */
+    @Modifying
+    @Query(value = "insert into storage_blobs (hash, size, ref_count, created_at) values (:hash, 0, 0, :createdAt) "
+            + "on duplicate key update ref_count = ref_count", nativeQuery = true)
+    int lockOrCreate(@Param("hash") String hash, @Param("createdAt") LocalDateTime createdAt);
+
+    /** Riferimenti al contenuto, bloccandone la riga fino alla fine della transazione. */
+    @Query(value = "select ref_count from storage_blobs where hash = :hash for update", nativeQuery = true)
+    Optional<Integer> findRefCountForUpdate(@Param("hash") String hash);
+
+    @Query("select b.size from StorageBlob b where b.hash = :hash")
+    Optional<Long> findSize(@Param("hash") String hash);
+
+    /** Spazio fisico occupato da tutti i contenuti. */
+    @Query("select coalesce(sum(b.size), 0) from StorageBlob b")
+    long totalSize();
+}
@@ -0,0 +1,41 @@
+package com.veely.repository;
+
+import com.veely.entity.StorageObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface StorageObjectRepository extends JpaRepository<StorageObject, String> {
+
+    List<StorageObject> findByPathStartingWith(String prefix);
+
+    /** Inserisce il percorso; fallisce sulla chiave primaria se il percorso è già in uso. */
+    @Modifying
+    @Query(value = "insert into storage_objects (path, blob_hash, created_at) values (:path, :hash, :createdAt)",
+           nativeQuery = true)
+    void insert(@Param("path") String path, @Param("hash") String hash, @Param("createdAt") LocalDateTime createdAt);
+
+    /** Elimina il percorso; 0 se non esisteva. */
+    @Modifying
+    @Query("delete from StorageObject o where o.path = :path")
+    int deletePath(@Param("path") String path);
+
+    @Query("select o.blobHash from StorageObject o where o.path = :path")
+    Optional<String> findBlobHash(@Param("path") String path);
+
+    /** Percorsi creati prima di {@code before} e successivi ad {@code after}, in ordine alfabetico. */
+    @Query("select o.path from StorageObject o where o.path > :after and o.createdAt < :before order by o.path")
+    List<String> findPathsCreatedBefore(@Param("after") String after, @Param("before") LocalDateTime before,
+                                        Pageable page);
+
+    /** Coppie [percorso, dimensione del contenuto] successive ad {@code after}, in ordine alfabetico. */
+    @Query("select o.path, b.size from StorageObject o, StorageBlob b where b.hash = o.blobHash "
+            + "and o.path > :after order by o.path")
+    List<Object[]> findPathsAndSizesAfter(@Param("after") String after, Pageable page);
+}
@@ -0,0 +1,27 @@
+package com.veely.repository;
+
+import com.veely.entity.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, String> {
+
+    /**
+     * Somma i delta ai contatori del proprietario, creandone la riga se non
+     * esiste: un'unica istruzione, sicura anche quando più nodi registrano
+     * il primo file dello stesso proprietario.
+     */
+    @Modifying
+    @Query(value = "insert into storage_usage (owner, area, bytes, files) "
+            + "values (:owner, :area, greatest(:bytes, 0), greatest(:files, 0)) "
+            + "on duplicate key update bytes = bytes + :bytes, files = files + :files", nativeQuery = true)
+    int addUsage(@Param("owner") String owner, @Param("area") String area,
+                 @Param("bytes") long bytes, @Param("files") long files);
+
+    /** Elimina le righe dei proprietari rimasti senza file. */
+    @Modifying
+    @Query("delete from StorageUsage u where u.bytes = 0 and u.files = 0")
+    int deleteEmpty();
+}
@@ -1,12 +1,15 @@
 package com.veely.repository;
 
 import com.veely.entity.Supplier;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 public interface SupplierRepository extends JpaRepository<Supplier, Long> {
 	
@@ -15,6 +18,7 @@ public interface SupplierRepository extends JpaRepository<Supplier, Long> {
 
     @Override
     @EntityGraph(attributePaths = "referents")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Supplier> findAll();
     
 }
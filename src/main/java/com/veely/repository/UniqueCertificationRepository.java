@@ -3,6 +3,7 @@ package com.veely.repository;
 import com.veely.entity.UniqueCertification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
 import java.util.List;
@@ -15,4 +16,8 @@ public interface UniqueCertificationRepository extends JpaRepository<UniqueCerti
 
     @Query("select distinct uc.referenceYear from UniqueCertification uc order by uc.referenceYear desc")
     List<Integer> findAvailableYears();
+
+    /** Percorsi tra quelli indicati usati da almeno una certificazione. */
+    @Query("select uc.storagePath from UniqueCertification uc where uc.storagePath in :paths")
+    List<String> findStoragePathsIn(@Param("paths") Collection<String> paths);
 }
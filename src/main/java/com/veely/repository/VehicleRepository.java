@@ -4,13 +4,20 @@ import com.veely.entity.Vehicle;
 import com.veely.model.VehicleStatus;
 import com.veely.model.VehicleType;
 import com.veely.repository.custom.VehicleRepositoryCustom;
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface VehicleRepository extends JpaRepository<Vehicle, Long>, VehicleRepositoryCustom {
 
@@ -20,6 +27,30 @@ public interface VehicleRepository extends JpaRepository<Vehicle, Long>, Vehicle
     List<Vehicle> findByStatus(VehicleStatus status);
     
     long countByStatus(VehicleStatus status);
+
+    /** Numero di veicoli per stato in un'unica query aggregata: [status, count]. */
+    @Query("SELECT v.status, COUNT(v) FROM Vehicle v GROUP BY v.status")
+    List<Object[]> countGroupByStatus();
+
+    /** Coppie [id, status] di tutti i veicoli, per inizializzare i contatori di flotta. */
+    @Query("SELECT v.id, v.status FROM Vehicle v")
+    List<Object[]> findAllStatuses();
+
+    /** Terne [id, plate, status] dei veicoli indicati, per gli aggiornamenti massivi. */
+    @Query("SELECT v.id, v.plate, v.status FROM Vehicle v WHERE v.id IN :ids")
+    List<Object[]> findPlatesAndStatusesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Imposta lo stato dei veicoli indicati con un'unica UPDATE.
+     * Non passa dai listener JPA: chi la usa deve notificare le modifiche.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Vehicle v SET v.status = :status WHERE v.id IN :ids AND v.status <> :status")
+    int updateStatusByIdIn(@Param("ids") Collection<Long> ids, @Param("status") VehicleStatus status);
+
+    /** Righe [id, plate, brand, model, chassisNumber] per l'indice di ricerca in memoria. */
+    @Query("SELECT v.id, v.plate, v.brand, v.model, v.chassisNumber FROM Vehicle v")
+    List<Object[]> findSearchFields();
     
     /** Veicoli che non hanno lo stato specificato. */
     List<Vehicle> findByStatusNot(VehicleStatus status);
@@ -51,4 +82,11 @@ public interface VehicleRepository extends JpaRepository<Vehicle, Long>, Vehicle
                 )
     		""")
     List<Vehicle> findWithoutFuelCard();
+
+    /** Tutti i veicoli ordinati per targa, letti in streaming per l'export. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT v FROM Vehicle v LEFT JOIN FETCH v.supplier LEFT JOIN FETCH v.fuelCard ORDER BY v.plate")
+    Stream<Vehicle> streamAllForExport();
 }
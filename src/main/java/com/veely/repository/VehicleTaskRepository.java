@@ -4,7 +4,10 @@ import com.veely.entity.TaskType;
 import com.veely.entity.VehicleTask;
 import com.veely.model.TaskStatus;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -13,4 +16,10 @@ public interface VehicleTaskRepository extends JpaRepository<VehicleTask, Long>
     List<VehicleTask> findByVehicleIdAndStatus(Long vehicleId, TaskStatus status);
     VehicleTask findByVehicleIdAndTypeAndStatus(Long vehicleId, TaskType type, TaskStatus status);
     List<VehicleTask> findByStatusOrderByDueDateAsc(TaskStatus status);
+
+    /** Task in uno stato ordinati per scadenza (senza data in fondo), con veicolo e tipo già caricati. */
+    @Query("SELECT t FROM VehicleTask t JOIN FETCH t.vehicle LEFT JOIN FETCH t.type " +
+           "WHERE t.status = :status " +
+           "ORDER BY CASE WHEN t.dueDate IS NULL THEN 1 ELSE 0 END, t.dueDate")
+    List<VehicleTask> findUpcomingByStatus(@Param("status") TaskStatus status, Pageable pageable);
 }
@@ -2,8 +2,10 @@ package com.veely.repository.custom;
 
 import com.veely.entity.Vehicle;
 import com.veely.model.VehicleStatus;
+import com.veely.model.VehicleType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -27,11 +29,32 @@ public interface VehicleRepositoryCustom {
                                 LocalDate expiryDateFrom, LocalDate expiryDateTo, 
                                 Pageable pageable);
     
+    /**
+     * Ricerca per la lista veicoli con paginazione keyset sulla targa (univoca e indicizzata):
+     * restituisce al più {@code limit} veicoli con targa successiva ad {@code afterPlate}.
+     * Il testo libero viene cercato su targa, marca, modello e telaio.
+     */
+    Slice<Vehicle> searchVehicles(String search, VehicleStatus status, VehicleType type,
+                                  String afterPlate, int limit);
+    
+    /**
+     * Numero di veicoli che soddisfano gli stessi filtri di {@link #searchVehicles(String, VehicleStatus, VehicleType, String, int)}
+     */
+    long countVehicles(String search, VehicleStatus status, VehicleType type);
+    
+    /**
+     * Conteggi per stato e tipo, con numero di veicoli che hanno assicurazione o bollo
+     * in scadenza prima di {@code deadline}, calcolati con una sola query GROUP BY
+     */
+    List<StatusTypeCount> countByStatusAndType(LocalDate deadline);
+    
     /**
      * Report veicoli con statistiche
      */
     List<VehicleStatistics> getVehicleStatistics();
     
+    record StatusTypeCount(VehicleStatus status, VehicleType type, Long count, Long withDeadlines) {}
+    
     class VehicleStatistics {
         public String brand;
         public Long count;
@@ -3,6 +3,7 @@ package com.veely.repository.custom.impl;
 import com.veely.entity.Vehicle;
 import com.veely.model.AssignmentStatus;
 import com.veely.model.VehicleStatus;
+import com.veely.model.VehicleType;
 import com.veely.repository.custom.VehicleRepositoryCustom;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -10,7 +11,10 @@ import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
@@ -113,6 +117,74 @@ public class VehicleRepositoryCustomImpl implements VehicleRepositoryCustom {
         return new PageImpl<>(vehicles, pageable, total);
     }
     
+    @Override
+    public Slice<Vehicle> searchVehicles(String search, VehicleStatus status, VehicleType type,
+                                         String afterPlate, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Vehicle> dataQuery = cb.createQuery(Vehicle.class);
+        Root<Vehicle> root = dataQuery.from(Vehicle.class);
+        root.fetch("supplier", JoinType.LEFT);
+        root.fetch("fuelCard", JoinType.LEFT);
+        
+        List<Predicate> predicates = buildListPredicates(cb, root, search, status, type);
+        if (afterPlate != null && !afterPlate.isEmpty()) {
+            predicates.add(cb.greaterThan(root.get("plate"), afterPlate));
+        }
+        dataQuery.select(root)
+                 .where(cb.and(predicates.toArray(new Predicate[0])))
+                 .orderBy(cb.asc(root.get("plate")));
+        
+        // Una riga in più per sapere se esiste una pagina successiva
+        List<Vehicle> vehicles = new ArrayList<>(entityManager.createQuery(dataQuery)
+            .setMaxResults(limit + 1)
+            .getResultList());
+        boolean hasNext = vehicles.size() > limit;
+        if (hasNext) {
+            vehicles.remove(limit);
+        }
+        return new SliceImpl<>(vehicles, PageRequest.of(0, limit), hasNext);
+    }
+    
+    @Override
+    public long countVehicles(String search, VehicleStatus status, VehicleType type) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<Vehicle> root = countQuery.from(Vehicle.class);
+        countQuery.select(cb.count(root))
+                  .where(cb.and(buildListPredicates(cb, root, search, status, type).toArray(new Predicate[0])));
+        return entityManager.createQuery(countQuery).getSingleResult();
+    }
+    
+    private List<Predicate> buildListPredicates(CriteriaBuilder cb, Root<Vehicle> root,
+                                                String search, VehicleStatus status, VehicleType type) {
+        List<Predicate> predicates = buildPredicates(cb, root, null, null, status, null, null);
+        if (type != null) {
+            predicates.add(cb.equal(root.get("type"), type));
+        }
+        if (search != null && !search.isBlank()) {
+            String pattern = "%" + search.trim().toLowerCase() + "%";
+            predicates.add(cb.or(
+                cb.like(cb.lower(root.get("plate")), pattern),
+                cb.like(cb.lower(root.get("brand")), pattern),
+                cb.like(cb.lower(root.get("model")), pattern),
+                cb.like(cb.lower(root.get("chassisNumber")), pattern)));
+        }
+        return predicates;
+    }
+    
+    @Override
+    public List<StatusTypeCount> countByStatusAndType(LocalDate deadline) {
+        return entityManager.createQuery(
+            "SELECT new com.veely.repository.custom.VehicleRepositoryCustom$StatusTypeCount(" +
+            "v.status, v.type, COUNT(v), " +
+            "SUM(CASE WHEN v.insuranceExpiryDate < :deadline OR v.carTaxExpiryDate < :deadline " +
+            "THEN 1L ELSE 0L END)) " +
+            "FROM Vehicle v " +
+            "GROUP BY v.status, v.type", StatusTypeCount.class)
+            .setParameter("deadline", deadline)
+            .getResultList();
+    }
+    
     private List<Predicate> buildPredicates(CriteriaBuilder cb, Root<Vehicle> root,
                                            String plate, String brand, VehicleStatus status,
                                            LocalDate expiryDateFrom, LocalDate expiryDateTo) {
@@ -5,9 +5,11 @@ import com.veely.entity.Document;
 import com.veely.exception.ResourceNotFoundException;
 import com.veely.model.DocumentType;
 import com.veely.repository.CompanyInfoRepository;
-import com.veely.service.DocumentService;
+import com.veely.service.pdf.PdfBrandingService;
+import com.veely.service.storage.FileDeletionOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,10 +17,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.BeanWrapperImpl;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -35,9 +34,11 @@ public class CompanyInfoService {
 
     private final CompanyInfoRepository companyInfoRepository;
     private final DocumentService documentService;
+    private final FileSystemStorageService storageService;
+    private final FileDeletionOutbox fileDeletions;
+    private final ApplicationEventPublisher eventPublisher;
     
-    // Cartella per il salvataggio dei file
-    private static final String UPLOAD_DIR = "uploads/";
+    // Cartelle logiche dei file aziendali nell'archivio file
     private static final String LOGO_SUBDIR = "company/logos/";
     private static final String DOCS_SUBDIR = "company/documents/";
 
@@ -111,7 +112,9 @@ public class CompanyInfoService {
             companyInfo.setUseCustomEmailSignature(false);
         }
 
-        return companyInfoRepository.save(companyInfo);
+        CompanyInfo saved = companyInfoRepository.save(companyInfo);
+        brandingChanged();
+        return saved;
     }
 
     /**
@@ -128,7 +131,9 @@ public class CompanyInfoService {
         );
         existing.setLastUpdated(LocalDate.now());
 
-        return companyInfoRepository.save(existing);
+        CompanyInfo saved = companyInfoRepository.save(existing);
+        brandingChanged();
+        return saved;
     }
 
     /**
@@ -141,6 +146,7 @@ public class CompanyInfoService {
         deleteAssociatedFiles(companyInfo);
         
         companyInfoRepository.delete(companyInfo);
+        brandingChanged();
     }
 
     /**
@@ -159,7 +165,9 @@ public class CompanyInfoService {
         target.setIsActive(true);
         target.setLastUpdated(LocalDate.now());
         
-        return companyInfoRepository.save(target);
+        CompanyInfo saved = companyInfoRepository.save(target);
+        brandingChanged();
+        return saved;
     }
 
     /**
@@ -222,7 +230,9 @@ public class CompanyInfoService {
         company.setHeaderLogoPath(fileName);
         company.setLastUpdated(LocalDate.now());
         
-        return companyInfoRepository.save(company);
+        CompanyInfo saved = companyInfoRepository.save(company);
+        brandingChanged();
+        return saved;
     }
 
     /**
@@ -241,17 +251,9 @@ public class CompanyInfoService {
         company.setWatermarkPath(fileName);
         company.setLastUpdated(LocalDate.now());
         
-        return companyInfoRepository.save(company);
-    }
-
-    /**
-     * Ottiene il percorso completo di un file
-     */
-    public String getFullFilePath(String fileName) {
-        if (fileName == null || fileName.trim().isEmpty()) {
-            return null;
-        }
-        return UPLOAD_DIR + fileName;
+        CompanyInfo saved = companyInfoRepository.save(company);
+        brandingChanged();
+        return saved;
     }
 
     /**
@@ -259,22 +261,20 @@ public class CompanyInfoService {
      */
     public boolean fileExists(String fileName) {
         if (fileName == null) return false;
-        Path filePath = Paths.get(UPLOAD_DIR + fileName);
-        return Files.exists(filePath);
+        return storageService.exists(fileName);
     }
 
     // === METODI PRIVATI ===
 
+    /** I PDF rileggono i dati aziendali dopo il commit. */
+    private void brandingChanged() {
+        eventPublisher.publishEvent(new PdfBrandingService.BrandingChanged());
+    }
+
+    /** Il file viene eliminato dopo il commit: se la modifica viene annullata resta al suo posto. */
     private void deleteFile(String relativePath) {
-        try {
-            Path filePath = Paths.get(UPLOAD_DIR + relativePath);
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-                log.info("File eliminato: {}", filePath.toString());
-            }
-        } catch (IOException e) {
-            log.error("Errore nell'eliminazione del file: {}", relativePath, e);
-        }
+        fileDeletions.delete(relativePath);
+        log.info("Eliminazione del file accodata: {}", relativePath);
     }
 
     private void deleteAssociatedFiles(CompanyInfo companyInfo) {
@@ -313,50 +313,18 @@ public class CompanyInfoService {
         log.info("Logo path in DB: {}", company.getLogoPath());
         
         if (company.getLogoPath() != null) {
-            // Prova tutti i possibili percorsi
-            String[] possiblePaths = {
-                UPLOAD_DIR + company.getLogoPath(),
-                "uploads/company/" + company.getLogoPath(),
-                company.getLogoPath(),
-                Paths.get("uploads", company.getLogoPath()).toString(),
-                Paths.get(UPLOAD_DIR, company.getLogoPath()).toString()
-            };
-            
-            for (String path : possiblePaths) {
-                Path fullPath = Paths.get(path);
-                boolean exists = Files.exists(fullPath);
-                log.info("Path: {} - Esiste: {} - Assoluto: {}", 
-                         path, exists, fullPath.toAbsolutePath());
-            }
-            
-            // Working directory
-            log.info("Working directory: {}", System.getProperty("user.dir"));
-            
-            // Lista contenuto directory uploads
-            try {
-                Path uploadsDir = Paths.get("uploads", "company_logos");
-                if (Files.exists(uploadsDir)) {
-                    log.info("Contenuto directory logos:");
-                    Files.list(uploadsDir).forEach(file -> 
-                        log.info("  - {}", file.getFileName()));
-                } else {
-                    log.warn("Directory logos non esiste: {}", uploadsDir.toAbsolutePath());
-                }
-            } catch (IOException e) {
-                log.error("Errore nella lettura directory: {}", e.getMessage());
-            }
+            log.info("Logo presente nell'archivio file: {}", fileExists(company.getLogoPath()));
+        }
+        if (company.getHeaderLogoPath() != null) {
+            log.info("Logo intestazione presente nell'archivio file: {}", fileExists(company.getHeaderLogoPath()));
+        }
+        if (company.getWatermarkPath() != null) {
+            log.info("Watermark presente nell'archivio file: {}", fileExists(company.getWatermarkPath()));
         }
         log.info("=== END DEBUG ===");
     }
 
     private String saveFile(MultipartFile file, String subDirectory, String prefix) throws IOException {
-        // Crea le directory se non esistono
-        Path uploadPath = Paths.get(UPLOAD_DIR + subDirectory);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-            log.info("Creata directory: {}", uploadPath.toAbsolutePath());
-        }
-
         // Genera nome file unico
         String originalFileName = file.getOriginalFilename();
         String extension = originalFileName != null && originalFileName.contains(".") 
@@ -365,18 +333,10 @@ public class CompanyInfoService {
         String fileName = prefix + UUID.randomUUID().toString() + extension;
         String relativePath = subDirectory + fileName;
 
-        // Salva il file
-        Path filePath = uploadPath.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-        log.info("File salvato: {} (path assoluto: {})", relativePath, filePath.toAbsolutePath());
-        
-        // Verifica immediata
-        if (Files.exists(filePath)) {
-            log.info("Verifica immediata: File salvato correttamente");
-            log.info("Dimensione file: {} bytes", Files.size(filePath));
-        } else {
-            log.error("ERRORE: File non trovato dopo il salvataggio!");
+        // Salva il file nell'archivio file (disco locale o bucket S3)
+        try (InputStream in = file.getInputStream()) {
+            long size = storageService.store(in, subDirectory, fileName);
+            log.info("File salvato: {} ({} bytes)", relativePath, size);
         }
         
         return relativePath;
@@ -407,17 +367,9 @@ public class CompanyInfoService {
         company.setLastUpdated(LocalDate.now());
         
         CompanyInfo saved = companyInfoRepository.save(company);
+        brandingChanged();
         log.info("Logo aggiornato in database. Nuovo path: {}", saved.getLogoPath());
         
-        // Verifica che il file esista effettivamente
-        Path filePath = Paths.get(UPLOAD_DIR + fileName);
-        if (Files.exists(filePath)) {
-            log.info("✓ Verifica file: File esistente al path {}", filePath.toAbsolutePath());
-            log.info("✓ Dimensione file: {} bytes", Files.size(filePath));
-        } else {
-            log.error("✗ ERRORE: File non trovato al path {}", filePath.toAbsolutePath());
-        }
-        
         return saved;
     }
 }
\ No newline at end of file
@@ -1,19 +1,26 @@
 package com.veely.service;
 
-import com.veely.model.AssignmentStatus;
+import com.veely.dto.dashboard.DashboardSnapshot;
+import com.veely.dto.dashboard.DashboardSnapshot.AdminDocumentRow;
+import com.veely.dto.dashboard.DashboardSnapshot.ComplianceRow;
+import com.veely.dto.dashboard.DashboardSnapshot.PendingReportRow;
+import com.veely.dto.dashboard.DashboardSnapshot.PolicyRow;
+import com.veely.dto.dashboard.DashboardSnapshot.TaskRow;
+import com.veely.entity.Employee;
+import com.veely.service.FleetCounterService.FleetCounters;
+import com.veely.model.DashboardSection;
 import com.veely.model.ExpenseStatus;
 import com.veely.model.SupplierContractStatus;
 import com.veely.model.VehicleStatus;
-import com.veely.entity.ComplianceItem;
 import com.veely.entity.Project;
-import com.veely.entity.VehicleTask;
 import com.veely.model.TaskStatus;
 import com.veely.repository.VehicleTaskRepository;
+import com.veely.repository.AdminDocumentRepository;
 import com.veely.repository.AssignmentRepository;
+import com.veely.repository.ComplianceItemRepository;
 import com.veely.repository.ContractRepository;
 import com.veely.repository.ExpenseReportRepository;
 import com.veely.repository.RefuelRepository;
-import com.veely.repository.VehicleRepository;
 import com.veely.repository.InsuranceRepository;
 import lombok.RequiredArgsConstructor;
 
@@ -23,60 +30,118 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import org.springframework.stereotype.Service;
-import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.PageRequest;
 
 
+/**
+ * Calcolo dei dati della dashboard di benvenuto.
+ * Le singole sezioni vengono caricate in una sola transazione di lettura
+ * e convertite in righe immutabili da {@link #buildSnapshot}; la cache
+ * in memoria è gestita da {@link DashboardSnapshotService}.
+ */
 @Service
 @RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class DashboardService {
 
-    private final VehicleRepository vehicleRepo;
+    /** Numero di righe mostrate nelle tabelle delle scadenze. */
+    public static final int LIST_LIMIT = 5;
+    /** Numero di mesi mostrati nei grafici. */
+    public static final int CHART_MONTHS = 6;
+
+    private final FleetCounterService fleetCounterService;
     private final AssignmentRepository assignmentRepo;
     private final CorrespondenceService correspondenceService;
     private final ExpenseReportRepository expenseReportRepo;
     private final RefuelRepository refuelRepo;
     private final VehicleTaskRepository vehicleTaskRepo;
     private final ContractRepository contractRepo;
-    private final ComplianceItemService complianceItemService;
+    private final ComplianceItemRepository complianceItemRepo;
     private final ProjectService projectService;
-    private final AdminDocumentService adminDocumentService;
+    private final AdminDocumentRepository adminDocumentRepo;
     private final InsuranceRepository insuranceRepository;
 
+    /**
+     * Costruisce un nuovo snapshot ricalcolando solo le sezioni indicate;
+     * le altre vengono riprese da {@code previous}. Se {@code previous} è
+     * {@code null} tutte le sezioni vengono ricalcolate.
+     */
+    public DashboardSnapshot buildSnapshot(DashboardSnapshot previous,
+                                           Set<DashboardSection> sections,
+                                           long version) {
+        boolean full = previous == null;
+        LocalDate today = LocalDate.now();
+
+        FleetCounters fleet = fleetCounterService.counters();
+
+        return new DashboardSnapshot(
+                version,
+                Instant.now(),
+                today,
+                full || sections.contains(DashboardSection.METRICS)
+                        ? getMetrics(fleet) : previous.metrics(),
+                full || sections.contains(DashboardSection.VEHICLE_STATUS)
+                        ? toStatusLabels(fleet) : previous.vehicleStatusCounts(),
+                full || sections.contains(DashboardSection.FUEL_COSTS)
+                        ? getFuelCosts(CHART_MONTHS) : previous.fuelCosts(),
+                full || sections.contains(DashboardSection.EXPENSE_BALANCES)
+                        ? getExpenseReportBalances(CHART_MONTHS) : previous.reportBalances(),
+                full || sections.contains(DashboardSection.PENDING_REPORTS)
+                        ? getPendingExpenseReports(LIST_LIMIT) : previous.pendingReports(),
+                full || sections.contains(DashboardSection.COMPLIANCE)
+                        ? getUpcomingComplianceItems(today, LIST_LIMIT) : previous.upcomingSafety(),
+                full || sections.contains(DashboardSection.TASKS)
+                        ? getUpcomingTasks(LIST_LIMIT) : previous.upcomingTasks(),
+                full || sections.contains(DashboardSection.ADMIN_DOCUMENTS)
+                        ? getUpcomingAdminDocuments(today, LIST_LIMIT) : previous.upcomingAdminDocuments(),
+                full || sections.contains(DashboardSection.POLICIES)
+                        ? getExpiringPolicies(today, LIST_LIMIT) : previous.expiringPolicies());
+    }
 
     public DashboardMetrics getMetrics() {
-        long vehicles = vehicleRepo.count();
-        long inService = vehicleRepo.countByStatus(VehicleStatus.IN_SERVICE);
-        long assigned = assignmentRepo.countDistinctVehicleByStatus(AssignmentStatus.ASSIGNED);
+        return getMetrics(fleetCounterService.counters());
+    }
+
+    private DashboardMetrics getMetrics(FleetCounters fleet) {
+        long vehicles = fleet.total();
+        long inService = fleet.inService();
+        long assigned = fleet.assignedVehicles();
         long totalAssignments = assignmentRepo.count();
         String lastIncoming = correspondenceService.getLastIncomingProtocol();
         String lastOutgoing = correspondenceService.getLastOutgoingProtocol();
-        
+
         YearMonth ym = java.time.YearMonth.now();
        	LocalDate start = ym.atDay(1);
         LocalDate end = ym.atEndOfMonth();
         BigDecimal fuelMonth = refuelRepo.sumAmountBetween(start, end);
-        
+
         List<Project> activeProjects = projectService.findActive();
         long activeProjectCount = activeProjects.size();
         BigDecimal activeProjectsValue = activeProjects.stream()
                 .map(Project::getValue)
                 .filter(Objects::nonNull)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
+
         long activeContracts = contractRepo.countByStatus(SupplierContractStatus.IN_ESECUZIONE);
-        
+
         return new DashboardMetrics(vehicles, inService, assigned,
         		totalAssignments, lastIncoming, lastOutgoing, fuelMonth,
                 activeProjectCount, activeProjectsValue, activeContracts);
     }
-    
+
     /** Returns vehicle counts grouped by status. */
-    public java.util.Map<String, Long> getVehicleStatusCounts() {
-        java.util.Map<String, Long> map = new java.util.LinkedHashMap<>();
+    public Map<String, Long> getVehicleStatusCounts() {
+        return toStatusLabels(fleetCounterService.counters());
+    }
+
+    private Map<String, Long> toStatusLabels(FleetCounters fleet) {
+        Map<String, Long> map = new LinkedHashMap<>();
         for (VehicleStatus vs : VehicleStatus.values()) {
-            map.put(vs.getDisplayName(), vehicleRepo.countByStatus(vs));
+            map.put(vs.getDisplayName(), fleet.count(vs));
         }
         return map;
     }
@@ -124,62 +189,81 @@ public class DashboardService {
     }
 
     /**
-     * Upcoming vehicle maintenance tasks taking into account mileage and
-     * date thresholds. A task is included if either the due mileage has
-     * been reached or the due date is within the next 60 days.
+     * Prossime scadenze di manutenzione aperte, ordinate per data
+     * (le scadenze solo chilometriche in fondo).
      */
-    
-    public List<VehicleTask> getUpcomingTasks(int limit) {
-        return vehicleTaskRepo.findByStatusOrderByDueDateAsc(TaskStatus.OPEN)
+    public List<TaskRow> getUpcomingTasks(int limit) {
+        return vehicleTaskRepo.findUpcomingByStatus(TaskStatus.OPEN, PageRequest.of(0, limit))
                 .stream()
-                .sorted(java.util.Comparator.comparing(VehicleTask::getDueDate,
-                        java.util.Comparator.nullsLast(java.util.Comparator.naturalOrder())))
-                .limit(limit)
+                .map(t -> new TaskRow(t.getId(),
+                        t.getVehicle().getId(),
+                        t.getVehicle().getPlate(),
+                        t.getVehicle().getModel(),
+                        t.getVehicle().getCurrentMileage(),
+                        t.getType() != null ? t.getType().getDescription() : null,
+                        t.getDueDate(),
+                        t.getDueMileage()))
                 .toList();
     }
-        
 
     /** Upcoming safety compliance items sorted by due date */
-    public List<ComplianceItem> getUpcomingComplianceItems(int limit) {
-	return complianceItemService
-                .search(null, null, null, null, null, false)
+    public List<ComplianceRow> getUpcomingComplianceItems(LocalDate today, int limit) {
+        return complianceItemRepo
+                .findByDueDateGreaterThanEqualOrderByDueDateAsc(today, PageRequest.of(0, limit))
                 .stream()
-                .filter(i -> i.getDueDate() != null)
-                .sorted(java.util.Comparator.comparing(com.veely.entity.ComplianceItem::getDueDate))
-                .limit(limit)
+                .map(i -> new ComplianceRow(i.getId(),
+                        i.getCategory() != null ? i.getCategory().getName() : null,
+                        fullName(i.getEmployee()),
+                        i.getDueDate()))
                 .toList();
     }
-    
+
     /** Upcoming administrative documents ordered by due date */
-    public List<com.veely.entity.AdminDocument> getUpcomingAdminDocuments(int limit) {
-        java.time.LocalDate today = java.time.LocalDate.now();
-        return adminDocumentService.findAll().stream()
-                .filter(d -> d.getExpiryDate() != null && !d.getExpiryDate().isBefore(today))
-                .sorted(java.util.Comparator.comparing(com.veely.entity.AdminDocument::getExpiryDate))
-                .limit(limit)
+    public List<AdminDocumentRow> getUpcomingAdminDocuments(LocalDate today, int limit) {
+        return adminDocumentRepo
+                .findByExpiryDateGreaterThanEqualOrderByExpiryDateAsc(today, PageRequest.of(0, limit))
+                .stream()
+                .map(d -> new AdminDocumentRow(d.getId(),
+                        d.getType() != null ? d.getType().getName() : null,
+                        d.getDocumentNumber(),
+                        fullName(d.getResponsible()),
+                        d.getExpiryDate()))
                 .toList();
     }
-    
+
     /** Latest expense reports waiting for approval. */
-    public List<com.veely.entity.ExpenseReport> getPendingExpenseReports(int limit) {
+    public List<PendingReportRow> getPendingExpenseReports(int limit) {
         return expenseReportRepo
                 .findTop5ByExpenseStatusOrderByReportSubmitDateDesc(ExpenseStatus.Submitted)
                 .stream()
                 .limit(limit)
+                .map(r -> new PendingReportRow(r.getId(),
+                        r.getExpenseReportNum(),
+                        fullName(r.getEmployee()),
+                        r.getReportSubmitDate(),
+                        r.getExpenseReportTotal()))
                 .toList();
     }
 
     /** Upcoming project insurance policies ordered by expiry date */
-    public List<com.veely.entity.Insurance> getExpiringPolicies(int limit) {
-        java.time.LocalDate today = java.time.LocalDate.now();
-        return insuranceRepository.findAll(Sort.by(Sort.Direction.ASC, "expiryDate"))
+    public List<PolicyRow> getExpiringPolicies(LocalDate today, int limit) {
+        return insuranceRepository
+                .findByExpiryDateGreaterThanEqualOrderByExpiryDateAsc(today, PageRequest.of(0, limit))
                 .stream()
-                .filter(p -> p.getExpiryDate() != null && !p.getExpiryDate().isBefore(today))
-                .limit(limit)
+                .map(p -> new PolicyRow(p.getId(),
+                        p.getProject() != null ? p.getProject().getName() : null,
+                        p.getProject() != null ? p.getProject().getCode() : null,
+                        p.getPolicyType(),
+                        p.getPolicyNumber(),
+                        p.getExpiryDate()))
                 .toList();
     }
 
-    
+    private static String fullName(Employee e) {
+        return e != null ? e.getFirstName() + " " + e.getLastName() : null;
+    }
+
+
     public record MonthAmount(String month, BigDecimal total) {}
 
     public record DashboardMetrics(long vehicles,
@@ -0,0 +1,106 @@
+package com.veely.service;
+
+import com.veely.dto.dashboard.DashboardSnapshot;
+import com.veely.model.DashboardSection;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mantiene in memoria lo snapshot della dashboard di benvenuto.
+ * <p>
+ * Le modifiche alle entità rilevanti (vedi {@link com.veely.entity.listener.DashboardChangeListener})
+ * marcano come "sporche" solo le sezioni interessate, dopo il commit della
+ * transazione; alla richiesta successiva vengono ricalcolate soltanto quelle
+ * e viene pubblicata una nuova versione immutabile. Il cambio di giorno o il
+ * superamento di {@code veely.dashboard.snapshot.max-age} forzano un ricalcolo completo.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardSnapshotService {
+
+    private final DashboardService dashboardService;
+
+    @Value("${veely.dashboard.snapshot.max-age:PT15M}")
+    private Duration maxAge = Duration.ofMinutes(15);
+
+    private final Set<DashboardSection> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong versions = new AtomicLong();
+    private volatile DashboardSnapshot snapshot;
+    private volatile Instant lastFullRefresh = Instant.EPOCH;
+
+    /** Evento pubblicato quando cambiano i dati di una o più sezioni. */
+    public record SectionsChanged(Set<DashboardSection> sections) {}
+
+    /**
+     * Restituisce lo snapshot corrente, ricalcolando prima le sezioni
+     * invalidate. Se nulla è cambiato non viene eseguita alcuna query.
+     */
+    public DashboardSnapshot current() {
+        DashboardSnapshot current = snapshot;
+        if (current != null && dirty.isEmpty() && isFresh(current)) {
+            return current;
+        }
+        return refresh();
+    }
+
+    /** Marca come da ricalcolare le sezioni indicate. */
+    public void invalidate(Set<DashboardSection> sections) {
+        dirty.addAll(sections);
+    }
+
+    /** Scarta lo snapshot corrente: la prossima lettura lo ricostruisce da zero. */
+    public void invalidateAll() {
+        dirty.addAll(EnumSet.allOf(DashboardSection.class));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSectionsChanged(SectionsChanged event) {
+        invalidate(event.sections());
+    }
+
+    private synchronized DashboardSnapshot refresh() {
+        DashboardSnapshot previous = snapshot;
+        if (previous != null && dirty.isEmpty() && isFresh(previous)) {
+            return previous; // già aggiornato da un altro thread
+        }
+        boolean full = previous == null || !isFresh(previous);
+
+        // Le sezioni vengono rimosse prima del caricamento: una modifica
+        // che arriva durante il ricalcolo le rimarca e non va persa.
+        Set<DashboardSection> sections = EnumSet.noneOf(DashboardSection.class);
+        for (DashboardSection section : DashboardSection.values()) {
+            if (dirty.remove(section) || full) {
+                sections.add(section);
+            }
+        }
+
+        long start = System.nanoTime();
+        DashboardSnapshot next = dashboardService.buildSnapshot(full ? null : previous,
+                sections, versions.incrementAndGet());
+        snapshot = next;
+        if (full) {
+            lastFullRefresh = next.builtAt();
+        }
+        log.debug("Snapshot dashboard v{} ricalcolato ({}) in {} ms", next.version(),
+                full ? "completo" : sections, (System.nanoTime() - start) / 1_000_000);
+        return next;
+    }
+
+    private boolean isFresh(DashboardSnapshot s) {
+        return s.referenceDate().equals(LocalDate.now())
+                && lastFullRefresh.plus(maxAge).isAfter(Instant.now());
+    }
+}
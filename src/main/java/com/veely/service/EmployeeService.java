@@ -12,6 +12,7 @@ import com.veely.repository.DocumentRepository;
 import com.veely.repository.EmployeeRepository;
 import com.veely.repository.FuelCardRepository;
 import com.veely.repository.ComplianceItemRepository;
+import com.veely.service.storage.FileDeletionOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,6 +30,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Servizio per la gestione CRUD di Employee, ricerca/filtro/paginazione,
@@ -43,6 +45,7 @@ public class EmployeeService {
     private final EmployeeRepository employeeRepo;
     private final DocumentRepository documentRepo;
     private final FileSystemStorageService fileStorage;
+    private final FileDeletionOutbox fileDeletions;
     private final PasswordEncoder passwordEncoder;
     private final PdfEmployeeService pdfEmployeeService;
     private final ComplianceItemRepository complianceItemRepo;
@@ -143,12 +146,12 @@ public class EmployeeService {
     }
     
     /**
-     * Esporta l'elenco dei dipendenti in formato PDF.
+     * Esporta l'elenco dei dipendenti in formato PDF, leggendo le righe in
+     * streaming e scrivendo il documento direttamente su {@code out}.
      */
     @Transactional(readOnly = true)
-    public byte[] exportStyledPdf() throws IOException {
-        List<Employee> employees = employeeRepo.findAll();
-        return pdfEmployeeService.exportStyledPdf(employees);
+    public void exportStyledPdf(OutputStream out) throws IOException {
+        pdfEmployeeService.writeStyledPdf(employeeRepo.streamForExport(), out);
     }
 
     /** Restituisce i dipendenti senza un rapporto di lavoro attivo */
@@ -222,13 +225,12 @@ public class EmployeeService {
         });
         documentRepo.deleteAll(docs);*/
         
-        docs.forEach(doc -> fileStorage.delete(doc.getPath()));
+        docs.forEach(doc -> fileDeletions.delete(doc.getPath()));
         documentRepo.deleteAll(docs);
         e.getPersonalDocuments().clear();
         
-        e.getPersonalDocuments().forEach(doc -> fileStorage.delete(doc.getPath()));
-        // Rimuovo directory fisica
-        fileStorage.deleteDirectory("employees/" + id + "/docs");
+        // Rimuovo directory fisica dopo il commit
+        fileDeletions.deleteDirectory("employees/" + id + "/docs");
      // Rimuovo eventuali note spese associate
         List<ExpenseReport> reports = expenseReportService.findByEmployeeId(id);
         reports.forEach(r -> expenseReportService.delete(r.getId()));        
@@ -1,5 +1,6 @@
 package com.veely.service;
 
+import com.veely.dto.employee.EmploymentExportRow;
 import com.veely.entity.Employment;
 import com.veely.entity.EmploymentWorkplace;
 import com.veely.entity.Project;
@@ -11,6 +12,7 @@ import com.veely.repository.DocumentRepository;
 import com.veely.repository.EmployeeRepository;
 import com.veely.repository.EmploymentRepository;
 import com.veely.repository.ProjectRepository;
+import com.veely.service.storage.FileDeletionOutbox;
 import com.lowagie.text.PageSize;
 import com.lowagie.text.FontFactory;
 import com.lowagie.text.Element;
@@ -33,8 +35,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import java.awt.Color;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -54,6 +58,7 @@ public class EmploymentService {
     private final EmploymentRepository employmentRepo;
     private final DocumentRepository documentRepo;
     private final FileSystemStorageService fileStorage;
+    private final FileDeletionOutbox fileDeletions;
     private final EmployeeService employeeService;
     private final EmployeeRepository employeeRepo;
     private final PdfEmploymentService pdfEmploymentService;
@@ -61,7 +66,7 @@ public class EmploymentService {
     
     
     /** Aggiorna lo stato dei rapporti di lavoro scaduti. */
-    private void autoTerminateExpired() {
+    public void autoTerminateExpired() {
         employmentRepo.markExpiredAsTerminated(LocalDate.now(), EmploymentStatus.TERMINATED);
     }
 
@@ -285,17 +290,11 @@ public class EmploymentService {
         Employment e = findByIdOrThrow(id);
         // Elimina documenti contrattuali associati
         List<Document> docs = documentRepo.findByEmploymentId(id);
-        docs.forEach(doc -> {
-            String fullPath = doc.getPath();
-            int sep = fullPath.lastIndexOf('/');
-            String subDir = sep > 0 ? fullPath.substring(0, sep) : "";
-            String filename = sep > 0 ? fullPath.substring(sep + 1) : fullPath;
-            fileStorage.delete(filename, subDir);
-        });
+        docs.forEach(doc -> fileDeletions.delete(doc.getPath()));
         documentRepo.deleteAll(docs);
-        // Rimuove directory fisica
+        // Rimuove directory fisica dopo il commit
         //fileStorage.deleteDirectory("employments/" + id + "/docs");
-        fileStorage.deleteDirectory("employments/" + e.getMatricola() + "/docs");
+        fileDeletions.deleteDirectory("employments/" + e.getMatricola() + "/docs");
         // Cancella il rapporto di lavoro
         employmentRepo.delete(e);
     }
@@ -322,12 +321,23 @@ public class EmploymentService {
     
     /**
      * Esporta l'elenco dei rapporti di lavoro in formato PDF con design SINGOL.
-     * Delega la generazione PDF al service dedicato.
-     * 
-     * @return array di byte contenente il documento PDF
+     * Delega la generazione PDF al service dedicato, che legge i rapporti in
+     * streaming e scrive il documento direttamente su {@code out}.
+     * Va invocato in una transazione.
      */
-    public byte[] exportStyledPdf(String keyword, EmploymentStatus status, Long projectId) throws IOException {
-        List<Employment> employments = search(keyword, status, projectId);
-        return pdfEmploymentService.exportStyledPdf(employments);
+    public void exportStyledPdf(String keyword, EmploymentStatus status, Long projectId, OutputStream out)
+            throws IOException {
+        pdfEmploymentService.writeStyledPdf(streamForExport(keyword, status, projectId), true, out);
+    }
+
+    /**
+     * Rapporti di lavoro con gli stessi filtri di {@link #search}, con la commessa attuale,
+     * in streaming per gli export. Va invocato in una transazione e lo stream va chiuso dal chiamante.
+     */
+    @Transactional(readOnly = true)
+    public Stream<EmploymentExportRow> streamForExport(String keyword, EmploymentStatus status, Long projectId) {
+        String kw = (keyword == null || keyword.isBlank()) ? null : keyword.trim();
+        return employmentRepo.streamByFilters(kw, status, projectId, LocalDate.now())
+                .map(row -> new EmploymentExportRow((Employment) row[0], (String) row[1]));
     }
 }
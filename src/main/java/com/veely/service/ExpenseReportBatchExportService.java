@@ -0,0 +1,323 @@
+package com.veely.service;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.dto.expense.ExpenseBatchExportProgress;
+import com.veely.exception.ResourceNotFoundException;
+import com.veely.model.DispatchJobStatus;
+import com.veely.model.ExpenseStatus;
+import com.veely.repository.ExpenseReportRepository;
+import com.veely.service.attachment.DocumentArchiveService.EntryNames;
+import com.veely.service.pdf.PdfBrandingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export massivo in PDF delle note spese (es. chiusura contabile del mese).
+ * <p>
+ * La richiesta fissa l'elenco delle note spese che corrispondono al filtro e
+ * torna subito; il job viene elaborato in background, uno alla volta. I PDF
+ * sono generati in parallelo su {@code workers} thread (il lavoro è di CPU)
+ * con i dati aziendali già in memoria di {@link PdfBrandingService}, e scritti
+ * in un unico ZIP su disco da un solo thread man mano che sono pronti: in
+ * memoria restano al massimo due PDF per worker.
+ * <p>
+ * I job vivono in memoria: lo ZIP resta scaricabile per {@code retention} dalla
+ * fine del job, poi viene cancellato. Un riavvio interrompe i job in corso.
+ */
+@Slf4j
+@Service
+public class ExpenseReportBatchExportService {
+
+    /** Voce con l'elenco delle note spese non esportate. */
+    static final String ERRORS_ENTRY = "ERRORI.txt";
+
+    /** Messaggi di errore trattenuti in memoria per ciascun job. */
+    private static final int MAX_MESSAGES = 50;
+
+    /** Filtro delle note spese da esportare; i campi nulli non filtrano. */
+    public record Filter(LocalDate from, LocalDate to, ExpenseStatus status, Long employeeId, Long projectId) {
+
+        /** Parte del nome del file ZIP che descrive il periodo. */
+        String periodLabel() {
+            if (from == null && to == null) {
+                return "tutte";
+            }
+            return (from != null ? from.toString() : "inizio") + "_" + (to != null ? to.toString() : "oggi");
+        }
+    }
+
+    /** Nota spese da esportare, con i dati per il nome della voce nello ZIP. */
+    record Item(Long id, String number, String lastName, String firstName) {
+
+        String entryName() {
+            String reference = number != null && !number.isBlank() ? number.trim() : String.valueOf(id);
+            return (lastName != null ? lastName : "") + "_" + (firstName != null ? firstName : "") + "_" + reference;
+        }
+    }
+
+    private static final class Job {
+        final String id;
+        final Filter filter;
+        final String createdBy;
+        final List<Item> items;
+        final Deque<String> messages = new ArrayDeque<>();
+        volatile DispatchJobStatus status = DispatchJobStatus.QUEUED;
+        volatile int rendered;
+        volatile int failed;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+        volatile Path file;
+
+        Job(String id, Filter filter, String createdBy, List<Item> items) {
+            this.id = id;
+            this.filter = filter;
+            this.createdBy = createdBy;
+            this.items = items;
+        }
+    }
+
+    private final ExpenseReportRepository reportRepo;
+    private final ExpenseReportService reportService;
+    private final PdfBrandingService brandingService;
+    private final Path directory;
+    private final int workers;
+    private final int maxReports;
+    private final Duration retention;
+
+    private final TaskExecutor coordinator;
+    private final TaskExecutor renderers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public ExpenseReportBatchExportService(ExpenseReportRepository reportRepo,
+                                           ExpenseReportService reportService,
+                                           PdfBrandingService brandingService,
+                                           @Value("${veely.expenses.batch-export.dir:exports/expense-reports}") String directory,
+                                           @Value("${veely.expenses.batch-export.workers:2}") int workers,
+                                           @Value("${veely.expenses.batch-export.max-reports:2000}") int maxReports,
+                                           @Value("${veely.expenses.batch-export.retention:PT2H}") Duration retention,
+                                           @Qualifier(ExecutorConfig.EXPENSE_EXPORT) TaskExecutor coordinator,
+                                           @Qualifier(ExecutorConfig.EXPENSE_EXPORT_RENDERERS) TaskExecutor renderers) {
+        this.reportRepo = reportRepo;
+        this.reportService = reportService;
+        this.brandingService = brandingService;
+        this.directory = Paths.get(directory);
+        this.workers = Math.max(1, workers);
+        this.maxReports = maxReports;
+        this.retention = retention;
+        this.coordinator = coordinator;
+        this.renderers = renderers;
+    }
+
+    /**
+     * Registra un export per le note spese che corrispondono al filtro e lo
+     * accoda; restituisce l'identificativo del job.
+     */
+    @Transactional(readOnly = true)
+    public String submit(Filter filter, String createdBy) {
+        if (filter.from() != null && filter.to() != null && filter.from().isAfter(filter.to())) {
+            throw new IllegalArgumentException("La data di inizio è successiva alla data di fine");
+        }
+        List<Item> items = reportRepo.findBatchExportEntries(filter.from(), filter.to(), filter.status(),
+                        filter.employeeId(), filter.projectId()).stream()
+                .map(row -> new Item((Long) row[0], (String) row[1], (String) row[2], (String) row[3]))
+                .toList();
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Nessuna nota spese corrisponde ai filtri selezionati");
+        }
+        if (items.size() > maxReports) {
+            throw new IllegalArgumentException("Troppe note spese da esportare (" + items.size()
+                    + ", massimo " + maxReports + "): restringere il periodo o i filtri");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), filter, createdBy, items);
+        jobs.put(job.id, job);
+        coordinator.execute(() -> run(job));
+        log.info("Export PDF note spese {} registrato da {}: {} note spese", job.id, createdBy, items.size());
+        return job.id;
+    }
+
+    public ExpenseBatchExportProgress getProgress(String jobId) {
+        Job job = find(jobId);
+        List<String> recent;
+        synchronized (job.messages) {
+            recent = List.copyOf(job.messages);
+        }
+        int requested = job.items.size();
+        int processed = job.rendered + job.failed;
+        int percent = requested == 0 ? 100 : Math.min(100, processed * 100 / requested);
+        return new ExpenseBatchExportProgress(job.id, job.status, job.status.getLabel(), requested,
+                job.rendered, job.failed, percent, job.status.isFinished(),
+                job.status == DispatchJobStatus.COMPLETED && job.file != null,
+                job.startedAt, job.finishedAt, job.error, recent);
+    }
+
+    /** ZIP di un job completato. */
+    public Resource getArchive(String jobId) {
+        Job job = find(jobId);
+        if (job.status != DispatchJobStatus.COMPLETED || job.file == null || !Files.exists(job.file)) {
+            throw new ResourceNotFoundException("Archivio non disponibile per l'export " + jobId);
+        }
+        return new FileSystemResource(job.file);
+    }
+
+    /** Cancella gli archivi dei job terminati da più di {@code retention}. */
+    @Scheduled(fixedDelayString = "${veely.expenses.batch-export.cleanup-interval:PT10M}")
+    public void purgeExpired() {
+        LocalDateTime limit = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(limit)) {
+                return false;
+            }
+            deleteJobDirectory(job);
+            return true;
+        });
+    }
+
+    private Job find(String jobId) {
+        Job job = jobId != null ? jobs.get(jobId) : null;
+        if (job == null) {
+            throw new ResourceNotFoundException("Export non trovato: " + jobId);
+        }
+        return job;
+    }
+
+    void run(Job job) {
+        job.status = DispatchJobStatus.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        // logo e watermark vengono decodificati una volta sola, prima di distribuire il lavoro
+        brandingService.current();
+
+        Path jobDirectory = directory.resolve(job.id);
+        Path target = jobDirectory.resolve("note_spese_" + job.filter.periodLabel() + ".zip");
+        Path partial = jobDirectory.resolve(target.getFileName() + ".part");
+        try {
+            Files.createDirectories(jobDirectory);
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                write(job, out);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.file = target;
+            job.status = DispatchJobStatus.COMPLETED;
+            log.info("Export PDF note spese {} completato: {} PDF, {} errori", job.id, job.rendered, job.failed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, "Export interrotto");
+        } catch (IOException | RuntimeException e) {
+            log.error("Export PDF note spese {} interrotto", job.id, e);
+            fail(job, e.getMessage());
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Genera i PDF sui worker e li scrive nello ZIP nell'ordine in cui sono
+     * pronti; ne tiene in volo al più due per worker.
+     */
+    void write(Job job, OutputStream out) throws IOException, InterruptedException {
+        CompletionService<byte[]> completion = new ExecutorCompletionService<>(renderers);
+        Map<Future<byte[]>, Item> pending = new HashMap<>();
+        EntryNames names = new EntryNames();
+        List<String> errors = new ArrayList<>();
+        int maxInFlight = workers * 2;
+        int next = 0;
+
+        try (ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8)) {
+            zip.setLevel(Deflater.BEST_SPEED);
+            while (next < job.items.size() || !pending.isEmpty()) {
+                while (next < job.items.size() && pending.size() < maxInFlight) {
+                    Item item = job.items.get(next++);
+                    pending.put(completion.submit(() -> render(item.id())), item);
+                }
+                Future<byte[]> done = completion.take();
+                Item item = pending.remove(done);
+                try {
+                    byte[] pdf = done.get();
+                    zip.putNextEntry(new ZipEntry(names.next(item.entryName(), ".pdf")));
+                    zip.write(pdf);
+                    zip.closeEntry();
+                    job.rendered++;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    log.warn("PDF della nota spese {} non generato: {}", item.id(), cause.getMessage());
+                    String message = "Nota spese " + item.entryName() + ": " + cause.getMessage();
+                    errors.add(message);
+                    addMessage(job, message);
+                    job.failed++;
+                }
+            }
+            if (!errors.isEmpty()) {
+                zip.putNextEntry(new ZipEntry(ERRORS_ENTRY));
+                zip.write(("Note spese non esportate:\n" + String.join("\n", errors) + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        } finally {
+            pending.keySet().forEach(future -> future.cancel(true));
+        }
+    }
+
+    private byte[] render(Long reportId) throws IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream(64 * 1024);
+        reportService.exportPdf(reportId, pdf);
+        return pdf.toByteArray();
+    }
+
+    private void fail(Job job, String error) {
+        job.error = error;
+        job.status = DispatchJobStatus.FAILED;
+        deleteJobDirectory(job);
+    }
+
+    private void addMessage(Job job, String message) {
+        synchronized (job.messages) {
+            if (job.messages.size() == MAX_MESSAGES) {
+                job.messages.removeFirst();
+            }
+            job.messages.addLast(message);
+        }
+    }
+
+    private void deleteJobDirectory(Job job) {
+        try {
+            FileSystemUtils.deleteRecursively(directory.resolve(job.id));
+        } catch (IOException e) {
+            log.warn("Impossibile cancellare i file dell'export {}: {}", job.id, e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.veely.service;
 
-import com.veely.entity.CompanyInfo;
 import com.veely.entity.ExpenseItem;
 import com.veely.entity.ExpenseReport;
 import com.veely.exception.ResourceNotFoundException;
@@ -9,9 +8,13 @@ import com.veely.repository.EmployeeRepository;
 import com.veely.repository.ExpenseItemRepository;
 import com.veely.repository.ExpenseReportRepository;
 import com.veely.repository.ProjectRepository;
+import com.veely.service.pdf.PdfBranding;
+import com.veely.service.pdf.PdfBrandingService;
+import com.veely.service.pdf.PdfLayout;
+import com.veely.service.pdf.PdfStyles;
+import com.veely.service.pdf.RenderedPdfCache;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.PdfPTable;
-import com.lowagie.text.pdf.PdfWriter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,14 +23,13 @@ import lombok.extern.slf4j.Slf4j;
 import java.awt.Color;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.OutputStream;
 
 
 @Slf4j
@@ -36,12 +38,16 @@ import java.nio.file.Paths;
 @Transactional
 public class ExpenseReportService {
 
+    /** Area dei PDF delle note spese in {@link RenderedPdfCache}. */
+    public static final String PDF_CACHE_AREA = "expense-reports";
+
     private final ExpenseReportRepository reportRepo;
     private final ExpenseItemRepository itemRepo;
     private final EmployeeRepository employeeRepo;
     private final ProjectRepository projectRepo;
     private final DocumentService documentService;
-    private final CompanyInfoService companyInfoService; // Aggiungi questa dipendenza
+    private final PdfBrandingService brandingService;
+    private final RenderedPdfCache pdfCache;
 
 
     public ExpenseReport create(ExpenseReport report, List<ExpenseItem> items) {
@@ -116,6 +122,7 @@ public class ExpenseReportService {
             documentService.deleteExpenseItemDocuments(toRemove.getId());
             itemRepo.delete(toRemove);
         }
+        pdfCache.invalidate(PDF_CACHE_AREA, id);
         return existing;
     }
 
@@ -155,6 +162,7 @@ public class ExpenseReportService {
         }
         itemRepo.deleteAll(items);
         reportRepo.delete(r);
+        pdfCache.invalidate(PDF_CACHE_AREA, id);
         renumberExpenseReports(removedNumber);
     }
     
@@ -177,6 +185,7 @@ public class ExpenseReportService {
             r.setExpenseStatus(ExpenseStatus.Approved);
             r.setFinalApprovalDate(LocalDate.now());
         }
+        pdfCache.invalidate(PDF_CACHE_AREA, id);
         return reportRepo.save(r);
     }
     
@@ -252,206 +261,96 @@ public class ExpenseReportService {
      * @throws IOException 
      */
     /**
-     * Genera la versione PDF di una singola nota spese con logo, watermark e branding aziendale.
+     * Genera la versione PDF di una singola nota spese con logo, watermark e
+     * branding aziendale, scrivendola direttamente su {@code out}.
+     * <p>
+     * Il PDF viene riusato da {@link RenderedPdfCache} finché non cambiano
+     * i dati stampati o quelli aziendali.
      */
     @Transactional(readOnly = true)
-    public byte[] exportPdf(Long id) throws IOException {
+    public void exportPdf(Long id, OutputStream out) throws IOException {
         ExpenseReport report = findByIdOrThrow(id);
         List<ExpenseItem> items = findItems(id);
         
-        // Ottieni le informazioni aziendali
-        Optional<CompanyInfo> companyInfoOpt = companyInfoService.getPrimaryCompanyInfoOptional();
-        CompanyInfo companyInfo = companyInfoOpt.orElse(null);
+        // Dati aziendali già pronti (logo e watermark decodificati una sola volta)
+        PdfBranding branding = brandingService.current();
 
-        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
-        Document pdfDoc = new Document(PageSize.A4, 30, 30, 35, 35);
-        
-        try {
-            PdfWriter writer = PdfWriter.getInstance(pdfDoc, out);
-            pdfDoc.open();
+        RenderedPdfCache.Key key = RenderedPdfCache.Key.of(PDF_CACHE_AREA, id, pdfFingerprint(report, items, branding));
+        pdfCache.write(key, out, pdf -> renderPdf(report, items, branding, pdf));
+    }
 
-            // === WATERMARK DI SFONDO ===
-            addWatermarkIfEnabled(writer, companyInfo);
+    /**
+     * Impronta di tutto ciò che viene stampato nel PDF; stato e data di
+     * approvazione sono inclusi anche se oggi non compaiono nel documento.
+     */
+    private static String pdfFingerprint(ExpenseReport report, List<ExpenseItem> items, PdfBranding branding) {
+        List<Object> parts = new ArrayList<>();
+        parts.add(branding.fingerprint());
+        parts.add(report.getExpenseReportNum());
+        parts.add(report.getCreationDate());
+        parts.add(report.getPuorpose());
+        parts.add(report.getStartDate());
+        parts.add(report.getEndDate());
+        parts.add(report.getExpenseReportTotal());
+        parts.add(report.getReimbursableTotal());
+        parts.add(report.getNonReimbursableTotal());
+        parts.add(report.getPaymentMethodCode());
+        parts.add(report.getExpenseStatus());
+        parts.add(report.getFinalApprovalDate());
+        parts.add(report.getEmployee() != null ? report.getEmployee().getFirstName() : null);
+        parts.add(report.getEmployee() != null ? report.getEmployee().getLastName() : null);
+        for (ExpenseItem item : items) {
+            parts.add(item.getId());
+            parts.add(item.getDate());
+            parts.add(item.getDescription());
+            parts.add(item.getSupplier() != null ? item.getSupplier().getName() : null);
+            parts.add(item.getNote());
+            parts.add(item.getAmount());
+        }
+        return RenderedPdfCache.fingerprint(parts.toArray());
+    }
 
-            // === HEADER SEMPLIFICATO: LOGO + RAGIONE SOCIALE ===
-            addCompanyHeader(pdfDoc, companyInfo);
+    private void renderPdf(ExpenseReport report, List<ExpenseItem> items, PdfBranding branding, OutputStream out) {
+        try {
+            // === WATERMARK DI SFONDO E PIÈ DI PAGINA AZIENDALE ===
+            Document pdfDoc = PdfLayout.open(out, PageSize.A4, 30, 35, branding, true);
 
-            // === LINEA SEPARATRICE ===
-            addSeparatorLine(pdfDoc, companyInfo);
+            // === HEADER SEMPLIFICATO: LOGO + RAGIONE SOCIALE ===
+            PdfLayout.addLogoHeader(pdfDoc, branding);
 
             // === TITOLO DOCUMENTO ===
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, Color.decode("#333333"));
+            Font titleFont = PdfStyles.bold(18, PdfStyles.TEXT);
             Paragraph title = new Paragraph("NOTA SPESE", titleFont);
             title.setAlignment(Element.ALIGN_CENTER);
             title.setSpacingAfter(20f);
             pdfDoc.add(title);
 
             // === INFORMAZIONI PRINCIPALI ===
-            addReportInformation(pdfDoc, report, companyInfo);
+            addReportInformation(pdfDoc, report, branding);
 
             // === DETTAGLIO SPESE ===
-            addExpenseDetails(pdfDoc, items, companyInfo);
+            addExpenseDetails(pdfDoc, items, branding);
 
             // === RIEPILOGO TOTALI ===
-            addExpenseSummary(pdfDoc, report, companyInfo);
+            addExpenseSummary(pdfDoc, report, branding);
 
-            // === FOOTER AZIENDALE CON TUTTE LE INFORMAZIONI ===
-            addCompanyFooter(pdfDoc, report, companyInfo);
+            // === FIRME ===
+            addSignatures(pdfDoc, report, branding);
 
             pdfDoc.close();
         } catch (DocumentException e) {
             throw new RuntimeException("Errore nella creazione del PDF", e);
         }
-
-        return out.toByteArray();
-    }
-
-    /**
-     * Aggiunge il watermark di sfondo se abilitato
-     */
-    private void addWatermarkIfEnabled(PdfWriter writer, CompanyInfo companyInfo) {
-        if (companyInfo == null || !Boolean.TRUE.equals(companyInfo.getShowLogoInDocuments()) 
-            || companyInfo.getWatermarkPath() == null) {
-            return;
-        }
-
-        try {
-            // Prova diversi percorsi per il watermark
-            String watermarkPath = findFilePath(companyInfo.getWatermarkPath());
-            if (watermarkPath == null) {
-                log.warn("Watermark non trovato per il path: {}", companyInfo.getWatermarkPath());
-                return;
-            }
-
-            Image watermark = Image.getInstance(watermarkPath);
-            
-            // Posiziona il watermark al centro della pagina con trasparenza
-            float pageWidth = PageSize.A4.getWidth();
-            float pageHeight = PageSize.A4.getHeight();
-            
-            // Scala il watermark mantenendo le proporzioni
-            watermark.scaleToFit(pageWidth * 0.6f, pageHeight * 0.6f);
-            
-            // Centra il watermark
-            watermark.setAbsolutePosition(
-                (pageWidth - watermark.getScaledWidth()) / 2,
-                (pageHeight - watermark.getScaledHeight()) / 2
-            );
-            
-            // Imposta trasparenza del 70%
-            com.lowagie.text.pdf.PdfGState gState = new com.lowagie.text.pdf.PdfGState();
-            gState.setFillOpacity(0.3f); // 30% opacità = 70% trasparenza
-            
-            com.lowagie.text.pdf.PdfContentByte canvas = writer.getDirectContentUnder();
-            canvas.saveState();
-            canvas.setGState(gState);
-            canvas.addImage(watermark);
-            canvas.restoreState();
-            
-            log.info("Watermark aggiunto con successo");
-            
-        } catch (Exception e) {
-            log.error("Errore nell'aggiunta del watermark: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Aggiunge l'header con logo e ragione sociale
-     */
-    private void addCompanyHeader(Document pdfDoc, CompanyInfo companyInfo) throws DocumentException {
-        PdfPTable headerTable = new PdfPTable(2);
-        headerTable.setWidthPercentage(100f);
-        headerTable.setWidths(new float[]{1f, 3f});
-        headerTable.setSpacingAfter(15f);
-        
-        // === LOGO (colonna sinistra) ===
-        com.lowagie.text.pdf.PdfPCell logoCell = new com.lowagie.text.pdf.PdfPCell();
-        logoCell.setBorder(Rectangle.NO_BORDER);
-        logoCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        
-        if (companyInfo != null && Boolean.TRUE.equals(companyInfo.getShowLogoInDocuments()) 
-            && companyInfo.hasLogo()) {
-            try {
-                String logoPath = findFilePath(companyInfo.getLogoPath());
-                if (logoPath != null) {
-                    Image logo = Image.getInstance(logoPath);
-                    logo.scaleToFit(120f, 80f); // Logo più grande nell'header
-                    logoCell.addElement(logo);
-                    log.info("Logo aziendale aggiunto nell'header");
-                } else {
-                    log.warn("Logo non trovato per il path: {}", companyInfo.getLogoPath());
-                    logoCell.addElement(new Paragraph("")); // Cella vuota
-                }
-            } catch (Exception e) {
-                log.error("Errore nel caricamento del logo: {}", e.getMessage());
-                logoCell.addElement(new Paragraph("")); // Cella vuota in caso di errore
-            }
-        } else {
-            logoCell.addElement(new Paragraph("")); // Cella vuota se logo disabilitato
-        }
-        
-        headerTable.addCell(logoCell);
-        
-        // === RAGIONE SOCIALE (colonna destra) ===
-        Font companyNameFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 24,
-            companyInfo != null && companyInfo.getPrimaryColor() != null ? 
-            Color.decode(companyInfo.getPrimaryColor()) : Color.decode("#667eea"));
-        Font subtitleFont = FontFactory.getFont(FontFactory.HELVETICA, 12, Color.GRAY);
-        
-        Paragraph companyNamePara = new Paragraph();
-        
-        if (companyInfo != null) {
-            // Nome azienda principale
-            companyNamePara.add(new Chunk(companyInfo.getDisplayName(), companyNameFont));
-            companyNamePara.add(Chunk.NEWLINE);
-            
-            // Descrizione business se presente
-            if (companyInfo.getBusinessDescription() != null && 
-                !companyInfo.getBusinessDescription().trim().isEmpty()) {
-                companyNamePara.add(new Chunk(companyInfo.getBusinessDescription(), subtitleFont));
-            }
-        } else {
-            // Fallback
-            companyNamePara.add(new Chunk("VEELY", companyNameFont));
-            companyNamePara.add(Chunk.NEWLINE);
-            companyNamePara.add(new Chunk("Fleet Management System", subtitleFont));
-        }
-        
-        com.lowagie.text.pdf.PdfPCell companyCell = new com.lowagie.text.pdf.PdfPCell(companyNamePara);
-        companyCell.setBorder(Rectangle.NO_BORDER);
-        companyCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        companyCell.setHorizontalAlignment(Element.ALIGN_LEFT);
-        headerTable.addCell(companyCell);
-        
-        pdfDoc.add(headerTable);
-    }
-
-    /**
-     * Aggiunge la linea separatrice colorata
-     */
-    private void addSeparatorLine(Document pdfDoc, CompanyInfo companyInfo) throws DocumentException {
-        com.lowagie.text.pdf.PdfPTable line = new com.lowagie.text.pdf.PdfPTable(1);
-        line.setWidthPercentage(100f);
-        com.lowagie.text.pdf.PdfPCell lineCell = new com.lowagie.text.pdf.PdfPCell();
-        lineCell.setBackgroundColor(companyInfo != null && companyInfo.getPrimaryColor() != null ? 
-            Color.decode(companyInfo.getPrimaryColor()) : Color.decode("#667eea"));
-        lineCell.setFixedHeight(3f);
-        lineCell.setBorder(Rectangle.NO_BORDER);
-        line.addCell(lineCell);
-        line.setSpacingAfter(20f);
-        pdfDoc.add(line);
     }
 
     /**
      * Aggiunge le informazioni principali del report
      */
-    private void addReportInformation(Document pdfDoc, ExpenseReport report, CompanyInfo companyInfo) 
+    private void addReportInformation(Document pdfDoc, ExpenseReport report, PdfBranding branding) 
             throws DocumentException {
-        Font sectionFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14,
-            companyInfo != null && companyInfo.getPrimaryColor() != null ? 
-            Color.decode(companyInfo.getPrimaryColor()) : Color.decode("#667eea"));
-        Font labelFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, Color.decode("#555555"));
-        Font valueFont = FontFactory.getFont(FontFactory.HELVETICA, 10, Color.decode("#333333"));
+        Font sectionFont = PdfStyles.bold(14, branding.primaryColor());
+        Font labelFont = PdfStyles.bold(10, PdfStyles.LABEL);
+        Font valueFont = PdfStyles.font(10, PdfStyles.TEXT);
 
         Paragraph sectionTitle = new Paragraph("INFORMAZIONI GENERALI", sectionFont);
         sectionTitle.setSpacingAfter(10f);
@@ -462,7 +361,7 @@ public class ExpenseReportService {
         infoTable.setWidths(new float[]{1f, 1.5f, 1f, 1.5f});
         infoTable.setSpacingAfter(20f);
 
-        Color headerBg = Color.decode("#f8f9fa");
+        Color headerBg = PdfStyles.LIGHT_GRAY;
         Color cellBg = Color.WHITE;
 
         // Riga 1: Dipendente e Numero
@@ -502,11 +401,9 @@ public class ExpenseReportService {
     /**
      * Aggiunge i dettagli delle spese
      */
-    private void addExpenseDetails(Document pdfDoc, List<ExpenseItem> items, CompanyInfo companyInfo) 
+    private void addExpenseDetails(Document pdfDoc, List<ExpenseItem> items, PdfBranding branding) 
             throws DocumentException {
-        Font sectionFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14,
-            companyInfo != null && companyInfo.getPrimaryColor() != null ? 
-            Color.decode(companyInfo.getPrimaryColor()) : Color.decode("#667eea"));
+        Font sectionFont = PdfStyles.bold(14, branding.primaryColor());
 
         Paragraph expenseTitle = new Paragraph("DETTAGLIO SPESE", sectionFont);
         expenseTitle.setSpacingAfter(10f);
@@ -517,9 +414,8 @@ public class ExpenseReportService {
         expenseTable.setWidths(new float[]{1f, 3f, 1.5f, 1.5f, 1.3f});
 
         // Header tabella
-        Font tableHeaderFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9, Color.WHITE);
-        Color tableHeaderBg = companyInfo != null && companyInfo.getPrimaryColor() != null ? 
-            Color.decode(companyInfo.getPrimaryColor()) : Color.decode("#667eea");
+        Font tableHeaderFont = PdfStyles.bold(9, Color.WHITE);
+        Color tableHeaderBg = branding.primaryColor();
 
         expenseTable.addCell(createStyledCell("DATA", tableHeaderFont, tableHeaderBg, true));
         expenseTable.addCell(createStyledCell("DESCRIZIONE", tableHeaderFont, tableHeaderBg, true));
@@ -528,8 +424,8 @@ public class ExpenseReportService {
         expenseTable.addCell(createStyledCell("IMPORTO (€)", tableHeaderFont, tableHeaderBg, true));
 
         // Righe dati
-        Font tableDataFont = FontFactory.getFont(FontFactory.HELVETICA, 8, Color.decode("#333333"));
-        Color alternateRowBg = Color.decode("#f8f9fa");
+        Font tableDataFont = PdfStyles.font(8, PdfStyles.TEXT);
+        Color alternateRowBg = PdfStyles.LIGHT_GRAY;
         
         for (int i = 0; i < items.size(); i++) {
             ExpenseItem item = items.get(i);
@@ -568,11 +464,9 @@ public class ExpenseReportService {
     /**
      * Aggiunge il riepilogo totali
      */
-    private void addExpenseSummary(Document pdfDoc, ExpenseReport report, CompanyInfo companyInfo) 
+    private void addExpenseSummary(Document pdfDoc, ExpenseReport report, PdfBranding branding) 
             throws DocumentException {
-        Font sectionFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14,
-            companyInfo != null && companyInfo.getPrimaryColor() != null ? 
-            Color.decode(companyInfo.getPrimaryColor()) : Color.decode("#667eea"));
+        Font sectionFont = PdfStyles.bold(14, branding.primaryColor());
 
         Paragraph summaryTitle = new Paragraph("RIEPILOGO TOTALI", sectionFont);
         summaryTitle.setSpacingAfter(10f);
@@ -583,9 +477,9 @@ public class ExpenseReportService {
         summaryTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
         summaryTable.setWidths(new float[]{2f, 1f});
 
-        Font summaryLabelFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.decode("#555555"));
-        Font summaryValueFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, Color.decode("#198754"));
-        Color headerBg = Color.decode("#f8f9fa");
+        Font summaryLabelFont = PdfStyles.bold(11, PdfStyles.LABEL);
+        Font summaryValueFont = PdfStyles.bold(11, PdfStyles.SUCCESS);
+        Color headerBg = PdfStyles.LIGHT_GRAY;
         Color cellBg = Color.WHITE;
 
         summaryTable.addCell(createStyledCell("Totale Nota Spese:", summaryLabelFont, headerBg, false));
@@ -613,9 +507,9 @@ public class ExpenseReportService {
     }
 
     /**
-     * Aggiunge il footer aziendale con tutte le informazioni
+     * Aggiunge lo spazio per le firme; i dati aziendali sono nel piè di pagina
      */
-    private void addCompanyFooter(Document pdfDoc, ExpenseReport report, CompanyInfo companyInfo) 
+    private void addSignatures(Document pdfDoc, ExpenseReport report, PdfBranding branding) 
             throws DocumentException {
         
         // Spazio per le firme
@@ -624,7 +518,7 @@ public class ExpenseReportService {
         signatureTable.setWidths(new float[]{1f, 1f});
         signatureTable.setSpacingAfter(20f);
 
-        Font signatureFont = FontFactory.getFont(FontFactory.HELVETICA, 9, Color.decode("#333333"));
+        Font signatureFont = PdfStyles.font(9, PdfStyles.TEXT);
         
         // Firma dipendente
         Paragraph employeeSignature = new Paragraph();
@@ -649,9 +543,9 @@ public class ExpenseReportService {
         managerSignature.add(Chunk.NEWLINE);
         managerSignature.add(Chunk.NEWLINE);
         managerSignature.add(new Chunk("_____________________", signatureFont));
-        if (companyInfo != null && companyInfo.getLegalRepresentative() != null) {
+        if (branding.legalRepresentative() != null) {
             managerSignature.add(Chunk.NEWLINE);
-            managerSignature.add(new Chunk(companyInfo.getLegalRepresentative(), signatureFont));
+            managerSignature.add(new Chunk(branding.legalRepresentative(), signatureFont));
         }
         
         com.lowagie.text.pdf.PdfPCell mgrCell = new com.lowagie.text.pdf.PdfPCell(managerSignature);
@@ -660,127 +554,6 @@ public class ExpenseReportService {
         signatureTable.addCell(mgrCell);
 
         pdfDoc.add(signatureTable);
-
-        // === FOOTER CON INFORMAZIONI AZIENDALI COMPLETE ===
-        if (companyInfo != null) {
-            addDetailedCompanyFooter(pdfDoc, companyInfo);
-        }
-    }
-
-    /**
-     * Aggiunge il footer dettagliato con tutte le informazioni aziendali
-     */
-    private void addDetailedCompanyFooter(Document pdfDoc, CompanyInfo companyInfo) throws DocumentException {
-        Font footerFont = FontFactory.getFont(FontFactory.HELVETICA, 8, Color.GRAY);
-        Font footerBoldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 8, Color.decode("#555555"));
-        
-        // Linea separatrice
-        com.lowagie.text.pdf.PdfPTable separatorLine = new com.lowagie.text.pdf.PdfPTable(1);
-        separatorLine.setWidthPercentage(100f);
-        com.lowagie.text.pdf.PdfPCell sepCell = new com.lowagie.text.pdf.PdfPCell();
-        sepCell.setBackgroundColor(Color.decode("#dee2e6"));
-        sepCell.setFixedHeight(1f);
-        sepCell.setBorder(Rectangle.NO_BORDER);
-        separatorLine.addCell(sepCell);
-        separatorLine.setSpacingAfter(10f);
-        pdfDoc.add(separatorLine);
-
-        PdfPTable footerTable = new PdfPTable(3);
-        footerTable.setWidthPercentage(100f);
-        footerTable.setWidths(new float[]{1f, 1f, 1f});
-
-        // === COLONNA 1: INDIRIZZO ===
-        Paragraph addressInfo = new Paragraph();
-        if (Boolean.TRUE.equals(companyInfo.getShowAddressInDocuments())) {
-            addressInfo.add(new Chunk("SEDE LEGALE", footerBoldFont));
-            addressInfo.add(Chunk.NEWLINE);
-            if (companyInfo.getFullLegalAddress() != null && !companyInfo.getFullLegalAddress().isEmpty()) {
-                addressInfo.add(new Chunk(companyInfo.getFullLegalAddress(), footerFont));
-            }
-        }
-        
-        com.lowagie.text.pdf.PdfPCell addressCell = new com.lowagie.text.pdf.PdfPCell(addressInfo);
-        addressCell.setBorder(Rectangle.NO_BORDER);
-        addressCell.setVerticalAlignment(Element.ALIGN_TOP);
-        footerTable.addCell(addressCell);
-
-        // === COLONNA 2: CONTATTI ===
-        Paragraph contactInfo = new Paragraph();
-        if (Boolean.TRUE.equals(companyInfo.getShowContactsInDocuments())) {
-            contactInfo.add(new Chunk("CONTATTI", footerBoldFont));
-            contactInfo.add(Chunk.NEWLINE);
-            if (companyInfo.getPrimaryPhone() != null) {
-                contactInfo.add(new Chunk("Tel: " + companyInfo.getPrimaryPhone(), footerFont));
-                contactInfo.add(Chunk.NEWLINE);
-            }
-            if (companyInfo.getPrimaryEmail() != null) {
-                contactInfo.add(new Chunk("Email: " + companyInfo.getPrimaryEmail(), footerFont));
-                contactInfo.add(Chunk.NEWLINE);
-            }
-            if (companyInfo.getPecEmail() != null) {
-                contactInfo.add(new Chunk("PEC: " + companyInfo.getPecEmail(), footerFont));
-                contactInfo.add(Chunk.NEWLINE);
-            }
-            if (companyInfo.getWebsite() != null) {
-                contactInfo.add(new Chunk("Web: " + companyInfo.getWebsite(), footerFont));
-            }
-        }
-        
-        com.lowagie.text.pdf.PdfPCell contactCell = new com.lowagie.text.pdf.PdfPCell(contactInfo);
-        contactCell.setBorder(Rectangle.NO_BORDER);
-        contactCell.setVerticalAlignment(Element.ALIGN_TOP);
-        footerTable.addCell(contactCell);
-
-        // === COLONNA 3: DATI FISCALI E BANCARI ===
-        Paragraph fiscalInfo = new Paragraph();
-        if (Boolean.TRUE.equals(companyInfo.getShowTaxInfoInDocuments())) {
-            fiscalInfo.add(new Chunk("DATI FISCALI", footerBoldFont));
-            fiscalInfo.add(Chunk.NEWLINE);
-            if (companyInfo.getVatNumber() != null) {
-                fiscalInfo.add(new Chunk("P.IVA: " + companyInfo.getVatNumber(), footerFont));
-                fiscalInfo.add(Chunk.NEWLINE);
-            }
-            if (companyInfo.getTaxCode() != null) {
-                fiscalInfo.add(new Chunk("C.F.: " + companyInfo.getTaxCode(), footerFont));
-                fiscalInfo.add(Chunk.NEWLINE);
-            }
-            if (companyInfo.getReaNumber() != null) {
-                fiscalInfo.add(new Chunk("REA: " + companyInfo.getReaNumber(), footerFont));
-                fiscalInfo.add(Chunk.NEWLINE);
-            }
-            if (companyInfo.getShareCapital() != null) {
-                fiscalInfo.add(new Chunk("Cap. Soc.: " + companyInfo.getShareCapital(), footerFont));
-            }
-        }
-        
-        com.lowagie.text.pdf.PdfPCell fiscalCell = new com.lowagie.text.pdf.PdfPCell(fiscalInfo);
-        fiscalCell.setBorder(Rectangle.NO_BORDER);
-        fiscalCell.setVerticalAlignment(Element.ALIGN_TOP);
-        footerTable.addCell(fiscalCell);
-
-        pdfDoc.add(footerTable);
-    }
-
-    /**
-     * Metodo helper per trovare il percorso corretto dei file
-     */
-    private String findFilePath(String relativePath) {
-        if (relativePath == null) return null;
-        
-        String[] possiblePaths = {
-            "uploads/" + relativePath,
-            relativePath,
-            Paths.get("uploads", relativePath).toString()
-        };
-        
-        for (String path : possiblePaths) {
-            Path fullPath = Paths.get(path);
-            if (Files.exists(fullPath)) {
-                return fullPath.toString();
-            }
-        }
-        
-        return null;
     }
 
     /**
@@ -793,7 +566,7 @@ public class ExpenseReportService {
         cell.setBackgroundColor(backgroundColor);
         cell.setPadding(6f);
         cell.setBorderWidth(0.5f);
-        cell.setBorderColor(Color.decode("#dee2e6"));
+        cell.setBorderColor(PdfStyles.BORDER);
         
         if (isBold) {
             cell.setHorizontalAlignment(Element.ALIGN_CENTER);
@@ -801,4 +574,14 @@ public class ExpenseReportService {
         
         return cell;
     }
+
+    /**
+     * Note spese dalla più recente (solo quelle del dipendente, se indicato),
+     * in streaming per l'export tabellare.
+     * Va invocato in una transazione e lo stream va chiuso dal chiamante.
+     */
+    @Transactional(readOnly = true)
+    public Stream<ExpenseReport> streamForExport(Long employeeId) {
+        return reportRepo.streamForExport(employeeId);
+    }
 }
@@ -1,71 +1,141 @@
 package com.veely.service;
 
+import com.veely.exception.ResourceNotFoundException;
+import com.veely.service.storage.ContentAddressedBlobStore;
+import com.veely.service.storage.ContentAddressedBlobStore.StagedContent;
+import com.veely.service.storage.StorageUsageService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
 import java.nio.file.*;
 import java.util.Comparator;
+import java.util.Optional;
 
 /**
- * Servizio per salvare/caricare/eliminare file sul filesystem.
- * Tutti i metodi operano sotto la cartella radice definita in application.yml (veely.storage.root).
+ * Servizio per salvare/caricare/eliminare i file caricati.
+ * <p>
+ * I percorsi ({@code subdir/filename}) restano quelli salvati nelle entità, ma
+ * il contenuto è conservato una sola volta nel {@link ContentAddressedBlobStore}
+ * (su disco locale o su bucket S3, vedi {@link com.veely.service.storage.StorageBackend}):
+ * lo stesso PDF caricato su più veicoli o dipendenti occupa spazio una volta.
+ * I file salvati prima dell'archivio a contenuti restano leggibili dal
+ * percorso originale sotto {@code storage.location} finché la migrazione non
+ * li sposta.
+ * <p>
+ * Prima di salvare un file viene verificata la quota della sua area e del
+ * suo proprietario ({@link StorageUsageService}).
  */
 @Service
 public class FileSystemStorageService {
 
-    private final Path root = Paths.get("uploads");
     private final Path rootLocation;
+    private final ContentAddressedBlobStore blobStore;
+    private final StorageUsageService usage;
 
-    //public FileSystemStorageService(@Value("${storage.location}") String storageLocation) {
-    public FileSystemStorageService(@Value("${storage.location:uploads}") String storageLocation) {
+    public FileSystemStorageService(@Value("${storage.location:uploads}") String storageLocation,
+                                    ContentAddressedBlobStore blobStore,
+                                    StorageUsageService usage) {
         this.rootLocation = Paths.get(storageLocation);
+        this.blobStore = blobStore;
+        this.usage = usage;
     }
     
     public void initDirectory(String subdir) {
         try {
-            Files.createDirectories(root.resolve(subdir));
+            Files.createDirectories(rootLocation.resolve(subdir));
         } catch (IOException e) {
             throw new RuntimeException("Impossibile creare directory: " + subdir, e);
         }
     }
 
+    /** Salva il file con un nome univoco nella cartella logica indicata e ne restituisce il nome. */
     public String store(MultipartFile file, String subdir) {
-        initDirectory(subdir);
-        String filename = System.currentTimeMillis() + "_" + Path.of(file.getOriginalFilename()).getFileName();
-        try (var in = file.getInputStream()) {
-            Files.copy(in, root.resolve(subdir).resolve(filename), StandardCopyOption.REPLACE_EXISTING);
+        String originalName = Path.of(file.getOriginalFilename()).getFileName().toString();
+        long timestamp = System.currentTimeMillis();
+        // la dimensione è nota: il file oltre quota non viene nemmeno copiato
+        usage.checkQuota(logicalPath(originalName, subdir), file.getSize());
+        StagedContent staged = null;
+        try (InputStream in = file.getInputStream()) {
+            staged = blobStore.stage(in);
+            // due caricamenti nello stesso millisecondo non si sovrascrivono più: il secondo prende un suffisso
+            for (int attempt = 0; ; attempt++) {
+                String filename = attempt == 0
+                        ? timestamp + "_" + originalName
+                        : timestamp + "-" + attempt + "_" + originalName;
+                String logicalPath = logicalPath(filename, subdir);
+                if (exists(logicalPath)) {
+                    continue;
+                }
+                try {
+                    blobStore.link(staged, logicalPath);
+                    return filename;
+                } catch (FileAlreadyExistsException taken) {
+                    // nome preso nel frattempo: si riprova con il suffisso successivo
+                }
+            }
         } catch (IOException e) {
+            if (staged != null) {
+                blobStore.discard(staged);
+            }
             throw new RuntimeException("Errore nel salvataggio file", e);
         }
-        return filename;
     }
 
-    public Resource loadAsResource(String filename, String subdir) {
+    /**
+     * Salva il contenuto dello stream con il nome indicato, che deve essere
+     * nuovo. Lo stream non viene chiuso.
+     *
+     * @return dimensione in byte del contenuto salvato
+     */
+    public long store(InputStream content, String subdir, String filename) throws IOException {
+        String logicalPath = logicalPath(filename, subdir);
+        StagedContent staged = blobStore.stage(content);
         try {
-            Path file = root.resolve(subdir).resolve(filename).normalize();
-            Resource res = new UrlResource(file.toUri());
-            if (res.exists() && res.isReadable()) return res;
-            else throw new RuntimeException("File non leggibile: " + filename);
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("File non trovato: " + filename, e);
+            usage.checkQuota(logicalPath, staged.size());
+            blobStore.link(staged, logicalPath);
+        } catch (IOException | RuntimeException e) {
+            blobStore.discard(staged);
+            throw e;
         }
+        return staged.size();
+    }
+
+    public Resource loadAsResource(String filename, String subdir) {
+        return find(logicalPath(filename, subdir))
+                .orElseThrow(() -> new ResourceNotFoundException("File non trovato: " + filename));
+    }
+
+    /**
+     * Contenuto del percorso relativo alla cartella uploads: il blob se il
+     * percorso è nell'archivio a contenuti, altrimenti il file originale.
+     */
+    public Optional<Resource> find(String relativePath) {
+        String logicalPath = logicalPath(relativePath, "");
+        String filename = Path.of(logicalPath).getFileName().toString();
+        return blobStore.find(logicalPath, filename).<Resource>map(blob -> blob)
+                .or(() -> Optional.of(rootLocation.resolve(logicalPath))
+                        .filter(Files::isRegularFile)
+                        .map(file -> new NamedFileResource(file, filename)));
+    }
+
+    public boolean exists(String relativePath) {
+        String logicalPath = logicalPath(relativePath, "");
+        return blobStore.exists(logicalPath) || Files.isRegularFile(rootLocation.resolve(logicalPath));
     }
 
     public void delete(String filename, String subdir) {
-        try {
-            Files.deleteIfExists(root.resolve(subdir).resolve(filename));
-        } catch (IOException e) {
-            throw new RuntimeException("Impossibile eliminare file: " + filename, e);
-        }
+        delete(logicalPath(filename, subdir));
     }
 
     public void deleteDirectory(String subdir) {
-        Path dir = root.resolve(subdir);
+        String prefix = logicalPath("", subdir);
+        blobStore.removeUnder(prefix.isEmpty() ? prefix : prefix + "/");
+        Path dir = rootLocation.resolve(subdir);
         if (Files.exists(dir)) {
             try (var walker = Files.walk(dir)) {
                 walker.sorted(Comparator.reverseOrder())
@@ -77,11 +147,38 @@ public class FileSystemStorageService {
     }
     
     public void delete(String relativePath) {
+        String logicalPath = logicalPath(relativePath, "");
+        if (blobStore.remove(logicalPath)) {
+            return;
+        }
         try {
-            Path file = rootLocation.resolve(relativePath);
-            Files.deleteIfExists(file);
+            Files.deleteIfExists(rootLocation.resolve(logicalPath));
         } catch (IOException e) {
             throw new RuntimeException("Impossibile cancellare il file: " + relativePath, e);
         }
     }
+
+    /** Percorso relativo normalizzato, con separatore '/', che non esce dalla cartella uploads. */
+    static String logicalPath(String filename, String subdir) {
+        Path path = Path.of(subdir == null ? "" : subdir).resolve(filename).normalize();
+        if (path.isAbsolute() || path.startsWith("..")) {
+            throw new SecurityException("Tentativo di accesso a directory non autorizzata");
+        }
+        return path.toString().replace('\\', '/');
+    }
+
+    /** Risorsa su un file del vecchio schema che espone il nome logico. */
+    private static final class NamedFileResource extends FileSystemResource {
+        private final String filename;
+
+        NamedFileResource(Path file, String filename) {
+            super(file);
+            this.filename = filename;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+    }
 }
@@ -0,0 +1,193 @@
+package com.veely.service;
+
+import com.veely.model.AssignmentStatus;
+import com.veely.model.VehicleStatus;
+import com.veely.repository.AssignmentRepository;
+import com.veely.repository.VehicleRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contatori aggregati della flotta (veicoli per stato e veicoli assegnati).
+ * <p>
+ * Sostituisce le {@code @Formula} che eseguivano due COUNT sull'intera
+ * tabella per ogni veicolo caricato. Lo stato viene caricato una volta
+ * all'avvio e poi aggiornato riga per riga dagli eventi pubblicati da
+ * {@link com.veely.entity.listener.FleetCounterListener} dopo il commit, per
+ * cui ogni modifica fatta da {@link VehicleService} o {@link AssignmentService}
+ * (anche indirettamente) si riflette qui. Una riconciliazione periodica
+ * riallinea i contatori in caso di UPDATE massivi fatti in JPQL.
+ */
+@Slf4j
+@Service
+public class FleetCounterService {
+
+    private final VehicleRepository vehicleRepo;
+    private final AssignmentRepository assignmentRepo;
+    private final TransactionTemplate readOnlyTx;
+
+    /** Stato corrente di ciascun veicolo. */
+    private final Map<Long, VehicleStatus> vehicleStatus = new HashMap<>();
+    /** Veicolo di ciascuna assegnazione in stato ASSIGNED. */
+    private final Map<Long, Long> activeAssignments = new HashMap<>();
+    /** Numero di assegnazioni ASSIGNED per veicolo. */
+    private final Map<Long, Integer> assignmentsPerVehicle = new HashMap<>();
+    private final EnumMap<VehicleStatus, Long> statusCounts = new EnumMap<>(VehicleStatus.class);
+
+    private volatile FleetCounters counters;
+
+    public FleetCounterService(VehicleRepository vehicleRepo,
+                               AssignmentRepository assignmentRepo,
+                               PlatformTransactionManager transactionManager) {
+        this.vehicleRepo = vehicleRepo;
+        this.assignmentRepo = assignmentRepo;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /** Evento: un veicolo è stato salvato o eliminato. */
+    public record VehicleChanged(Long id, VehicleStatus status, boolean removed) {}
+
+    /** Evento: un'assegnazione è stata salvata o eliminata. */
+    public record AssignmentChanged(Long id, Long vehicleId, AssignmentStatus status, boolean removed) {}
+
+    /** Fotografia immutabile dei contatori. */
+    public record FleetCounters(long total, Map<VehicleStatus, Long> byStatus, long assignedVehicles) {
+
+        public long count(VehicleStatus status) {
+            return byStatus.getOrDefault(status, 0L);
+        }
+
+        public long inService() {
+            return count(VehicleStatus.IN_SERVICE);
+        }
+    }
+
+    /** Contatori correnti; alla prima chiamata vengono caricati dal database. */
+    public FleetCounters counters() {
+        FleetCounters current = counters;
+        return current != null ? current : reload();
+    }
+
+    public long totalVehicles() {
+        return counters().total();
+    }
+
+    public long countByStatus(VehicleStatus status) {
+        return counters().count(status);
+    }
+
+    public long assignedVehicles() {
+        return counters().assignedVehicles();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /** Riallinea periodicamente i contatori con il database. */
+    @Scheduled(fixedDelayString = "${veely.fleet.counters.reconcile-interval:PT1H}",
+               initialDelayString = "${veely.fleet.counters.reconcile-interval:PT1H}")
+    public void reconcile() {
+        reload();
+    }
+
+    /**
+     * Ricarica tutti i contatori dal database (due query di proiezione) in
+     * una transazione in sola lettura, aperta qui perché il metodo viene
+     * chiamato anche dall'interno del servizio.
+     */
+    public FleetCounters reload() {
+        return readOnlyTx.execute(status -> load());
+    }
+
+    private synchronized FleetCounters load() {
+        vehicleStatus.clear();
+        activeAssignments.clear();
+        assignmentsPerVehicle.clear();
+        for (Object[] row : vehicleRepo.findAllStatuses()) {
+            vehicleStatus.put((Long) row[0], (VehicleStatus) row[1]);
+        }
+        for (Object[] row : assignmentRepo.findVehicleIdsByStatus(AssignmentStatus.ASSIGNED)) {
+            activate((Long) row[0], (Long) row[1]);
+        }
+        statusCounts.clear();
+        vehicleStatus.values().forEach(this::increment);
+        publish();
+        log.debug("Contatori flotta caricati: {}", counters);
+        return counters;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onVehicleChanged(VehicleChanged event) {
+        if (counters == null || event.id() == null) {
+            return; // verrà letto dal database al primo caricamento
+        }
+        VehicleStatus previous = vehicleStatus.remove(event.id());
+        if (!event.removed()) {
+            vehicleStatus.put(event.id(), event.status());
+            increment(event.status());
+        }
+        decrement(previous);
+        publish();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onAssignmentChanged(AssignmentChanged event) {
+        if (counters == null || event.id() == null) {
+            return;
+        }
+        deactivate(event.id());
+        if (!event.removed() && event.status() == AssignmentStatus.ASSIGNED && event.vehicleId() != null) {
+            activate(event.id(), event.vehicleId());
+        }
+        publish();
+    }
+
+    private void activate(Long assignmentId, Long vehicleId) {
+        activeAssignments.put(assignmentId, vehicleId);
+        assignmentsPerVehicle.merge(vehicleId, 1, Integer::sum);
+    }
+
+    private void deactivate(Long assignmentId) {
+        Long vehicleId = activeAssignments.remove(assignmentId);
+        if (vehicleId != null) {
+            assignmentsPerVehicle.computeIfPresent(vehicleId, (k, n) -> n > 1 ? n - 1 : null);
+        }
+    }
+
+    private void increment(VehicleStatus status) {
+        if (status != null) {
+            statusCounts.merge(status, 1L, Long::sum);
+        }
+    }
+
+    private void decrement(VehicleStatus status) {
+        if (status != null) {
+            statusCounts.computeIfPresent(status, (k, n) -> n > 1 ? n - 1 : null);
+        }
+    }
+
+    private void publish() {
+        counters = new FleetCounters(vehicleStatus.size(),
+                Collections.unmodifiableMap(new EnumMap<>(statusCounts)),
+                assignmentsPerVehicle.size());
+    }
+}
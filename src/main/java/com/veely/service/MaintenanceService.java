@@ -18,6 +18,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -150,4 +151,14 @@ public class MaintenanceService {
         if (avg == null) return BigDecimal.ZERO;
         return BigDecimal.valueOf(avg).setScale(2, RoundingMode.HALF_UP);
     }
+
+    /**
+     * Manutenzioni con gli stessi filtri di {@link #search(String, Integer, Long)}, in streaming per l'export tabellare.
+     * Va invocato in una transazione e lo stream va chiuso dal chiamante.
+     */
+    @Transactional(readOnly = true)
+    public Stream<Maintenance> streamForExport(String plate, Integer year, Long typeId) {
+        String p = (plate != null && !plate.isBlank()) ? plate : null;
+        return maintenanceRepo.streamForExport(p, year, typeId);
+    }
 }
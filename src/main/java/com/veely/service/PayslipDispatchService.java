@@ -0,0 +1,401 @@
+package com.veely.service;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.dto.payslip.PayslipDispatchProgress;
+import com.veely.entity.Payslip;
+import com.veely.entity.PayslipDispatchJob;
+import com.veely.exception.ResourceNotFoundException;
+import com.veely.model.DispatchJobStatus;
+import com.veely.model.PayslipStatus;
+import com.veely.repository.PayslipDispatchJobRepository;
+import com.veely.repository.PayslipRepository;
+import com.veely.service.mail.MailDispatcher;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Invio massivo dei cedolini in background.
+ * <p>
+ * La richiesta HTTP registra soltanto un {@link PayslipDispatchJob} e torna
+ * subito; dopo il commit il job viene accodato al coordinatore, che elabora
+ * un job alla volta distribuendo i cedolini su {@code workers} worker.
+ * Ogni worker invia tramite una
+ * {@link MailDispatcher.Pipeline}, che riusa la stessa connessione SMTP per
+ * più messaggi e applica il limite di messaggi al minuto condiviso. Gli
+ * errori transitori vengono ritentati con backoff esponenziale. Se per
+ * {@code stall-timeout} nessun cedolino viene elaborato il job viene
+ * interrotto e chiuso come fallito.
+ * <p>
+ * Ogni cedolino viene letto e aggiornato in una transazione breve, mai
+ * durante la conversazione SMTP; i contatori del job sono persistiti a ogni
+ * messaggio, così l'avanzamento è visibile alla pagina e i job interrotti da
+ * un riavvio riprendono dai cedolini non ancora inviati.
+ */
+@Slf4j
+@Service
+public class PayslipDispatchService {
+
+    /** Messaggi di errore trattenuti in memoria per ciascun job. */
+    private static final int MAX_MESSAGES = 50;
+
+    private final PayslipDispatchJobRepository jobRepository;
+    private final PayslipRepository payslipRepository;
+    private final PayslipEmailService emailService;
+    private final MailDispatcher mailDispatcher;
+    private final PdfPayslipDispatchReportService reportService;
+    private final TransactionTemplate tx;
+
+    private final int workers;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration stallTimeout;
+
+    private final TaskExecutor coordinator;
+    private final AsyncTaskExecutor workerPool;
+    private final Map<Long, Deque<String>> messages = new ConcurrentHashMap<>();
+
+    /**
+     * Job in elaborazione: testo del messaggio, coda dei cedolini da inviare e
+     * istante ({@link System#nanoTime()}) dell'ultimo cedolino elaborato.
+     */
+    private record JobRun(Long jobId, String subject, String body, Queue<Long> queue, AtomicLong lastProgress) {}
+
+    public PayslipDispatchService(PayslipDispatchJobRepository jobRepository,
+                                  PayslipRepository payslipRepository,
+                                  PayslipEmailService emailService,
+                                  MailDispatcher mailDispatcher,
+                                  PdfPayslipDispatchReportService reportService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${veely.payslips.dispatch.workers:4}") int workers,
+                                  @Value("${veely.payslips.dispatch.max-attempts:3}") int maxAttempts,
+                                  @Value("${veely.payslips.dispatch.initial-backoff:PT2S}") Duration initialBackoff,
+                                  @Value("${veely.payslips.dispatch.stall-timeout:PT5M}") Duration stallTimeout,
+                                  @Qualifier(ExecutorConfig.PAYSLIP_DISPATCH) TaskExecutor coordinator,
+                                  @Qualifier(ExecutorConfig.PAYSLIP_DISPATCH_WORKERS) AsyncTaskExecutor workerPool) {
+        this.jobRepository = jobRepository;
+        this.payslipRepository = payslipRepository;
+        this.emailService = emailService;
+        this.mailDispatcher = mailDispatcher;
+        this.reportService = reportService;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.workers = Math.max(1, workers);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.stallTimeout = stallTimeout;
+        this.coordinator = coordinator;
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Registra un job di invio per i cedolini indicati; l'invio parte dopo il commit.
+     */
+    @Transactional
+    public PayslipDispatchJob submit(Collection<Long> payslipIds, String subject, String body, String createdBy) {
+        List<Long> ids = payslipIds == null ? List.of()
+                : payslipIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("Nessun cedolino selezionato");
+        }
+        PayslipDispatchJob job = jobRepository.save(PayslipDispatchJob.builder()
+                .status(DispatchJobStatus.QUEUED)
+                .subject(subject != null ? subject.trim() : "")
+                .body(body != null ? body.trim() : "")
+                .payslipIds(new ArrayList<>(ids))
+                .requested(ids.size())
+                .createdBy(createdBy)
+                .createdAt(LocalDateTime.now())
+                .build());
+        Long jobId = job.getId();
+        AfterCommit.run(() -> schedule(jobId));
+        log.info("Job di invio cedolini {} registrato: {} cedolini", jobId, ids.size());
+        return job;
+    }
+
+    @Transactional(readOnly = true)
+    public PayslipDispatchProgress getProgress(Long jobId) {
+        PayslipDispatchJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Job di invio non trovato: " + jobId));
+        Deque<String> buffer = messages.get(jobId);
+        List<String> recent;
+        if (buffer == null) {
+            recent = List.of();
+        } else {
+            synchronized (buffer) {
+                recent = List.copyOf(buffer);
+            }
+        }
+        return PayslipDispatchProgress.of(job, recent);
+    }
+
+    /** Job ancora in coda o in corso più recente, per riprendere il monitoraggio dalla pagina. */
+    @Transactional(readOnly = true)
+    public Optional<Long> findActiveJobId() {
+        List<PayslipDispatchJob> active = jobRepository.findByStatusInOrderByCreatedAtAsc(
+                EnumSet.of(DispatchJobStatus.QUEUED, DispatchJobStatus.RUNNING));
+        return active.isEmpty() ? Optional.empty() : Optional.of(active.get(active.size() - 1).getId());
+    }
+
+    /** Riprende i job rimasti in coda o in corso al momento dell'ultimo arresto. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        List<PayslipDispatchJob> pending = jobRepository.findByStatusInOrderByCreatedAtAsc(
+                EnumSet.of(DispatchJobStatus.QUEUED, DispatchJobStatus.RUNNING));
+        for (PayslipDispatchJob job : pending) {
+            log.info("Ripresa del job di invio cedolini {} ({})", job.getId(), job.getStatus());
+            schedule(job.getId());
+        }
+    }
+
+    private void schedule(Long jobId) {
+        coordinator.execute(() -> run(jobId));
+    }
+
+    void run(Long jobId) {
+        JobRun run;
+        try {
+            run = tx.execute(status -> start(jobId));
+        } catch (RuntimeException ex) {
+            log.error("Impossibile avviare il job di invio cedolini {}", jobId, ex);
+            return;
+        }
+        if (run == null) {
+            return;
+        }
+        // si conservano solo i messaggi dell'ultimo job elaborato
+        messages.keySet().removeIf(id -> !id.equals(jobId));
+
+        String error = null;
+        List<Future<?>> futures = new ArrayList<>();
+        int poolSize = Math.min(workers, run.queue().size());
+        for (int i = 0; i < poolSize; i++) {
+            futures.add(workerPool.submit(() -> {
+                work(run);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                await(run, future);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                error = cause.getMessage();
+                log.error("Job di invio cedolini {} interrotto", jobId, cause);
+                // gli altri worker svuotano la coda senza inviare
+                run.queue().clear();
+            } catch (TimeoutException ex) {
+                error = "Invio bloccato: nessun cedolino elaborato negli ultimi "
+                        + stallTimeout.toSeconds() + " secondi";
+                log.error("Job di invio cedolini {} interrotto: {}", jobId, error);
+                run.queue().clear();
+                futures.forEach(f -> f.cancel(true));
+                break;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                // arresto dell'applicazione: il job resta RUNNING e riprende al riavvio
+                return;
+            }
+        }
+
+        DispatchJobStatus outcome = error == null ? DispatchJobStatus.COMPLETED : DispatchJobStatus.FAILED;
+        String finalError = error;
+        tx.executeWithoutResult(status ->
+                jobRepository.markFinished(jobId, outcome, LocalDateTime.now(), finalError));
+        log.info("Job di invio cedolini {} terminato: {}", jobId, outcome);
+    }
+
+    /**
+     * Attende il worker finché il job avanza: scade se per {@code stallTimeout}
+     * nessun cedolino viene elaborato.
+     */
+    private void await(JobRun run, Future<?> future)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        while (true) {
+            long idle = System.nanoTime() - run.lastProgress().get();
+            long remaining = stallTimeout.toNanos() - idle;
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                future.get(remaining, TimeUnit.NANOSECONDS);
+                return;
+            } catch (TimeoutException ex) {
+                // nel frattempo un altro cedolino può aver fatto avanzare il job
+            }
+        }
+    }
+
+    /**
+     * Porta il job in RUNNING e calcola i cedolini ancora da inviare: quelli
+     * già inviati da questo job (ripresa dopo un riavvio) vengono esclusi e
+     * i contatori ripartono da lì.
+     */
+    private JobRun start(Long jobId) {
+        PayslipDispatchJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus().isFinished()) {
+            return null;
+        }
+        List<Long> ids = jobRepository.findPayslipIds(jobId);
+        Set<Long> alreadySent = job.getStartedAt() == null ? Set.of()
+                : new HashSet<>(payslipRepository.findIdsSentSince(ids, job.getCreatedAt()));
+        Queue<Long> queue = new ConcurrentLinkedQueue<>();
+        for (Long id : ids) {
+            if (!alreadySent.contains(id)) {
+                queue.add(id);
+            }
+        }
+        job.setStatus(DispatchJobStatus.RUNNING);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(LocalDateTime.now());
+        }
+        job.setSent(alreadySent.size());
+        job.setSkipped(0);
+        job.setFailed(0);
+        return new JobRun(jobId, job.getSubject(), job.getBody(), queue, new AtomicLong(System.nanoTime()));
+    }
+
+    /** Ciclo di un worker: una connessione SMTP riusata finché la coda non è vuota. */
+    private void work(JobRun run) throws InterruptedException {
+        try (MailDispatcher.Pipeline pipeline = mailDispatcher.openPipeline()) {
+            Long id;
+            while ((id = run.queue().poll()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                dispatch(run, id, pipeline);
+            }
+        }
+    }
+
+    private void dispatch(JobRun run, Long payslipId, MailDispatcher.Pipeline pipeline) throws InterruptedException {
+        Payslip payslip = tx.execute(status -> payslipRepository.findWithEmployeeById(payslipId).orElse(null));
+        if (payslip == null) {
+            record(run, payslipId, null, PayslipStatus.UNMATCHED, "Cedolino " + payslipId + " non trovato");
+            return;
+        }
+        if (payslip.getEmployee() == null || !StringUtils.hasText(payslip.getEmployee().getEmail())) {
+            record(run, payslipId, null, PayslipStatus.UNMATCHED, String.format(
+                    "Cedolino %s non inviato: nessun dipendente/email associato", payslip.getFiscalCode()));
+            return;
+        }
+
+        MimeMessage message;
+        try {
+            message = emailService.createMessage(payslip, run.subject(), run.body());
+        } catch (MessagingException | RuntimeException ex) {
+            log.error("Errore preparando il cedolino {}", payslip.getFiscalCode(), ex);
+            record(run, payslipId, null, PayslipStatus.FAILED,
+                    "Errore inviando il cedolino " + payslip.getFiscalCode() + ": " + ex.getMessage());
+            return;
+        }
+
+        String recipient = payslip.getEmployee().getEmail();
+        long backoff = initialBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                pipeline.send(message);
+                record(run, payslipId, recipient, PayslipStatus.SENT, null);
+                return;
+            } catch (AuthenticationFailedException ex) {
+                // credenziali errate: inutile proseguire con gli altri cedolini
+                throw new IllegalStateException("Autenticazione SMTP fallita: " + ex.getMessage(), ex);
+            } catch (MessagingException ex) {
+                if (attempt >= maxAttempts || isPermanent(ex)) {
+                    log.error("Errore durante l'invio del cedolino {}", payslip.getFiscalCode(), ex);
+                    record(run, payslipId, null, PayslipStatus.FAILED,
+                            "Errore inviando il cedolino " + payslip.getFiscalCode() + ": " + ex.getMessage());
+                    return;
+                }
+                log.warn("Invio del cedolino {} fallito (tentativo {}/{}), nuovo tentativo tra {} ms: {}",
+                        payslip.getFiscalCode(), attempt, maxAttempts, backoff, ex.getMessage());
+                TimeUnit.MILLISECONDS.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+
+    /** Destinatario rifiutato o errore 5xx: ritentare non cambierebbe l'esito. */
+    private static boolean isPermanent(MessagingException ex) {
+        if (ex instanceof SMTPSendFailedException smtp && smtp.getReturnCode() >= 500) {
+            return true;
+        }
+        return ex instanceof SendFailedException sfe
+                && sfe.getInvalidAddresses() != null
+                && sfe.getInvalidAddresses().length > 0;
+    }
+
+    /** Aggiorna il cedolino e i contatori del job in un'unica transazione breve. */
+    private void record(JobRun run, Long payslipId, String recipient, PayslipStatus outcome, String error) {
+        run.lastProgress().set(System.nanoTime());
+        tx.executeWithoutResult(status -> {
+            payslipRepository.findById(payslipId).ifPresent(p -> {
+                p.setStatus(outcome);
+                if (outcome == PayslipStatus.SENT) {
+                    p.setSentAt(LocalDateTime.now());
+                    p.setSentTo(recipient);
+                    p.setLastSubject(run.subject());
+                    p.setLastBody(run.body());
+                    p.setLastError(null);
+                    if (p.getReferenceMonth() != null) {
+                        YearMonth month = YearMonth.from(p.getReferenceMonth());
+                        AfterCommit.run(() -> reportService.invalidate(month));
+                    }
+                } else {
+                    p.setLastError(error);
+                }
+            });
+            jobRepository.addProgress(run.jobId(),
+                    outcome == PayslipStatus.SENT ? 1 : 0,
+                    outcome == PayslipStatus.UNMATCHED ? 1 : 0,
+                    outcome == PayslipStatus.FAILED ? 1 : 0);
+        });
+        if (error != null) {
+            Deque<String> buffer = messages.computeIfAbsent(run.jobId(), k -> new ArrayDeque<>());
+            synchronized (buffer) {
+                if (buffer.size() == MAX_MESSAGES) {
+                    buffer.removeFirst();
+                }
+                buffer.addLast(error);
+            }
+        }
+    }
+}
@@ -1,93 +1,60 @@
 package com.veely.service;
 
 import com.veely.dto.payslip.PayslipUploadResult;
-import com.veely.entity.Employee;
 import com.veely.entity.Payslip;
 import com.veely.model.PayslipStatus;
-import com.veely.repository.EmployeeRepository;
 import com.veely.repository.PayslipRepository;
+import com.veely.service.ingest.DocumentIngestionService;
+import com.veely.service.ingest.IngestProgress;
+import com.veely.service.ingest.IngestTarget;
+import com.veely.service.storage.FileDeletionOutbox;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Consumer;
 
-@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class PayslipService {
 
     private final PayslipRepository payslipRepository;
-    private final EmployeeRepository employeeRepository;
-    private final SecureFileUploadService secureFileUploadService;
+    private final DocumentIngestionService documentIngestionService;
     private final FileSystemStorageService fileSystemStorageService;
+    private final FileDeletionOutbox fileDeletions;
 
+    /**
+     * Carica i PDF dei cedolini: il salvataggio avviene fuori dalla transazione
+     * del servizio, con scritture parallele e insert a batch.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public PayslipUploadResult uploadPayslips(YearMonth referenceMonth, MultipartFile[] files) {
-        PayslipUploadResult result = PayslipUploadResult.builder().build();
-        if (files == null || files.length == 0) {
-            return result;
-        }
-
-        LocalDate monthDate = referenceMonth.atDay(1);
-        String subdir = String.format(Locale.ITALY, "payslips/%d/%02d",
-                referenceMonth.getYear(), referenceMonth.getMonthValue());
-
-        for (MultipartFile file : files) {
-            if (file == null || file.isEmpty()) {
-                continue;
-            }
-            result.setProcessed(result.getProcessed() + 1);
-            String originalFilename = file.getOriginalFilename();
-            try {
-                String fiscalCode = extractFiscalCode(originalFilename);
-                if (!StringUtils.hasText(fiscalCode)) {
-                    result.addError(originalFilename + ": impossibile leggere il codice fiscale dal nome file");
-                    continue;
-                }
-
-                Optional<Employee> employeeOpt = employeeRepository.findByFiscalCodeIgnoreCase(fiscalCode);
-                Employee employee = employeeOpt.orElse(null);
-
-                String storedFilename = secureFileUploadService.uploadDocument(file, subdir);
-                Payslip payslip = Payslip.builder()
-                        .employee(employee)
-                        .fiscalCode(fiscalCode)
-                        .referenceMonth(monthDate)
-                        .storagePath(subdir + "/" + storedFilename)
-                        .originalFilename(originalFilename)
-                        .uploadedAt(LocalDateTime.now())
-                        .status(employee == null ? PayslipStatus.UNMATCHED : PayslipStatus.PENDING)
-                        .build();
-                payslipRepository.save(payslip);
-                result.setStored(result.getStored() + 1);
+        return uploadPayslips(referenceMonth, files, progress -> { });
+    }
 
-                if (employee == null) {
-                    result.addUnmatched(fiscalCode + " (" + originalFilename + ")");
-                }
-            } catch (IOException ex) {
-                log.error("Errore durante il caricamento del cedolino {}", originalFilename, ex);
-                result.addError(originalFilename + ": " + ex.getMessage());
-            } catch (Exception ex) {
-                log.error("Errore non previsto durante il caricamento del cedolino {}", originalFilename, ex);
-                result.addError(originalFilename + ": " + ex.getMessage());
-            }
-        }
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PayslipUploadResult uploadPayslips(YearMonth referenceMonth, MultipartFile[] files,
+                                              Consumer<IngestProgress> listener) {
+        return documentIngestionService.ingest(IngestTarget.payslips(referenceMonth), files, listener);
+    }
 
-        return result;
+    /** Carica i cedolini contenuti in un archivio ZIP, letto in streaming. */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PayslipUploadResult uploadPayslipArchive(YearMonth referenceMonth, InputStream archive,
+                                                    Consumer<IngestProgress> listener) {
+        return documentIngestionService.ingestArchive(IngestTarget.payslips(referenceMonth), archive, listener);
     }
 
     @Transactional(readOnly = true)
@@ -123,10 +90,11 @@ public class PayslipService {
         return fileSystemStorageService.loadAsResource(filename, subdir);
     }
 
+    /** Elimina il cedolino; il PDF viene rimosso dopo il commit. */
     public void deletePayslip(Long payslipId) {
         Payslip payslip = payslipRepository.findById(payslipId)
                 .orElseThrow(() -> new IllegalArgumentException("Cedolino non trovato: " + payslipId));
-        fileSystemStorageService.delete(payslip.getStoragePath());
+        fileDeletions.delete(payslip.getStoragePath());
         payslipRepository.delete(payslip);
     }
     
@@ -136,7 +104,7 @@ public class PayslipService {
         }
 
         List<Payslip> payslipsToDelete = payslipRepository.findByIdIn(payslipIds);
-        payslipsToDelete.forEach(payslip -> fileSystemStorageService.delete(payslip.getStoragePath()));
+        payslipsToDelete.forEach(payslip -> fileDeletions.delete(payslip.getStoragePath()));
         payslipRepository.deleteAll(payslipsToDelete);
         return payslipsToDelete.size();
     }
@@ -145,20 +113,4 @@ public class PayslipService {
     public List<Payslip> findByIds(Collection<Long> ids) {
         return payslipRepository.findByIdIn(ids);
     }
-
-    private String extractFiscalCode(String filename) {
-        if (!StringUtils.hasText(filename)) {
-            return null;
-        }
-        String baseName = Path.of(filename).getFileName().toString();
-        int dotIndex = baseName.lastIndexOf('.');
-        if (dotIndex > 0) {
-            baseName = baseName.substring(0, dotIndex);
-        }
-        String cleaned = baseName.replaceAll("[^A-Za-z0-9]", "").toUpperCase(Locale.ITALY);
-        if (cleaned.length() > 16) {
-            cleaned = cleaned.substring(0, 16);
-        }
-        return cleaned;
-    }
 }
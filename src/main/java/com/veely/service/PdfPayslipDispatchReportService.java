@@ -2,27 +2,34 @@ package com.veely.service;
 
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
-import com.veely.entity.CompanyInfo;
 import com.veely.entity.Payslip;
+import com.veely.service.pdf.PdfBranding;
+import com.veely.service.pdf.PdfBrandingService;
+import com.veely.service.pdf.PdfLayout;
+import com.veely.service.pdf.PdfStyles;
+import com.veely.service.pdf.RenderedPdfCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.awt.Color;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PdfPayslipDispatchReportService {
 
+    /** Area dei report mensili in {@link RenderedPdfCache}, per mese di riferimento. */
+    public static final String PDF_CACHE_AREA = "payslip-dispatch-reports";
+
     private static final DateTimeFormatter MONTH_HEADER_FORMATTER =
             DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ITALY);
     private static final DateTimeFormatter MONTH_CELL_FORMATTER =
@@ -30,23 +37,56 @@ public class PdfPayslipDispatchReportService {
     private static final DateTimeFormatter SENT_AT_FORMATTER =
             DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
-    private final CompanyInfoService companyInfoService;
-
-    public byte[] exportMonthlyReport(YearMonth referenceMonth, List<Payslip> payslips) throws IOException {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            Optional<CompanyInfo> companyInfoOpt = companyInfoService.getPrimaryCompanyInfoOptional();
-            CompanyInfo companyInfo = companyInfoOpt.orElse(null);
-
-            Document document = new Document(PageSize.A4.rotate(), 12, 12, 15, 40);
-            PdfWriter writer = PdfWriter.getInstance(document, out);
-            writer.setPageEvent(new FooterEvent(companyInfo));
-            document.open();
+    private final PdfBrandingService brandingService;
+    private final RenderedPdfCache pdfCache;
+
+    /**
+     * Scrive su {@code out} il PDF con l'elenco dei cedolini inviati nel mese,
+     * riusando quello già generato se elenco e dati aziendali non sono cambiati.
+     */
+    public void writeMonthlyReport(YearMonth referenceMonth, List<Payslip> payslips, OutputStream out)
+            throws IOException {
+        PdfBranding branding = brandingService.current();
+        RenderedPdfCache.Key key = RenderedPdfCache.Key.of(PDF_CACHE_AREA, referenceMonth,
+                fingerprint(payslips, branding));
+        pdfCache.write(key, out, pdf -> render(referenceMonth, payslips, branding, pdf));
+    }
+
+    /** Scarta i report già generati del mese, dopo un nuovo invio. */
+    public void invalidate(YearMonth referenceMonth) {
+        pdfCache.invalidate(PDF_CACHE_AREA, referenceMonth);
+    }
+
+    /** L'intestazione riporta la data di generazione: la copia vale per il giorno corrente. */
+    private String fingerprint(List<Payslip> payslips, PdfBranding branding) {
+        List<Object> parts = new ArrayList<>();
+        parts.add(branding.fingerprint());
+        parts.add(LocalDate.now());
+        if (payslips != null) {
+            for (Payslip payslip : payslips) {
+                parts.add(payslip.getId());
+                parts.add(payslip.getDisplayName());
+                parts.add(payslip.getFiscalCode());
+                parts.add(payslip.getSentAt());
+                parts.add(resolveEmail(payslip));
+            }
+        }
+        return RenderedPdfCache.fingerprint(parts.toArray());
+    }
 
-            addHeader(document, companyInfo, referenceMonth);
+    private void render(YearMonth referenceMonth, List<Payslip> payslips, PdfBranding branding, OutputStream out)
+            throws IOException {
+        try {
+            Document document = PdfLayout.open(out, PageSize.A4.rotate(), 12, 15, branding, false);
+            String monthLabel = referenceMonth != null
+                    ? referenceMonth.format(MONTH_HEADER_FORMATTER)
+                    : "";
+            PdfLayout.addTitleHeader(document, branding,
+                    "CEDOLINI INVIATI – " + monthLabel.toUpperCase(Locale.ITALIAN), null);
             if (payslips == null || payslips.isEmpty()) {
                 Paragraph emptyMessage = new Paragraph(
                         "Nessun cedolino inviato per il mese selezionato.",
-                        FontFactory.getFont(FontFactory.HELVETICA, 10, Color.GRAY));
+                        PdfStyles.font(10, Color.GRAY));
                 emptyMessage.setSpacingBefore(10f);
                 document.add(emptyMessage);
             } else {
@@ -76,58 +116,14 @@ public class PdfPayslipDispatchReportService {
             }
 
             document.close();
-            return out.toByteArray();
         } catch (DocumentException ex) {
             log.error("Errore durante la generazione del PDF con l'elenco dei cedolini inviati", ex);
             throw new IOException("Errore nella generazione del PDF", ex);
         }
     }
 
-    private void addHeader(Document document, CompanyInfo companyInfo, YearMonth referenceMonth) throws DocumentException {
-        PdfPTable headerTable = new PdfPTable(3);
-        headerTable.setWidthPercentage(100f);
-        headerTable.setWidths(new float[]{1.5f, 3f, 1.5f});
-
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-        Font smallFont = FontFactory.getFont(FontFactory.HELVETICA, 8, Color.GRAY);
-
-        Paragraph company = new Paragraph(extractCompanyName(companyInfo), titleFont);
-        company.setAlignment(Element.ALIGN_LEFT);
-        headerTable.addCell(createBorderlessCell(company));
-
-        String monthLabel = referenceMonth != null
-                ? referenceMonth.format(MONTH_HEADER_FORMATTER)
-                : "";
-        Paragraph title = new Paragraph("CEDOLINI INVIATI – " + monthLabel.toUpperCase(Locale.ITALIAN), titleFont);
-        title.setAlignment(Element.ALIGN_CENTER);
-        headerTable.addCell(createBorderlessCell(title));
-
-        String dateStr = LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-        Paragraph date = new Paragraph(dateStr, smallFont);
-        date.setAlignment(Element.ALIGN_RIGHT);
-        headerTable.addCell(createBorderlessCell(date));
-
-        document.add(headerTable);
-        addSeparator(document);
-    }
-
-    private void addSeparator(Document document) throws DocumentException {
-        PdfPTable line = new PdfPTable(1);
-        line.setWidthPercentage(100f);
-        line.setSpacingBefore(3f);
-        line.setSpacingAfter(7f);
-
-        PdfPCell cell = new PdfPCell();
-        cell.setBorder(Rectangle.NO_BORDER);
-        cell.setFixedHeight(0.5f);
-        cell.setBackgroundColor(Color.decode("#dee2e6"));
-        line.addCell(cell);
-
-        document.add(line);
-    }
-
     private void addHeaderCell(PdfPTable table, String text) {
-        Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9, Color.WHITE);
+        Font headerFont = PdfStyles.bold(9, Color.WHITE);
         PdfPCell cell = new PdfPCell(new Phrase(text, headerFont));
         cell.setBackgroundColor(Color.DARK_GRAY);
         cell.setHorizontalAlignment(Element.ALIGN_CENTER);
@@ -138,7 +134,7 @@ public class PdfPayslipDispatchReportService {
 
     private PdfPCell createIndexCell(int index) {
         PdfPCell cell = new PdfPCell(new Phrase(String.valueOf(index),
-                FontFactory.getFont(FontFactory.HELVETICA, 9)));
+                PdfStyles.font(9, null)));
         cell.setHorizontalAlignment(Element.ALIGN_CENTER);
         cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
         cell.setPadding(4f);
@@ -146,20 +142,12 @@ public class PdfPayslipDispatchReportService {
     }
 
     private PdfPCell createDataCell(String content) {
-        PdfPCell cell = new PdfPCell(new Phrase(content, FontFactory.getFont(FontFactory.HELVETICA, 9)));
+        PdfPCell cell = new PdfPCell(new Phrase(content, PdfStyles.font(9, null)));
         cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
         cell.setPadding(4f);
         return cell;
     }
 
-    private PdfPCell createBorderlessCell(Paragraph content) {
-        PdfPCell cell = new PdfPCell(content);
-        cell.setBorder(Rectangle.NO_BORDER);
-        cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        cell.setPadding(2f);
-        return cell;
-    }
-
     private String safe(String value) {
         return value == null ? "" : value;
     }
@@ -190,98 +178,4 @@ public class PdfPayslipDispatchReportService {
         }
         return "";
     }
-
-    private String extractCompanyName(CompanyInfo companyInfo) {
-        if (companyInfo == null || companyInfo.getCompanyName() == null) {
-            return "-----";
-        }
-        return companyInfo.getCompanyName();
-    }
-
-    private class FooterEvent extends PdfPageEventHelper {
-        private final CompanyInfo companyInfo;
-
-        private FooterEvent(CompanyInfo companyInfo) {
-            this.companyInfo = companyInfo;
-        }
-
-        @Override
-        public void onEndPage(PdfWriter writer, Document document) {
-            try {
-                PdfPTable footerTable = new PdfPTable(3);
-                footerTable.setTotalWidth(document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin());
-                footerTable.setWidths(new float[]{1.5f, 1.5f, 1.5f});
-
-                Font normalFont = FontFactory.getFont(FontFactory.HELVETICA, 7);
-                Font boldFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 7);
-
-                footerTable.addCell(createFooterCell(formatAddress(companyInfo), normalFont, boldFont));
-                footerTable.addCell(createFooterCell(formatContacts(companyInfo), normalFont, boldFont));
-                footerTable.addCell(createFooterCell(formatTaxInfo(companyInfo), normalFont, boldFont));
-
-                footerTable.writeSelectedRows(0, -1, document.leftMargin(), document.bottomMargin() - 5,
-                        writer.getDirectContent());
-            } catch (DocumentException ex) {
-                log.warn("Impossibile disegnare il footer del PDF", ex);
-            }
-        }
-    }
-
-    private PdfPCell createFooterCell(String content, Font normalFont, Font boldFont) {
-        Paragraph para = new Paragraph();
-        if (content != null && !content.isBlank()) {
-            String[] lines = content.split("\n");
-            if (lines.length > 0) {
-                para.add(new Chunk(lines[0], boldFont));
-                for (int i = 1; i < lines.length; i++) {
-                    para.add(Chunk.NEWLINE);
-                    para.add(new Chunk(lines[i], normalFont));
-                }
-            }
-        }
-        PdfPCell cell = new PdfPCell(para);
-        cell.setBorder(Rectangle.NO_BORDER);
-        cell.setVerticalAlignment(Element.ALIGN_TOP);
-        cell.setPadding(3f);
-        return cell;
-    }
-
-    private String formatAddress(CompanyInfo companyInfo) {
-        if (companyInfo == null) {
-            return "";
-        }
-        String address = companyInfo.getFullLegalAddress();
-        if (address == null || address.isBlank()) {
-            return "";
-        }
-        return "SEDE LEGALE\n" + address;
-    }
-
-    private String formatContacts(CompanyInfo companyInfo) {
-        if (companyInfo == null) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder("CONTATTI\n");
-        if (companyInfo.getPrimaryPhone() != null && !companyInfo.getPrimaryPhone().isBlank()) {
-            sb.append("Tel: ").append(companyInfo.getPrimaryPhone()).append('\n');
-        }
-        if (companyInfo.getPrimaryEmail() != null && !companyInfo.getPrimaryEmail().isBlank()) {
-            sb.append("Email: ").append(companyInfo.getPrimaryEmail()).append('\n');
-        }
-        return sb.toString().trim();
-    }
-
-    private String formatTaxInfo(CompanyInfo companyInfo) {
-        if (companyInfo == null) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder("DATI FISCALI\n");
-        if (companyInfo.getVatNumber() != null && !companyInfo.getVatNumber().isBlank()) {
-            sb.append("P.IVA: ").append(companyInfo.getVatNumber()).append('\n');
-        }
-        if (companyInfo.getTaxCode() != null && !companyInfo.getTaxCode().isBlank()) {
-            sb.append("C.F.: ").append(companyInfo.getTaxCode());
-        }
-        return sb.toString().trim();
-    }
 }
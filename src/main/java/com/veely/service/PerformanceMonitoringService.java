@@ -3,7 +3,6 @@ package com.veely.service;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.stereotype.Service;
@@ -11,7 +10,11 @@ import org.springframework.stereotype.Service;
 import java.util.HashMap;
 import java.util.Map;
 
-@Slf4j
+/**
+ * Statistiche correnti delle cache Caffeine, per consultazione puntuale;
+ * nel tempo le stesse grandezze sono esportate come metriche Micrometer
+ * ({@code cache.*}, vedi {@link com.veely.config.CacheConfig}).
+ */
 @Service
 @RequiredArgsConstructor
 public class PerformanceMonitoringService {
@@ -47,13 +50,4 @@ public class PerformanceMonitoringService {
         double hitRate,
         long evictionCount
     ) {}
-    
-    public void logCacheStatistics() {
-        log.info("=== Cache Statistics ===");
-        getCacheStatistics().forEach((name, stats) -> {
-            log.info("Cache {}: size={}, hits={}, misses={}, hitRate={:.2f}%, evictions={}",
-                name, stats.size(), stats.hitCount(), stats.missCount(), 
-                stats.hitRate() * 100, stats.evictionCount());
-        });
-    }
 }
@@ -13,6 +13,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -86,4 +87,14 @@ public class RefuelService {
         mileageService.removeMileage(MileageSource.REFUEL, r.getId());
         refuelRepo.delete(r);
     }
-}
\ No newline at end of file
+
+    /**
+     * Rifornimenti con gli stessi filtri di {@link #search}, in streaming per l'export tabellare.
+     * Va invocato in una transazione e lo stream va chiuso dal chiamante.
+     */
+    @Transactional(readOnly = true)
+    public Stream<Refuel> streamForExport(Long vehicleId, Long cardId, Integer year,
+                                          java.time.LocalDate start, java.time.LocalDate end) {
+        return refuelRepo.streamForExport(vehicleId, cardId, year, start, end);
+    }
+}
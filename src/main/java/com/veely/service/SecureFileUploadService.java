@@ -3,18 +3,12 @@ package com.veely.service;
 import com.veely.validation.FileValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -27,9 +21,6 @@ public class SecureFileUploadService {
     private final FileValidator fileValidator;
     private final FileSystemStorageService storageService;
     
-    @Value("${storage.location:uploads}")
-    private String uploadDir;
-    
     /**
      * Upload sicuro di un documento con validazione
      */
@@ -40,36 +31,42 @@ public class SecureFileUploadService {
         // Genera nome sicuro per il file
         String safeFilename = generateSafeFilename(file.getOriginalFilename());
         
-        // Crea directory se non esiste
-        Path targetDir = Paths.get(uploadDir, subDirectory);
-        Files.createDirectories(targetDir);
-        
-        // Verifica che il path sia all'interno della directory consentita
-        Path targetPath = targetDir.resolve(safeFilename).normalize();
-        if (!targetPath.startsWith(Paths.get(uploadDir))) {
-            throw new SecurityException("Tentativo di accesso a directory non autorizzata");
-        }
-        
-        // Salva il file
-        try {
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        // Salva il file: l'hash SHA-256 viene calcolato durante la copia
+        try (InputStream in = file.getInputStream()) {
+            long savedSize = storageService.store(in, subDirectory, safeFilename);
             log.info("File salvato con successo: {} in {}", safeFilename, subDirectory);
             
             // Verifica l'integrità del file salvato
-            verifyFileIntegrity(file, targetPath);
+            verifyFileIntegrity(file.getSize(), savedSize, safeFilename, subDirectory);
             
             return safeFilename;
             
         } catch (IOException e) {
             log.error("Errore durante il salvataggio del file: {}", safeFilename, e);
-            // Tenta di eliminare il file parzialmente salvato
-            try {
-                Files.deleteIfExists(targetPath);
-            } catch (IOException ignored) {}
             throw e;
         }
     }
     
+    /**
+     * Upload sicuro di un documento letto da uno stream di dimensione non nota
+     * (es. voce di un archivio ZIP): la dimensione massima viene verificata
+     * durante la copia e lo stream non viene chiuso.
+     */
+    public String uploadDocument(InputStream content, String originalFilename, String contentType,
+                                 String subDirectory) throws IOException {
+        fileValidator.validateDocument(originalFilename, contentType, -1);
+        
+        String safeFilename = generateSafeFilename(originalFilename);
+        long savedSize = storageService.store(new SizeLimitedInputStream(content, fileValidator.getMaxDocumentSize()),
+                subDirectory, safeFilename);
+        if (savedSize == 0) {
+            storageService.delete(safeFilename, subDirectory);
+            throw new FileValidator.ValidationException("Il file è vuoto");
+        }
+        log.info("File salvato con successo: {} in {}", safeFilename, subDirectory);
+        return safeFilename;
+    }
+    
     /**
      * Upload sicuro di un'immagine con validazione
      */
@@ -79,15 +76,9 @@ public class SecureFileUploadService {
         
         // Il resto è simile a uploadDocument
         String safeFilename = generateSafeFilename(file.getOriginalFilename());
-        Path targetDir = Paths.get(uploadDir, subDirectory);
-        Files.createDirectories(targetDir);
-        
-        Path targetPath = targetDir.resolve(safeFilename).normalize();
-        if (!targetPath.startsWith(Paths.get(uploadDir))) {
-            throw new SecurityException("Tentativo di accesso a directory non autorizzata");
+        try (InputStream in = file.getInputStream()) {
+            storageService.store(in, subDirectory, safeFilename);
         }
-        
-        Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
         log.info("Immagine salvata con successo: {} in {}", safeFilename, subDirectory);
         
         return safeFilename;
@@ -115,35 +106,55 @@ public class SecureFileUploadService {
     /**
      * Verifica l'integrità del file salvato
      */
-    private void verifyFileIntegrity(MultipartFile originalFile, Path savedPath) throws IOException {
-        long originalSize = originalFile.getSize();
-        long savedSize = Files.size(savedPath);
-        
+    private void verifyFileIntegrity(long originalSize, long savedSize, String filename, String subDirectory)
+            throws IOException {
         if (originalSize != savedSize) {
-            Files.deleteIfExists(savedPath);
+            storageService.delete(filename, subDirectory);
             throw new IOException("Il file salvato ha dimensioni diverse dall'originale");
         }
     }
     
     /**
-     * Calcola hash SHA-256 del file (opzionale, per sicurezza extra)
+     * Interrompe la copia appena lo stream supera la dimensione massima consentita
      */
-    private String calculateFileHash(Path filePath) throws IOException {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] fileBytes = Files.readAllBytes(filePath);
-            byte[] hashBytes = digest.digest(fileBytes);
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+        private final long maxSize;
+        private long read;
+        
+        SizeLimitedInputStream(InputStream in, long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+        
+        @Override
+        public void close() {
+            // lo stream sottostante (es. archivio ZIP) resta del chiamante
+        }
+        
+        private void count(int n) {
+            read += n;
+            if (read > maxSize) {
+                throw new FileValidator.ValidationException(String.format(
+                        "Il file supera la dimensione massima consentita di %d MB", maxSize / (1024 * 1024)));
             }
-            return hexString.toString();
-            
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Algoritmo SHA-256 non disponibile", e);
         }
     }
-}
\ No newline at end of file
+}
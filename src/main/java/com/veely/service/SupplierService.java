@@ -5,6 +5,7 @@ import com.veely.dto.supplier.SupplierOptionDTO;
 import com.veely.exception.ResourceNotFoundException;
 import com.veely.repository.SupplierRepository;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -51,9 +52,16 @@ public class SupplierService {
                 .orElseThrow(() -> new ResourceNotFoundException("Fornitore non trovato: " + id));
     }
 
+    /**
+     * Fornitori con i referenti. L'elenco può arrivare dalla cache delle
+     * query: i referenti vengono comunque inizializzati (dalla cache di
+     * secondo livello) prima di uscire dalla transazione.
+     */
     @Transactional(readOnly = true)
     public List<Supplier> findAll() {
-        return supplierRepo.findAll();
+        List<Supplier> suppliers = supplierRepo.findAll();
+        suppliers.forEach(s -> Hibernate.initialize(s.getReferents()));
+        return suppliers;
     }
 
     @Transactional(readOnly = true)
@@ -1,92 +1,59 @@
 package com.veely.service;
 
 import com.veely.dto.payslip.PayslipUploadResult;
-import com.veely.entity.Employee;
 import com.veely.entity.UniqueCertification;
-import com.veely.model.PayslipStatus;
-import com.veely.repository.EmployeeRepository;
 import com.veely.repository.UniqueCertificationRepository;
+import com.veely.service.ingest.DocumentIngestionService;
+import com.veely.service.ingest.IngestProgress;
+import com.veely.service.ingest.IngestTarget;
+import com.veely.service.storage.FileDeletionOutbox;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
-import java.time.LocalDateTime;
 import java.time.Year;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Consumer;
 
-@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class UniqueCertificationService {
 
     private final UniqueCertificationRepository uniqueCertificationRepository;
-    private final EmployeeRepository employeeRepository;
-    private final SecureFileUploadService secureFileUploadService;
+    private final DocumentIngestionService documentIngestionService;
     private final FileSystemStorageService fileSystemStorageService;
+    private final FileDeletionOutbox fileDeletions;
 
+    /**
+     * Carica i PDF delle Certificazioni Uniche con la stessa pipeline dei
+     * cedolini (scritture parallele, insert a batch).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public PayslipUploadResult uploadCertifications(Year referenceYear, MultipartFile[] files) {
-        PayslipUploadResult result = PayslipUploadResult.builder().build();
-        if (files == null || files.length == 0) {
-            return result;
-        }
-
-        String subdir = String.format(Locale.ITALY, "unique-certifications/%d", referenceYear.getValue());
-
-        for (MultipartFile file : files) {
-            if (file == null || file.isEmpty()) {
-                continue;
-            }
-
-            result.setProcessed(result.getProcessed() + 1);
-            String originalFilename = file.getOriginalFilename();
-            try {
-                String fiscalCode = extractFiscalCode(originalFilename);
-                if (!StringUtils.hasText(fiscalCode)) {
-                    result.addError(originalFilename + ": impossibile leggere il codice fiscale dal nome file");
-                    continue;
-                }
-
-                Optional<Employee> employeeOpt = employeeRepository.findByFiscalCodeIgnoreCase(fiscalCode);
-                Employee employee = employeeOpt.orElse(null);
-
-                String storedFilename = secureFileUploadService.uploadDocument(file, subdir);
-                UniqueCertification certification = UniqueCertification.builder()
-                        .employee(employee)
-                        .fiscalCode(fiscalCode)
-                        .referenceYear(referenceYear.getValue())
-                        .storagePath(subdir + "/" + storedFilename)
-                        .originalFilename(originalFilename)
-                        .uploadedAt(LocalDateTime.now())
-                        .status(employee == null ? PayslipStatus.UNMATCHED : PayslipStatus.PENDING)
-                        .build();
-                uniqueCertificationRepository.save(certification);
-                result.setStored(result.getStored() + 1);
+        return uploadCertifications(referenceYear, files, progress -> { });
+    }
 
-                if (employee == null) {
-                    result.addUnmatched(fiscalCode + " (" + originalFilename + ")");
-                }
-            } catch (IOException ex) {
-                log.error("Errore durante il caricamento della Certificazione Unica {}", originalFilename, ex);
-                result.addError(originalFilename + ": " + ex.getMessage());
-            } catch (Exception ex) {
-                log.error("Errore non previsto durante il caricamento della Certificazione Unica {}", originalFilename, ex);
-                result.addError(originalFilename + ": " + ex.getMessage());
-            }
-        }
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PayslipUploadResult uploadCertifications(Year referenceYear, MultipartFile[] files,
+                                                    Consumer<IngestProgress> listener) {
+        return documentIngestionService.ingest(IngestTarget.certifications(referenceYear), files, listener);
+    }
 
-        return result;
+    /** Carica le Certificazioni Uniche contenute in un archivio ZIP, letto in streaming. */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PayslipUploadResult uploadCertificationArchive(Year referenceYear, InputStream archive,
+                                                          Consumer<IngestProgress> listener) {
+        return documentIngestionService.ingestArchive(IngestTarget.certifications(referenceYear), archive, listener);
     }
 
     @Transactional(readOnly = true)
@@ -124,10 +91,11 @@ public class UniqueCertificationService {
         return fileSystemStorageService.loadAsResource(filename, subdir);
     }
 
+    /** Elimina la certificazione; il PDF viene rimosso dopo il commit. */
     public void deleteCertification(Long certificationId) {
         UniqueCertification certification = uniqueCertificationRepository.findById(certificationId)
                 .orElseThrow(() -> new IllegalArgumentException("Certificazione Unica non trovata: " + certificationId));
-        fileSystemStorageService.delete(certification.getStoragePath());
+        fileDeletions.delete(certification.getStoragePath());
         uniqueCertificationRepository.delete(certification);
     }
 
@@ -137,8 +105,7 @@ public class UniqueCertificationService {
         }
 
         List<UniqueCertification> certificationsToDelete = uniqueCertificationRepository.findByIdIn(certificationIds);
-        certificationsToDelete.forEach(certification ->
-                fileSystemStorageService.delete(certification.getStoragePath()));
+        certificationsToDelete.forEach(certification -> fileDeletions.delete(certification.getStoragePath()));
         uniqueCertificationRepository.deleteAll(certificationsToDelete);
         return certificationsToDelete.size();
     }
@@ -147,20 +114,4 @@ public class UniqueCertificationService {
     public List<UniqueCertification> findByIds(Collection<Long> ids) {
         return uniqueCertificationRepository.findByIdIn(ids);
     }
-
-    private String extractFiscalCode(String filename) {
-        if (!StringUtils.hasText(filename)) {
-            return null;
-        }
-        String baseName = Path.of(filename).getFileName().toString();
-        int dotIndex = baseName.lastIndexOf('.');
-        if (dotIndex > 0) {
-            baseName = baseName.substring(0, dotIndex);
-        }
-        String cleaned = baseName.replaceAll("[^A-Za-z0-9]", "").toUpperCase(Locale.ITALY);
-        if (cleaned.length() > 16) {
-            cleaned = cleaned.substring(0, 16);
-        }
-        return cleaned;
-    }
 }
@@ -0,0 +1,387 @@
+package com.veely.service;
+
+import com.veely.entity.Vehicle;
+import com.veely.repository.VehicleRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Indice di ricerca in memoria per l'autocomplete dei veicoli.
+ * <p>
+ * Targa, telaio, marca e modello vengono normalizzati (minuscole, senza
+ * accenti, spazi e punteggiatura) e indicizzati per bigrammi e trigrammi:
+ * le liste dei trigrammi della query vengono intersecate e i candidati
+ * verificati sulle chiavi normalizzate. I risultati sono ordinati per
+ * rilevanza (corrispondenza esatta, prefisso, contenuto, con la targa che
+ * pesa più degli altri campi).
+ * <p>
+ * L'indice viene costruito all'avvio e aggiornato da {@link VehicleService}
+ * dopo il commit. Se la dimensione stimata supera
+ * {@code veely.vehicles.search-index.max-memory} l'indice viene disattivato
+ * e le ricerche passano al database; ogni
+ * {@code veely.vehicles.search-index.retry-interval} si riprova a costruirlo,
+ * rileggendo i veicoli e ricontrollando il budget.
+ */
+@Slf4j
+@Service
+public class VehicleSearchIndex {
+
+    public static final int MIN_QUERY_LENGTH = 2;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Peso dei campi nell'ordine di {@link Entry#keys}: targa, telaio, marca, modello. */
+    private static final int[] FIELD_WEIGHTS = {4, 3, 2, 2};
+
+    // stime grossolane dell'occupazione in memoria
+    private static final int ENTRY_OVERHEAD = 160;
+    private static final int POSTING_BYTES = 48;
+    private static final int KEY_OVERHEAD = 96;
+
+    private final VehicleRepository vehicleRepo;
+    private final long maxBytes;
+    private final Timer queryTimer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Long>> grams = new HashMap<>();
+    /** Modifiche arrivate durante una ricostruzione, riapplicate alla fine ({@code null}: rimosso). */
+    private final Map<Long, Entry> pending = new HashMap<>();
+    private boolean rebuilding;
+    private volatile long estimatedBytes;
+    private volatile boolean ready;
+
+    /** Risultato di una ricerca. */
+    public record Hit(Long id, String plate, String brand, String model, int score) {
+
+        public String displayText() {
+            return plate + " - " + brand + " " + model;
+        }
+    }
+
+    /** Veicolo indicizzato: valori originali e chiavi normalizzate. */
+    private record Entry(Long id, String plate, String brand, String model,
+                         String[] keys, Set<String> grams, long bytes) {
+
+        int score(String q) {
+            int best = 0;
+            for (int i = 0; i < keys.length; i++) {
+                String key = keys[i];
+                if (key == null) {
+                    continue;
+                }
+                int match = key.equals(q) ? 3 : key.startsWith(q) ? 2 : key.contains(q) ? 1 : 0;
+                best = Math.max(best, match * FIELD_WEIGHTS[i]);
+            }
+            return best;
+        }
+    }
+
+    public VehicleSearchIndex(VehicleRepository vehicleRepo,
+                              MeterRegistry meterRegistry,
+                              @Value("${veely.vehicles.search-index.max-memory:16MB}") DataSize maxMemory) {
+        this.vehicleRepo = vehicleRepo;
+        this.maxBytes = maxMemory.toBytes();
+        this.queryTimer = Timer.builder("veely.vehicles.search-index.query")
+                .description("Latenza delle ricerche sull'indice veicoli")
+                .register(meterRegistry);
+        Gauge.builder("veely.vehicles.search-index.entries", this, VehicleSearchIndex::size)
+                .description("Veicoli presenti nell'indice di ricerca")
+                .register(meterRegistry);
+        Gauge.builder("veely.vehicles.search-index.memory", this, VehicleSearchIndex::estimatedBytes)
+                .description("Occupazione stimata dell'indice di ricerca")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /** Riprova a costruire l'indice se è stato disattivato perché oltre il budget. */
+    @Scheduled(fixedDelayString = "${veely.vehicles.search-index.retry-interval:PT30M}",
+               initialDelayString = "${veely.vehicles.search-index.retry-interval:PT30M}")
+    public void retryIfDisabled() {
+        if (!ready) {
+            rebuild();
+        }
+    }
+
+    /** Ricostruisce l'indice da zero con una query di proiezione. */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<Object[]> rows;
+        try {
+            rows = vehicleRepo.findSearchFields();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                pending.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Object[] row : rows) {
+                add(toEntry((Long) row[0], (String) row[1], (String) row[2],
+                        (String) row[3], (String) row[4]));
+            }
+            // le modifiche confermate dopo la lettura non sono nelle righe
+            pending.forEach(this::replace);
+            pending.clear();
+            rebuilding = false;
+            ready = checkBudget();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (ready) {
+            log.info("Indice di ricerca veicoli costruito: {} veicoli, ~{} KB",
+                    rows.size(), estimatedBytes / 1024);
+        }
+    }
+
+    /** Aggiorna il veicolo nell'indice al commit della transazione corrente. */
+    public void index(Vehicle vehicle) {
+        Entry entry = toEntry(vehicle.getId(), vehicle.getPlate(), vehicle.getBrand(),
+                vehicle.getModel(), vehicle.getChassisNumber());
+        AfterCommit.run(() -> apply(entry.id(), entry));
+    }
+
+    /** Rimuove il veicolo dall'indice al commit della transazione corrente. */
+    public void remove(Long vehicleId) {
+        AfterCommit.run(() -> apply(vehicleId, null));
+    }
+
+    /**
+     * Ricerca i veicoli che contengono il testo indicato in targa, telaio,
+     * marca o modello, ordinati per rilevanza.
+     */
+    public List<Hit> search(String query, int limit) {
+        String q = normalize(query);
+        if (q == null || q.length() < MIN_QUERY_LENGTH) {
+            return List.of();
+        }
+        if (!ready) {
+            return searchDatabase(query.trim(), limit);
+        }
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            List<Hit> hits = new ArrayList<>();
+            for (Long id : candidates(q)) {
+                Entry e = entries.get(id);
+                int score = e.score(q);
+                if (score > 0) {
+                    hits.add(new Hit(e.id(), e.plate(), e.brand(), e.model(), score));
+                }
+            }
+            hits.sort(Comparator.comparingInt(Hit::score).reversed()
+                    .thenComparing(Hit::plate, Comparator.nullsLast(Comparator.naturalOrder())));
+            return hits.size() > limit ? List.copyOf(hits.subList(0, limit)) : hits;
+        } finally {
+            lock.readLock().unlock();
+            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    // ---------------------- interni ----------------------
+
+    private Set<Long> candidates(String q) {
+        // intersezione delle liste a partire dalla più corta
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : gramsOf(q, 3)) {
+            Set<Long> ids = grams.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private List<Hit> searchDatabase(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return vehicleRepo.searchVehicles(query, null, null, null, limit).stream()
+                    .map(v -> new Hit(v.getId(), v.getPlate(), v.getBrand(), v.getModel(), 0))
+                    .toList();
+        } finally {
+            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void apply(Long id, Entry entry) {
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pending.put(id, entry);
+            }
+            if (!ready) {
+                // indice disattivato: il veicolo verrà riletto dal database al prossimo tentativo
+                return;
+            }
+            replace(id, entry);
+            ready = checkBudget();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void replace(Long id, Entry entry) {
+        Entry previous = entries.remove(id);
+        if (previous != null) {
+            unlink(previous);
+        }
+        if (entry != null) {
+            add(entry);
+        }
+    }
+
+    private void add(Entry e) {
+        entries.put(e.id(), e);
+        estimatedBytes += e.bytes();
+        e.grams().forEach(g -> link(g, e.id()));
+    }
+
+    private void unlink(Entry e) {
+        estimatedBytes -= e.bytes();
+        e.grams().forEach(g -> unlink(g, e.id()));
+    }
+
+    private void link(String key, Long id) {
+        Set<Long> ids = grams.get(key);
+        if (ids == null) {
+            ids = new HashSet<>();
+            grams.put(key, ids);
+            estimatedBytes += KEY_OVERHEAD + 2L * key.length();
+        }
+        ids.add(id);
+    }
+
+    private void unlink(String key, Long id) {
+        Set<Long> ids = grams.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            grams.remove(key);
+            estimatedBytes -= KEY_OVERHEAD + 2L * key.length();
+        }
+    }
+
+    private boolean checkBudget() {
+        if (estimatedBytes <= maxBytes) {
+            return true;
+        }
+        log.warn("Indice di ricerca veicoli oltre il budget ({} > {} byte): ricerche su database "
+                + "fino al prossimo tentativo di ricostruzione", estimatedBytes, maxBytes);
+        clear();
+        return false;
+    }
+
+    private void clear() {
+        entries.clear();
+        grams.clear();
+        estimatedBytes = 0;
+    }
+
+    private static Entry toEntry(Long id, String plate, String brand, String model, String chassis) {
+        String[] keys = {normalize(plate), normalize(chassis), normalize(brand), normalize(model)};
+        Set<String> grams = new HashSet<>();
+        long bytes = ENTRY_OVERHEAD;
+        for (String key : keys) {
+            if (key != null) {
+                // i bigrammi servono alle query di due caratteri
+                grams.addAll(gramsOf(key, 2));
+                grams.addAll(gramsOf(key, 3));
+                bytes += 2L * key.length();
+            }
+        }
+        for (String value : new String[] {plate, brand, model}) {
+            bytes += value != null ? 2L * value.length() : 0;
+        }
+        bytes += (long) POSTING_BYTES * grams.size();
+        return new Entry(id, plate, brand, model, keys, grams, bytes);
+    }
+
+    /** N-grammi di {@code s}; una stringa più corta di {@code n} è un unico n-gramma. */
+    private static List<String> gramsOf(String s, int n) {
+        if (s.length() <= n) {
+            return List.of(s);
+        }
+        List<String> result = new ArrayList<>(s.length() - n + 1);
+        for (int i = 0; i + n <= s.length(); i++) {
+            result.add(s.substring(i, i + n));
+        }
+        return result;
+    }
+
+    /** Minuscole, senza accenti né caratteri non alfanumerici; {@code null} se vuoto. */
+    static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String s = Normalizer.normalize(value, Normalizer.Form.NFD);
+        s = DIACRITICS.matcher(s).replaceAll("");
+        s = NON_ALNUM.matcher(s).replaceAll("").toLowerCase(Locale.ROOT);
+        return s.isEmpty() ? null : s;
+    }
+}
@@ -5,9 +5,15 @@ import com.veely.entity.Document;
 import com.veely.entity.FuelCard;
 import com.veely.entity.Vehicle;
 import com.veely.exception.ResourceNotFoundException;
+import com.veely.model.AttachmentOwner;
 import com.veely.model.DocumentType;
 import com.veely.model.MileageSource;
 import com.veely.model.VehicleStatus;
+import com.veely.model.VehicleType;
+import com.veely.dto.vehicle.BulkStatusUpdateResult;
+import com.veely.dto.vehicle.BulkStatusUpdateResult.Outcome;
+import com.veely.dto.vehicle.VehicleListStatistics;
+import com.veely.model.DashboardSection;
 import com.veely.repository.DocumentRepository;
 import com.veely.repository.FuelCardRepository;
 import com.veely.repository.VehicleRepository;
@@ -15,27 +21,41 @@ import com.veely.repository.AssignmentRepository;
 import com.veely.repository.RefuelRepository;
 import com.veely.repository.VehicleBookingRepository;
 import com.veely.service.FileSystemStorageService;
+import com.veely.service.attachment.AttachmentService;
+import com.veely.service.storage.FileDeletionOutbox;
+import com.veely.service.storage.ImageDerivativeService;
 import com.veely.repository.MaintenanceRepository;
 import com.veely.repository.VehicleTaskRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Servizio per la gestione completa dei veicoli,
@@ -50,6 +70,9 @@ public class VehicleService {
     private final VehicleRepository vehicleRepo;
     private final DocumentRepository documentRepo;
     private final FileSystemStorageService fileStorage;
+    private final ImageDerivativeService imageDerivatives;
+    private final AttachmentService attachments;
+    private final FileDeletionOutbox fileDeletions;
     private final FuelCardRepository fuelCardRepo;
     //private final MaintenanceService maintenanceService;
     private final AssignmentRepository assignmentRepo;
@@ -59,6 +82,12 @@ public class VehicleService {
     private final VehicleTaskService vehicleTaskService;
     private final VehicleMileageService mileageService;
     private final VehicleBookingRepository vehicleBookingRepo;
+    private final VehicleSearchIndex searchIndex;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /** Numero massimo di id per singola UPDATE massiva. */
+    private static final int BULK_CHUNK = 1000;
 
     // ---------------------- CRUD VEICOLO ----------------------
 
@@ -92,6 +121,7 @@ public class VehicleService {
         
         vehicleTaskService.ensureTasksExist(saved);
         mileageService.recordMileage(saved, saved.getCurrentMileage(), MileageSource.VEHICLE, saved.getId(), LocalDate.now());
+        searchIndex.index(saved);
         
         return saved;
     	}catch (Exception e) {
@@ -141,6 +171,7 @@ public class VehicleService {
         existing.setImagePath(payload.getImagePath());
         Vehicle saved = vehicleRepo.save(existing);
         mileageService.updateMileage(MileageSource.VEHICLE, saved.getId(), saved, saved.getCurrentMileage(), LocalDate.now());
+        searchIndex.index(saved);
         log.info("Veicolo ID: {} aggiornato con successo", id);
         return saved;
         }catch (Exception e) {
@@ -158,6 +189,15 @@ public class VehicleService {
     }
 
 
+    /**
+     * Tutti i veicoli ordinati per targa, in streaming per l'export tabellare.
+     * Va invocato in una transazione e lo stream va chiuso dal chiamante.
+     */
+    @Transactional(readOnly = true)
+    public Stream<Vehicle> streamForExport() {
+        return vehicleRepo.streamAllForExport();
+    }
+
     @Transactional(readOnly = true)
     public List<Vehicle> findAll() {
         return vehicleRepo.findAll();
@@ -177,6 +217,66 @@ public class VehicleService {
         return vehicleRepo.findWithoutFuelCard();
     }
     
+    /**
+     * Aggiorna lo stato di più veicoli in un'unica transazione: una query di
+     * lettura e una UPDATE JPQL per blocco di {@value #BULK_CHUNK} id, invece
+     * di un {@link #update} completo per veicolo. Dopo il commit vengono
+     * rimossi dalla cache {@code vehicleDetails} solo i veicoli modificati e
+     * notificati contatori di flotta e dashboard, perché la UPDATE massiva
+     * non passa dai listener JPA.
+     */
+    public BulkStatusUpdateResult bulkUpdateStatus(Collection<Long> vehicleIds, VehicleStatus newStatus) {
+        List<Long> ids = vehicleIds.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Long, Object[]> current = new HashMap<>();
+        List<Long> toUpdate = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BULK_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + BULK_CHUNK, ids.size()));
+            for (Object[] row : vehicleRepo.findPlatesAndStatusesByIdIn(chunk)) {
+                current.put((Long) row[0], row);
+            }
+        }
+
+        List<BulkStatusUpdateResult.Item> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Object[] row = current.get(id);
+            if (row == null) {
+                items.add(new BulkStatusUpdateResult.Item(id, null, null, Outcome.NOT_FOUND));
+                continue;
+            }
+            VehicleStatus previous = (VehicleStatus) row[2];
+            boolean changed = previous != newStatus;
+            if (changed) {
+                toUpdate.add(id);
+            }
+            items.add(new BulkStatusUpdateResult.Item(id, (String) row[1], previous,
+                    changed ? Outcome.UPDATED : Outcome.UNCHANGED));
+        }
+
+        int updated = 0;
+        for (int from = 0; from < toUpdate.size(); from += BULK_CHUNK) {
+            updated += vehicleRepo.updateStatusByIdIn(
+                    toUpdate.subList(from, Math.min(from + BULK_CHUNK, toUpdate.size())), newStatus);
+        }
+        log.info("Aggiornamento massivo stato {}: {} richiesti, {} modificati", newStatus, ids.size(), updated);
+
+        if (!toUpdate.isEmpty()) {
+            toUpdate.forEach(id -> eventPublisher.publishEvent(
+                    new FleetCounterService.VehicleChanged(id, newStatus, false)));
+            eventPublisher.publishEvent(new DashboardSnapshotService.SectionsChanged(
+                    EnumSet.of(DashboardSection.METRICS, DashboardSection.VEHICLE_STATUS, DashboardSection.TASKS)));
+            evictDetailsAfterCommit(toUpdate);
+        }
+        return new BulkStatusUpdateResult(newStatus, items);
+    }
+
+    private void evictDetailsAfterCommit(List<Long> ids) {
+        Cache cache = cacheManager.getCache("vehicleDetails");
+        if (cache == null) {
+            return;
+        }
+        AfterCommit.run(() -> ids.forEach(cache::evict));
+    }
+
     public void delete(Long id) {
     	log.warn("Richiesta eliminazione veicolo ID: {}", id);
     	try {
@@ -198,8 +298,9 @@ public class VehicleService {
         taskRepo.deleteAll(taskRepo.findByVehicleId(id));
         vehicleBookingRepo.deleteByVehicleId(id);
         mileageService.deleteByVehicle(id);
-        fileStorage.deleteDirectory("vehicles/" + id);
+        fileDeletions.deleteDirectory("vehicles/" + id);
         vehicleRepo.delete(v);
+        searchIndex.remove(id);
         log.info("Veicolo ID: {} eliminato con successo", id);
     	}catch (Exception e) {
             log.error("Errore durante l'eliminazione del veicolo ID: {}", id, e);
@@ -227,8 +328,52 @@ public class VehicleService {
     
 
 
+    /**
+     * Pagina della lista veicoli ordinata per targa, con paginazione keyset:
+     * {@code afterPlate} è l'ultima targa della pagina precedente.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Vehicle> searchPage(String search, VehicleStatus status, VehicleType type,
+                                     String afterPlate, int size) {
+        return vehicleRepo.searchVehicles(search, status, type, afterPlate, size);
+    }
+
+    /** Numero di veicoli che soddisfano i filtri della lista. */
+    @Transactional(readOnly = true)
+    public long countMatching(String search, VehicleStatus status, VehicleType type) {
+        return vehicleRepo.countVehicles(search, status, type);
+    }
+
+    /**
+     * Statistiche della lista veicoli con una sola query raggruppata; sono
+     * "in scadenza" i veicoli con assicurazione o bollo prima di {@code deadline}.
+     */
+    @Transactional(readOnly = true)
+    public VehicleListStatistics getListStatistics(LocalDate deadline) {
+        return VehicleListStatistics.of(vehicleRepo.countByStatusAndType(deadline));
+    }
+
     // ---------------------- FOTO VEICOLO ----------------------
 
+    /**
+     * Nome file della prima foto ({@code VEHICLE_IMAGE}) di ciascun veicolo,
+     * caricato con una sola query per tutti gli id richiesti.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, String> findPhotoFilenames(Collection<Long> vehicleIds) {
+        Map<Long, String> photos = new HashMap<>();
+        if (vehicleIds.isEmpty()) {
+            return photos;
+        }
+        for (Object[] row : documentRepo.findPathsByVehicleIdInAndType(vehicleIds, DocumentType.VEHICLE_IMAGE)) {
+            String path = (String) row[1];
+            if (path != null) {
+                photos.putIfAbsent((Long) row[0], path.substring(path.lastIndexOf('/') + 1));
+            }
+        }
+        return photos;
+    }
+
     /**
      * Carica una fotografia del veicolo in uploads/vehicles/{id}/photos.
      * Registra un Document con type = VEHICLE_IMAGE.
@@ -245,6 +390,7 @@ public class VehicleService {
                 .issueDate(LocalDate.now())
                 .expiryDate(null)
                 .build();
+        imageDerivatives.generateAfterCommit(filename, subDir);
         return documentRepo.save(doc);
     }
 
@@ -265,24 +411,32 @@ public class VehicleService {
                                    DocumentType type,
                                    LocalDate issueDate,
                                    LocalDate expiryDate) {
-        Vehicle v = findByIdOrThrow(vehicleId);
-        String subDir = "vehicles/" + vehicleId + "/docs";
-        String filename = fileStorage.store(file, subDir);
-
-        Document doc = Document.builder()
-                .vehicle(v)
-                .type(type)
-                .path(subDir + "/" + filename)
-                .issueDate(issueDate)
-                .expiryDate(expiryDate)
-                .build();
-        return documentRepo.save(doc);
+        return attachments.upload(AttachmentOwner.VEHICLE, vehicleId, file, type, issueDate, expiryDate);
     }
 
     @Transactional(readOnly = true)
     public Resource loadDocument(Long vehicleId, String filename) {
-        String subDir = "vehicles/" + vehicleId + "/docs";
-        return fileStorage.loadAsResource(filename, subDir);
+        return attachments.load(AttachmentOwner.VEHICLE, vehicleId, filename);
+    }
+
+    /** File servito da /fleet/vehicles/files: documento o, in mancanza, fotografia del veicolo. */
+    @Transactional(readOnly = true)
+    public Resource loadFile(Long vehicleId, String filename) {
+        try {
+            return loadDocument(vehicleId, filename);
+        } catch (ResourceNotFoundException e) {
+            return loadPhoto(vehicleId, filename);
+        }
+    }
+
+    /** Miniatura di una foto servita da /fleet/vehicles/files (cartella docs o photos). */
+    @Transactional(readOnly = true)
+    public Resource loadThumbnail(Long vehicleId, String filename) {
+        String docsDir = "vehicles/" + vehicleId + "/docs";
+        String subDir = fileStorage.exists(docsDir + "/" + filename)
+                ? docsDir
+                : "vehicles/" + vehicleId + "/photos";
+        return imageDerivatives.loadThumbnail(filename, subDir);
     }
 
     /**
@@ -292,12 +446,8 @@ public class VehicleService {
         Document doc = documentRepo.findById(docId)
                 .orElseThrow(() -> new ResourceNotFoundException("Documento non trovato: " + docId));
 
-        String fullPath = doc.getPath(); // es. "vehicles/12/docs/123_filename.pdf"
-        int lastSlash = fullPath.lastIndexOf('/');
-        String subDir = fullPath.substring(0, lastSlash);
-        String filename = fullPath.substring(lastSlash + 1);
-
-        fileStorage.delete(filename, subDir);
+        // file e miniatura vengono rimossi dopo il commit
+        fileDeletions.delete(doc.getPath());
         documentRepo.delete(doc);
     }
     
@@ -0,0 +1,138 @@
+package com.veely.service.attachment;
+
+import com.veely.entity.AdminDocument;
+import com.veely.entity.Assignment;
+import com.veely.entity.ComplianceItem;
+import com.veely.entity.Contract;
+import com.veely.entity.Correspondence;
+import com.veely.entity.Document;
+import com.veely.entity.Employee;
+import com.veely.entity.Employment;
+import com.veely.entity.ExpenseItem;
+import com.veely.entity.Insurance;
+import com.veely.entity.Maintenance;
+import com.veely.entity.Project;
+import com.veely.entity.Supplier;
+import com.veely.entity.Vehicle;
+import com.veely.model.AttachmentOwner;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Per ogni tipo di proprietario di allegati: entità, attributo di
+ * {@link Document} che la referenzia, cartella dei file e collegamento del
+ * nuovo documento. Le cartelle sono quelle storiche, per non spostare i file
+ * già caricati.
+ */
+@Component
+public class AttachmentOwnerRegistry {
+
+    /**
+     * Regole di un tipo di proprietario.
+     *
+     * @param attribute  associazione di {@link Document} verso il proprietario
+     * @param accessor   lettura della stessa associazione
+     * @param directory  cartella dei file, da id e (se {@code needsOwner}) entità
+     * @param needsOwner la cartella dipende dallo stato del proprietario
+     * @param attach     collega il documento al proprietario (ed eventuali entità correlate)
+     * @param thumbnails genera le miniature per le foto
+     */
+    public record Binding<T>(AttachmentOwner owner,
+                             Class<T> entityClass,
+                             String attribute,
+                             Function<Document, T> accessor,
+                             BiFunction<Long, T, String> directory,
+                             boolean needsOwner,
+                             BiConsumer<Document.DocumentBuilder, T> attach,
+                             boolean thumbnails) {
+
+        public String notFoundMessage(Long id) {
+            return owner.getDisplayName() + " inesistente: " + id;
+        }
+    }
+
+    private final Map<AttachmentOwner, Binding<?>> bindings = new EnumMap<>(AttachmentOwner.class);
+
+    public AttachmentOwnerRegistry() {
+        byId(AttachmentOwner.EMPLOYEE, Employee.class, "employee", Document::getEmployee,
+                id -> "employees/" + id + "/docs", Document.DocumentBuilder::employee, true);
+        byOwner(AttachmentOwner.EMPLOYMENT, Employment.class, "employment", Document::getEmployment,
+                e -> "employments/" + e.getMatricola() + "/docs", Document.DocumentBuilder::employment);
+        byId(AttachmentOwner.VEHICLE, Vehicle.class, "vehicle", Document::getVehicle,
+                id -> "vehicles/" + id + "/docs", Document.DocumentBuilder::vehicle, true);
+        byId(AttachmentOwner.ASSIGNMENT, Assignment.class, "assignment", Document::getAssignment,
+                id -> "assignments/" + id + "/docs", Document.DocumentBuilder::assignment, false);
+        byId(AttachmentOwner.PROJECT, Project.class, "project", Document::getProject,
+                id -> "projects/" + id + "/docs", Document.DocumentBuilder::project, false);
+        byOwner(AttachmentOwner.INSURANCE, Insurance.class, "insurance", Document::getInsurance,
+                i -> i.getProject() != null && i.getProject().getId() != null
+                        ? "projects/" + i.getProject().getId() + "/policies/" + i.getId()
+                        : "policies/" + i.getId(),
+                Document.DocumentBuilder::insurance);
+        byId(AttachmentOwner.CONTRACT, Contract.class, "contract", Document::getContract,
+                id -> "contracts/" + id + "/docs", Document.DocumentBuilder::contract, false);
+        byId(AttachmentOwner.SUPPLIER, Supplier.class, "supplier", Document::getSupplier,
+                id -> "suppliers/" + id + "/docs", Document.DocumentBuilder::supplier, false);
+        byId(AttachmentOwner.ADMIN_DOCUMENT, AdminDocument.class, "adminDocument", Document::getAdminDocument,
+                id -> "admin_documents/" + id + "/docs", Document.DocumentBuilder::adminDocument, false);
+        byId(AttachmentOwner.EXPENSE_ITEM, ExpenseItem.class, "expenseItem", Document::getExpenseItem,
+                id -> "expense_items/" + id + "/docs", Document.DocumentBuilder::expenseItem, false);
+        // i documenti di manutenzione stanno tra quelli del veicolo e ne risultano anche nell'elenco
+        byOwner(AttachmentOwner.MAINTENANCE, Maintenance.class, "maintenance", Document::getMaintenance,
+                m -> "vehicles/" + m.getVehicle().getId() + "/docs",
+                (doc, m) -> doc.maintenance(m).vehicle(m.getVehicle()));
+        byId(AttachmentOwner.CORRESPONDENCE, Correspondence.class, "correspondence", Document::getCorrespondence,
+                id -> "correspondence/" + id + "/docs", Document.DocumentBuilder::correspondence, false);
+        // gli adempimenti archiviano nella cartella del dipendente o della commessa a cui si riferiscono
+        byOwner(AttachmentOwner.COMPLIANCE_ITEM, ComplianceItem.class, "complianceItem", Document::getComplianceItem,
+                c -> c.getEmployee() != null ? "employees/" + c.getEmployee().getId() + "/docs"
+                        : c.getProject() != null ? "projects/" + c.getProject().getId() + "/docs"
+                        : "compliance/" + c.getId() + "/docs",
+                (doc, c) -> doc.complianceItem(c).employee(c.getEmployee()).project(c.getProject()));
+    }
+
+    /** Regole del tipo di proprietario. */
+    public Binding<?> binding(AttachmentOwner owner) {
+        return bindings.get(owner);
+    }
+
+    /** Proprietario di un documento: tipo ed entità. */
+    public record OwnerRef(AttachmentOwner type, Object entity) {}
+
+    /**
+     * Proprietario del documento. Manutenzioni e adempimenti vengono prima di
+     * veicolo, dipendente e commessa, che i loro documenti referenziano a loro volta.
+     */
+    public Optional<OwnerRef> ownerOf(Document document) {
+        return Stream.concat(Stream.of(AttachmentOwner.MAINTENANCE, AttachmentOwner.COMPLIANCE_ITEM),
+                        bindings.keySet().stream())
+                .map(owner -> {
+                    Object entity = bindings.get(owner).accessor().apply(document);
+                    return entity != null ? new OwnerRef(owner, entity) : null;
+                })
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    private <T> void byId(AttachmentOwner owner, Class<T> type, String attribute, Function<Document, T> accessor,
+                          Function<Long, String> directory,
+                          BiConsumer<Document.DocumentBuilder, T> attach, boolean thumbnails) {
+        bindings.put(owner, new Binding<>(owner, type, attribute, accessor,
+                (id, entity) -> directory.apply(id), false, attach, thumbnails));
+    }
+
+    private <T> void byOwner(AttachmentOwner owner, Class<T> type, String attribute, Function<Document, T> accessor,
+                             Function<T, String> directory,
+                             BiConsumer<Document.DocumentBuilder, T> attach) {
+        bindings.put(owner, new Binding<>(owner, type, attribute, accessor,
+                (id, entity) -> directory.apply(entity), true, attach, false));
+    }
+}
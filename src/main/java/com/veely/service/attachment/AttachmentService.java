@@ -0,0 +1,153 @@
+package com.veely.service.attachment;
+
+import com.veely.entity.Document;
+import com.veely.exception.ResourceNotFoundException;
+import com.veely.model.AttachmentOwner;
+import com.veely.model.DocumentType;
+import com.veely.repository.DocumentRepository;
+import com.veely.service.FileSystemStorageService;
+import com.veely.service.storage.ImageDerivativeService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Allegati dei documenti per qualunque tipo di proprietario registrato in
+ * {@link AttachmentOwnerRegistry}.
+ * <p>
+ * Un caricamento di più file legge il proprietario una sola volta e salva i
+ * documenti insieme; l'elenco per più proprietari dello stesso tipo è una
+ * sola query, raggruppata per id del proprietario.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class AttachmentService {
+
+    private final AttachmentOwnerRegistry registry;
+    private final DocumentRepository documentRepo;
+    private final FileSystemStorageService fileStorage;
+    private final ImageDerivativeService imageDerivatives;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Carica un file e lo registra come documento del proprietario. */
+    public Document upload(AttachmentOwner owner, Long ownerId, MultipartFile file,
+                           DocumentType type, LocalDate issueDate, LocalDate expiryDate) {
+        List<Document> saved = upload(owner, ownerId, List.of(file), type, issueDate, expiryDate);
+        if (saved.isEmpty()) {
+            throw new IllegalArgumentException("File vuoto");
+        }
+        return saved.get(0);
+    }
+
+    /**
+     * Carica più file per lo stesso proprietario, con gli stessi tipo e date.
+     * I file vuoti vengono ignorati; se un salvataggio fallisce i file già
+     * archiviati nella stessa richiesta vengono rimossi.
+     */
+    public List<Document> upload(AttachmentOwner owner, Long ownerId, List<MultipartFile> files,
+                                 DocumentType type, LocalDate issueDate, LocalDate expiryDate) {
+        return doUpload(registry.binding(owner), ownerId, files, type, issueDate, expiryDate);
+    }
+
+    /** Documenti di un proprietario. */
+    @Transactional(readOnly = true)
+    public List<Document> list(AttachmentOwner owner, Long ownerId) {
+        return listForOwners(owner, List.of(ownerId)).get(ownerId);
+    }
+
+    /**
+     * Documenti di più proprietari dello stesso tipo in una sola query. Ogni id
+     * richiesto è presente nella mappa, con lista vuota se non ha documenti.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<Document>> listForOwners(AttachmentOwner owner, Collection<Long> ownerIds) {
+        Map<Long, List<Document>> byOwner = new LinkedHashMap<>();
+        ownerIds.forEach(id -> byOwner.put(id, new ArrayList<>()));
+        if (byOwner.isEmpty()) {
+            return byOwner;
+        }
+        String attribute = registry.binding(owner).attribute();
+        List<Object[]> rows = entityManager.createQuery(
+                        "SELECT d." + attribute + ".id, d FROM Document d " +
+                        "WHERE d." + attribute + ".id IN :ids ORDER BY d.id", Object[].class)
+                .setParameter("ids", byOwner.keySet())
+                .getResultList();
+        for (Object[] row : rows) {
+            byOwner.get((Long) row[0]).add((Document) row[1]);
+        }
+        return byOwner;
+    }
+
+    /** Risorsa per il download di un allegato, dal nome del file nella cartella del proprietario. */
+    @Transactional(readOnly = true)
+    public Resource load(AttachmentOwner owner, Long ownerId, String filename) {
+        return fileStorage.loadAsResource(filename, directory(registry.binding(owner), ownerId));
+    }
+
+    /** Cartella degli allegati del proprietario. */
+    @Transactional(readOnly = true)
+    public String directory(AttachmentOwner owner, Long ownerId) {
+        return directory(registry.binding(owner), ownerId);
+    }
+
+    private <T> List<Document> doUpload(AttachmentOwnerRegistry.Binding<T> binding, Long ownerId,
+                                        List<MultipartFile> files, DocumentType type,
+                                        LocalDate issueDate, LocalDate expiryDate) {
+        T entity = resolve(binding, ownerId);
+        String dir = binding.directory().apply(ownerId, entity);
+        fileStorage.initDirectory(dir);
+
+        List<Document> docs = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                if (file == null || file.isEmpty()) {
+                    continue;
+                }
+                String filename = fileStorage.store(file, dir);
+                Document.DocumentBuilder doc = Document.builder()
+                        .type(type)
+                        .issueDate(issueDate)
+                        .expiryDate(expiryDate)
+                        .path(dir + "/" + filename);
+                binding.attach().accept(doc, entity);
+                docs.add(doc.build());
+                if (binding.thumbnails() && ImageDerivativeService.hasThumbnail(type)) {
+                    imageDerivatives.generateAfterCommit(filename, dir);
+                }
+            }
+            return documentRepo.saveAll(docs);
+        } catch (RuntimeException e) {
+            docs.forEach(doc -> fileStorage.delete(doc.getPath()));
+            throw e;
+        }
+    }
+
+    private <T> String directory(AttachmentOwnerRegistry.Binding<T> binding, Long ownerId) {
+        T entity = binding.needsOwner() ? resolve(binding, ownerId) : null;
+        return binding.directory().apply(ownerId, entity);
+    }
+
+    private <T> T resolve(AttachmentOwnerRegistry.Binding<T> binding, Long ownerId) {
+        T entity = entityManager.find(binding.entityClass(), ownerId);
+        if (entity == null) {
+            throw new ResourceNotFoundException(binding.notFoundMessage(ownerId));
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,228 @@
+package com.veely.service.attachment;
+
+import com.veely.exception.ResourceNotFoundException;
+import com.veely.model.AttachmentOwner;
+import com.veely.model.DocumentType;
+import com.veely.repository.PayslipRepository;
+import com.veely.service.FileSystemStorageService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archivio ZIP con tutti i documenti di un proprietario (veicolo, dipendente,
+ * rapporto di lavoro, commessa, ...) o con i cedolini di un mese, da
+ * consegnare in un colpo solo (es. a un revisore).
+ * <p>
+ * L'elenco dei file viene letto prima di rispondere, così un proprietario
+ * inesistente restituisce 404; il contenuto viene poi scritto direttamente
+ * sulla risposta, un file alla volta, leggendo dal canale del file (o dello
+ * stream del backend remoto) con un solo buffer: nessun file e nessun
+ * archivio restano in memoria. Le voci prendono il nome dal tipo di
+ * documento e dalla data di emissione; i file non trovati, e quelli accorciati
+ * durante la copia (la cui voce resta incompleta), sono elencati in
+ * {@value #MISSING_ENTRY}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class DocumentArchiveService {
+
+    static final String MISSING_ENTRY = "FILE_MANCANTI.txt";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Voce dell'archivio: nome nello ZIP e percorso nell'archivio file. */
+    record ArchiveEntry(String name, String path) {}
+
+    private final AttachmentOwnerRegistry registry;
+    private final FileSystemStorageService fileStorage;
+    private final PayslipRepository payslipRepo;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Tutti i documenti del proprietario indicato. */
+    public ResponseEntity<StreamingResponseBody> ownerArchive(AttachmentOwner owner, Long ownerId) {
+        AttachmentOwnerRegistry.Binding<?> binding = registry.binding(owner);
+        if (entityManager.find(binding.entityClass(), ownerId) == null) {
+            throw new ResourceNotFoundException(binding.notFoundMessage(ownerId));
+        }
+        String attribute = binding.attribute();
+        List<Object[]> rows = entityManager.createQuery(
+                        "SELECT d.type, d.issueDate, d.path FROM Document d " +
+                        "WHERE d." + attribute + ".id = :id ORDER BY d.type, d.issueDate, d.id", Object[].class)
+                .setParameter("id", ownerId)
+                .getResultList();
+
+        EntryNames names = new EntryNames();
+        List<ArchiveEntry> entries = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            DocumentType type = (DocumentType) row[0];
+            LocalDate issueDate = (LocalDate) row[1];
+            String path = (String) row[2];
+            String base = type != null ? type.getDisplayName() : DocumentType.OTHER.getDisplayName();
+            if (issueDate != null) {
+                base += "_" + issueDate;
+            }
+            entries.add(new ArchiveEntry(names.next(base, extension(path)), path));
+        }
+        String filename = owner.getDisplayName().toLowerCase(Locale.ITALY).replace(' ', '_')
+                + "_" + ownerId + "_documenti.zip";
+        return response(filename, entries);
+    }
+
+    /** Cedolini del mese, nominati per dipendente e codice fiscale. */
+    public ResponseEntity<StreamingResponseBody> payslipArchive(YearMonth month) {
+        EntryNames names = new EntryNames();
+        List<ArchiveEntry> entries = new ArrayList<>();
+        for (Object[] row : payslipRepo.findArchiveEntries(month.atDay(1))) {
+            String path = (String) row[0];
+            String fiscalCode = (String) row[1];
+            String employee = row[2] != null ? row[2] + " " + row[3] : null;
+            String base = "Cedolino_" + month + "_" + (employee != null ? employee + "_" : "") + fiscalCode;
+            entries.add(new ArchiveEntry(names.next(base, extension(path)), path));
+        }
+        return response("cedolini_" + month + ".zip", entries);
+    }
+
+    private ResponseEntity<StreamingResponseBody> response(String filename, List<ArchiveEntry> entries) {
+        StreamingResponseBody body = out -> {
+            long start = System.nanoTime();
+            int written = write(entries, out);
+            log.info("Archivio {} completato: {} file su {} in {} ms", filename, written, entries.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename, StandardCharsets.UTF_8).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Scrive l'archivio sullo stream, che non viene chiuso.
+     *
+     * @return numero di file inclusi
+     */
+    int write(List<ArchiveEntry> entries, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        // PDF e immagini sono già compressi: compressione minima, più veloce
+        zip.setLevel(Deflater.BEST_SPEED);
+        WritableByteChannel target = Channels.newChannel(zip);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        List<String> missing = new ArrayList<>();
+        int written = 0;
+        for (ArchiveEntry entry : entries) {
+            Optional<Resource> resource = fileStorage.find(entry.path());
+            if (resource.isEmpty()) {
+                missing.add(entry.name() + " (" + entry.path() + ")");
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry(entry.name()));
+            boolean complete = copy(resource.get(), target, buffer);
+            zip.closeEntry();
+            if (complete) {
+                written++;
+            } else {
+                log.warn("File {} accorciato durante la copia nell'archivio: voce {} incompleta",
+                        entry.path(), entry.name());
+                missing.add(entry.name() + " (" + entry.path() + ", incompleto)");
+            }
+        }
+        if (!missing.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(MISSING_ENTRY));
+            zip.write(String.join("\n", missing).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+        return written;
+    }
+
+    /** @return {@code false} se il file è stato copiato solo in parte */
+    private static boolean copy(Resource resource, WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        if (resource.isFile()) {
+            try (FileChannel source = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+                return transfer(source, source.size(), target);
+            }
+        }
+        try (ReadableByteChannel source = resource.readableChannel()) {
+            buffer.clear();
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copia i primi {@code size} byte del file. Se {@code transferTo} non
+     * avanza più, il file è stato accorciato nel frattempo: la copia si
+     * ferma invece di ripetere all'infinito.
+     *
+     * @return {@code false} se sono stati copiati meno di {@code size} byte
+     */
+    static boolean transfer(FileChannel source, long size, WritableByteChannel target) throws IOException {
+        long position = 0;
+        while (position < size) {
+            long transferred = source.transferTo(position, size - position, target);
+            if (transferred <= 0) {
+                return false;
+            }
+            position += transferred;
+        }
+        return true;
+    }
+
+    private static String extension(String path) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return dot > slash ? path.substring(dot).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /** Nomi delle voci senza caratteri non ammessi nei nomi file e senza duplicati. */
+    public static final class EntryNames {
+        private final Map<String, Integer> used = new HashMap<>();
+
+        public String next(String base, String extension) {
+            String clean = base.replaceAll("[\\\\/:*?\"<>|]", "-").replaceAll("\\s+", "_");
+            int count = used.merge((clean + extension).toLowerCase(Locale.ROOT), 1, Integer::sum);
+            return count == 1 ? clean + extension : clean + "_" + count + extension;
+        }
+    }
+}
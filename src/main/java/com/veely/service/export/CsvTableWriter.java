@@ -0,0 +1,95 @@
+package com.veely.service.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * CSV secondo RFC 4180: separatore virgola, righe CRLF, campi tra virgolette
+ * quando contengono separatori, virgolette o a capo. Il BOM iniziale fa
+ * riconoscere a Excel la codifica UTF-8.
+ * <p>
+ * I testi che iniziano con {@code = + - @}, tabulazione o ritorno a capo
+ * verrebbero eseguiti come formule dai fogli di calcolo: vengono preceduti
+ * da un apice e messi tra virgolette. I numeri (anche negativi) restano
+ * invariati.
+ */
+class CsvTableWriter implements TableWriter {
+
+    private static final char SEPARATOR = ',';
+
+    private final Writer writer;
+
+    CsvTableWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        writer.write('\uFEFF');
+    }
+
+    @Override
+    public void header(List<String> headers) throws IOException {
+        row(headers);
+    }
+
+    @Override
+    public void row(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(SEPARATOR);
+            }
+            Object value = values.get(i);
+            String text = format(value);
+            if (!(value instanceof Number) && isFormula(text)) {
+                writeQuoted("'" + text);
+            } else {
+                writeField(text);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String value) throws IOException {
+        boolean quote = value.indexOf(SEPARATOR) >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0
+                || (!value.isEmpty() && (value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' '));
+        if (quote) {
+            writeQuoted(value);
+        } else {
+            writer.write(value);
+        }
+    }
+
+    private void writeQuoted(String value) throws IOException {
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    static boolean isFormula(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        char first = value.charAt(0);
+        return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+    }
+
+    static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof BigDecimal bd) {
+            return bd.toPlainString();
+        }
+        return value.toString();
+    }
+
+    /** Svuota il buffer senza chiudere lo stream della risposta. */
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+}
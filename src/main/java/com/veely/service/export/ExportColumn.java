@@ -0,0 +1,14 @@
+package com.veely.service.export;
+
+import java.util.function.Function;
+
+/**
+ * Colonna di un export: intestazione e funzione che estrae il valore dalla riga.
+ * Il valore può essere una stringa, un numero, una data o {@code null}.
+ */
+public record ExportColumn<T>(String header, Function<? super T, ?> value) {
+
+    public static <T> ExportColumn<T> of(String header, Function<? super T, ?> value) {
+        return new ExportColumn<>(header, value);
+    }
+}
@@ -0,0 +1,84 @@
+package com.veely.service.export;
+
+import com.veely.entity.Employee;
+import com.veely.entity.Employment;
+import com.veely.entity.ExpenseReport;
+import com.veely.entity.Maintenance;
+import com.veely.entity.Refuel;
+import com.veely.entity.Vehicle;
+
+import java.util.List;
+
+/**
+ * Colonne degli export tabellari. Le associazioni lette qui devono essere
+ * caricate in JOIN FETCH dalle rispettive query {@code streamAllForExport}.
+ */
+public final class ExportDefinitions {
+
+    private ExportDefinitions() {
+    }
+
+    public static final List<ExportColumn<Vehicle>> VEHICLES = List.of(
+            ExportColumn.of("Targa", Vehicle::getPlate),
+            ExportColumn.of("Marca", Vehicle::getBrand),
+            ExportColumn.of("Modello", Vehicle::getModel),
+            ExportColumn.of("Tipo", v -> v.getType() != null ? v.getType().getDisplayName() : null),
+            ExportColumn.of("Anno", Vehicle::getYear),
+            ExportColumn.of("Stato", v -> v.getStatus() != null ? v.getStatus().getDisplayName() : null),
+            ExportColumn.of("Chilometraggio", Vehicle::getCurrentMileage),
+            ExportColumn.of("Assicurazione", Vehicle::getInsuranceExpiryDate),
+            ExportColumn.of("Bollo", Vehicle::getCarTaxExpiryDate));
+
+    public static final List<ExportColumn<Refuel>> REFUELS = List.of(
+            ExportColumn.of("Data", Refuel::getDate),
+            ExportColumn.of("Targa", r -> r.getVehicle().getPlate()),
+            ExportColumn.of("Veicolo", r -> r.getVehicle().getBrand() + " " + r.getVehicle().getModel()),
+            ExportColumn.of("Carta carburante", r -> r.getFuelCard() != null ? r.getFuelCard().getCardNumber() : null),
+            ExportColumn.of("Chilometraggio", Refuel::getMileage),
+            ExportColumn.of("Litri", Refuel::getQuantity),
+            ExportColumn.of("Importo", Refuel::getAmount));
+
+    public static final List<ExportColumn<Maintenance>> MAINTENANCE = List.of(
+            ExportColumn.of("Data", Maintenance::getDate),
+            ExportColumn.of("Targa", m -> m.getVehicle().getPlate()),
+            ExportColumn.of("Veicolo", m -> m.getVehicle().getBrand() + " " + m.getVehicle().getModel()),
+            ExportColumn.of("Tipo", m -> m.getType() != null ? m.getType().getDescription() : null),
+            ExportColumn.of("Fornitore", m -> m.getSupplier() != null ? m.getSupplier().getName() : null),
+            ExportColumn.of("Chilometraggio", Maintenance::getMileage),
+            ExportColumn.of("Costo", Maintenance::getCost),
+            ExportColumn.of("Descrizione", Maintenance::getDescription));
+
+    public static final List<ExportColumn<ExpenseReport>> EXPENSE_REPORTS = List.of(
+            ExportColumn.of("Numero", ExpenseReport::getExpenseReportNum),
+            ExportColumn.of("Dipendente", r -> fullName(r.getEmployee())),
+            ExportColumn.of("Scopo", ExpenseReport::getPuorpose),
+            ExportColumn.of("Commessa", r -> r.getProject() != null ? r.getProject().getName() : null),
+            ExportColumn.of("Data", ExpenseReport::getCreationDate),
+            ExportColumn.of("Dal", ExpenseReport::getStartDate),
+            ExportColumn.of("Al", ExpenseReport::getEndDate),
+            ExportColumn.of("Inviata il", ExpenseReport::getReportSubmitDate),
+            ExportColumn.of("Stato", r -> r.getExpenseStatus() != null ? r.getExpenseStatus().getDisplayName() : null),
+            ExportColumn.of("Totale", ExpenseReport::getExpenseReportTotal),
+            ExportColumn.of("Rimborsabile", ExpenseReport::getReimbursableTotal),
+            ExportColumn.of("Non rimborsabile", ExpenseReport::getNonReimbursableTotal));
+
+    public static final List<ExportColumn<Employment>> EMPLOYMENTS = List.of(
+            ExportColumn.of("Matricola", Employment::getMatricola),
+            ExportColumn.of("Cognome", e -> e.getEmployee().getLastName()),
+            ExportColumn.of("Nome", e -> e.getEmployee().getFirstName()),
+            ExportColumn.of("Codice fiscale", e -> e.getEmployee().getFiscalCode()),
+            ExportColumn.of("Contratto", e -> e.getContractType() != null ? e.getContractType().getDisplayName() : null),
+            ExportColumn.of("CCNL", e -> e.getCcnl() != null ? e.getCcnl().getDisplayName() : null),
+            ExportColumn.of("Livello", Employment::getContractLevel),
+            ExportColumn.of("Qualifica", Employment::getJobTitle),
+            ExportColumn.of("Filiale", Employment::getBranch),
+            ExportColumn.of("Reparto", Employment::getDepartment),
+            ExportColumn.of("Inizio", Employment::getStartDate),
+            ExportColumn.of("Fine", Employment::getEndDate),
+            ExportColumn.of("Stato", e -> e.getStatus() != null ? e.getStatus().getDisplayName() : null),
+            ExportColumn.of("Retribuzione", Employment::getSalary));
+
+    private static String fullName(Employee e) {
+        return e != null ? e.getFirstName() + " " + e.getLastName() : null;
+    }
+}
@@ -0,0 +1,49 @@
+package com.veely.service.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import org.springframework.http.MediaType;
+
+/** Formati supportati dall'export tabellare in streaming. */
+public enum ExportFormat {
+
+    CSV("csv", MediaType.parseMediaType("text/csv; charset=UTF-8")),
+    XLSX("xlsx", MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    ExportFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /** Converte il parametro {@code format} della richiesta (es. "csv", "xlsx"). */
+    public static ExportFormat from(String value) {
+        if (value != null) {
+            for (ExportFormat f : values()) {
+                if (f.extension.equals(value.trim().toLowerCase(Locale.ROOT))) {
+                    return f;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Formato non supportato: " + value);
+    }
+
+    TableWriter open(OutputStream out, String sheetName) throws IOException {
+        return switch (this) {
+            case CSV -> new CsvTableWriter(out);
+            case XLSX -> new XlsxTableWriter(out, sheetName);
+        };
+    }
+}
@@ -0,0 +1,112 @@
+package com.veely.service.export;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Motore di export tabellare (CSV/XLSX) in streaming.
+ * <p>
+ * Le righe vengono lette da uno {@link Stream} JPA aperto in una transazione
+ * di sola lettura sul thread asincrono della risposta e scritte subito sul
+ * socket: né l'elenco delle entità né il file completo restano in memoria.
+ * Il contesto di persistenza viene svuotato ogni {@link #CLEAR_EVERY} righe.
+ * <p>
+ * Le query usate come sorgente devono caricare in JOIN FETCH le associazioni
+ * lette dalle colonne e impostare il fetch size (hint {@code org.hibernate.fetchSize}).
+ */
+@Slf4j
+@Service
+public class StreamingExportService {
+
+    static final int CLEAR_EVERY = 500;
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate readOnlyTx;
+
+    public StreamingExportService(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Prepara la risposta di download.
+     *
+     * @param baseName nome del file senza data né estensione (es. "veicoli")
+     * @param format   formato richiesto
+     * @param columns  colonne dell'export
+     * @param rows     sorgente delle righe, invocata all'interno della transazione
+     */
+    public <T> ResponseEntity<StreamingResponseBody> export(String baseName,
+                                                           ExportFormat format,
+                                                           List<ExportColumn<T>> columns,
+                                                           Supplier<Stream<T>> rows) {
+        String filename = baseName + "_" + LocalDate.now().format(FILE_DATE) + "." + format.getExtension();
+        StreamingResponseBody body = out -> {
+            long start = System.nanoTime();
+            long count = readOnlyTx.execute(status -> {
+                try (TableWriter writer = format.open(out, baseName)) {
+                    return write(writer, columns, rows);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Export {} completato: {} righe in {} ms", filename, count,
+                    (System.nanoTime() - start) / 1_000_000);
+        };
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename, StandardCharsets.UTF_8).build().toString())
+                .body(body);
+    }
+
+    /** Scrive intestazione e righe; restituisce il numero di righe scritte. */
+    <T> long write(TableWriter writer, List<ExportColumn<T>> columns, Supplier<Stream<T>> rows)
+            throws IOException {
+        List<String> headers = new ArrayList<>(columns.size());
+        columns.forEach(c -> headers.add(c.header()));
+        writer.header(headers);
+
+        long count = 0;
+        List<Object> values = new ArrayList<>(columns.size());
+        try (Stream<T> stream = rows.get()) {
+            Iterator<T> it = stream.iterator();
+            while (it.hasNext()) {
+                T row = it.next();
+                values.clear();
+                for (ExportColumn<T> c : columns) {
+                    values.add(c.value().apply(row));
+                }
+                writer.row(values);
+                if (++count % CLEAR_EVERY == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,16 @@
+package com.veely.service.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Scrittore di righe tabellari direttamente sullo stream di uscita.
+ * Le implementazioni non trattengono le righe già scritte.
+ */
+interface TableWriter extends Closeable {
+
+    void header(List<String> headers) throws IOException;
+
+    void row(List<?> values) throws IOException;
+}
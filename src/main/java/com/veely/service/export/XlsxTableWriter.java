@@ -0,0 +1,202 @@
+package com.veely.service.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Cartella di lavoro XLSX minimale (SpreadsheetML) scritta in streaming.
+ * <p>
+ * Le parti fisse del pacchetto vengono scritte all'apertura; il foglio
+ * viene emesso riga per riga con stringhe inline, senza tabella delle
+ * stringhe condivise, così la memoria resta costante. Numeri e date sono
+ * scritti come celle numeriche (le date con formato data).
+ */
+class XlsxTableWriter implements TableWriter {
+
+    private static final LocalDate EXCEL_EPOCH = LocalDate.of(1899, 12, 30);
+
+    /** Indici degli stili definiti in {@link #STYLES}. */
+    private static final int STYLE_HEADER = 1;
+    private static final int STYLE_DATE = 2;
+    private static final int STYLE_DATETIME = 3;
+
+    private static final String CONTENT_TYPES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+            <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+            <Default Extension="xml" ContentType="application/xml"/>\
+            <Override PartName="/xl/workbook.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>\
+            <Override PartName="/xl/worksheets/sheet1.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>\
+            <Override PartName="/xl/styles.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml"/>\
+            </Types>""";
+
+    private static final String ROOT_RELS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" Target="xl/workbook.xml"/>\
+            </Relationships>""";
+
+    private static final String WORKBOOK = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <workbook xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main" \
+            xmlns:r="http://schemas.openxmlformats.org/officeDocument/2006/relationships">\
+            <sheets><sheet name="%s" sheetId="1" r:id="rId1"/></sheets>\
+            </workbook>""";
+
+    private static final String WORKBOOK_RELS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" Target="worksheets/sheet1.xml"/>\
+            <Relationship Id="rId2" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles" Target="styles.xml"/>\
+            </Relationships>""";
+
+    private static final String STYLES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <styleSheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">\
+            <numFmts count="2"><numFmt numFmtId="164" formatCode="dd/mm/yyyy"/>\
+            <numFmt numFmtId="165" formatCode="dd/mm/yyyy hh:mm"/></numFmts>\
+            <fonts count="2"><font><sz val="11"/><name val="Calibri"/></font>\
+            <font><b/><sz val="11"/><name val="Calibri"/></font></fonts>\
+            <fills count="2"><fill><patternFill patternType="none"/></fill>\
+            <fill><patternFill patternType="gray125"/></fill></fills>\
+            <borders count="1"><border><left/><right/><top/><bottom/><diagonal/></border></borders>\
+            <cellStyleXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0"/></cellStyleXfs>\
+            <cellXfs count="4"><xf numFmtId="0" fontId="0" fillId="0" borderId="0" xfId="0"/>\
+            <xf numFmtId="0" fontId="1" fillId="0" borderId="0" xfId="0" applyFont="1"/>\
+            <xf numFmtId="164" fontId="0" fillId="0" borderId="0" xfId="0" applyNumberFormat="1"/>\
+            <xf numFmtId="165" fontId="0" fillId="0" borderId="0" xfId="0" applyNumberFormat="1"/></cellXfs>\
+            </styleSheet>""";
+
+    private final ZipOutputStream zip;
+    private final Writer writer;
+    private int rowIndex;
+
+    XlsxTableWriter(OutputStream out, String sheetName) throws IOException {
+        this.zip = new ZipOutputStream(out);
+        this.writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 16 * 1024);
+
+        part("[Content_Types].xml", CONTENT_TYPES);
+        part("_rels/.rels", ROOT_RELS);
+        part("xl/workbook.xml", WORKBOOK.formatted(escape(sheetName(sheetName))));
+        part("xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+        part("xl/styles.xml", STYLES);
+
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<sheetData>");
+    }
+
+    @Override
+    public void header(List<String> headers) throws IOException {
+        writeRow(headers, true);
+    }
+
+    @Override
+    public void row(List<?> values) throws IOException {
+        writeRow(values, false);
+    }
+
+    private void writeRow(List<?> values, boolean header) throws IOException {
+        rowIndex++;
+        writer.write("<row r=\"" + rowIndex + "\">");
+        for (int col = 0; col < values.size(); col++) {
+            Object value = values.get(col);
+            if (value == null) {
+                continue;
+            }
+            String ref = columnName(col) + rowIndex;
+            if (header) {
+                inlineString(ref, value.toString(), STYLE_HEADER);
+            } else if (value instanceof Number n) {
+                String v = n instanceof BigDecimal bd ? bd.toPlainString() : n.toString();
+                writer.write("<c r=\"" + ref + "\"><v>" + v + "</v></c>");
+            } else if (value instanceof LocalDate d) {
+                writer.write("<c r=\"" + ref + "\" s=\"" + STYLE_DATE + "\"><v>"
+                        + ChronoUnit.DAYS.between(EXCEL_EPOCH, d) + "</v></c>");
+            } else if (value instanceof LocalDateTime dt) {
+                double serial = ChronoUnit.DAYS.between(EXCEL_EPOCH, dt.toLocalDate())
+                        + dt.toLocalTime().toSecondOfDay() / 86400d;
+                writer.write("<c r=\"" + ref + "\" s=\"" + STYLE_DATETIME + "\"><v>" + serial + "</v></c>");
+            } else if (value instanceof Boolean b) {
+                writer.write("<c r=\"" + ref + "\" t=\"b\"><v>" + (b ? 1 : 0) + "</v></c>");
+            } else {
+                inlineString(ref, value.toString(), 0);
+            }
+        }
+        writer.write("</row>");
+    }
+
+    private void inlineString(String ref, String text, int style) throws IOException {
+        writer.write("<c r=\"" + ref + "\" t=\"inlineStr\"");
+        if (style != 0) {
+            writer.write(" s=\"" + style + "\"");
+        }
+        writer.write("><is><t xml:space=\"preserve\">");
+        writer.write(escape(text));
+        writer.write("</t></is></c>");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+        // lo stream della risposta è gestito dal container: finish() senza close()
+        zip.finish();
+        zip.flush();
+    }
+
+    private void part(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    /** Nome colonna in stile Excel: 0 → A, 25 → Z, 26 → AA. */
+    static String columnName(int index) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = index + 1; i > 0; i = (i - 1) / 26) {
+            sb.insert(0, (char) ('A' + (i - 1) % 26));
+        }
+        return sb.toString();
+    }
+
+    /** Escape XML; i caratteri di controllo non ammessi in XML 1.0 vengono scartati. */
+    static String escape(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                default -> {
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /** I nomi dei fogli Excel sono limitati a 31 caratteri e non ammettono []:*?/\ */
+    private static String sheetName(String name) {
+        String s = name == null || name.isBlank() ? "Export" : name.replaceAll("[\\[\\]:*?/\\\\]", " ");
+        return s.length() > 31 ? s.substring(0, 31) : s;
+    }
+}
@@ -0,0 +1,312 @@
+package com.veely.service.ingest;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.dto.payslip.PayslipUploadResult;
+import com.veely.model.PayslipStatus;
+import com.veely.repository.EmployeeRepository;
+import com.veely.service.FileSystemStorageService;
+import com.veely.service.SecureFileUploadService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Caricamento massivo di PDF nominativi (cedolini, Certificazioni Uniche).
+ * <p>
+ * Il codice fiscale è letto dal nome del file. I file vengono scritti su disco
+ * in parallelo da un pool limitato, i dipendenti sono risolti con un'unica
+ * query {@code IN} e le righe inserite con batch JDBC in una transazione
+ * breve: gli ID IDENTITY impediscono a Hibernate di raggruppare gli insert.
+ * L'avanzamento viene notificato a ogni file completato.
+ */
+@Slf4j
+@Service
+public class DocumentIngestionService {
+
+    static final int BATCH_SIZE = 100;
+
+    private final EmployeeRepository employeeRepository;
+    private final SecureFileUploadService secureFileUploadService;
+    private final FileSystemStorageService fileSystemStorageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TimeZone jdbcTimeZone;
+    private final int maxArchiveEntries;
+    private final TaskExecutor writers;
+
+    /** File già scritto su disco, in attesa della riga a database. */
+    record StoredFile(String fiscalCode, String storagePath, String originalFilename) {}
+
+    public DocumentIngestionService(EmployeeRepository employeeRepository,
+                                    SecureFileUploadService secureFileUploadService,
+                                    FileSystemStorageService fileSystemStorageService,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${veely.ingest.zip.max-entries:5000}") int maxArchiveEntries,
+                                    @Value("${spring.jpa.properties.hibernate.jdbc.time_zone:}") String jdbcTimeZone,
+                                    @Qualifier(ExecutorConfig.DOCUMENT_INGEST) TaskExecutor writers) {
+        this.employeeRepository = employeeRepository;
+        this.secureFileUploadService = secureFileUploadService;
+        this.fileSystemStorageService = fileSystemStorageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // stessa conversione degli orari applicata da Hibernate alle altre righe
+        this.jdbcTimeZone = StringUtils.hasText(jdbcTimeZone) ? TimeZone.getTimeZone(jdbcTimeZone) : null;
+        this.maxArchiveEntries = maxArchiveEntries;
+        this.writers = writers;
+    }
+
+    public PayslipUploadResult ingest(IngestTarget target, MultipartFile[] files) {
+        return ingest(target, files, progress -> { });
+    }
+
+    public PayslipUploadResult ingest(IngestTarget target, MultipartFile[] files, Consumer<IngestProgress> listener) {
+        PayslipUploadResult result = PayslipUploadResult.builder().build();
+        if (files == null || files.length == 0) {
+            return result;
+        }
+        List<MultipartFile> uploads = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            if (file != null && !file.isEmpty()) {
+                uploads.add(file);
+            }
+        }
+        result.setProcessed(uploads.size());
+        ProgressTracker progress = new ProgressTracker(uploads.size(), listener);
+
+        CompletionService<StoredFile> completion = new ExecutorCompletionService<>(writers);
+        Map<Future<StoredFile>, String> pending = new HashMap<>();
+        for (MultipartFile file : uploads) {
+            String originalFilename = file.getOriginalFilename();
+            String fiscalCode = extractFiscalCode(originalFilename);
+            if (!StringUtils.hasText(fiscalCode)) {
+                progress.rejected(result, originalFilename, "impossibile leggere il codice fiscale dal nome file");
+                continue;
+            }
+            Future<StoredFile> future = completion.submit(() -> new StoredFile(fiscalCode,
+                    target.subdir() + "/" + secureFileUploadService.uploadDocument(file, target.subdir()),
+                    originalFilename));
+            pending.put(future, originalFilename);
+        }
+
+        List<StoredFile> stored = new ArrayList<>(pending.size());
+        try {
+            for (int i = 0; i < pending.size(); i++) {
+                Future<StoredFile> done = completion.take();
+                String originalFilename = pending.get(done);
+                try {
+                    stored.add(done.get());
+                    progress.accepted(originalFilename);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    log.error("Errore durante il caricamento di {} ({})", originalFilename, target.description(), cause);
+                    progress.rejected(result, originalFilename, cause.getMessage());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pending.keySet().forEach(future -> future.cancel(true));
+            result.addError("Caricamento interrotto: i file già salvati vengono comunque registrati");
+        }
+
+        persist(target, stored, result);
+        return result;
+    }
+
+    /**
+     * Caricamento da archivio ZIP letto voce per voce dallo stream, senza
+     * estrarlo in una cartella temporanea: ogni PDF viene validato e copiato
+     * direttamente nell'archivio documenti, le righe sono inserite a blocchi
+     * di {@link #BATCH_SIZE}. Il numero di file non è noto in anticipo, per
+     * cui le notifiche hanno {@code total} pari a 0.
+     */
+    public PayslipUploadResult ingestArchive(IngestTarget target, InputStream archive,
+                                             Consumer<IngestProgress> listener) {
+        PayslipUploadResult result = PayslipUploadResult.builder().build();
+        ProgressTracker progress = new ProgressTracker(0, listener);
+        List<StoredFile> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory() || isMetadataEntry(entry.getName())) {
+                    continue;
+                }
+                if (result.getProcessed() >= maxArchiveEntries) {
+                    result.addError("L'archivio contiene più di " + maxArchiveEntries
+                            + " file: i successivi non sono stati caricati");
+                    break;
+                }
+                result.setProcessed(result.getProcessed() + 1);
+                String originalFilename = entryFilename(entry.getName());
+                String fiscalCode = extractFiscalCode(originalFilename);
+                if (!originalFilename.toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+                    progress.rejected(result, originalFilename, "sono ammessi solo file PDF");
+                    continue;
+                }
+                if (!StringUtils.hasText(fiscalCode)) {
+                    progress.rejected(result, originalFilename, "impossibile leggere il codice fiscale dal nome file");
+                    continue;
+                }
+                try {
+                    String storedFilename = secureFileUploadService.uploadDocument(
+                            zip, originalFilename, "application/pdf", target.subdir());
+                    batch.add(new StoredFile(fiscalCode, target.subdir() + "/" + storedFilename, originalFilename));
+                    progress.accepted(originalFilename);
+                } catch (RuntimeException ex) {
+                    progress.rejected(result, originalFilename, ex.getMessage());
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    persist(target, batch, result);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            // i file già estratti restano validi e vengono registrati comunque
+            log.error("Lettura dell'archivio di {} interrotta", target.description(), ex);
+            result.addError("Archivio ZIP non leggibile: " + ex.getMessage());
+        }
+
+        persist(target, batch, result);
+        return result;
+    }
+
+    /**
+     * Registra i file salvati con batch JDBC. Se l'inserimento fallisce i file
+     * vengono rimossi dal disco per non lasciare PDF senza riga a database.
+     */
+    void persist(IngestTarget target, List<StoredFile> stored, PayslipUploadResult result) {
+        if (stored.isEmpty()) {
+            return;
+        }
+        Map<String, Long> employees = resolveEmployees(
+                stored.stream().map(StoredFile::fiscalCode).collect(Collectors.toSet()));
+        Timestamp uploadedAt = Timestamp.valueOf(LocalDateTime.now());
+        Calendar calendar = jdbcTimeZone != null ? Calendar.getInstance(jdbcTimeZone) : null;
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(target.insertSql(), stored, BATCH_SIZE, (ps, file) -> {
+                        Long employeeId = employees.get(file.fiscalCode());
+                        if (employeeId != null) {
+                            ps.setLong(1, employeeId);
+                        } else {
+                            ps.setNull(1, Types.BIGINT);
+                        }
+                        ps.setString(2, file.fiscalCode());
+                        ps.setObject(3, target.referenceValue());
+                        ps.setString(4, file.storagePath());
+                        ps.setString(5, file.originalFilename());
+                        if (calendar != null) {
+                            ps.setTimestamp(6, uploadedAt, calendar);
+                        } else {
+                            ps.setTimestamp(6, uploadedAt);
+                        }
+                        ps.setString(7, (employeeId != null ? PayslipStatus.PENDING : PayslipStatus.UNMATCHED).name());
+                    }));
+        } catch (DataAccessException ex) {
+            log.error("Registrazione di {} {} non riuscita", stored.size(), target.description(), ex);
+            for (StoredFile file : stored) {
+                fileSystemStorageService.delete(file.storagePath());
+                result.addError(file.originalFilename() + ": registrazione non riuscita");
+            }
+            return;
+        }
+
+        result.setStored(result.getStored() + stored.size());
+        for (StoredFile file : stored) {
+            if (!employees.containsKey(file.fiscalCode())) {
+                result.addUnmatched(file.fiscalCode() + " (" + file.originalFilename() + ")");
+            }
+        }
+    }
+
+    private Map<String, Long> resolveEmployees(Set<String> fiscalCodes) {
+        Map<String, Long> employees = new HashMap<>();
+        for (Object[] row : employeeRepository.findIdsByFiscalCodes(fiscalCodes)) {
+            employees.putIfAbsent((String) row[1], ((Number) row[0]).longValue());
+        }
+        return employees;
+    }
+
+    /** Cartelle e file di servizio aggiunti dagli archiviatori (macOS, Windows). */
+    private static boolean isMetadataEntry(String name) {
+        String filename = entryFilename(name);
+        return name.startsWith("__MACOSX/") || filename.startsWith(".") || filename.equalsIgnoreCase("Thumbs.db");
+    }
+
+    /** Nome del file di una voce ZIP, senza le cartelle dell'archivio. */
+    private static String entryFilename(String name) {
+        return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+    }
+
+    /** Codice fiscale dal nome file: solo caratteri alfanumerici, maiuscolo, al massimo 16. */
+    public static String extractFiscalCode(String filename) {
+        if (!StringUtils.hasText(filename)) {
+            return null;
+        }
+        String baseName = Path.of(filename).getFileName().toString();
+        int dotIndex = baseName.lastIndexOf('.');
+        if (dotIndex > 0) {
+            baseName = baseName.substring(0, dotIndex);
+        }
+        String cleaned = baseName.replaceAll("[^A-Za-z0-9]", "").toUpperCase(Locale.ITALY);
+        if (cleaned.length() > 16) {
+            cleaned = cleaned.substring(0, 16);
+        }
+        return cleaned;
+    }
+
+    /** Conta i file completati e inoltra l'avanzamento al listener. */
+    private static final class ProgressTracker {
+        private final int total;
+        private final Consumer<IngestProgress> listener;
+        private int done;
+
+        ProgressTracker(int total, Consumer<IngestProgress> listener) {
+            this.total = total;
+            this.listener = listener;
+        }
+
+        void accepted(String filename) {
+            listener.accept(new IngestProgress(++done, total, filename, true, null));
+        }
+
+        void rejected(PayslipUploadResult result, String filename, String reason) {
+            String message = filename + ": " + reason;
+            result.addError(message);
+            listener.accept(new IngestProgress(++done, total, filename, false, message));
+        }
+    }
+}
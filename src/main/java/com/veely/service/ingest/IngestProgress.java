@@ -0,0 +1,8 @@
+package com.veely.service.ingest;
+
+/**
+ * Avanzamento di un caricamento massivo dopo l'elaborazione di un file.
+ * {@code message} è valorizzato solo se il file è stato scartato.
+ */
+public record IngestProgress(int done, int total, String filename, boolean stored, String message) {
+}
@@ -0,0 +1,31 @@
+package com.veely.service.ingest;
+
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Locale;
+
+/**
+ * Destinazione di un caricamento massivo: tabella, periodo di riferimento
+ * e cartella di archiviazione dei file.
+ */
+public record IngestTarget(String description,
+                           String table,
+                           String referenceColumn,
+                           Object referenceValue,
+                           String subdir) {
+
+    public static IngestTarget payslips(YearMonth month) {
+        return new IngestTarget("cedolini", "payslips", "reference_month", month.atDay(1),
+                String.format(Locale.ITALY, "payslips/%d/%02d", month.getYear(), month.getMonthValue()));
+    }
+
+    public static IngestTarget certifications(Year year) {
+        return new IngestTarget("Certificazioni Uniche", "unique_certifications", "reference_year", year.getValue(),
+                String.format(Locale.ITALY, "unique-certifications/%d", year.getValue()));
+    }
+
+    String insertSql() {
+        return "INSERT INTO " + table + " (employee_id, fiscal_code, " + referenceColumn
+                + ", storage_path, original_filename, uploaded_at, status) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
+}
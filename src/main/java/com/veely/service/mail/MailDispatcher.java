@@ -0,0 +1,178 @@
+package com.veely.service.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Punto unico di invio email dell'applicazione (cedolini, Certificazioni Uniche).
+ * <p>
+ * I messaggi viaggiano su connessioni prese da un {@link SmtpConnectionPool}:
+ * una {@link Pipeline} tiene la stessa connessione per tutti i messaggi che
+ * invia, evitando handshake TLS e autenticazione a ogni email. Tutti gli invii
+ * condividono il limite di messaggi al minuto del provider.
+ * <p>
+ * Metriche: {@code veely.mail.messages} (per esito), {@code veely.mail.send}
+ * (latenza), {@code veely.mail.throughput} (messaggi/s nell'ultimo minuto) e
+ * i contatori {@code veely.mail.connections.*} del pool.
+ */
+@Service
+public class MailDispatcher {
+
+    private final SmtpConnectionPool pool;
+    private final MailRateLimiter rateLimiter;
+    private final String fromAddress;
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Timer sendTimer;
+    private final ThroughputMeter throughput = new ThroughputMeter();
+
+    public MailDispatcher(JavaMailSenderImpl mailSender,
+                          MeterRegistry meterRegistry,
+                          @Value("${veely.mail.from:risorseumane@sincolsrl.it}") String fromAddress,
+                          @Value("${veely.mail.pool.max-connections:4}") int maxConnections,
+                          @Value("${veely.mail.pool.idle-timeout:PT30S}") Duration idleTimeout,
+                          @Value("${veely.mail.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+                          @Value("${veely.mail.rate-per-minute:120}") int ratePerMinute,
+                          @Value("${veely.mail.pool.socket-timeout:PT30S}") Duration socketTimeout) {
+        this.pool = new SmtpConnectionPool(mailSender, meterRegistry, maxConnections, idleTimeout,
+                maxMessagesPerConnection, socketTimeout);
+        this.rateLimiter = new MailRateLimiter(ratePerMinute);
+        this.fromAddress = fromAddress;
+        this.sent = Counter.builder("veely.mail.messages")
+                .description("Email inviate")
+                .tag("outcome", "sent")
+                .register(meterRegistry);
+        this.failed = Counter.builder("veely.mail.messages")
+                .description("Email inviate")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("veely.mail.send")
+                .description("Durata dell'invio di un messaggio su connessione aperta")
+                .register(meterRegistry);
+        Gauge.builder("veely.mail.throughput", throughput, ThroughputMeter::perSecond)
+                .description("Email inviate al secondo, media sull'ultimo minuto")
+                .register(meterRegistry);
+    }
+
+    /** Messaggio di solo testo con un allegato, dal mittente configurato. */
+    public MimeMessage compose(String to, String subject, String body,
+                               String attachmentName, InputStreamSource attachment) throws MessagingException {
+        MimeMessage message = new MimeMessage(pool.endpoint().session());
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, StandardCharsets.UTF_8.name());
+        helper.setFrom(fromAddress);
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText(body, false);
+        helper.addAttachment(attachmentName, attachment);
+        message.saveChanges();
+        return message;
+    }
+
+    /** Invia un singolo messaggio su una connessione del pool. */
+    public void send(MimeMessage message) throws MessagingException, InterruptedException {
+        try (Pipeline pipeline = openPipeline()) {
+            pipeline.send(message);
+        }
+    }
+
+    /** Sessione di invio che riusa la stessa connessione per più messaggi; va chiusa. */
+    public Pipeline openPipeline() {
+        return new Pipeline();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.close();
+    }
+
+    /**
+     * Invii in sequenza sulla stessa connessione SMTP. Dopo un errore la
+     * connessione viene scartata e il messaggio successivo ne apre un'altra.
+     * Non è thread-safe: una pipeline per thread.
+     */
+    public final class Pipeline implements AutoCloseable {
+
+        private SmtpConnectionPool.PooledTransport connection;
+
+        private Pipeline() {
+        }
+
+        public void send(MimeMessage message) throws MessagingException, InterruptedException {
+            rateLimiter.acquire();
+            if (connection != null && pool.isExhausted(connection)) {
+                pool.release(connection, true);
+                connection = null;
+            }
+            if (connection == null) {
+                connection = pool.acquire();
+            }
+            long start = System.nanoTime();
+            try {
+                connection.transport().sendMessage(message, message.getAllRecipients());
+                connection.messageSent();
+                sent.increment();
+                throughput.record();
+            } catch (MessagingException ex) {
+                failed.increment();
+                pool.release(connection, false);
+                connection = null;
+                throw ex;
+            } finally {
+                sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (connection != null) {
+                pool.release(connection, true);
+                connection = null;
+            }
+        }
+    }
+
+    /** Contatore a finestra scorrevole di 60 secondi, un bucket per secondo. */
+    static final class ThroughputMeter {
+
+        private static final int WINDOW = 60;
+
+        private final long[] seconds = new long[WINDOW];
+        private final long[] counts = new long[WINDOW];
+
+        synchronized void record() {
+            long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+            int slot = Math.floorMod(now, WINDOW);
+            if (seconds[slot] != now) {
+                seconds[slot] = now;
+                counts[slot] = 0;
+            }
+            counts[slot]++;
+        }
+
+        synchronized double perSecond() {
+            long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+            long total = 0;
+            for (int i = 0; i < WINDOW; i++) {
+                if (now - seconds[i] < WINDOW) {
+                    total += counts[i];
+                }
+            }
+            return (double) total / WINDOW;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.veely.service.mail;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitatore di frequenza condiviso fra i worker di invio.
+ * <p>
+ * Distribuisce i messaggi a intervalli regolari ({@code 60s / ratePerMinute})
+ * invece di consentire raffiche seguite da lunghe pause: i provider SMTP
+ * contano i messaggi su finestre scorrevoli e tollerano male i picchi.
+ * Con {@code ratePerMinute <= 0} non applica alcun limite.
+ */
+public class MailRateLimiter {
+
+    private final long intervalNanos;
+    private long nextSlot;
+
+    public MailRateLimiter(int ratePerMinute) {
+        this.intervalNanos = ratePerMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / ratePerMinute : 0;
+        this.nextSlot = System.nanoTime();
+    }
+
+    /** Attende il prossimo slot libero. */
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /** Prenota uno slot e restituisce l'attesa in nanosecondi. */
+    synchronized long reserve() {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long slot = Math.max(nextSlot, now);
+        nextSlot = slot + intervalNanos;
+        return slot - now;
+    }
+
+    public Duration interval() {
+        return Duration.ofNanos(intervalNanos);
+    }
+}
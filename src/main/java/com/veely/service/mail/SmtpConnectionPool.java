@@ -0,0 +1,281 @@
+package com.veely.service.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.util.MailConnectException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.util.StringUtils;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool di connessioni SMTP autenticate, riutilizzate fra un invio e l'altro.
+ * <p>
+ * Le connessioni libere sono tenute in ordine LIFO (si riusa quella usata
+ * più di recente, la meno esposta ai timeout del server) e scartate dopo
+ * {@code idleTimeout} di inattività o {@code maxMessages} messaggi. Il numero
+ * di connessioni aperte contemporaneamente non supera {@code maxConnections}.
+ * <p>
+ * Se la porta configurata rifiuta la connessione, il pool riprova in SSL
+ * implicito sulla 465 e, se riesce, usa quella modalità per tutte le
+ * connessioni successive senza modificare il {@link JavaMailSenderImpl}
+ * condiviso.
+ * <p>
+ * Connessione, lettura e scrittura sul socket scadono dopo {@code socketTimeout}
+ * (se non già configurati in {@code mail.smtp.*}): un server che smette di
+ * rispondere fa fallire l'invio invece di bloccare il thread.
+ */
+@Slf4j
+class SmtpConnectionPool implements AutoCloseable {
+
+    private static final int IMPLICIT_SSL_PORT = 465;
+
+    /** Parametri di connessione; {@code implicitSsl} indica il fallback sulla 465. */
+    record Endpoint(String protocol, String host, int port, String username, String password,
+                    Session session, boolean implicitSsl) {}
+
+    /** Connessione prestata dal pool. */
+    static final class PooledTransport {
+        private final Transport transport;
+        private final Endpoint endpoint;
+        private int messages;
+        private long lastUsed;
+
+        private PooledTransport(Transport transport, Endpoint endpoint) {
+            this.transport = transport;
+            this.endpoint = endpoint;
+            this.lastUsed = System.nanoTime();
+        }
+
+        Transport transport() {
+            return transport;
+        }
+
+        void messageSent() {
+            messages++;
+        }
+    }
+
+    private final int maxMessages;
+    private final long idleTimeoutNanos;
+    private final Semaphore permits;
+    private final Deque<PooledTransport> idle = new ArrayDeque<>();
+
+    private final Counter opened;
+    private final Counter reused;
+    private final Counter connectFailures;
+
+    private volatile Endpoint endpoint;
+    private volatile boolean closed;
+
+    SmtpConnectionPool(JavaMailSenderImpl config, MeterRegistry meterRegistry,
+                       int maxConnections, Duration idleTimeout, int maxMessages, Duration socketTimeout) {
+        this.endpoint = configuredEndpoint(config, socketTimeout);
+        this.maxMessages = Math.max(1, maxMessages);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.permits = new Semaphore(Math.max(1, maxConnections), true);
+        this.opened = Counter.builder("veely.mail.connections.opened")
+                .description("Connessioni SMTP aperte")
+                .register(meterRegistry);
+        this.reused = Counter.builder("veely.mail.connections.reused")
+                .description("Connessioni SMTP riutilizzate dal pool")
+                .register(meterRegistry);
+        this.connectFailures = Counter.builder("veely.mail.connections.failed")
+                .description("Tentativi di connessione SMTP falliti")
+                .register(meterRegistry);
+        Gauge.builder("veely.mail.connections.idle", this, SmtpConnectionPool::idleCount)
+                .description("Connessioni SMTP libere nel pool")
+                .register(meterRegistry);
+    }
+
+    /** Presta una connessione, attendendo se tutte sono in uso. */
+    PooledTransport acquire() throws MessagingException, InterruptedException {
+        permits.acquire();
+        try {
+            PooledTransport pooled;
+            while ((pooled = pollIdle()) != null) {
+                if (isUsable(pooled)) {
+                    reused.increment();
+                    return pooled;
+                }
+                closeQuietly(pooled);
+            }
+            return open();
+        } catch (MessagingException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /** Restituisce la connessione; se non è più affidabile viene chiusa. */
+    void release(PooledTransport pooled, boolean healthy) {
+        try {
+            if (healthy && !closed && pooled.messages < maxMessages && pooled.endpoint == endpoint) {
+                pooled.lastUsed = System.nanoTime();
+                synchronized (idle) {
+                    idle.push(pooled);
+                }
+            } else {
+                closeQuietly(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** True se la connessione ha raggiunto il limite di messaggi. */
+    boolean isExhausted(PooledTransport pooled) {
+        return pooled.messages >= maxMessages;
+    }
+
+    Endpoint endpoint() {
+        return endpoint;
+    }
+
+    int idleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledTransport pooled;
+        while ((pooled = pollIdle()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+
+    private PooledTransport pollIdle() {
+        synchronized (idle) {
+            return idle.poll();
+        }
+    }
+
+    private boolean isUsable(PooledTransport pooled) {
+        return pooled.endpoint == endpoint
+                && System.nanoTime() - pooled.lastUsed < idleTimeoutNanos
+                && pooled.transport.isConnected();
+    }
+
+    private PooledTransport open() throws MessagingException {
+        Endpoint current = endpoint;
+        try {
+            return connect(current);
+        } catch (MessagingException ex) {
+            connectFailures.increment();
+            if (current.implicitSsl() || current.port() == IMPLICIT_SSL_PORT
+                    || !(isConnectionRefused(ex) || isSocketTimeout(ex))) {
+                throw ex;
+            }
+            Endpoint fallback = implicitSslEndpoint(current);
+            try {
+                PooledTransport pooled = connect(fallback);
+                endpoint = fallback;
+                log.info("Connessione SMTP riuscita usando fallback SSL su porta 465 per host {}: "
+                        + "la modalità verrà usata per le connessioni successive", fallback.host());
+                return pooled;
+            } catch (MessagingException retryException) {
+                connectFailures.increment();
+                ex.addSuppressed(retryException);
+                log.error("Tentativo di fallback SSL fallito verso {}", fallback.host(), retryException);
+                throw ex;
+            }
+        }
+    }
+
+    private PooledTransport connect(Endpoint target) throws MessagingException {
+        Transport transport = StringUtils.hasText(target.protocol())
+                ? target.session().getTransport(target.protocol())
+                : target.session().getTransport();
+        transport.connect(target.host(), target.port(), target.username(), target.password());
+        opened.increment();
+        return new PooledTransport(transport, target);
+    }
+
+    private static void closeQuietly(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException ex) {
+            log.debug("Chiusura connessione SMTP non riuscita: {}", ex.getMessage());
+        }
+    }
+
+    private static Endpoint configuredEndpoint(JavaMailSenderImpl config, Duration socketTimeout) {
+        Properties properties = copyProperties(config.getJavaMailProperties());
+        // la risposta al QUIT non serve: la connessione si chiude senza attenderla
+        properties.putIfAbsent("mail.smtp.quitwait", "false");
+        String timeout = String.valueOf(socketTimeout.toMillis());
+        properties.putIfAbsent("mail.smtp.connectiontimeout", timeout);
+        properties.putIfAbsent("mail.smtp.timeout", timeout);
+        properties.putIfAbsent("mail.smtp.writetimeout", timeout);
+        return new Endpoint(config.getProtocol(), config.getHost(), config.getPort(),
+                config.getUsername(), config.getPassword(), Session.getInstance(properties), false);
+    }
+
+    private static Endpoint implicitSslEndpoint(Endpoint primary) {
+        Properties properties = copyProperties(primary.session().getProperties());
+        properties.put("mail.smtp.starttls.enable", "false");
+        properties.put("mail.smtp.starttls.required", "false");
+        properties.put("mail.smtp.ssl.enable", "true");
+        properties.putIfAbsent("mail.smtp.ssl.trust", primary.host());
+        properties.put("mail.smtp.socketFactory.port", String.valueOf(IMPLICIT_SSL_PORT));
+        properties.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+        return new Endpoint(primary.protocol(), primary.host(), IMPLICIT_SSL_PORT, primary.username(),
+                primary.password(), Session.getInstance(properties), true);
+    }
+
+    private static boolean isConnectionRefused(Throwable throwable) {
+        Throwable current = throwable;
+        while (current != null) {
+            if (current instanceof MailConnectException) {
+                Throwable nested = current.getCause();
+                if (nested instanceof ConnectException connectException) {
+                    String message = connectException.getMessage();
+                    return message != null && message.toLowerCase(Locale.ROOT).contains("connection refused");
+                }
+                return true;
+            }
+            if (current instanceof ConnectException connectException) {
+                String message = connectException.getMessage();
+                if (message != null && message.toLowerCase(Locale.ROOT).contains("connection refused")) {
+                    return true;
+                }
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    private static boolean isSocketTimeout(Throwable throwable) {
+        Throwable current = throwable;
+        while (current != null) {
+            if (current instanceof SocketTimeoutException) {
+                return true;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    private static Properties copyProperties(Properties source) {
+        Properties copy = new Properties();
+        if (source != null) {
+            copy.putAll(source);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,166 @@
+package com.veely.service.pdf;
+
+import com.lowagie.text.Image;
+import com.veely.entity.CompanyInfo;
+
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * Dati aziendali usati nei PDF, letti una volta e condivisi da tutti gli
+ * export: ragione sociale, colore primario, testi del piè di pagina e
+ * immagini già decodificate.
+ * <p>
+ * L'istanza è immutabile; {@link #logo()} e {@link #watermark()}
+ * restituiscono ogni volta una copia dell'immagine (senza ridecodificarla),
+ * perché posizione e scala vengono impostate dal singolo documento.
+ * {@link #fingerprint()} riassume tutto ciò che finisce nei documenti e fa
+ * parte della chiave dei PDF in {@link RenderedPdfCache}.
+ */
+public final class PdfBranding {
+
+    static final Color DEFAULT_PRIMARY_COLOR = Color.decode("#667eea");
+    private static final String MISSING_NAME = "-----";
+
+    /** Nessuna configurazione aziendale. */
+    public static final PdfBranding NONE = new PdfBranding(null, null, null);
+
+    private final boolean configured;
+    private final String companyName;
+    private final String displayName;
+    private final String subtitle;
+    private final String legalRepresentative;
+    private final Color primaryColor;
+    private final List<String> footerColumns;
+    private final Image logo;
+    private final Image watermark;
+    private final String fingerprint;
+
+    PdfBranding(CompanyInfo info, Image logo, Image watermark) {
+        this.configured = info != null;
+        this.companyName = info != null && info.getCompanyName() != null ? info.getCompanyName() : MISSING_NAME;
+        this.displayName = info != null ? info.getDisplayName() : "VEELY";
+        this.subtitle = info != null ? blankToNull(info.getBusinessDescription()) : "Fleet Management System";
+        this.legalRepresentative = info != null ? info.getLegalRepresentative() : null;
+        this.primaryColor = info != null ? decode(info.getPrimaryColor()) : DEFAULT_PRIMARY_COLOR;
+        this.footerColumns = info != null
+                ? List.of(address(info), contacts(info), taxInfo(info))
+                : List.of();
+        boolean showImages = info != null && Boolean.TRUE.equals(info.getShowLogoInDocuments());
+        this.logo = showImages ? logo : null;
+        this.watermark = showImages ? watermark : null;
+        // le immagini caricate vengono salvate con un nuovo percorso: basta quello
+        this.fingerprint = RenderedPdfCache.fingerprint(companyName, displayName, subtitle, legalRepresentative,
+                primaryColor.getRGB(), footerColumns,
+                this.logo != null ? info.getLogoPath() : null,
+                this.watermark != null ? info.getWatermarkPath() : null);
+    }
+
+    public boolean isConfigured() {
+        return configured;
+    }
+
+    /** Ragione sociale, o un segnaposto se non configurata. */
+    public String companyName() {
+        return companyName;
+    }
+
+    /** Nome da mostrare nelle intestazioni con logo. */
+    public String displayName() {
+        return displayName;
+    }
+
+    /** Descrizione dell'attività sotto il nome, se presente. */
+    public String subtitle() {
+        return subtitle;
+    }
+
+    public String legalRepresentative() {
+        return legalRepresentative;
+    }
+
+    public Color primaryColor() {
+        return primaryColor;
+    }
+
+    /** Colonne del piè di pagina: la prima riga di ognuna è il titolo. */
+    public List<String> footerColumns() {
+        return footerColumns;
+    }
+
+    public boolean hasLogo() {
+        return logo != null;
+    }
+
+    public boolean hasWatermark() {
+        return watermark != null;
+    }
+
+    /** Impronta dei dati aziendali: cambia se cambia l'aspetto dei PDF. */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /** Copia del logo da posizionare nel documento, o {@code null}. */
+    public Image logo() {
+        return logo != null ? Image.getInstance(logo) : null;
+    }
+
+    /** Copia del watermark da posizionare nel documento, o {@code null}. */
+    public Image watermark() {
+        return watermark != null ? Image.getInstance(watermark) : null;
+    }
+
+    private static String address(CompanyInfo info) {
+        if (!Boolean.TRUE.equals(info.getShowAddressInDocuments())) {
+            return "";
+        }
+        String address = info.getFullLegalAddress();
+        return address == null || address.isBlank() ? "" : "SEDE LEGALE\n" + address;
+    }
+
+    private static String contacts(CompanyInfo info) {
+        if (!Boolean.TRUE.equals(info.getShowContactsInDocuments())) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("CONTATTI");
+        appendLine(sb, "Tel: ", info.getPrimaryPhone());
+        appendLine(sb, "Email: ", info.getPrimaryEmail());
+        appendLine(sb, "PEC: ", info.getPecEmail());
+        appendLine(sb, "Web: ", info.getWebsite());
+        return sb.indexOf("\n") < 0 ? "" : sb.toString();
+    }
+
+    private static String taxInfo(CompanyInfo info) {
+        if (!Boolean.TRUE.equals(info.getShowTaxInfoInDocuments())) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("DATI FISCALI");
+        appendLine(sb, "P.IVA: ", info.getVatNumber());
+        appendLine(sb, "C.F.: ", info.getTaxCode());
+        appendLine(sb, "REA: ", info.getReaNumber());
+        appendLine(sb, "Cap. Soc.: ", info.getShareCapital());
+        return sb.indexOf("\n") < 0 ? "" : sb.toString();
+    }
+
+    private static void appendLine(StringBuilder sb, String label, String value) {
+        if (value != null && !value.isBlank()) {
+            sb.append('\n').append(label).append(value.trim());
+        }
+    }
+
+    private static Color decode(String color) {
+        if (color == null || color.isBlank()) {
+            return DEFAULT_PRIMARY_COLOR;
+        }
+        try {
+            return Color.decode(color.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_PRIMARY_COLOR;
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,111 @@
+package com.veely.service.pdf;
+
+import com.lowagie.text.Image;
+import com.veely.entity.CompanyInfo;
+import com.veely.service.CompanyInfoService;
+import com.veely.service.FileSystemStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mantiene in memoria il {@link PdfBranding} corrente, così gli export PDF
+ * non rileggono la configurazione aziendale né ridecodificano logo e
+ * watermark a ogni documento.
+ * <p>
+ * {@link CompanyInfoService} pubblica {@link BrandingChanged} quando cambia
+ * la configurazione, un'immagine o l'azienda attiva: dopo il commit la copia
+ * in memoria viene scartata e ricostruita alla richiesta successiva.
+ * {@code veely.pdf.branding.max-age} limita comunque la durata della copia
+ * (modifiche fatte da un'altra istanza dell'applicazione).
+ */
+@Slf4j
+@Service
+public class PdfBrandingService {
+
+    /** Evento pubblicato quando cambiano i dati aziendali usati nei PDF. */
+    public record BrandingChanged() {}
+
+    private record Cached(PdfBranding branding, long generation, Instant loadedAt) {}
+
+    private final CompanyInfoService companyInfoService;
+    private final FileSystemStorageService storageService;
+    private final Duration maxAge;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Cached cached;
+
+    public PdfBrandingService(CompanyInfoService companyInfoService,
+                              FileSystemStorageService storageService,
+                              @Value("${veely.pdf.branding.max-age:PT30M}") Duration maxAge) {
+        this.companyInfoService = companyInfoService;
+        this.storageService = storageService;
+        this.maxAge = maxAge;
+    }
+
+    /** Dati aziendali correnti; li carica solo se la copia in memoria non è più valida. */
+    public PdfBranding current() {
+        Cached current = cached;
+        if (isValid(current)) {
+            return current.branding();
+        }
+        return load();
+    }
+
+    /** Scarta la copia in memoria. */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBrandingChanged(BrandingChanged event) {
+        invalidate();
+    }
+
+    private synchronized PdfBranding load() {
+        Cached current = cached;
+        if (isValid(current)) {
+            return current.branding(); // già caricato da un altro thread
+        }
+        // la generazione va letta prima del caricamento: un'invalidazione
+        // arrivata nel frattempo fa ricaricare alla richiesta successiva
+        long loadedGeneration = generation.get();
+        CompanyInfo info = companyInfoService.getPrimaryCompanyInfoOptional().orElse(null);
+        PdfBranding branding = info == null
+                ? PdfBranding.NONE
+                : new PdfBranding(info, image(info.getLogoPath()), image(info.getWatermarkPath()));
+        cached = new Cached(branding, loadedGeneration, Instant.now());
+        log.debug("Dati aziendali per i PDF caricati (logo: {}, watermark: {})",
+                branding.hasLogo(), branding.hasWatermark());
+        return branding;
+    }
+
+    private boolean isValid(Cached current) {
+        return current != null
+                && current.generation() == generation.get()
+                && current.loadedAt().plus(maxAge).isAfter(Instant.now());
+    }
+
+    private Image image(String path) {
+        if (path == null || path.isBlank()) {
+            return null;
+        }
+        try {
+            Optional<Resource> file = storageService.find(path);
+            if (file.isEmpty()) {
+                log.warn("Immagine aziendale non trovata: {}", path);
+                return null;
+            }
+            return Image.getInstance(file.get().getContentAsByteArray());
+        } catch (Exception e) {
+            log.warn("Immagine aziendale {} non leggibile: {}", path, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.veely.service.pdf;
+
+import com.lowagie.text.Chunk;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.Image;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfGState;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfPageEventHelper;
+import com.lowagie.text.pdf.PdfTemplate;
+import com.lowagie.text.pdf.PdfWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.Color;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Impaginazione comune degli export PDF: intestazione, piè di pagina con i
+ * dati aziendali e watermark, uguali per tutti i documenti.
+ * <p>
+ * Piè di pagina e watermark sono disegnati su ogni pagina da un evento del
+ * writer; il margine inferiore del documento lascia lo spazio al piè di
+ * pagina ({@value #FOOTER_HEIGHT} punti).
+ */
+@Slf4j
+public final class PdfLayout {
+
+    /** Spazio riservato al piè di pagina. */
+    public static final float FOOTER_HEIGHT = 60f;
+
+    /** Righe accumulate da una tabella in streaming prima di impaginarle. */
+    public static final int FLUSH_ROWS = 100;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final float WATERMARK_SCALE = 0.6f;
+    private static final float WATERMARK_OPACITY = 0.15f;
+
+    private PdfLayout() {
+    }
+
+    /**
+     * Apre un documento con piè di pagina aziendale e, se richiesto e
+     * configurato, watermark su ogni pagina.
+     */
+    public static Document open(OutputStream out, Rectangle pageSize, float sideMargin, float topMargin,
+                                PdfBranding branding, boolean watermark) throws DocumentException {
+        Document document = document(pageSize, sideMargin, topMargin);
+        open(document, out, branding, watermark);
+        return document;
+    }
+
+    /** Documento con lo spazio per il piè di pagina, da aprire con {@link #open(Document, OutputStream, PdfBranding, boolean)}. */
+    public static Document document(Rectangle pageSize, float sideMargin, float topMargin) {
+        return new Document(pageSize, sideMargin, sideMargin, topMargin, FOOTER_HEIGHT);
+    }
+
+    /**
+     * Apre il documento sullo stream; le pagine completate vengono scritte
+     * subito, senza tenere in memoria l'intero PDF.
+     *
+     * @return il writer, per contenuti che richiedono il canvas (es. {@link DeferredText})
+     */
+    public static PdfWriter open(Document document, OutputStream out, PdfBranding branding, boolean watermark)
+            throws DocumentException {
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setPageEvent(new BrandingPageEvent(branding, watermark ? branding.watermark() : null));
+        document.open();
+        return writer;
+    }
+
+    /**
+     * Intestazione su una riga: ragione sociale, titolo e data, seguita da
+     * una linea sottile. Con {@code accent} nullo titolo nero e linea grigia.
+     */
+    public static void addTitleHeader(Document document, PdfBranding branding, String title, Color accent)
+            throws DocumentException {
+        PdfPTable header = new PdfPTable(3);
+        header.setWidthPercentage(100f);
+        header.setWidths(new float[]{1.5f, 3f, 1.5f});
+
+        Font titleFont = PdfStyles.bold(12, accent);
+        header.addCell(borderless(paragraph(branding.companyName(), titleFont, Element.ALIGN_LEFT)));
+        header.addCell(borderless(paragraph(title, titleFont, Element.ALIGN_CENTER)));
+        header.addCell(borderless(paragraph(LocalDate.now().format(DATE_FORMATTER),
+                PdfStyles.font(8, Color.GRAY), Element.ALIGN_RIGHT)));
+
+        document.add(header);
+        addSeparator(document, accent != null ? accent : PdfStyles.BORDER, 0.5f, 5f);
+    }
+
+    /** Intestazione con logo e ragione sociale, seguita da una linea nel colore aziendale. */
+    public static void addLogoHeader(Document document, PdfBranding branding) throws DocumentException {
+        PdfPTable header = new PdfPTable(2);
+        header.setWidthPercentage(100f);
+        header.setWidths(new float[]{1f, 3f});
+        header.setSpacingAfter(15f);
+
+        PdfPCell logoCell = new PdfPCell();
+        logoCell.setBorder(Rectangle.NO_BORDER);
+        logoCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+        Image logo = branding.logo();
+        if (logo != null) {
+            logo.scaleToFit(120f, 80f);
+            logoCell.addElement(logo);
+        } else {
+            logoCell.addElement(new Paragraph(""));
+        }
+        header.addCell(logoCell);
+
+        Paragraph name = new Paragraph();
+        name.add(new Chunk(branding.displayName(), PdfStyles.bold(24, branding.primaryColor())));
+        if (branding.subtitle() != null) {
+            name.add(Chunk.NEWLINE);
+            name.add(new Chunk(branding.subtitle(), PdfStyles.font(12, Color.GRAY)));
+        }
+        PdfPCell nameCell = new PdfPCell(name);
+        nameCell.setBorder(Rectangle.NO_BORDER);
+        nameCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+        nameCell.setHorizontalAlignment(Element.ALIGN_LEFT);
+        header.addCell(nameCell);
+
+        document.add(header);
+        addSeparator(document, branding.primaryColor(), 3f, 20f);
+    }
+
+    /** Linea orizzontale a tutta larghezza. */
+    public static void addSeparator(Document document, Color color, float height, float spacingAfter)
+            throws DocumentException {
+        PdfPTable line = new PdfPTable(1);
+        line.setWidthPercentage(100f);
+        line.setSpacingBefore(3f);
+        line.setSpacingAfter(spacingAfter);
+
+        PdfPCell cell = new PdfPCell();
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setFixedHeight(height);
+        cell.setBackgroundColor(color);
+        line.addCell(cell);
+
+        document.add(line);
+    }
+
+    /** Cella senza bordi, allineata al centro verticalmente. */
+    public static PdfPCell borderless(Paragraph content) {
+        PdfPCell cell = new PdfPCell(content);
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+        cell.setPadding(2f);
+        return cell;
+    }
+
+    /**
+     * Prepara una tabella da impaginare a blocchi con {@link #flush}: le
+     * prime {@code headerRows} righe si ripetono su ogni pagina.
+     */
+    public static PdfPTable streamingTable(PdfPTable table, int headerRows) {
+        table.setHeaderRows(headerRows);
+        table.setComplete(false);
+        return table;
+    }
+
+    /**
+     * Impagina le righe accumulate e le rilascia dalla tabella; con
+     * {@code last} la tabella viene chiusa.
+     */
+    public static void flush(Document document, PdfPTable table, boolean last) throws DocumentException {
+        if (last) {
+            table.setComplete(true);
+        }
+        document.add(table);
+        table.setSpacingBefore(0f);
+    }
+
+    private static Paragraph paragraph(String text, Font font, int alignment) {
+        Paragraph paragraph = new Paragraph(text, font);
+        paragraph.setAlignment(alignment);
+        return paragraph;
+    }
+
+    /**
+     * Testo riservato nel flusso e scritto solo a fine documento, per valori
+     * noti dopo aver letto tutte le righe (es. totali in testa a un elenco
+     * generato in streaming). Va valorizzato prima di {@code document.close()}.
+     */
+    public static final class DeferredText {
+
+        private final PdfTemplate template;
+        private final Font font;
+
+        public DeferredText(PdfWriter writer, Font font, float width) {
+            this.font = font;
+            this.template = writer.getDirectContent().createTemplate(width, font.getSize() * 1.2f);
+        }
+
+        /** Segnaposto da inserire in una {@link Phrase}. */
+        public Chunk chunk() throws DocumentException {
+            return new Chunk(Image.getInstance(template), 0, -font.getSize() * 0.2f, false);
+        }
+
+        public void set(String text) {
+            BaseFont baseFont = font.getCalculatedBaseFont(false);
+            template.beginText();
+            template.setFontAndSize(baseFont, font.getSize());
+            template.setColorFill(font.getColor() != null ? font.getColor() : Color.BLACK);
+            template.setTextMatrix(0, font.getSize() * 0.2f);
+            template.showText(text);
+            template.endText();
+        }
+    }
+
+    /** Disegna watermark e piè di pagina; la tabella del piè di pagina è costruita una volta per documento. */
+    private static final class BrandingPageEvent extends PdfPageEventHelper {
+
+        private final PdfBranding branding;
+        private final Image watermark;
+        private PdfPTable footer;
+
+        private BrandingPageEvent(PdfBranding branding, Image watermark) {
+            this.branding = branding;
+            this.watermark = watermark;
+        }
+
+        @Override
+        public void onStartPage(PdfWriter writer, Document document) {
+            if (watermark == null) {
+                return;
+            }
+            try {
+                Rectangle page = document.getPageSize();
+                watermark.scaleToFit(page.getWidth() * WATERMARK_SCALE, page.getHeight() * WATERMARK_SCALE);
+                watermark.setAbsolutePosition((page.getWidth() - watermark.getScaledWidth()) / 2,
+                        (page.getHeight() - watermark.getScaledHeight()) / 2);
+
+                PdfGState state = new PdfGState();
+                state.setFillOpacity(WATERMARK_OPACITY);
+                PdfContentByte canvas = writer.getDirectContentUnder();
+                canvas.saveState();
+                canvas.setGState(state);
+                canvas.addImage(watermark);
+                canvas.restoreState();
+            } catch (DocumentException e) {
+                log.warn("Impossibile disegnare il watermark del PDF: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public void onEndPage(PdfWriter writer, Document document) {
+            if (branding.footerColumns().isEmpty()) {
+                return;
+            }
+            if (footer == null) {
+                footer = footerTable(document.getPageSize().getWidth() - document.leftMargin()
+                        - document.rightMargin());
+            }
+            footer.writeSelectedRows(0, -1, document.leftMargin(), document.bottomMargin() - 6f,
+                    writer.getDirectContent());
+        }
+
+        private PdfPTable footerTable(float width) {
+            Font normal = PdfStyles.font(7, Color.GRAY);
+            Font bold = PdfStyles.bold(7, Color.DARK_GRAY);
+            PdfPTable table = new PdfPTable(branding.footerColumns().size());
+            table.setTotalWidth(width);
+            table.setLockedWidth(true);
+            for (String column : branding.footerColumns()) {
+                Paragraph paragraph = new Paragraph();
+                String[] lines = column.split("\n");
+                if (!lines[0].isBlank()) {
+                    paragraph.add(new Chunk(lines[0], bold));
+                    for (int i = 1; i < lines.length; i++) {
+                        paragraph.add(Chunk.NEWLINE);
+                        paragraph.add(new Chunk(lines[i], normal));
+                    }
+                }
+                PdfPCell cell = new PdfPCell(paragraph);
+                cell.setBorder(Rectangle.NO_BORDER);
+                cell.setVerticalAlignment(Element.ALIGN_TOP);
+                cell.setPadding(3f);
+                table.addCell(cell);
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.veely.service.pdf;
+
+import com.lowagie.text.DocumentException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Download dei PDF in streaming: il documento viene generato direttamente
+ * sulla risposta, in una transazione di sola lettura sul thread asincrono,
+ * invece di essere costruito in un {@code byte[]}.
+ * <p>
+ * Per gli elenchi lunghi le righe si leggono da uno {@link Stream} JPA con
+ * {@link #forEach}, che svuota il contesto di persistenza ogni
+ * {@link #CLEAR_EVERY} righe; insieme alle tabelle impaginate a blocchi
+ * ({@link PdfLayout#flush}) la memoria usata non cresce con il numero di righe.
+ */
+@Slf4j
+@Service
+public class PdfStreamingService {
+
+    static final int CLEAR_EVERY = 500;
+
+    /** Generazione del PDF sullo stream della risposta. */
+    @FunctionalInterface
+    public interface PdfBody {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /** Scrittura di una riga; {@code index} parte da 1. */
+    @FunctionalInterface
+    public interface RowWriter<T> {
+        void write(T row, long index) throws DocumentException;
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate readOnlyTx;
+
+    public PdfStreamingService(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Prepara la risposta di download; {@code body} viene eseguito solo
+     * quando il client legge la risposta, all'interno della transazione.
+     */
+    public ResponseEntity<StreamingResponseBody> download(String filename, PdfBody body) {
+        StreamingResponseBody stream = out -> {
+            long start = System.nanoTime();
+            readOnlyTx.executeWithoutResult(status -> {
+                try {
+                    body.write(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("PDF {} generato in {} ms", filename, (System.nanoTime() - start) / 1_000_000);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename, StandardCharsets.UTF_8).build().toString())
+                .body(stream);
+    }
+
+    /**
+     * Scrive le righe dello stream, che viene chiuso al termine, staccando le
+     * entità già lette ogni {@link #CLEAR_EVERY} righe.
+     *
+     * @return il numero di righe scritte
+     */
+    public <T> long forEach(Stream<T> rows, RowWriter<T> writer) throws DocumentException {
+        long count = 0;
+        try (rows) {
+            Iterator<T> it = rows.iterator();
+            while (it.hasNext()) {
+                writer.write(it.next(), ++count);
+                if (count % CLEAR_EVERY == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+package com.veely.service.pdf;
+
+import com.lowagie.text.Font;
+import com.lowagie.text.FontFactory;
+
+import java.awt.Color;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Colori e font comuni agli export PDF.
+ * <p>
+ * I font sono creati una sola volta per combinazione di nome, dimensione e
+ * colore e poi condivisi tra documenti e thread: non vanno modificati.
+ */
+public final class PdfStyles {
+
+    public static final Color BORDER = Color.decode("#dee2e6");
+    public static final Color LIGHT_GRAY = Color.decode("#f8f9fa");
+    public static final Color TEXT = Color.decode("#333333");
+    public static final Color LABEL = Color.decode("#555555");
+    public static final Color SUCCESS = Color.decode("#198754");
+    public static final Color DANGER = Color.decode("#dc3545");
+    public static final Color WARNING = Color.decode("#ffc107");
+
+    private record FontKey(String name, float size, Color color) {}
+
+    private static final Map<FontKey, Font> FONTS = new ConcurrentHashMap<>();
+
+    private PdfStyles() {
+    }
+
+    /** Helvetica normale. */
+    public static Font font(float size, Color color) {
+        return font(FontFactory.HELVETICA, size, color);
+    }
+
+    /** Helvetica grassetto. */
+    public static Font bold(float size, Color color) {
+        return font(FontFactory.HELVETICA_BOLD, size, color);
+    }
+
+    public static Font font(String name, float size, Color color) {
+        return FONTS.computeIfAbsent(new FontKey(name, size, color),
+                key -> FontFactory.getFont(key.name(), key.size(), key.color()));
+    }
+}
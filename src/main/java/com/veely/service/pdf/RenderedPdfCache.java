@@ -0,0 +1,274 @@
+package com.veely.service.pdf;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * PDF già generati, riusati finché il documento di origine non cambia.
+ * <p>
+ * La chiave è composta da area (es. note spese), identificativo
+ * dell'entità e un'impronta di tutti i dati che finiscono nel PDF, dati
+ * aziendali compresi ({@link PdfBranding#fingerprint()}): una modifica
+ * produce una chiave nuova, quindi una copia vecchia non può essere servita
+ * anche se l'invalidazione esplicita arriva in ritardo o da un altro nodo.
+ * <p>
+ * In memoria restano al massimo {@code veely.pdf.cache.memory-max-size}
+ * byte; i PDF espulsi per spazio vengono scritti in
+ * {@code veely.pdf.cache.dir} e riletti da lì alla richiesta successiva.
+ * La cartella è limitata da {@code disk-max-size} e {@code disk-max-age},
+ * applicati periodicamente da {@link #purgeDisk()}.
+ */
+@Slf4j
+@Service
+public class RenderedPdfCache {
+
+    private static final String EXTENSION = ".pdf";
+
+    /** Chiave di un PDF generato; {@code fingerprint} da {@link #fingerprint(Object...)}. */
+    public record Key(String area, String id, String fingerprint) {
+
+        public static Key of(String area, Object id, String fingerprint) {
+            return new Key(area, String.valueOf(id), fingerprint);
+        }
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long diskMaxBytes;
+    private final Duration diskMaxAge;
+    private final Cache<Key, byte[]> memory;
+
+    public RenderedPdfCache(MeterRegistry meterRegistry,
+                            @Value("${veely.pdf.cache.enabled:true}") boolean enabled,
+                            @Value("${veely.pdf.cache.dir:cache/pdf}") String directory,
+                            @Value("${veely.pdf.cache.memory-max-size:32MB}") DataSize memoryMaxSize,
+                            @Value("${veely.pdf.cache.disk-max-size:512MB}") DataSize diskMaxSize,
+                            @Value("${veely.pdf.cache.disk-max-age:P7D}") Duration diskMaxAge) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.diskMaxBytes = diskMaxSize.toBytes();
+        this.diskMaxAge = diskMaxAge;
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(memoryMaxSize.toBytes())
+                .weigher((Key key, byte[] pdf) -> pdf.length)
+                // espulsione e scrittura su disco nel thread che ha inserito il PDF
+                .executor(Runnable::run)
+                .removalListener((Key key, byte[] pdf, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE && key != null && pdf != null) {
+                        spill(key, pdf);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "renderedPdf");
+    }
+
+    /**
+     * Restituisce il PDF della chiave: dalla memoria, dal disco o generandolo
+     * con {@code renderer}. Richieste contemporanee per la stessa chiave
+     * generano il PDF una volta sola.
+     */
+    public byte[] get(Key key, PdfStreamingService.PdfBody renderer) throws IOException {
+        if (!enabled) {
+            return render(renderer);
+        }
+        try {
+            return memory.get(key, k -> load(k, renderer));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Come {@link #get} ma scrive il PDF su {@code out}. */
+    public void write(Key key, OutputStream out, PdfStreamingService.PdfBody renderer) throws IOException {
+        out.write(get(key, renderer));
+    }
+
+    /** Scarta tutte le versioni del PDF di un'entità, in memoria e su disco. */
+    public void invalidate(String area, Object id) {
+        String value = String.valueOf(id);
+        memory.asMap().keySet().removeIf(key -> key.area().equals(area) && key.id().equals(value));
+        Path folder = folder(area, value);
+        if (folder == null || !Files.isDirectory(folder)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(folder);
+        } catch (IOException e) {
+            log.warn("Impossibile eliminare i PDF in cache di {}/{}: {}", area, value, e.getMessage());
+        }
+    }
+
+    /** Elimina dal disco i PDF più vecchi di {@code disk-max-age} e i meno usati oltre {@code disk-max-size}. */
+    @Scheduled(fixedDelayString = "${veely.pdf.cache.cleanup-interval:PT1H}",
+            initialDelayString = "${veely.pdf.cache.cleanup-interval:PT1H}")
+    public void purgeDisk() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        record CachedFile(Path path, long size, Instant lastUsed) {}
+        List<CachedFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                try {
+                    files.add(new CachedFile(path, Files.size(path), Files.getLastModifiedTime(path).toInstant()));
+                } catch (NoSuchFileException e) {
+                    // invalidato nel frattempo
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Impossibile leggere la cache PDF su disco {}: {}", directory, e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparing(CachedFile::lastUsed).reversed());
+        Instant cutoff = Instant.now().minus(diskMaxAge);
+        long kept = 0;
+        int removed = 0;
+        for (CachedFile file : files) {
+            if (file.lastUsed().isAfter(cutoff) && kept + file.size() <= diskMaxBytes) {
+                kept += file.size();
+                continue;
+            }
+            try {
+                Files.deleteIfExists(file.path());
+                removed++;
+            } catch (IOException e) {
+                log.warn("Impossibile eliminare {}: {}", file.path(), e.getMessage());
+            }
+        }
+        removeEmptyFolders();
+        if (removed > 0) {
+            log.info("Cache PDF su disco: eliminati {} file, restano {} KB", removed, kept / 1024);
+        }
+    }
+
+    /**
+     * Impronta SHA-256 dei valori indicati, nell'ordine; {@code null} e
+     * stringa vuota sono distinti.
+     */
+    public static String fingerprint(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                if (part != null) {
+                    digest.update((byte) 1);
+                    digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] load(Key key, PdfStreamingService.PdfBody renderer) {
+        try {
+            byte[] pdf = readSpilled(key);
+            return pdf != null ? pdf : render(renderer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] render(PdfStreamingService.PdfBody renderer) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 * 1024);
+        renderer.write(buffer);
+        return buffer.toByteArray();
+    }
+
+    private byte[] readSpilled(Key key) {
+        Path file = file(key);
+        if (file == null) {
+            return null;
+        }
+        try {
+            byte[] pdf = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return pdf;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("PDF in cache {} non leggibile, viene rigenerato: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void spill(Key key, byte[] pdf) {
+        Path file = file(key);
+        if (file == null || Files.exists(file)) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path part = file.resolveSibling(file.getFileName() + ".part");
+            Files.write(part, pdf);
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Impossibile salvare su disco il PDF {}/{}: {}", key.area(), key.id(), e.getMessage());
+        }
+    }
+
+    private Path file(Key key) {
+        Path folder = folder(key.area(), key.id());
+        return folder != null ? folder.resolve(key.fingerprint() + EXTENSION) : null;
+    }
+
+    /** Cartella dei PDF di un'entità; {@code null} se area o id uscirebbero dalla cartella della cache. */
+    private Path folder(String area, String id) {
+        Path folder = directory.resolve(area).resolve(id).normalize();
+        return folder.getParent() != null && folder.getParent().getParent() != null
+                && folder.getParent().getParent().equals(directory) ? folder : null;
+    }
+
+    private void removeEmptyFolders() {
+        try (DirectoryStream<Path> areas = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path area : areas) {
+                try (DirectoryStream<Path> entities = Files.newDirectoryStream(area, Files::isDirectory)) {
+                    for (Path entity : entities) {
+                        try (Stream<Path> content = Files.list(entity)) {
+                            if (content.findAny().isEmpty()) {
+                                Files.deleteIfExists(entity);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Pulizia cartelle della cache PDF non completata: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package com.veely.service.search;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.repository.DocumentRepository;
+import com.veely.service.FileSystemStorageService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Indice invertito del testo dei documenti (nome del file e contenuto
+ * estratto da {@link DocumentTextExtractor}), per la ricerca full-text.
+ * <p>
+ * In memoria tiene per ogni termine gli id dei documenti che lo contengono;
+ * su disco, in {@code veely.documents.search.index-dir}, un log di sole
+ * aggiunte ({@code +id termini} / {@code -id}) riletto all'avvio e compattato
+ * quando le righe superate diventano troppe.
+ * <p>
+ * I caricamenti e le cancellazioni arrivano come {@link DocumentChanged} dopo
+ * il commit e vengono applicati da un thread dedicato: l'estrazione del testo
+ * non tocca mai i thread delle richieste. La ricostruzione completa gira su un
+ * thread a parte, così gli aggiornamenti non restano in coda dietro di lei:
+ * scorre i documenti per id crescente e salva l'ultimo id elaborato in un
+ * file di checkpoint, da cui riparte al riavvio se interrotta. Gli eventi
+ * arrivati nel frattempo vengono riapplicati alla fine, perché la
+ * ricostruzione potrebbe aver scritto dopo di loro una versione superata; al
+ * termine il log viene compattato prima di rimuovere il checkpoint. Durante
+ * la ricostruzione le ricerche continuano sull'indice corrente.
+ * <p>
+ * Di ogni documento si tengono al massimo
+ * {@code veely.documents.search.max-terms} termini distinti, in una sola copia
+ * condivisa con l'elenco dei termini.
+ */
+@Slf4j
+@Service
+public class DocumentSearchIndex {
+
+    static final String LOG_FILE = "postings.log";
+    static final String CHECKPOINT_FILE = "rebuild.checkpoint";
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final int COMPACT_MIN_RECORDS = 1_000;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{L}\\p{N}]+");
+    /** Prefisso {@code <timestamp>[-n]_} aggiunto dall'archivio ai nomi dei file. */
+    private static final Pattern STORED_PREFIX = Pattern.compile("^\\d+(-\\d+)?_");
+
+    /** Documento creato, modificato o eliminato; pubblicato dal listener JPA di {@code Document}. */
+    public record DocumentChanged(Long documentId, String path, boolean removed) {}
+
+    /** Stato dell'indice; {@code rebuildCheckpoint} è l'ultimo id elaborato se una ricostruzione è in corso. */
+    public record Status(boolean ready, int documents, int terms, Long rebuildCheckpoint) {}
+
+    private final DocumentRepository documentRepo;
+    private final FileSystemStorageService storage;
+    private final DocumentTextExtractor extractor;
+    private final Path logFile;
+    private final Path checkpointFile;
+    private final int batchSize;
+    private final int maxTermsPerDocument;
+    private final TaskExecutor executor;
+    private final TaskExecutor rebuildExecutor;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Set<Long>> postings = new TreeMap<>();
+    private final NavigableMap<Long, String[]> termsByDocument = new TreeMap<>();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Queue<DocumentChanged> changedDuringRebuild = new ConcurrentLinkedQueue<>();
+    private BufferedWriter writer;
+    private long logRecords;
+    private volatile boolean ready;
+    private volatile boolean closed;
+    /** L'indice non esisteva su disco: serve una costruzione completa. */
+    private boolean created;
+    private volatile Long checkpoint;
+
+    public DocumentSearchIndex(DocumentRepository documentRepo,
+                               FileSystemStorageService storage,
+                               DocumentTextExtractor extractor,
+                               @Value("${veely.documents.search.index-dir:search-index}") String indexDir,
+                               @Value("${veely.documents.search.batch-size:100}") int batchSize,
+                               @Value("${veely.documents.search.max-terms:10000}") int maxTermsPerDocument,
+                               @Qualifier(ExecutorConfig.DOCUMENT_INDEX) TaskExecutor executor,
+                               @Qualifier(ExecutorConfig.DOCUMENT_INDEX_REBUILD) TaskExecutor rebuildExecutor) {
+        this.documentRepo = documentRepo;
+        this.storage = storage;
+        this.extractor = extractor;
+        Path dir = Paths.get(indexDir).toAbsolutePath().normalize();
+        this.logFile = dir.resolve(LOG_FILE);
+        this.checkpointFile = dir.resolve(CHECKPOINT_FILE);
+        this.batchSize = batchSize;
+        this.maxTermsPerDocument = maxTermsPerDocument;
+        this.executor = executor;
+        this.rebuildExecutor = rebuildExecutor;
+    }
+
+    /** Carica l'indice e riprende (o avvia, al primo avvio) la ricostruzione. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        executor.execute(() -> {
+            ensureLoaded();
+            Long resumeFrom = checkpoint;
+            if (resumeFrom != null || created) {
+                rebuildExecutor.execute(() -> startRebuild(resumeFrom != null ? resumeFrom : 0L));
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChanged(DocumentChanged event) {
+        executor.execute(() -> {
+            // accodato prima di applicarlo: se la ricostruzione finisce ora, viene comunque riapplicato
+            if (rebuilding.get()) {
+                changedDuringRebuild.add(event);
+            }
+            apply(event);
+        });
+    }
+
+    /**
+     * Avvia la ricostruzione completa in background.
+     *
+     * @return {@code false} se una ricostruzione è già in corso
+     */
+    public boolean rebuild() {
+        if (rebuilding.get()) {
+            return false;
+        }
+        rebuildExecutor.execute(() -> startRebuild(0L));
+        return true;
+    }
+
+    /**
+     * Id dei documenti che contengono tutte le parole della ricerca, dal più
+     * recente; l'ultima parola vale anche come prefisso.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> words = new ArrayList<>(terms(query));
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<Set<Long>> lists = new ArrayList<>(words.size());
+            for (int i = 0; i < words.size() - 1; i++) {
+                Set<Long> ids = postings.get(words.get(i));
+                if (ids == null) {
+                    return List.of();
+                }
+                lists.add(ids);
+            }
+            String last = words.get(words.size() - 1);
+            Set<Long> prefixed = new HashSet<>();
+            postings.subMap(last, true, last + Character.MAX_VALUE, false).values().forEach(prefixed::addAll);
+            lists.add(prefixed);
+
+            lists.sort(Comparator.comparingInt(Set::size));
+            TreeSet<Long> result = new TreeSet<>(Comparator.reverseOrder());
+            result.addAll(lists.get(0));
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.retainAll(lists.get(i));
+            }
+            return result.stream().limit(limit).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Status status() {
+        lock.readLock().lock();
+        try {
+            return new Status(ready, termsByDocument.size(), postings.size(), checkpoint);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Chiude il log; il thread dell'indice viene fermato da Spring insieme al suo executor. */
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        lock.writeLock().lock();
+        try {
+            closeWriter();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------- operazioni sul thread dell'indice ----------------------
+
+    /** Rilegge il log e l'eventuale checkpoint. */
+    void load() {
+        lock.writeLock().lock();
+        try {
+            closeWriter();
+            Files.createDirectories(logFile.getParent());
+            boolean existed = Files.exists(logFile);
+            created = !existed;
+            postings.clear();
+            termsByDocument.clear();
+            logRecords = 0;
+            if (existed && !replay()) {
+                // toglie la riga interrotta, altrimenti la prossima aggiunta le finirebbe in coda
+                compact();
+            }
+            checkpoint = Files.exists(checkpointFile)
+                    ? Long.valueOf(Files.readString(checkpointFile, StandardCharsets.UTF_8).trim())
+                    : null;
+            if (writer == null) {
+                writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            ready = true;
+            log.info("Indice documenti caricato: {} documenti, {} termini", termsByDocument.size(), postings.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile caricare l'indice documenti " + logFile, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Estrae il testo del documento e ne sostituisce i termini nell'indice. */
+    void index(Long documentId, String path) {
+        if (documentId == null || path == null) {
+            return;
+        }
+        String filename = Path.of(path).getFileName().toString();
+        StringBuilder text = new StringBuilder(STORED_PREFIX.matcher(filename).replaceFirst(""));
+        try {
+            Optional<Resource> resource = storage.find(path);
+            if (resource.isPresent()) {
+                text.append('\n').append(extractor.extract(resource.get(), filename));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Testo non estratto dal documento {} ({}): {}", documentId, path, e.getMessage());
+        }
+        Set<String> terms = terms(text, maxTermsPerDocument);
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            put(documentId, terms.toArray(String[]::new));
+            append("+" + documentId + (terms.isEmpty() ? "" : " " + String.join(" ", terms)));
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long documentId) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            if (delete(documentId)) {
+                append("-" + documentId);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Reindicizza tutti i documenti con id maggiore di {@code afterId}, salvando i progressi. */
+    void runRebuild(long afterId) {
+        log.info("Ricostruzione indice documenti da id {}", afterId);
+        long after = afterId;
+        int indexed = 0;
+        while (!stopped()) {
+            List<Object[]> rows = documentRepo.findIdAndPathAfter(after, PageRequest.ofSize(batchSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            Set<Long> present = new HashSet<>();
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                present.add(id);
+                index(id, (String) row[1]);
+            }
+            if (stopped()) {
+                // il blocco potrebbe non essere finito nel log: si riparte dal checkpoint precedente
+                break;
+            }
+            long last = (Long) rows.get(rows.size() - 1)[0];
+            removeMissing(after, last, present);
+            after = last;
+            indexed += rows.size();
+            saveCheckpoint(after);
+        }
+        if (stopped()) {
+            log.info("Ricostruzione indice documenti interrotta all'id {}: riprenderà al riavvio", after);
+            return;
+        }
+        removeMissing(after, Long.MAX_VALUE, Set.of());
+        lock.writeLock().lock();
+        try {
+            // il log compattato contiene tutta la ricostruzione: solo ora il checkpoint non serve più
+            compact();
+            clearCheckpoint();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indice documenti ricostruito: {} documenti elaborati", indexed);
+    }
+
+    // ---------------------- interni ----------------------
+
+    private void startRebuild(long afterId) {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            saveCheckpoint(afterId);
+            runRebuild(afterId);
+        } catch (RuntimeException e) {
+            log.error("Ricostruzione indice documenti fallita all'id {}", checkpoint, e);
+        } finally {
+            rebuilding.set(false);
+            replayChangedDuringRebuild();
+        }
+    }
+
+    private void replayChangedDuringRebuild() {
+        DocumentChanged event;
+        while ((event = changedDuringRebuild.poll()) != null) {
+            DocumentChanged changed = event;
+            executor.execute(() -> apply(changed));
+        }
+    }
+
+    private void apply(DocumentChanged event) {
+        if (event.removed()) {
+            remove(event.documentId());
+        } else {
+            index(event.documentId(), event.path());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (ready) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean stopped() {
+        return closed || Thread.currentThread().isInterrupted();
+    }
+
+    /** Toglie dall'indice i documenti nell'intervallo ({@code from}, {@code to}] che non esistono più. */
+    private void removeMissing(long from, long to, Set<Long> present) {
+        List<Long> stale;
+        lock.readLock().lock();
+        try {
+            stale = termsByDocument.subMap(from, false, to, true).keySet().stream()
+                    .filter(id -> !present.contains(id))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+        stale.forEach(this::remove);
+    }
+
+    /**
+     * Riapplica il log riga per riga.
+     *
+     * @return {@code false} se l'ultima riga, senza a capo, è una scrittura
+     *         interrotta (e quindi è stata ignorata)
+     */
+    private boolean replay() throws IOException {
+        boolean complete = endsWithNewline(logFile);
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if (next != null || complete) {
+                    replayRecord(line);
+                }
+                line = next;
+            }
+        }
+        return complete;
+    }
+
+    private void replayRecord(String line) {
+        if (line.length() < 2) {
+            return;
+        }
+        String[] fields = line.substring(1).split(" ");
+        Long id = Long.valueOf(fields[0]);
+        if (line.charAt(0) == '+') {
+            put(id, Arrays.copyOfRange(fields, 1, fields.length));
+        } else {
+            delete(id);
+        }
+        logRecords++;
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private void put(Long id, String[] terms) {
+        delete(id);
+        String[] kept = new String[Math.min(terms.length, maxTermsPerDocument)];
+        for (int i = 0; i < kept.length; i++) {
+            // il documento tiene la stessa istanza usata come chiave, non una copia per documento
+            Map.Entry<String, Set<Long>> entry = postings.ceilingEntry(terms[i]);
+            if (entry != null && entry.getKey().equals(terms[i])) {
+                kept[i] = entry.getKey();
+                entry.getValue().add(id);
+            } else {
+                kept[i] = terms[i];
+                Set<Long> ids = new HashSet<>();
+                ids.add(id);
+                postings.put(kept[i], ids);
+            }
+        }
+        termsByDocument.put(id, kept);
+    }
+
+    private boolean delete(Long id) {
+        String[] previous = termsByDocument.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        for (String term : previous) {
+            Set<Long> ids = postings.get(term);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        return true;
+    }
+
+    private void append(String record) {
+        if (writer == null) {
+            // log già chiuso allo spegnimento
+            return;
+        }
+        try {
+            writer.write(record);
+            writer.write('\n');
+            writer.flush();
+            logRecords++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Scrittura dell'indice documenti fallita", e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        // durante la ricostruzione si compatta una volta sola, alla fine
+        if (!rebuilding.get() && logRecords > COMPACT_MIN_RECORDS && logRecords > 2L * termsByDocument.size()) {
+            compact();
+        }
+    }
+
+    /** Riscrive il log con il solo stato corrente, sostituendolo in modo atomico. */
+    private void compact() {
+        Path temp = logFile.resolveSibling(LOG_FILE + ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<Long, String[]> entry : termsByDocument.entrySet()) {
+                    out.write("+" + entry.getKey());
+                    for (String term : entry.getValue()) {
+                        out.write(' ');
+                        out.write(term);
+                    }
+                    out.write('\n');
+                }
+            }
+            closeWriter();
+            Files.move(temp, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            logRecords = termsByDocument.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Compattazione dell'indice documenti fallita", e);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Chiusura del log dell'indice documenti fallita", e);
+            }
+            writer = null;
+        }
+    }
+
+    private void saveCheckpoint(long afterId) {
+        try {
+            Path temp = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(temp, Long.toString(afterId), StandardCharsets.UTF_8);
+            Files.move(temp, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            checkpoint = afterId;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Salvataggio del checkpoint dell'indice documenti fallito", e);
+        }
+    }
+
+    private void clearCheckpoint() {
+        try {
+            Files.deleteIfExists(checkpointFile);
+            checkpoint = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Rimozione del checkpoint dell'indice documenti fallita", e);
+        }
+    }
+
+    /** Termini distinti del testo: minuscole, senza accenti, da 2 a 40 caratteri. */
+    static Set<String> terms(CharSequence text) {
+        return terms(text, Integer.MAX_VALUE);
+    }
+
+    /** Come {@link #terms(CharSequence)}, fermandosi ai primi {@code limit} termini distinti. */
+    static Set<String> terms(CharSequence text, int limit) {
+        if (text == null) {
+            return Set.of();
+        }
+        String s = Normalizer.normalize(text, Normalizer.Form.NFD);
+        s = DIACRITICS.matcher(s).replaceAll("").toLowerCase(Locale.ROOT);
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : NON_ALNUM.split(s)) {
+            if (token.length() >= MIN_TERM_LENGTH && token.length() <= MAX_TERM_LENGTH) {
+                terms.add(token);
+                if (terms.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return terms;
+    }
+}
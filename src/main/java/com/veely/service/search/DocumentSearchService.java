@@ -0,0 +1,75 @@
+package com.veely.service.search;
+
+import com.veely.entity.Document;
+import com.veely.model.AttachmentOwner;
+import com.veely.model.DocumentType;
+import com.veely.repository.DocumentRepository;
+import com.veely.service.attachment.AttachmentOwnerRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ricerca full-text sui documenti: gli id trovati da {@link DocumentSearchIndex}
+ * vengono caricati con una sola query e completati con il proprietario.
+ */
+@Service
+@Transactional(readOnly = true)
+public class DocumentSearchService {
+
+    public static final int MAX_RESULTS = 100;
+
+    /** Documento trovato, con il tipo e l'id dell'entità a cui è allegato (nulli per i documenti aziendali). */
+    public record Hit(Long documentId, String filename, DocumentType type,
+                      LocalDate issueDate, LocalDate expiryDate,
+                      AttachmentOwner ownerType, Long ownerId) {}
+
+    private final DocumentSearchIndex index;
+    private final DocumentRepository documentRepo;
+    private final AttachmentOwnerRegistry owners;
+    private final PersistenceUnitUtil persistenceUtil;
+
+    public DocumentSearchService(DocumentSearchIndex index,
+                                 DocumentRepository documentRepo,
+                                 AttachmentOwnerRegistry owners,
+                                 EntityManagerFactory entityManagerFactory) {
+        this.index = index;
+        this.documentRepo = documentRepo;
+        this.owners = owners;
+        this.persistenceUtil = entityManagerFactory.getPersistenceUnitUtil();
+    }
+
+    /** Documenti che contengono tutte le parole, dal più recente. */
+    public List<Hit> search(String query, int limit) {
+        List<Long> ids = index.search(query, Math.min(limit, MAX_RESULTS));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Document> docs = documentRepo.findAllById(ids).stream()
+                .collect(Collectors.toMap(Document::getId, Function.identity()));
+        // l'ordine è quello dell'indice; i documenti cancellati nel frattempo vengono saltati
+        return ids.stream()
+                .map(docs::get)
+                .filter(Objects::nonNull)
+                .map(this::toHit)
+                .toList();
+    }
+
+    private Hit toHit(Document doc) {
+        var owner = owners.ownerOf(doc);
+        return new Hit(doc.getId(),
+                doc.getPath() != null ? Path.of(doc.getPath()).getFileName().toString() : null,
+                doc.getType(), doc.getIssueDate(), doc.getExpiryDate(),
+                owner.map(AttachmentOwnerRegistry.OwnerRef::type).orElse(null),
+                owner.map(o -> (Long) persistenceUtil.getIdentifier(o.entity())).orElse(null));
+    }
+}
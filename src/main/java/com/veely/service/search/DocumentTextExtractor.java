@@ -0,0 +1,72 @@
+package com.veely.service.search;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Estrae il testo dei documenti da indicizzare: PDF con il text extractor di
+ * OpenPDF, file di testo così come sono. Gli altri formati (immagini,
+ * documenti Office) non hanno testo ricercabile oltre al nome del file.
+ * <p>
+ * L'estrazione si ferma a {@code veely.documents.search.max-pages} pagine e
+ * {@code veely.documents.search.max-text} caratteri; un PDF illeggibile o
+ * protetto restituisce il testo estratto fino all'errore.
+ */
+@Slf4j
+@Component
+public class DocumentTextExtractor {
+
+    private final int maxPages;
+    private final int maxChars;
+
+    public DocumentTextExtractor(@Value("${veely.documents.search.max-pages:200}") int maxPages,
+                                 @Value("${veely.documents.search.max-text:1MB}") DataSize maxText) {
+        this.maxPages = maxPages;
+        this.maxChars = (int) Math.min(Integer.MAX_VALUE, maxText.toBytes());
+    }
+
+    /** Testo del documento, vuoto se il formato non è supportato. */
+    public String extract(Resource resource, String filename) throws IOException {
+        String name = filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".pdf")) {
+            try (InputStream in = resource.getInputStream()) {
+                return extractPdf(in, filename);
+            }
+        }
+        if (name.endsWith(".txt") || name.endsWith(".csv")) {
+            try (InputStream in = resource.getInputStream()) {
+                byte[] bytes = in.readNBytes(maxChars);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    private String extractPdf(InputStream in, String filename) throws IOException {
+        PdfReader reader = new PdfReader(in);
+        StringBuilder text = new StringBuilder();
+        try {
+            PdfTextExtractor extractor = new PdfTextExtractor(reader);
+            int pages = Math.min(reader.getNumberOfPages(), maxPages);
+            for (int page = 1; page <= pages && text.length() < maxChars; page++) {
+                text.append(extractor.getTextFromPage(page)).append('\n');
+            }
+        } catch (RuntimeException e) {
+            // pagine con font o strutture non supportate: si tiene quanto già estratto
+            log.debug("Estrazione testo interrotta per {}: {}", filename, e.getMessage());
+        } finally {
+            reader.close();
+        }
+        return text.length() > maxChars ? text.substring(0, maxChars) : text.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package com.veely.service.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Contenuto dell'archivio a contenuti esposto con il nome logico del file
+ * (i blob sono nominati per hash). Se il backend è su disco la risorsa è un
+ * file ({@link #isFile()}), altrimenti si legge in streaming dal backend.
+ */
+public class BlobResource extends AbstractResource {
+
+    private final StorageBackend backend;
+    private final String key;
+    private final String hash;
+    private final String filename;
+    private StorageBackend.ObjectInfo info;
+
+    BlobResource(StorageBackend backend, String key, String hash, String filename) {
+        this.backend = backend;
+        this.key = key;
+        this.hash = hash;
+        this.filename = filename;
+    }
+
+    /** SHA-256 del contenuto. */
+    public String hash() {
+        return hash;
+    }
+
+    /** URL firmato per scaricare direttamente dal backend, se lo supporta. */
+    public Optional<URI> presignedDownload(String contentType, String contentDisposition, Duration ttl) {
+        return backend.presignedDownload(key, contentType, contentDisposition, ttl);
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Blob [" + hash + "] " + filename;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return backend.open(key);
+    }
+
+    @Override
+    public boolean exists() {
+        try {
+            return backend.exists(key);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isFile() {
+        return backend.localFile(key).isPresent();
+    }
+
+    @Override
+    public File getFile() throws IOException {
+        return backend.localFile(key)
+                .orElseThrow(() -> new FileNotFoundException(getDescription() + " non è un file locale"))
+                .toFile();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return info().size();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return info().lastModified().toEpochMilli();
+    }
+
+    private StorageBackend.ObjectInfo info() throws IOException {
+        if (info == null) {
+            info = backend.stat(key).orElseThrow(() -> new NoSuchFileException(getDescription()));
+        }
+        return info;
+    }
+}
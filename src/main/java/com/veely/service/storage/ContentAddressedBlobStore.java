@@ -0,0 +1,326 @@
+package com.veely.service.storage;
+
+import com.veely.entity.FileDeletion;
+import com.veely.entity.StorageObject;
+import com.veely.repository.FileDeletionRepository;
+import com.veely.repository.StorageBlobRepository;
+import com.veely.repository.StorageObjectRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Archivio dei contenuti indirizzato per SHA-256.
+ * <p>
+ * Ogni contenuto è salvato una sola volta nel {@link StorageBackend}, con
+ * chiave {@code blobs/ab/cd/<hash>}; i
+ * percorsi logici usati dalle entità ({@code Document}, {@code Payslip},
+ * {@code UniqueCertification}, ...) sono righe di {@code storage_objects} che
+ * puntano al contenuto, il cui {@code ref_count} conta i percorsi collegati.
+ * Il file fisico viene eliminato dopo che l'ultimo percorso è stato rimosso.
+ * <p>
+ * L'hash è calcolato durante la copia su un file temporaneo locale
+ * ({@code <storage>/blobs/tmp}), poi consegnato al backend: un contenuto è
+ * sempre completo o assente. I contatori sono aggiornati in transazioni
+ * proprie, indipendenti da quella del chiamante.
+ * <p>
+ * Le operazioni sullo stesso hash sono serializzate dal lock sulla riga di
+ * {@code storage_blobs}, valido anche tra nodi diversi: il collegamento
+ * blocca la riga aggiungendo il riferimento e solo dopo controlla se il
+ * contenuto è nel backend. Quando l'ultimo percorso viene rimosso
+ * l'eliminazione del file fisico passa dalla coda {@link FileDeletionOutbox},
+ * che la esegue con {@link #purge} ricontrollando il contatore con la riga
+ * bloccata: un contenuto ricollegato nel frattempo non viene toccato.
+ * <p>
+ * Le stesse transazioni aggiornano lo spazio occupato per area e
+ * proprietario ({@link StorageUsageService}).
+ */
+@Slf4j
+@Component
+public class ContentAddressedBlobStore {
+
+    /** Vincolo violato quando un percorso logico è già in uso. */
+    static final String PATH_CONSTRAINT = "storage_objects.PRIMARY";
+
+    /** Contenuto copiato e hashato, non ancora collegato a un percorso. */
+    public record StagedContent(Path file, String hash, long size) {}
+
+    private final StorageBlobRepository blobRepository;
+    private final StorageObjectRepository objectRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageBackend backend;
+    private final StorageUsageService usage;
+    private final FileDeletionRepository deletionRepository;
+    private final Path blobRoot;
+    private final Path tempDir;
+
+    public ContentAddressedBlobStore(StorageBlobRepository blobRepository,
+                                     StorageObjectRepository objectRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     StorageBackend backend,
+                                     StorageUsageService usage,
+                                     FileDeletionRepository deletionRepository,
+                                     @Value("${storage.location:uploads}") String storageLocation) {
+        this.blobRepository = blobRepository;
+        this.objectRepository = objectRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.backend = backend;
+        this.usage = usage;
+        this.deletionRepository = deletionRepository;
+        this.blobRoot = Paths.get(storageLocation).resolve("blobs");
+        this.tempDir = blobRoot.resolve("tmp");
+    }
+
+    /** Cartella locale dei contenuti, da escludere quando si scorre la cartella uploads. */
+    public Path blobRoot() {
+        return blobRoot;
+    }
+
+    /**
+     * Copia lo stream in un file temporaneo calcolando l'hash nello stesso
+     * passaggio. Lo stream non viene chiuso.
+     */
+    public StagedContent stage(InputStream content) throws IOException {
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                size = new DigestInputStream(content, digest).transferTo(out);
+            }
+            return new StagedContent(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+
+    /** Elimina un contenuto preparato e non più necessario. */
+    public void discard(StagedContent staged) {
+        try {
+            Files.deleteIfExists(staged.file());
+        } catch (IOException ex) {
+            log.warn("File temporaneo non eliminato: {}", staged.file(), ex);
+        }
+    }
+
+    /**
+     * Collega il contenuto al percorso logico. Se il contenuto esiste già il
+     * file temporaneo viene scartato, altrimenti viene caricato come nuovo blob.
+     *
+     * @throws FileAlreadyExistsException se il percorso è già in uso: il
+     *         contenuto resta disponibile per un nuovo tentativo
+     */
+    public void link(StagedContent staged, String logicalPath) throws IOException {
+        attach(logicalPath, staged.hash(), staged.size(), staged.file());
+    }
+
+    /**
+     * Sposta nell'archivio contenuti un file salvato con il vecchio schema,
+     * mantenendo il suo percorso logico. La riga viene scritta prima di
+     * caricare il file: un'interruzione a metà lascia il file originale al
+     * suo posto e viene completata alla migrazione successiva.
+     */
+    public void adopt(Path legacyFile, String logicalPath) throws IOException {
+        String hash;
+        long size;
+        try (InputStream in = Files.newInputStream(legacyFile)) {
+            MessageDigest digest = sha256();
+            size = new DigestInputStream(in, digest).transferTo(OutputStream.nullOutputStream());
+            hash = HexFormat.of().formatHex(digest.digest());
+        }
+        Optional<String> linked = objectRepository.findBlobHash(logicalPath);
+        if (linked.isEmpty()) {
+            attach(logicalPath, hash, size, legacyFile);
+        } else if (linked.get().equals(hash)) {
+            // migrazione interrotta dopo il collegamento: manca solo lo spostamento
+            attach(null, hash, size, legacyFile);
+        } else {
+            log.warn("{} è già collegato a un contenuto diverso: file lasciato al suo posto", logicalPath);
+        }
+    }
+
+    /** Contenuto del percorso logico, se collegato, esposto con il nome indicato. */
+    public Optional<BlobResource> find(String logicalPath, String filename) {
+        return objectRepository.findBlobHash(logicalPath)
+                .map(hash -> new BlobResource(backend, blobKey(hash), hash, filename));
+    }
+
+    public Optional<String> hashOf(String logicalPath) {
+        return objectRepository.findBlobHash(logicalPath);
+    }
+
+    /** Hash del contenuto se il file è un blob dell'archivio (il nome del blob è il suo hash). */
+    public Optional<String> hashOfBlob(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        if (normalized.startsWith(blobRoot.toAbsolutePath().normalize())
+                && !normalized.startsWith(tempDir.toAbsolutePath().normalize())) {
+            return Optional.of(normalized.getFileName().toString());
+        }
+        return Optional.empty();
+    }
+
+    public boolean exists(String logicalPath) {
+        return objectRepository.existsById(logicalPath);
+    }
+
+    /** Rimuove il percorso logico; true se esisteva. */
+    public boolean remove(String logicalPath) {
+        Optional<String> hash = objectRepository.findBlobHash(logicalPath);
+        if (hash.isEmpty()) {
+            return false;
+        }
+        release(hash.get(), logicalPath);
+        return true;
+    }
+
+    /** Rimuove tutti i percorsi logici sotto il prefisso indicato. */
+    public int removeUnder(String prefix) {
+        List<StorageObject> objects = objectRepository.findByPathStartingWith(prefix);
+        objects.forEach(object -> release(object.getBlobHash(), object.getPath()));
+        return objects.size();
+    }
+
+    /**
+     * Elimina dal backend il contenuto se nessun percorso lo usa, con la riga
+     * di {@code storage_blobs} bloccata fino alla fine; la crea se manca
+     * (contenuto trovato sul disco senza riga), così anche un collegamento
+     * concorrente attende. Chiamato dalla coda eliminazioni e dalla pulizia.
+     *
+     * @return false se il contenuto è di nuovo in uso e va conservato
+     */
+    public boolean purge(String hash) throws IOException {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                blobRepository.lockOrCreate(hash, LocalDateTime.now());
+                if (blobRepository.findRefCountForUpdate(hash).orElse(0) > 0) {
+                    return false;
+                }
+                try {
+                    backend.delete(blobKey(hash));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                blobRepository.deleteIfUnreferenced(hash);
+                return true;
+            }));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    static String blobKey(String hash) {
+        return "blobs/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    /**
+     * In una transazione collega il percorso (se indicato) e aggiunge il
+     * riferimento al contenuto, bloccandone la riga; con la riga bloccata
+     * carica {@code source} se il contenuto manca nel backend, altrimenti lo
+     * elimina. Un percorso già in uso lascia {@code source} al suo posto.
+     */
+    private void attach(String logicalPath, String hash, long size, Path source) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                if (logicalPath != null) {
+                    objectRepository.insert(logicalPath, hash, now);
+                    blobRepository.insertOrAddReference(hash, size, now);
+                    usage.record(logicalPath, size, 1);
+                } else {
+                    blobRepository.findRefCountForUpdate(hash);
+                }
+                try {
+                    String key = blobKey(hash);
+                    if (backend.exists(key)) {
+                        Files.deleteIfExists(source);
+                    } else if (Files.exists(source)) {
+                        backend.putFile(key, source);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (DataIntegrityViolationException ex) {
+            if (logicalPath != null && isPathInUse(ex)) {
+                throw new FileAlreadyExistsException(logicalPath);
+            }
+            throw ex;
+        }
+    }
+
+    /** True se la violazione riguarda la chiave primaria di {@code storage_objects} (percorso già in uso). */
+    static boolean isPathInUse(DataIntegrityViolationException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String name = violation.getConstraintName();
+                if (name == null) {
+                    return false;
+                }
+                // MySQL riporta "tabella.PRIMARY" dalla 8.0.19, prima solo "PRIMARY"
+                return name.equalsIgnoreCase(PATH_CONSTRAINT)
+                        || (name.equalsIgnoreCase("PRIMARY") && violation.getSQL() != null
+                            && violation.getSQL().toLowerCase(Locale.ROOT).startsWith("insert into storage_objects"));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Toglie il percorso e il suo riferimento; se era l'ultimo accoda
+     * l'eliminazione del contenuto nella stessa transazione.
+     */
+    private void release(String hash, String logicalPath) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (objectRepository.deletePath(logicalPath) == 0) {
+                return; // già rimosso da un'altra richiesta
+            }
+            long size = blobRepository.findSize(hash).orElse(0L);
+            usage.record(logicalPath, -size, -1);
+            blobRepository.addReferences(hash, -1);
+            if (blobRepository.findRefCountForUpdate(hash).orElse(0) <= 0) {
+                LocalDateTime now = LocalDateTime.now();
+                deletionRepository.save(FileDeletion.builder()
+                        .path(blobKey(hash))
+                        .blobHash(hash)
+                        .createdAt(now)
+                        .nextAttemptAt(now)
+                        .build());
+            }
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Algoritmo SHA-256 non disponibile", e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.veely.service.storage;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.entity.FileDeletion;
+import com.veely.repository.FileDeletionRepository;
+import com.veely.service.AfterCommit;
+import com.veely.service.FileSystemStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coda delle eliminazioni di file (outbox transazionale).
+ * <p>
+ * Chi cancella un'entità registra qui i suoi file nella stessa transazione:
+ * se la transazione viene annullata la richiesta sparisce con lei e i file
+ * restano, se va a buon fine i file vengono eliminati dopo il commit da un
+ * worker in background, a blocchi di {@code veely.storage.deletions.batch-size}.
+ * La transazione non attende più il disco o il bucket.
+ * <p>
+ * Le righe restano in tabella finché l'eliminazione non riesce: dopo un
+ * errore si ritenta con attesa crescente, dopo un riavvio il controllo
+ * periodico riprende quelle rimaste. Eliminare un file già assente non è un
+ * errore, quindi ripetere un'eliminazione è innocuo.
+ * <p>
+ * Qui passano anche i contenuti dell'archivio rimasti senza riferimenti
+ * ({@link FileDeletion#getBlobHash()}), accodati da
+ * {@link ContentAddressedBlobStore} e ripresi dal controllo periodico: il
+ * contenuto viene eliminato solo se nel frattempo non è stato ricollegato.
+ */
+@Slf4j
+@Service
+public class FileDeletionOutbox {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final FileDeletionRepository repository;
+    private final FileSystemStorageService storage;
+    private final ContentAddressedBlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final TaskExecutor worker;
+
+    public FileDeletionOutbox(FileDeletionRepository repository,
+                              FileSystemStorageService storage,
+                              ContentAddressedBlobStore blobStore,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${veely.storage.deletions.batch-size:100}") int batchSize,
+                              @Value("${veely.storage.deletions.initial-backoff:PT1M}") Duration initialBackoff,
+                              @Value("${veely.storage.deletions.max-backoff:PT6H}") Duration maxBackoff,
+                              @Qualifier(ExecutorConfig.FILE_DELETIONS) TaskExecutor worker) {
+        this.repository = repository;
+        this.storage = storage;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.worker = worker;
+    }
+
+    /** Registra l'eliminazione di un file (e della sua eventuale miniatura). */
+    @Transactional
+    public void delete(String relativePath) {
+        if (relativePath != null && !relativePath.isBlank()) {
+            enqueue(relativePath, false);
+        }
+    }
+
+    /** Registra l'eliminazione di una cartella con tutto il suo contenuto. */
+    @Transactional
+    public void deleteDirectory(String subdir) {
+        enqueue(subdir, true);
+    }
+
+    /** Avvia lo svuotamento della coda, se non è già in corso o programmato. */
+    public void requestDrain() {
+        if (!drainRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            worker.execute(() -> {
+                drainRequested.set(false);
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    log.warn("Svuotamento della coda eliminazioni interrotto: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            drainRequested.set(false);
+        }
+    }
+
+    /** Riprende le eliminazioni rimaste in coda (riavvii, nuovi tentativi). */
+    @Scheduled(fixedDelayString = "${veely.storage.deletions.poll-interval:PT1M}")
+    public void poll() {
+        requestDrain();
+    }
+
+    /**
+     * Esegue le eliminazioni scadute fino a svuotare la coda.
+     *
+     * @return numero di eliminazioni completate
+     */
+    int drain() {
+        int completed = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<FileDeletion> due = repository.findDue(LocalDateTime.now(), PageRequest.of(0, batchSize));
+            if (due.isEmpty()) {
+                break;
+            }
+            for (FileDeletion deletion : due) {
+                if (process(deletion)) {
+                    completed++;
+                }
+            }
+        }
+        if (completed > 0) {
+            log.debug("Coda eliminazioni: {} eliminazioni completate", completed);
+        }
+        return completed;
+    }
+
+    private void enqueue(String path, boolean directory) {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(FileDeletion.builder()
+                .path(path)
+                .directory(directory)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build());
+        AfterCommit.run(this::requestDrain);
+    }
+
+    private boolean process(FileDeletion deletion) {
+        try {
+            if (deletion.getBlobHash() != null) {
+                if (!blobStore.purge(deletion.getBlobHash())) {
+                    log.debug("Contenuto {} di nuovo in uso: non eliminato", deletion.getBlobHash());
+                }
+            } else if (deletion.isDirectory()) {
+                storage.deleteDirectory(deletion.getPath());
+            } else {
+                storage.delete(deletion.getPath());
+                String thumbnail = thumbnailPath(deletion.getPath());
+                if (thumbnail != null) {
+                    storage.delete(thumbnail);
+                }
+            }
+            repository.deleteById(deletion.getId());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            int attempts = deletion.getAttempts() + 1;
+            LocalDateTime next = LocalDateTime.now().plus(backoff(attempts));
+            String error = e.toString();
+            transactionTemplate.executeWithoutResult(status -> repository.markFailed(deletion.getId(), next,
+                    error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error));
+            log.warn("Eliminazione di {} non riuscita (tentativo {}), nuovo tentativo alle {}: {}",
+                    deletion.getPath(), attempts, next, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Attesa prima del tentativo successivo: raddoppia a ogni errore, fino al massimo. */
+    Duration backoff(int attempts) {
+        if (attempts >= 31) {
+            return maxBackoff;
+        }
+        Duration wait = initialBackoff.multipliedBy(1L << Math.max(0, attempts - 1));
+        return wait.compareTo(maxBackoff) > 0 ? maxBackoff : wait;
+    }
+
+    /** Miniatura generata accanto al file ({@code <cartella>/thumbs/<nome>.jpg}), null se non prevista. */
+    static String thumbnailPath(String relativePath) {
+        int sep = relativePath.lastIndexOf('/');
+        if (sep <= 0) {
+            return null;
+        }
+        String dir = relativePath.substring(0, sep);
+        if (dir.equals(ImageDerivativeService.THUMBS_DIR)
+                || dir.endsWith("/" + ImageDerivativeService.THUMBS_DIR)) {
+            return null;
+        }
+        return dir + "/" + ImageDerivativeService.THUMBS_DIR + "/"
+                + ImageDerivativeService.thumbnailName(relativePath.substring(sep + 1));
+    }
+}
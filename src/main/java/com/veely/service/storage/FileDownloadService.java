@@ -0,0 +1,287 @@
+package com.veely.service.storage;
+
+import com.veely.exception.ResourceNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Download dei file salvati, comune a tutti i controller.
+ * <p>
+ * Dai {@value #SENDFILE_MIN_SIZE} byte in su, se il connettore di Tomcat
+ * supporta il sendfile, il contenuto passa dal file al socket senza essere
+ * copiato sullo heap; negli altri casi viene copiato sulla risposta con un
+ * buffer di {@value #BUFFER_SIZE} byte. Sono gestite le richieste parziali
+ * ({@code Range}, una sola porzione) e le GET condizionali: per i file
+ * dell'archivio a contenuti l'ETag è l'hash SHA-256, per gli altri è
+ * derivato da dimensione e data di modifica.
+ * <p>
+ * Se l'archivio non è su disco locale (backend S3) il browser viene
+ * rediretto a un URL firmato a scadenza e il contenuto non passa
+ * dall'applicazione; con {@code veely.downloads.presigned-ttl=PT0S} viene
+ * invece letto dal backend e inoltrato per intero.
+ */
+@Service
+public class FileDownloadService {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** Sotto questa soglia il sendfile non conviene (stessa soglia del DefaultServlet di Tomcat). */
+    static final long SENDFILE_MIN_SIZE = 48 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final ContentAddressedBlobStore blobStore;
+    private final String cacheControl;
+    private final Duration presignedTtl;
+
+    public FileDownloadService(ContentAddressedBlobStore blobStore,
+                               @Value("${veely.downloads.max-age:PT0S}") Duration maxAge,
+                               @Value("${veely.downloads.presigned-ttl:PT5M}") Duration presignedTtl) {
+        this.blobStore = blobStore;
+        this.presignedTtl = presignedTtl;
+        CacheControl policy = maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge);
+        this.cacheControl = policy.cachePrivate().getHeaderValue();
+    }
+
+    /** Invia il file come allegato da scaricare. */
+    public void attachment(Resource resource, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        send(resource, ContentDisposition.attachment(), request, response);
+    }
+
+    /** Invia il file da mostrare nel browser (immagini, anteprime PDF). */
+    public void inline(Resource resource, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        send(resource, ContentDisposition.inline(), request, response);
+    }
+
+    private void send(Resource resource, ContentDisposition.Builder disposition,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!resource.isFile()) {
+            sendRemote(resource, disposition, request, response);
+            return;
+        }
+        Path file = resource.getFile().toPath();
+        String filename = resource.getFilename() != null ? resource.getFilename() : file.getFileName().toString();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new ResourceNotFoundException("File non trovato: " + filename);
+        }
+        long length = attributes.size();
+        // le date HTTP hanno la precisione del secondo
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = contentHash(resource, file)
+                .map(hash -> "\"" + hash + "\"")
+                .orElseGet(() -> "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"");
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag, lastModified);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType(filename));
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(disposition, filename));
+        response.setContentLengthLong(count);
+
+        if (count == 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat accetta solo percorsi canonici; il file viene scritto dal connettore dopo il commit
+            request.setAttribute(SENDFILE_FILENAME, file.toRealPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            InputStream in = Channels.newInputStream(channel.position(start));
+            OutputStream out = response.getOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (long remaining = count; remaining > 0; ) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    // file accorciato nel frattempo: il client vedrà una risposta incompleta
+                    break;
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Contenuto che non è un file locale: redirect all'URL firmato del
+     * backend se disponibile, altrimenti copia dello stream (senza Range).
+     */
+    private void sendRemote(Resource resource, ContentDisposition.Builder disposition,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String filename = resource.getFilename() != null ? resource.getFilename() : "download";
+        String contentType = contentType(filename);
+        String contentDisposition = contentDisposition(disposition, filename);
+        if (resource instanceof BlobResource blob && !presignedTtl.isZero()) {
+            // il contenuto di un hash non cambia: la rivalidazione non richiede il backend
+            String etag = "\"" + blob.hash() + "\"";
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            if (isNotModified(request, etag, -1)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            Optional<URI> url = blob.presignedDownload(contentType, contentDisposition, presignedTtl);
+            if (url.isPresent()) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+                response.sendRedirect(url.get().toString());
+                return;
+            }
+        }
+
+        long length;
+        long lastModified;
+        try {
+            length = resource.contentLength();
+            lastModified = resource.lastModified() / 1000 * 1000;
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            throw new ResourceNotFoundException("File non trovato: " + filename);
+        }
+        String etag = resource instanceof BlobResource blob
+                ? "\"" + blob.hash() + "\""
+                : "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        response.setContentLengthLong(length);
+        if (length == 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            in.transferTo(response.getOutputStream());
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            throw new ResourceNotFoundException("File non trovato: " + filename);
+        }
+    }
+
+    private Optional<String> contentHash(Resource resource, Path file) {
+        return resource instanceof BlobResource blob ? Optional.of(blob.hash()) : blobStore.hashOfBlob(file);
+    }
+
+    private static String contentType(String filename) {
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    private static String contentDisposition(ContentDisposition.Builder disposition, String filename) {
+        return disposition.filename(filename, StandardCharsets.UTF_8).build().toString();
+    }
+
+    /** If-None-Match ha la precedenza su If-Modified-Since (RFC 9110, 13.2.2). */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || weakTag(tag).equals(weakTag(etag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long since = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return since >= 0 && lastModified >= 0 && lastModified <= since;
+    }
+
+    /**
+     * Porzione richiesta, o null se va inviato l'intero file: intestazione
+     * assente o malformata, più porzioni (non gestite) o If-Range non più
+     * valido.
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            boolean valid = ifRange.startsWith("\"") || ifRange.startsWith("W/")
+                    ? ifRange.equals(etag) && !etag.startsWith("W/")
+                    : dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+            if (!valid) {
+                return null;
+            }
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+    private static String weakTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
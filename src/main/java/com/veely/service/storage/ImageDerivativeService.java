@@ -0,0 +1,231 @@
+package com.veely.service.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.veely.config.ExecutorConfig;
+import com.veely.model.DocumentType;
+import com.veely.service.AfterCommit;
+import com.veely.service.FileSystemStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Miniature delle foto (veicoli, foto profilo) per le pagine elenco.
+ * <p>
+ * Dopo il caricamento la miniatura JPEG viene generata su un pool dedicato e
+ * salvata accanto all'originale, in {@code <cartella>/thumbs/<nome>.jpg}. Se
+ * manca al momento della richiesta (foto caricate prima della pipeline,
+ * generazione interrotta) si serve l'originale e la miniatura viene generata
+ * in background per le richieste successive: il thread della richiesta non
+ * attende mai la generazione. Anche se l'originale non è un'immagine
+ * leggibile si serve l'originale.
+ */
+@Slf4j
+@Service
+public class ImageDerivativeService {
+
+    static final String THUMBS_DIR = "thumbs";
+    private static final String FORMAT = "jpeg";
+    private static final int MAX_UNSUPPORTED = 10_000;
+
+    private final FileSystemStorageService storage;
+    private final int thumbnailSize;
+    private final TaskExecutor workers;
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    /** Originali che ImageIO non sa leggere: non si ritenta a ogni pagina. */
+    private final Cache<String, Boolean> unsupported = Caffeine.newBuilder()
+            .maximumSize(MAX_UNSUPPORTED)
+            .build();
+
+    public ImageDerivativeService(FileSystemStorageService storage,
+                                  @Value("${veely.images.thumbnail-size:320}") int thumbnailSize,
+                                  @Qualifier(ExecutorConfig.IMAGE_DERIVATIVES) TaskExecutor workers) {
+        this.storage = storage;
+        this.thumbnailSize = thumbnailSize;
+        this.workers = workers;
+    }
+
+    /** Tipi di documento per cui si generano le miniature. */
+    public static boolean hasThumbnail(DocumentType type) {
+        return type == DocumentType.VEHICLE_IMAGE || type == DocumentType.IDENTITY_PHOTO;
+    }
+
+    /** Programma la miniatura dopo il commit della transazione corrente (o subito, se non c'è). */
+    public void generateAfterCommit(String filename, String subdir) {
+        AfterCommit.run(() -> generate(filename, subdir));
+    }
+
+    /**
+     * Avvia la generazione in background; richieste contemporanee per lo
+     * stesso file condividono lo stesso lavoro.
+     *
+     * @return true al termine se la miniatura è disponibile
+     */
+    public CompletableFuture<Boolean> generate(String filename, String subdir) {
+        String originalPath = subdir + "/" + filename;
+        CompletableFuture<Boolean> task = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(originalPath, task);
+        if (running != null) {
+            return running;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    task.complete(createThumbnail(filename, subdir));
+                } catch (Exception ex) {
+                    log.warn("Miniatura di {} non generata: {}", originalPath, ex.toString());
+                    task.complete(false);
+                } finally {
+                    inFlight.remove(originalPath, task);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(originalPath, task);
+            task.complete(false);
+        }
+        return task;
+    }
+
+    /**
+     * Miniatura da servire per il file indicato; se manca si serve l'originale
+     * e la miniatura viene avviata in background.
+     */
+    public Resource loadThumbnail(String filename, String subdir) {
+        String thumbDir = subdir + "/" + THUMBS_DIR;
+        String thumbName = thumbnailName(filename);
+        if (!storage.exists(thumbDir + "/" + thumbName)) {
+            if (unsupported.getIfPresent(subdir + "/" + filename) == null) {
+                generate(filename, subdir);
+            }
+            return storage.loadAsResource(filename, subdir);
+        }
+        return storage.loadAsResource(thumbName, thumbDir);
+    }
+
+    /** Elimina le miniature dell'originale indicato. */
+    public void deleteDerivatives(String filename, String subdir) {
+        storage.delete(thumbnailName(filename), subdir + "/" + THUMBS_DIR);
+        unsupported.invalidate(subdir + "/" + filename);
+    }
+
+    boolean createThumbnail(String filename, String subdir) throws IOException {
+        String originalPath = subdir + "/" + filename;
+        String thumbDir = subdir + "/" + THUMBS_DIR;
+        String thumbName = thumbnailName(filename);
+        if (storage.exists(thumbDir + "/" + thumbName)) {
+            return true;
+        }
+        if (unsupported.getIfPresent(originalPath) != null) {
+            return false;
+        }
+        Optional<Resource> original = storage.find(originalPath);
+        if (original.isEmpty()) {
+            return false;
+        }
+        BufferedImage source = read(original.get());
+        if (source == null) {
+            unsupported.put(originalPath, Boolean.TRUE);
+            return false;
+        }
+        byte[] jpeg = encode(scale(source));
+        try {
+            storage.store(new ByteArrayInputStream(jpeg), thumbDir, thumbName);
+        } catch (FileAlreadyExistsException alreadyThere) {
+            // generata nel frattempo da un altro lavoro sullo stesso file
+        }
+        return true;
+    }
+
+    static String thumbnailName(String filename) {
+        return filename + ".jpg";
+    }
+
+    /**
+     * Legge l'immagine con un sottocampionamento che mantiene almeno il
+     * doppio della risoluzione finale: una foto da 24 MP non viene mai
+     * decodificata per intero. Null se il formato non è supportato.
+     */
+    private BufferedImage read(Resource original) throws IOException {
+        // da file la lettura è ad accesso casuale; dal backend remoto passa dallo stream
+        try (InputStream raw = original.isFile() ? null : original.getInputStream();
+             ImageInputStream in = ImageIO.createImageInputStream(raw != null ? raw : original.getFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longestSide / (thumbnailSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Ridimensiona nel quadrato della miniatura mantenendo le proporzioni, su fondo bianco. */
+    private BufferedImage scale(BufferedImage source) {
+        double ratio = Math.min(1.0, (double) thumbnailSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(FORMAT).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.8f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
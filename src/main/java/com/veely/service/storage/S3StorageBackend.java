@@ -0,0 +1,386 @@
+package com.veely.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Backend su bucket S3 o compatibile (MinIO, Ceph, ...), con le sole API REST
+ * firmate AWS Signature V4 e il client HTTP del JDK.
+ * <p>
+ * Gli stream di dimensione non nota vengono caricati in multipart: si legge
+ * una parte alla volta in un unico buffer da {@code part-size} e la si invia
+ * subito, senza file temporanei; i contenuti più piccoli di una parte vanno
+ * con una sola PUT. Un caricamento fallito viene annullato (abort) per non
+ * lasciare parti a pagamento nel bucket. I download possono essere serviti
+ * con URL firmati a scadenza, senza passare dall'applicazione.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "veely.storage.backend", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+
+    /** Dimensione minima di una parte accettata da S3 (tranne l'ultima). */
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long MAX_PRESIGN_SECONDS = Duration.ofDays(7).toSeconds();
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    private final HttpClient http;
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final boolean pathStyle;
+    private final int partSize;
+    private final Clock clock;
+
+    @Autowired
+    public S3StorageBackend(@Value("${veely.storage.s3.endpoint}") String endpoint,
+                            @Value("${veely.storage.s3.region:us-east-1}") String region,
+                            @Value("${veely.storage.s3.bucket}") String bucket,
+                            @Value("${veely.storage.s3.access-key}") String accessKey,
+                            @Value("${veely.storage.s3.secret-key}") String secretKey,
+                            @Value("${veely.storage.s3.path-style:true}") boolean pathStyle,
+                            @Value("${veely.storage.s3.part-size:8MB}") DataSize partSize) {
+        this(URI.create(endpoint), region, bucket, accessKey, secretKey, pathStyle,
+                (int) Math.min(Math.max(partSize.toBytes(), MIN_PART_SIZE), Integer.MAX_VALUE - 8),
+                Clock.systemUTC());
+    }
+
+    S3StorageBackend(URI endpoint, String region, String bucket, String accessKey, String secretKey,
+                     boolean pathStyle, int partSize, Clock clock) {
+        this.endpoint = endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.pathStyle = pathStyle;
+        this.partSize = partSize;
+        this.clock = clock;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public void putFile(String key, Path source) throws IOException {
+        if (Files.size(source) <= partSize) {
+            expectSuccess(send("PUT", key, Map.of(), HttpRequest.BodyPublishers.ofFile(source),
+                    HttpResponse.BodyHandlers.ofString()), "PUT", key);
+        } else {
+            try (InputStream in = Files.newInputStream(source)) {
+                put(key, in);
+            }
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public void put(String key, InputStream content) throws IOException {
+        byte[] buffer = new byte[partSize];
+        int read = content.readNBytes(buffer, 0, partSize);
+        if (read < partSize) {
+            expectSuccess(send("PUT", key, Map.of(), HttpRequest.BodyPublishers.ofByteArray(buffer, 0, read),
+                    HttpResponse.BodyHandlers.ofString()), "PUT", key);
+            return;
+        }
+        String uploadId = createMultipartUpload(key);
+        try {
+            List<String> etags = new ArrayList<>();
+            while (read > 0) {
+                etags.add(uploadPart(key, uploadId, etags.size() + 1, buffer, read));
+                read = read < partSize ? 0 : content.readNBytes(buffer, 0, partSize);
+            }
+            completeMultipartUpload(key, uploadId, etags);
+        } catch (IOException | RuntimeException ex) {
+            abortMultipartUpload(key, uploadId);
+            throw ex;
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        HttpResponse<InputStream> response = send("GET", key, Map.of(), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() / 100 == 2) {
+            return response.body();
+        }
+        response.body().close();
+        if (response.statusCode() == 404) {
+            throw new NoSuchFileException(key);
+        }
+        throw new IOException("S3 GET " + key + ": HTTP " + response.statusCode());
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) throws IOException {
+        HttpResponse<Void> response = send("HEAD", key, Map.of(), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 HEAD " + key + ": HTTP " + response.statusCode());
+        }
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        Instant lastModified = response.headers().firstValue("Last-Modified")
+                .map(S3StorageBackend::parseHttpDate)
+                .orElse(Instant.EPOCH);
+        return Optional.of(new ObjectInfo(size, lastModified));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<String> response = send("DELETE", key, Map.of(), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            expectSuccess(response, "DELETE", key);
+        }
+    }
+
+    @Override
+    public Optional<URI> presignedDownload(String key, String contentType, String contentDisposition,
+                                           Duration ttl) {
+        Instant now = clock.instant();
+        String date = AMZ_DATE.format(now);
+        Map<String, String> query = new TreeMap<>();
+        query.put("X-Amz-Algorithm", ALGORITHM);
+        query.put("X-Amz-Credential", accessKey + "/" + scope(date));
+        query.put("X-Amz-Date", date);
+        query.put("X-Amz-Expires", Long.toString(Math.min(Math.max(ttl.toSeconds(), 1), MAX_PRESIGN_SECONDS)));
+        query.put("X-Amz-SignedHeaders", "host");
+        if (contentType != null) {
+            query.put("response-content-type", contentType);
+        }
+        if (contentDisposition != null) {
+            query.put("response-content-disposition", contentDisposition);
+        }
+        URI uri = objectUri(key, Map.of());
+        String canonicalQuery = canonicalQuery(query);
+        String signature = signature("GET", uri.getRawPath(), canonicalQuery,
+                Map.of("host", hostHeader(uri)), UNSIGNED_PAYLOAD, date);
+        return Optional.of(URI.create(uri + "?" + canonicalQuery + "&X-Amz-Signature=" + signature));
+    }
+
+    private String createMultipartUpload(String key) throws IOException {
+        HttpResponse<String> response = send("POST", key, Map.of("uploads", ""),
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "POST uploads", key);
+        Matcher matcher = UPLOAD_ID.matcher(response.body());
+        if (!matcher.find()) {
+            throw new IOException("S3 multipart " + key + ": UploadId mancante nella risposta");
+        }
+        return matcher.group(1);
+    }
+
+    private String uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length)
+            throws IOException {
+        HttpResponse<String> response = send("PUT", key,
+                Map.of("partNumber", Integer.toString(partNumber), "uploadId", uploadId),
+                HttpRequest.BodyPublishers.ofByteArray(buffer, 0, length), HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "PUT part " + partNumber, key);
+        return response.headers().firstValue("ETag")
+                .orElseThrow(() -> new IOException("S3 multipart " + key + ": ETag mancante per la parte " + partNumber));
+    }
+
+    private void completeMultipartUpload(String key, String uploadId, List<String> etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+               .append(etags.get(i).replace("&", "&amp;").replace("\"", "&quot;"))
+               .append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        HttpResponse<String> response = send("POST", key, Map.of("uploadId", uploadId),
+                HttpRequest.BodyPublishers.ofString(xml.toString()), HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "POST complete", key);
+        // S3 può rispondere 200 e riportare l'errore nel corpo
+        if (response.body().contains("<Error>")) {
+            throw new IOException("S3 multipart " + key + " non completato: " + response.body());
+        }
+    }
+
+    private void abortMultipartUpload(String key, String uploadId) {
+        try {
+            send("DELETE", key, Map.of("uploadId", uploadId), HttpRequest.BodyPublishers.noBody(),
+                    HttpResponse.BodyHandlers.discarding());
+        } catch (IOException ex) {
+            log.warn("Annullamento del caricamento multipart {} di {} non riuscito", uploadId, key, ex);
+        }
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> query,
+                                     HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        URI uri = objectUri(key, query);
+        String date = AMZ_DATE.format(clock.instant());
+        Map<String, String> headers = new TreeMap<>();
+        headers.put("host", hostHeader(uri));
+        headers.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        headers.put("x-amz-date", date);
+        String signature = signature(method, uri.getRawPath(), canonicalQuery(query), headers, UNSIGNED_PAYLOAD, date);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .method(method, body)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("x-amz-date", date)
+                .header("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope(date)
+                        + ", SignedHeaders=" + String.join(";", headers.keySet())
+                        + ", Signature=" + signature)
+                .build();
+        // le richieste S3 sono ripetibili: si riprova se la connessione riusata è stata chiusa dal server
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return http.send(request, handler);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("S3 " + method + " " + key + " interrotto");
+            } catch (IOException ex) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                log.debug("S3 {} {}: nuovo tentativo dopo {}", method, key, ex.toString());
+            }
+        }
+    }
+
+    private URI objectUri(String key, Map<String, String> query) {
+        String path = "/" + encode(key, false);
+        String base = endpoint.toString().replaceAll("/+$", "");
+        if (pathStyle) {
+            base = base + "/" + encode(bucket, true);
+        } else {
+            base = endpoint.getScheme() + "://" + bucket + "." + endpoint.getRawAuthority()
+                    + (endpoint.getRawPath() == null ? "" : endpoint.getRawPath().replaceAll("/+$", ""));
+        }
+        String canonicalQuery = canonicalQuery(query);
+        return URI.create(base + path + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+    }
+
+    /** Stesso valore che il client HTTP invia nell'intestazione Host (porta omessa se di default). */
+    private static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || ("http".equalsIgnoreCase(uri.getScheme()) && port == 80)
+                || ("https".equalsIgnoreCase(uri.getScheme()) && port == 443);
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private String signature(String method, String canonicalUri, String canonicalQuery,
+                             Map<String, String> headers, String payloadHash, String date) {
+        Map<String, String> sorted = new TreeMap<>(headers);
+        String canonicalHeaders = sorted.entrySet().stream()
+                .map(e -> e.getKey() + ":" + e.getValue().trim() + "\n")
+                .collect(Collectors.joining());
+        String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + String.join(";", sorted.keySet()) + "\n" + payloadHash;
+        String stringToSign = ALGORITHM + "\n" + date + "\n" + scope(date) + "\n" + sha256Hex(canonicalRequest);
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date.substring(0, 8));
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        return HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+    }
+
+    private String scope(String date) {
+        return date.substring(0, 8) + "/" + region + "/s3/aws4_request";
+    }
+
+    private static String canonicalQuery(Map<String, String> query) {
+        return query.entrySet().stream()
+                .map(e -> encode(e.getKey(), true) + "=" + encode(e.getValue(), true))
+                .sorted()
+                .collect(Collectors.joining("&"));
+    }
+
+    /** Codifica RFC 3986 richiesta dalla firma V4: restano in chiaro solo i caratteri non riservati. */
+    static String encode(String value, boolean encodeSlash) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                out.append(c);
+            } else {
+                out.append('%').append(HexFormat.of().withUpperCase().toHexDigits(b));
+            }
+        }
+        return out.toString();
+    }
+
+    private static void expectSuccess(HttpResponse<?> response, String operation, String key) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 " + operation + " " + key + ": HTTP " + response.statusCode()
+                    + (response.body() instanceof String body && !body.isBlank() ? " " + body : ""));
+        }
+    }
+
+    private static Instant parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException ex) {
+            return Instant.EPOCH;
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 non disponibile", e);
+        }
+    }
+
+    private static String sha256Hex(String data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Algoritmo SHA-256 non disponibile", e);
+        }
+    }
+}
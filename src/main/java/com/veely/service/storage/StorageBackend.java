@@ -0,0 +1,65 @@
+package com.veely.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Dove vengono conservati fisicamente i contenuti dell'archivio file.
+ * <p>
+ * Le chiavi sono percorsi relativi con separatore '/' (es.
+ * {@code blobs/ab/cd/<hash>}). L'implementazione si sceglie con
+ * {@code veely.storage.backend}: {@code local} (cartella {@code storage.location},
+ * default) oppure {@code s3} (bucket S3 o compatibile, es. MinIO), che permette
+ * a più nodi applicativi di condividere i file senza un disco comune.
+ */
+public interface StorageBackend {
+
+    /** Dimensione e data di modifica di un oggetto salvato. */
+    record ObjectInfo(long size, Instant lastModified) {}
+
+    /**
+     * Salva il contenuto del file locale con la chiave indicata. Il file
+     * sorgente viene consumato: spostato o eliminato dopo la copia.
+     */
+    void putFile(String key, Path source) throws IOException;
+
+    /** Salva il contenuto dello stream, di dimensione non nota. Lo stream non viene chiuso. */
+    void put(String key, InputStream content) throws IOException;
+
+    /**
+     * Apre il contenuto in lettura.
+     *
+     * @throws java.nio.file.NoSuchFileException se la chiave non esiste
+     */
+    InputStream open(String key) throws IOException;
+
+    Optional<ObjectInfo> stat(String key) throws IOException;
+
+    default boolean exists(String key) throws IOException {
+        return stat(key).isPresent();
+    }
+
+    /** Elimina l'oggetto; nessun errore se non esiste. */
+    void delete(String key) throws IOException;
+
+    /** File su disco locale della chiave: solo per i backend su filesystem (download zero-copy). */
+    default Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+
+    /**
+     * URL temporaneo per scaricare il contenuto direttamente dal backend, senza
+     * passare dall'applicazione; vuoto se il backend non lo supporta.
+     *
+     * @param contentDisposition valore dell'intestazione Content-Disposition della risposta
+     */
+    default Optional<URI> presignedDownload(String key, String contentType, String contentDisposition,
+                                            Duration ttl) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,95 @@
+package com.veely.service.storage;
+
+import com.veely.config.ExecutorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Sposta nell'archivio a contenuti i file salvati con il vecchio schema
+ * ({@code uploads/<subdir>/<timestamp>_<nome>}), mantenendo i percorsi già
+ * registrati nelle entità. I duplicati vengono ridotti a un solo blob.
+ * <p>
+ * Ogni file è trattato in modo indipendente e idempotente: il job può essere
+ * interrotto e rilanciato (parte a ogni avvio se abilitato) e riprende da dove
+ * si era fermato.
+ */
+@Slf4j
+@Service
+public class StorageMigrationService {
+
+    /** Esito di un passaggio di migrazione. */
+    public record MigrationReport(int scanned, int migrated, int failed) {}
+
+    private final ContentAddressedBlobStore blobStore;
+    private final Path rootLocation;
+    private final boolean runOnStartup;
+    private final TaskExecutor executor;
+
+    public StorageMigrationService(ContentAddressedBlobStore blobStore,
+                                   @Value("${storage.location:uploads}") String storageLocation,
+                                   @Value("${veely.storage.migration.on-startup:true}") boolean runOnStartup,
+                                   @Qualifier(ExecutorConfig.STORAGE_MIGRATION) TaskExecutor executor) {
+        this.blobStore = blobStore;
+        this.rootLocation = Paths.get(storageLocation);
+        this.runOnStartup = runOnStartup;
+        this.executor = executor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (runOnStartup) {
+            executor.execute(this::migrate);
+        }
+    }
+
+    /** Migra tutti i file ancora fuori dall'archivio a contenuti. */
+    public MigrationReport migrate() {
+        if (!Files.isDirectory(rootLocation)) {
+            return new MigrationReport(0, 0, 0);
+        }
+        List<Path> legacyFiles;
+        try (Stream<Path> walker = Files.walk(rootLocation)) {
+            legacyFiles = walker
+                    .filter(path -> !path.startsWith(blobStore.blobRoot()))
+                    .filter(Files::isRegularFile)
+                    .toList();
+        } catch (IOException e) {
+            log.error("Impossibile scorrere la cartella {}", rootLocation, e);
+            return new MigrationReport(0, 0, 0);
+        }
+        if (legacyFiles.isEmpty()) {
+            return new MigrationReport(0, 0, 0);
+        }
+
+        log.info("Migrazione archivio file: {} file da spostare nell'archivio a contenuti", legacyFiles.size());
+        int migrated = 0;
+        int failed = 0;
+        for (Path file : legacyFiles) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            String logicalPath = rootLocation.relativize(file).toString().replace('\\', '/');
+            try {
+                blobStore.adopt(file, logicalPath);
+                migrated++;
+            } catch (IOException | RuntimeException e) {
+                failed++;
+                log.warn("Migrazione di {} non riuscita: {}", logicalPath, e.getMessage());
+            }
+        }
+        log.info("Migrazione archivio file completata: {} spostati, {} errori", migrated, failed);
+        return new MigrationReport(legacyFiles.size(), migrated, failed);
+    }
+}
@@ -0,0 +1,271 @@
+package com.veely.service.storage;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.entity.CompanyInfo;
+import com.veely.repository.CompanyInfoRepository;
+import com.veely.repository.DocumentRepository;
+import com.veely.repository.FileDeletionRepository;
+import com.veely.repository.PayslipRepository;
+import com.veely.repository.StorageBlobRepository;
+import com.veely.repository.StorageObjectRepository;
+import com.veely.repository.UniqueCertificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Riconcilia periodicamente l'archivio file con il database.
+ * <p>
+ * Un percorso dell'archivio è in uso se compare in {@code Document.path},
+ * {@code Payslip.storagePath}, {@code UniqueCertification.storagePath} o tra
+ * i loghi aziendali; le miniature sono in uso se lo è il file da cui derivano.
+ * I percorsi orfani (eliminazioni perse prima della coda, caricamenti
+ * interrotti, copie di validazione) più vecchi di
+ * {@code veely.storage.sweeper.grace-period} vengono passati a
+ * {@link FileDeletionOutbox}. Sul disco locale vengono rimossi anche i
+ * contenuti senza riga in {@code storage_blobs} e i file temporanei rimasti.
+ * <p>
+ * Con {@code veely.storage.sweeper.dry-run=true} gli orfani vengono solo
+ * contati e registrati nel log.
+ */
+@Slf4j
+@Service
+public class StorageOrphanSweeper {
+
+    /** Esito di una riconciliazione. */
+    public record SweepReport(int scanned, int orphans, int blobsRemoved, boolean skipped) {}
+
+    private final StorageObjectRepository objectRepository;
+    private final StorageBlobRepository blobRepository;
+    private final DocumentRepository documentRepo;
+    private final PayslipRepository payslipRepo;
+    private final UniqueCertificationRepository certificationRepo;
+    private final CompanyInfoRepository companyInfoRepo;
+    private final FileDeletionRepository deletionRepo;
+    private final FileDeletionOutbox outbox;
+    private final ContentAddressedBlobStore blobStore;
+    private final Path rootLocation;
+    private final boolean enabled;
+    private final boolean dryRun;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final TaskExecutor executor;
+
+    public StorageOrphanSweeper(StorageObjectRepository objectRepository,
+                                StorageBlobRepository blobRepository,
+                                DocumentRepository documentRepo,
+                                PayslipRepository payslipRepo,
+                                UniqueCertificationRepository certificationRepo,
+                                CompanyInfoRepository companyInfoRepo,
+                                FileDeletionRepository deletionRepo,
+                                FileDeletionOutbox outbox,
+                                ContentAddressedBlobStore blobStore,
+                                @Value("${storage.location:uploads}") String storageLocation,
+                                @Value("${veely.storage.sweeper.enabled:true}") boolean enabled,
+                                @Value("${veely.storage.sweeper.dry-run:false}") boolean dryRun,
+                                @Value("${veely.storage.sweeper.grace-period:P1D}") Duration gracePeriod,
+                                @Value("${veely.storage.deletions.batch-size:100}") int batchSize,
+                                @Qualifier(ExecutorConfig.STORAGE_SWEEPER) TaskExecutor executor) {
+        this.objectRepository = objectRepository;
+        this.blobRepository = blobRepository;
+        this.documentRepo = documentRepo;
+        this.payslipRepo = payslipRepo;
+        this.certificationRepo = certificationRepo;
+        this.companyInfoRepo = companyInfoRepo;
+        this.deletionRepo = deletionRepo;
+        this.outbox = outbox;
+        this.blobStore = blobStore;
+        this.rootLocation = Paths.get(storageLocation);
+        this.enabled = enabled;
+        this.dryRun = dryRun;
+        this.gracePeriod = gracePeriod;
+        this.batchSize = batchSize;
+        this.executor = executor;
+    }
+
+    @Scheduled(cron = "${veely.storage.sweeper.cron:0 30 3 * * *}")
+    public void scheduledSweep() {
+        if (enabled) {
+            executor.execute(this::sweep);
+        }
+    }
+
+    /** Cerca i file orfani e ne programma l'eliminazione. */
+    public SweepReport sweep() {
+        if (documentRepo.count() == 0 && payslipRepo.count() == 0 && certificationRepo.count() == 0
+                && objectRepository.count() > 0) {
+            // database vuoto o sbagliato davanti a un archivio pieno: non si tocca nulla
+            log.warn("Pulizia archivio file saltata: nessun file referenziato ma l'archivio non è vuoto");
+            return new SweepReport(0, 0, 0, true);
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(gracePeriod);
+        Set<String> companyFiles = companyFiles();
+        int scanned = 0;
+        int orphans = 0;
+
+        String after = "";
+        List<String> page;
+        do {
+            page = objectRepository.findPathsCreatedBefore(after, cutoff, PageRequest.of(0, batchSize));
+            scanned += page.size();
+            orphans += enqueueOrphans(page, companyFiles);
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1);
+            }
+        } while (page.size() == batchSize && !Thread.currentThread().isInterrupted());
+
+        int[] legacy = sweepLegacyFiles(cutoff, companyFiles);
+        scanned += legacy[0];
+        orphans += legacy[1];
+        int blobsRemoved = dryRun ? 0 : removeUnreferencedBlobs();
+
+        log.info("Pulizia archivio file: {} percorsi controllati, {} orfani{}, {} contenuti rimossi",
+                scanned, orphans, dryRun ? " (solo conteggio)" : " in eliminazione", blobsRemoved);
+        return new SweepReport(scanned, orphans, blobsRemoved, false);
+    }
+
+    /** File del vecchio schema, non ancora spostati nell'archivio a contenuti. */
+    private int[] sweepLegacyFiles(LocalDateTime cutoff, Set<String> companyFiles) {
+        if (!Files.isDirectory(rootLocation)) {
+            return new int[]{0, 0};
+        }
+        Instant olderThan = cutoff.atZone(ZoneId.systemDefault()).toInstant();
+        int scanned = 0;
+        int orphans = 0;
+        try (Stream<Path> walker = Files.walk(rootLocation)) {
+            Iterator<String> paths = walker
+                    .filter(path -> !path.startsWith(blobStore.blobRoot()))
+                    .filter(Files::isRegularFile)
+                    .filter(path -> modifiedBefore(path, olderThan))
+                    .map(path -> rootLocation.relativize(path).toString().replace('\\', '/'))
+                    .iterator();
+            List<String> batch = new ArrayList<>(batchSize);
+            while (paths.hasNext()) {
+                batch.add(paths.next());
+                if (batch.size() == batchSize || !paths.hasNext()) {
+                    scanned += batch.size();
+                    orphans += enqueueOrphans(batch, companyFiles);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Impossibile scorrere la cartella {}: {}", rootLocation, e.getMessage());
+        }
+        return new int[]{scanned, orphans};
+    }
+
+    /** Contenuti locali senza riga in {@code storage_blobs} e temporanei abbandonati. */
+    private int removeUnreferencedBlobs() {
+        Path blobRoot = blobStore.blobRoot();
+        if (!Files.isDirectory(blobRoot)) {
+            return 0;
+        }
+        Instant olderThan = Instant.now().minus(gracePeriod);
+        int removed = 0;
+        try (Stream<Path> walker = Files.walk(blobRoot)) {
+            List<Path> stale = walker
+                    .filter(Files::isRegularFile)
+                    .filter(path -> modifiedBefore(path, olderThan))
+                    .filter(path -> blobStore.hashOfBlob(path)
+                            .map(hash -> !blobRepository.existsById(hash))
+                            .orElse(true))
+                    .toList();
+            for (Path file : stale) {
+                try {
+                    // i contenuti passano dal lock sulla riga, come le eliminazioni della coda
+                    Optional<String> hash = blobStore.hashOfBlob(file);
+                    if (hash.isPresent() ? blobStore.purge(hash.get()) : Files.deleteIfExists(file)) {
+                        removed++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Contenuto {} non eliminato: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Impossibile scorrere la cartella {}: {}", blobRoot, e.getMessage());
+        }
+        return removed;
+    }
+
+    private int enqueueOrphans(List<String> paths, Set<String> companyFiles) {
+        if (paths.isEmpty()) {
+            return 0;
+        }
+        // ogni percorso è in uso se lo è lui o, per le miniature, il file da cui deriva
+        Map<String, String> owners = paths.stream()
+                .collect(Collectors.toMap(Function.identity(), StorageOrphanSweeper::sourceOf, (a, b) -> a));
+        Set<String> candidates = new HashSet<>(owners.values());
+        Set<String> referenced = new HashSet<>(documentRepo.findPathsIn(candidates));
+        referenced.addAll(payslipRepo.findStoragePathsIn(candidates));
+        referenced.addAll(certificationRepo.findStoragePathsIn(candidates));
+        referenced.addAll(companyFiles);
+
+        int orphans = 0;
+        for (String path : paths) {
+            if (referenced.contains(owners.get(path))) {
+                continue;
+            }
+            orphans++;
+            if (dryRun) {
+                log.info("File orfano: {}", path);
+            } else if (!deletionRepo.existsByPath(path)) {
+                outbox.delete(path);
+            }
+        }
+        return orphans;
+    }
+
+    private Set<String> companyFiles() {
+        Set<String> files = new HashSet<>();
+        for (CompanyInfo company : companyInfoRepo.findAll()) {
+            Stream.of(company.getLogoPath(), company.getHeaderLogoPath(), company.getWatermarkPath())
+                    .filter(Objects::nonNull)
+                    .forEach(files::add);
+        }
+        return files;
+    }
+
+    /** File da cui deriva una miniatura ({@code <cartella>/thumbs/<nome>.jpg}), o il percorso stesso. */
+    static String sourceOf(String path) {
+        String marker = "/" + ImageDerivativeService.THUMBS_DIR + "/";
+        int thumbs = path.lastIndexOf(marker);
+        String suffix = ImageDerivativeService.thumbnailName("");
+        if (thumbs <= 0 || !path.endsWith(suffix) || path.indexOf('/', thumbs + marker.length()) >= 0) {
+            return path;
+        }
+        return path.substring(0, thumbs + 1)
+                + path.substring(thumbs + marker.length(), path.length() - suffix.length());
+    }
+
+    private static boolean modifiedBefore(Path file, Instant instant) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(instant);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.veely.service.storage;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.entity.StorageUsage;
+import com.veely.exception.StorageQuotaExceededException;
+import com.veely.repository.StorageBlobRepository;
+import com.veely.repository.StorageObjectRepository;
+import com.veely.repository.StorageUsageRepository;
+import com.veely.service.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Spazio occupato nell'archivio file per area ({@code vehicles},
+ * {@code employments}, {@code payslips}, ...) e per proprietario
+ * ({@code vehicles/12}, {@code payslips/2025/03}, vedi {@link #owner(String)}).
+ * <p>
+ * I contatori sono righe di {@code storage_usage} aggiornate nella stessa
+ * transazione che collega o rimuove un percorso in
+ * {@link ContentAddressedBlobStore}, quindi restano allineati ai file senza
+ * scorrere le cartelle; una copia in memoria, riletta ogni
+ * {@code veely.storage.usage.refresh-interval} per le modifiche degli altri
+ * nodi, alimenta le metriche per area e il controllo delle quote
+ * ({@code veely.storage.quota.areas} e {@code veely.storage.quota.owners}).
+ * <p>
+ * Se la tabella è vuota all'avvio i contatori vengono ricostruiti da
+ * {@code storage_objects}; la ricostruzione si ripete periodicamente per
+ * correggere eventuali scostamenti.
+ */
+@Slf4j
+@Service
+public class StorageUsageService {
+
+    /** Area dei file salvati direttamente nella cartella uploads. */
+    static final String ROOT_AREA = "_root";
+    private static final Pattern YEAR = Pattern.compile("\\d{4}");
+    private static final Pattern MONTH = Pattern.compile("\\d{1,2}");
+    private static final Usage EMPTY = new Usage(0, 0);
+
+    /** Byte e file di un proprietario o di un'area. */
+    public record Usage(long bytes, long files) {
+        Usage plus(Usage other) {
+            return new Usage(bytes + other.bytes, files + other.files);
+        }
+    }
+
+    private final StorageUsageRepository usageRepository;
+    private final StorageObjectRepository objectRepository;
+    private final StorageBlobRepository blobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Long> areaQuotas;
+    private final Map<String, Long> ownerQuotas;
+    private final int batchSize;
+    private final ConcurrentMap<String, Usage> owners = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AreaCounters> areas = new ConcurrentHashMap<>();
+    private final AtomicLong physicalBytes = new AtomicLong();
+    private final TaskExecutor executor;
+
+    public StorageUsageService(StorageUsageRepository usageRepository,
+                               StorageObjectRepository objectRepository,
+                               StorageBlobRepository blobRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${veely.storage.quota.areas:}") String areaQuotas,
+                               @Value("${veely.storage.quota.owners:}") String ownerQuotas,
+                               @Value("${veely.storage.usage.batch-size:1000}") int batchSize,
+                               @Qualifier(ExecutorConfig.STORAGE_USAGE) TaskExecutor executor) {
+        this.usageRepository = usageRepository;
+        this.objectRepository = objectRepository;
+        this.blobRepository = blobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // l'istantanea deve restare la stessa per tutte le letture della ricostruzione
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.meterRegistry = meterRegistry;
+        this.areaQuotas = parseQuotas(areaQuotas);
+        this.ownerQuotas = parseQuotas(ownerQuotas);
+        this.batchSize = batchSize;
+        this.executor = executor;
+        Gauge.builder("veely.storage.physical", physicalBytes, AtomicLong::get)
+                .description("Spazio fisico occupato dai contenuti (senza duplicati)")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        executor.execute(() -> {
+            if (usageRepository.count() == 0 && objectRepository.count() > 0) {
+                rebuild();
+            } else {
+                refresh();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${veely.storage.usage.refresh-interval:PT5M}",
+               initialDelayString = "${veely.storage.usage.refresh-interval:PT5M}")
+    public void scheduledRefresh() {
+        executor.execute(this::refresh);
+    }
+
+    @Scheduled(cron = "${veely.storage.usage.reconcile-cron:0 0 4 * * SUN}")
+    public void scheduledRebuild() {
+        executor.execute(this::rebuild);
+    }
+
+    /**
+     * Registra un percorso collegato (delta positivi) o rimosso (negativi).
+     * Va chiamato nella transazione che modifica {@code storage_objects}: la
+     * copia in memoria viene aggiornata dopo il commit.
+     */
+    public void record(String logicalPath, long bytes, int files) {
+        String owner = owner(logicalPath);
+        String area = area(logicalPath);
+        usageRepository.addUsage(owner, area, bytes, files);
+        AfterCommit.run(() -> apply(owner, area, new Usage(bytes, files)));
+    }
+
+    /**
+     * Verifica che un nuovo file di {@code size} byte nel percorso indicato
+     * non superi la quota della sua area o del suo proprietario.
+     *
+     * @throws StorageQuotaExceededException se la supera
+     */
+    public void checkQuota(String logicalPath, long size) {
+        String area = area(logicalPath);
+        Long ownerLimit = ownerQuotas.get(area);
+        if (ownerLimit != null) {
+            String owner = owner(logicalPath);
+            reject(area, owner, ownerUsage(owner).bytes(), size, ownerLimit);
+        }
+        Long areaLimit = areaQuotas.get(area);
+        if (areaLimit != null) {
+            reject(area, area, areaUsage(area).bytes(), size, areaLimit);
+        }
+    }
+
+    public Usage ownerUsage(String owner) {
+        return owners.getOrDefault(owner, EMPTY);
+    }
+
+    public Usage areaUsage(String area) {
+        AreaCounters counters = areas.get(area);
+        return counters == null ? EMPTY : new Usage(counters.bytes.get(), counters.files.get());
+    }
+
+    /** Rilegge i contatori dal database (modifiche degli altri nodi, ricostruzioni). */
+    public void refresh() {
+        Map<String, Usage> byOwner = new HashMap<>();
+        Map<String, Usage> byArea = new HashMap<>();
+        for (StorageUsage row : usageRepository.findAll()) {
+            Usage usage = new Usage(row.getBytes(), row.getFiles());
+            byOwner.put(row.getOwner(), usage);
+            byArea.merge(row.getArea(), usage, Usage::plus);
+        }
+        owners.keySet().retainAll(byOwner.keySet());
+        owners.putAll(byOwner);
+        areas.forEach((area, counters) -> counters.set(byArea.getOrDefault(area, EMPTY)));
+        byArea.forEach((area, usage) -> counters(area).set(usage));
+        physicalBytes.set(blobRepository.totalSize());
+    }
+
+    /**
+     * Ricalcola tutti i contatori da {@code storage_objects}, a blocchi di
+     * percorsi. Contatori e percorsi vengono letti dalla stessa istantanea
+     * della transazione e ogni riga riceve solo la differenza fra i due:
+     * le modifiche registrate nel frattempo da altre transazioni restano.
+     */
+    public void rebuild() {
+        Integer count = transactionTemplate.execute(status -> {
+            Map<String, StorageUsage> recorded = new HashMap<>();
+            usageRepository.findAll().forEach(row -> recorded.put(row.getOwner(), row));
+
+            Map<String, Usage> totals = new HashMap<>();
+            String after = "";
+            List<Object[]> page;
+            do {
+                page = objectRepository.findPathsAndSizesAfter(after, PageRequest.of(0, batchSize));
+                for (Object[] row : page) {
+                    totals.merge(owner((String) row[0]), new Usage(((Number) row[1]).longValue(), 1), Usage::plus);
+                }
+                if (!page.isEmpty()) {
+                    after = (String) page.get(page.size() - 1)[0];
+                }
+            } while (page.size() == batchSize);
+
+            totals.forEach((owner, total) -> {
+                StorageUsage row = recorded.remove(owner);
+                long bytes = total.bytes() - (row == null ? 0 : row.getBytes());
+                long files = total.files() - (row == null ? 0 : row.getFiles());
+                if (row == null || bytes != 0 || files != 0) {
+                    usageRepository.addUsage(owner, area(owner), bytes, files);
+                }
+            });
+            recorded.values().forEach(row ->
+                    usageRepository.addUsage(row.getOwner(), row.getArea(), -row.getBytes(), -row.getFiles()));
+            usageRepository.deleteEmpty();
+            return totals.size();
+        });
+        refresh();
+        log.info("Contatori dell'archivio file ricalcolati: {} proprietari", count);
+    }
+
+    /** Prima cartella del percorso ({@code vehicles/12/docs/x.pdf} → {@code vehicles}). */
+    static String area(String logicalPath) {
+        int sep = logicalPath.indexOf('/');
+        return sep > 0 ? logicalPath.substring(0, sep) : ROOT_AREA;
+    }
+
+    /**
+     * Cartella del proprietario: le prime due del percorso
+     * ({@code vehicles/12}, {@code employments/MAT001}), tre per le aree
+     * divise per anno e mese ({@code payslips/2025/03}). I file direttamente
+     * nell'area appartengono all'area stessa.
+     */
+    static String owner(String logicalPath) {
+        String[] segments = logicalPath.split("/");
+        if (segments.length <= 2) {
+            return area(logicalPath);
+        }
+        int depth = segments.length > 3 && YEAR.matcher(segments[1]).matches()
+                && MONTH.matcher(segments[2]).matches() ? 3 : 2;
+        return String.join("/", Arrays.copyOf(segments, depth));
+    }
+
+    /** Quote nel formato {@code area=dimensione,...} (es. {@code vehicles=20GB,payslips=5GB}). */
+    static Map<String, Long> parseQuotas(String spec) {
+        Map<String, Long> quotas = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return quotas;
+        }
+        for (String entry : spec.split(",")) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Quota non valida: " + entry);
+            }
+            quotas.put(entry.substring(0, eq).trim(), DataSize.parse(entry.substring(eq + 1).trim()).toBytes());
+        }
+        return quotas;
+    }
+
+    private void reject(String area, String scope, long used, long size, long limit) {
+        if (used + size <= limit) {
+            return;
+        }
+        Counter.builder("veely.storage.quota.rejected")
+                .description("Caricamenti rifiutati per quota superata")
+                .tag("area", area)
+                .register(meterRegistry)
+                .increment();
+        throw new StorageQuotaExceededException(String.format(
+                "Spazio esaurito per %s: %d MB usati su %d MB disponibili", scope,
+                used / (1024 * 1024), limit / (1024 * 1024)));
+    }
+
+    private void apply(String owner, String area, Usage delta) {
+        owners.merge(owner, delta, Usage::plus);
+        counters(area).add(delta);
+    }
+
+    private AreaCounters counters(String area) {
+        return areas.computeIfAbsent(area, key -> {
+            AreaCounters counters = new AreaCounters();
+            Gauge.builder("veely.storage.usage", counters.bytes, AtomicLong::get)
+                    .description("Spazio occupato dai file dell'area")
+                    .tag("area", key)
+                    .baseUnit(BaseUnits.BYTES)
+                    .register(meterRegistry);
+            Gauge.builder("veely.storage.files", counters.files, AtomicLong::get)
+                    .description("File presenti nell'area")
+                    .tag("area", key)
+                    .register(meterRegistry);
+            return counters;
+        });
+    }
+
+    /** Contatori di un'area, letti dalle metriche. */
+    private static final class AreaCounters {
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong files = new AtomicLong();
+
+        void add(Usage delta) {
+            bytes.addAndGet(delta.bytes());
+            files.addAndGet(delta.files());
+        }
+
+        void set(Usage usage) {
+            bytes.set(usage.bytes());
+            files.set(usage.files());
+        }
+    }
+}
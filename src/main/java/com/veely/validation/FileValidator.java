@@ -51,8 +51,17 @@ public class FileValidator {
             throw new ValidationException("Il file è vuoto");
         }
         
+        validateDocument(file.getOriginalFilename(), file.getContentType(), file.getSize());
+    }
+    
+    /**
+     * Valida un documento letto da uno stream (es. voce di un archivio ZIP).
+     * Con {@code size} negativo la dimensione non è ancora nota e va
+     * controllata durante la copia con {@link #getMaxDocumentSize()}.
+     */
+    public void validateDocument(String filename, String contentType, long size) {
         // Controlla dimensione
-        if (file.getSize() > MAX_FILE_SIZE) {
+        if (size > MAX_FILE_SIZE) {
             throw new ValidationException(
                 String.format("Il file supera la dimensione massima consentita di %d MB", 
                     MAX_FILE_SIZE / (1024 * 1024))
@@ -60,7 +69,6 @@ public class FileValidator {
         }
         
         // Controlla tipo MIME
-        String contentType = file.getContentType();
         if (contentType == null || !ALLOWED_DOCUMENT_TYPES.contains(contentType.toLowerCase())) {
             throw new ValidationException(
             		"Tipo di file non permesso. Tipi accettati: PDF, JPG, PNG, WEBP, DOC, DOCX, MSG"
@@ -68,7 +76,6 @@ public class FileValidator {
         }
         
         // Controlla estensione del file
-        String filename = file.getOriginalFilename();
         if (filename != null) {
             String extension = getFileExtension(filename);
             if (!ALLOWED_EXTENSIONS.contains(extension.toLowerCase())) {
@@ -88,6 +95,13 @@ public class FileValidator {
         log.info("File validato con successo: {} ({})", filename, contentType);
     }
     
+    /**
+     * Dimensione massima di un documento, in byte
+     */
+    public long getMaxDocumentSize() {
+        return MAX_FILE_SIZE;
+    }
+    
     /**
      * Valida specificamente un'immagine (per foto profilo o veicoli)
      */
@@ -71,6 +71,9 @@
         
         // Set up global event listeners
         setupEventListeners();
+
+        // Follow a running batch PDF export, if any
+        setupBatchExportProgress();
         
         // Set default filters and apply
         setDefaultFilters();
@@ -735,6 +738,70 @@
         // Export logic would be implemented here
     };
 
+    /**
+     * Poll the background batch PDF export and update the progress panel;
+     * when the archive is ready show the download link
+     */
+    function setupBatchExportProgress() {
+        const panel = document.getElementById('batchExportProgress');
+        if (!panel) return;
+
+        const url = panel.dataset.progressUrl;
+        const alertBox = panel.querySelector('.alert');
+        const statusLabel = panel.querySelector('[data-export-status]');
+        const counts = panel.querySelector('[data-export-counts]');
+        const bar = panel.querySelector('[data-export-bar]');
+        const messages = panel.querySelector('[data-export-messages]');
+        const download = panel.querySelector('[data-export-download]');
+
+        const poll = async () => {
+            let progress;
+            try {
+                const response = await fetch(url, { headers: { 'Accept': 'application/json' } });
+                if (!response.ok) throw new Error(`HTTP ${response.status}`);
+                progress = await response.json();
+            } catch (error) {
+                console.warn('Avanzamento export non disponibile', error);
+                setTimeout(poll, 5000);
+                return;
+            }
+
+            statusLabel.textContent = progress.statusLabel;
+            counts.textContent = `${progress.rendered} PDF • ${progress.failed} errori • `
+                + `${progress.rendered + progress.failed}/${progress.requested}`;
+            bar.style.width = `${progress.percent}%`;
+            messages.innerHTML = '';
+            progress.messages.forEach(message => {
+                const item = document.createElement('li');
+                item.textContent = message;
+                messages.appendChild(item);
+            });
+
+            if (!progress.finished) {
+                setTimeout(poll, 2000);
+                return;
+            }
+
+            bar.classList.remove('progress-bar-animated', 'progress-bar-striped');
+            alertBox.classList.remove('alert-info');
+            alertBox.classList.add(progress.downloadable && progress.failed === 0 ? 'alert-success' : 'alert-warning');
+            if (progress.error) {
+                const item = document.createElement('li');
+                item.textContent = progress.error;
+                messages.appendChild(item);
+            }
+            if (progress.downloadable) {
+                download.classList.remove('d-none');
+            }
+            const announcer = document.getElementById('announcements');
+            if (announcer) {
+                announcer.textContent = `Export note spese ${progress.statusLabel.toLowerCase()}`;
+            }
+        };
+
+        poll();
+    }
+
     /**
      * Global function to show toast (for external use)
      * @param {string} message - Message to show
@@ -43,6 +43,8 @@ class PayslipsManager {
         this.initializeAOS();
         this.setupFormValidation();
         this.updateSelectionUI();
+        this.setupDispatchProgress();
+        this.setupStreamingUploads();
         
         console.log('PayslipsManager initialized successfully');
     }
@@ -142,7 +144,7 @@ class PayslipsManager {
                         e.preventDefault();
                         return false;
                     }
-                    this.handleFormSubmission(e.target, 'Invio email in corso...');
+                    this.handleFormSubmission(e.target, 'Avvio invio...');
                 } else if (action.includes('/delete')) {
                     if (!this.confirmDeletion(e.submitter)) {
                         e.preventDefault();
@@ -154,6 +156,208 @@ class PayslipsManager {
         }
     }
 
+    /**
+     * Poll the background dispatch job and update the progress panel
+     * until the job is finished
+     */
+    setupDispatchProgress() {
+        const panel = document.getElementById('dispatchProgress');
+        if (!panel) return;
+
+        const url = panel.dataset.progressUrl;
+        const alertBox = panel.querySelector('.alert');
+        const statusLabel = panel.querySelector('[data-dispatch-status]');
+        const counts = panel.querySelector('[data-dispatch-counts]');
+        const bar = panel.querySelector('[data-dispatch-bar]');
+        const messages = panel.querySelector('[data-dispatch-messages]');
+
+        const poll = async () => {
+            let progress;
+            try {
+                const response = await fetch(url, { headers: { 'Accept': 'application/json' } });
+                if (!response.ok) throw new Error(`HTTP ${response.status}`);
+                progress = await response.json();
+            } catch (error) {
+                console.warn('Avanzamento invio non disponibile', error);
+                setTimeout(poll, 5000);
+                return;
+            }
+
+            statusLabel.textContent = progress.statusLabel;
+            counts.textContent = `${progress.sent} inviati • ${progress.skipped} non inviati • `
+                + `${progress.failed} errori • ${progress.sent + progress.skipped + progress.failed}/${progress.requested}`;
+            bar.style.width = `${progress.percent}%`;
+            messages.innerHTML = '';
+            progress.messages.forEach(message => {
+                const item = document.createElement('li');
+                item.textContent = message;
+                messages.appendChild(item);
+            });
+
+            if (!progress.finished) {
+                setTimeout(poll, 2000);
+                return;
+            }
+
+            bar.classList.remove('progress-bar-animated', 'progress-bar-striped');
+            const clean = progress.status === 'COMPLETED' && progress.failed === 0 && progress.skipped === 0;
+            alertBox.classList.remove('alert-info');
+            alertBox.classList.add(clean ? 'alert-success' : 'alert-warning');
+            if (progress.error) {
+                const item = document.createElement('li');
+                item.textContent = progress.error;
+                messages.appendChild(item);
+            }
+            const refresh = document.createElement('a');
+            refresh.href = window.location.pathname + window.location.search;
+            refresh.className = 'alert-link small d-inline-block mt-2';
+            refresh.textContent = 'Aggiorna elenco cedolini';
+            alertBox.appendChild(refresh);
+            this.announceToScreenReader(`Invio cedolini ${progress.statusLabel.toLowerCase()}`);
+        };
+
+        poll();
+    }
+
+    /**
+     * Send upload forms through their streaming endpoint and show
+     * per-file progress instead of waiting for the full page reload
+     */
+    setupStreamingUploads() {
+        if (!window.fetch || !window.ReadableStream) return;
+
+        document.querySelectorAll('form.upload-form[data-stream-action]').forEach(form => {
+            form.addEventListener('submit', async (e) => {
+                if (e.defaultPrevented) return;
+                const archiveInput = form.querySelector('input[name="archive"]');
+                if (archiveInput && archiveInput.files.length === 0) {
+                    e.preventDefault();
+                    archiveInput.classList.add('is-invalid');
+                    return;
+                }
+                archiveInput?.classList.remove('is-invalid');
+                e.preventDefault();
+
+                const submitButton = form.querySelector('button[type="submit"]');
+                if (submitButton && !submitButton.classList.contains('loading')) {
+                    this.setButtonLoading(submitButton, true, 'Caricamento in corso...');
+                }
+
+                form.parentElement.querySelectorAll('.upload-stream-result').forEach(el => el.remove());
+                const panel = document.createElement('div');
+                panel.className = 'mt-3 upload-stream-result';
+                panel.innerHTML = `
+                    <div class="alert alert-info mb-0" role="status">
+                        <div class="small mb-2" data-upload-counts>Preparazione dei file...</div>
+                        <div class="progress" style="height: 6px;">
+                            <div class="progress-bar progress-bar-striped progress-bar-animated" style="width: 0%"></div>
+                        </div>
+                        <ul class="mb-0 mt-2 small" data-upload-messages></ul>
+                    </div>`;
+                form.insertAdjacentElement('afterend', panel);
+                const alertBox = panel.querySelector('.alert');
+                const counts = panel.querySelector('[data-upload-counts]');
+                const bar = panel.querySelector('.progress-bar');
+                const messages = panel.querySelector('[data-upload-messages]');
+                const addMessage = (text, className) => {
+                    const item = document.createElement('li');
+                    item.textContent = text;
+                    if (className) item.className = className;
+                    messages.appendChild(item);
+                };
+
+                let result = null;
+                try {
+                    const response = await fetch(...this.buildStreamRequest(form));
+                    if (!response.ok || !response.body) throw new Error(`HTTP ${response.status}`);
+
+                    const reader = response.body.getReader();
+                    const decoder = new TextDecoder();
+                    let buffer = '';
+                    for (;;) {
+                        const { value, done } = await reader.read();
+                        if (done) break;
+                        buffer += decoder.decode(value, { stream: true });
+                        let newline;
+                        while ((newline = buffer.indexOf('\n')) >= 0) {
+                            const line = buffer.slice(0, newline).trim();
+                            buffer = buffer.slice(newline + 1);
+                            if (!line) continue;
+                            const event = JSON.parse(line);
+                            if (event.type === 'progress') {
+                                const progress = event.progress;
+                                // per gli archivi ZIP il totale non è noto in anticipo
+                                if (progress.total > 0) {
+                                    counts.textContent = `${progress.done}/${progress.total} file elaborati`;
+                                    bar.style.width = `${Math.round(progress.done * 100 / progress.total)}%`;
+                                } else {
+                                    counts.textContent = `${progress.done} file elaborati`;
+                                    bar.style.width = '100%';
+                                }
+                                if (progress.message) addMessage(progress.message, 'text-danger');
+                            } else if (event.type === 'result') {
+                                result = event.result;
+                            }
+                        }
+                    }
+                } catch (error) {
+                    console.error('Caricamento in streaming non riuscito', error);
+                }
+
+                bar.classList.remove('progress-bar-animated', 'progress-bar-striped');
+                alertBox.classList.remove('alert-info');
+                if (result) {
+                    alertBox.classList.add(result.errors.length === 0 ? 'alert-success' : 'alert-warning');
+                    counts.innerHTML = '';
+                    const summary = document.createElement('strong');
+                    summary.textContent = `${result.stored} ${form.dataset.resultLabel}`;
+                    counts.appendChild(summary);
+                    if (result.unmatched > 0) {
+                        counts.appendChild(document.createTextNode(` • ${result.unmatched} file senza corrispondenza`));
+                    }
+                    result.unmatchedCodes.forEach(code => addMessage(code));
+                } else {
+                    alertBox.classList.add('alert-danger');
+                    counts.textContent = 'Caricamento interrotto: ricarica la pagina per verificare i file salvati';
+                }
+                const refresh = document.createElement('a');
+                refresh.href = window.location.pathname + window.location.search;
+                refresh.className = 'alert-link small d-inline-block mt-2';
+                refresh.textContent = 'Aggiorna elenco';
+                alertBox.appendChild(refresh);
+
+                if (submitButton) this.setButtonLoading(submitButton, false);
+                form.reset();
+                this.announceToScreenReader(result
+                    ? `${result.stored} ${form.dataset.resultLabel}`
+                    : 'Caricamento interrotto');
+            });
+        });
+    }
+
+    /**
+     * Build the fetch arguments for a streaming upload: multipart forms post
+     * their FormData, archive forms send the ZIP itself as request body
+     * @param {HTMLFormElement} form - Upload form
+     * @returns {Array} URL and fetch options
+     */
+    buildStreamRequest(form) {
+        const headers = { 'Accept': 'application/x-ndjson' };
+        if (form.dataset.streamMode !== 'archive') {
+            return [form.dataset.streamAction, { method: 'POST', body: new FormData(form), headers }];
+        }
+
+        const period = form.querySelector('[name="referenceMonth"], [name="referenceYear"]');
+        const archive = form.querySelector('input[name="archive"]').files[0];
+        const url = new URL(form.dataset.streamAction, window.location.origin);
+        url.searchParams.set(period.name, period.value);
+        headers['Content-Type'] = 'application/zip';
+        const csrfToken = document.querySelector('meta[name="_csrf"]')?.content;
+        const csrfHeader = document.querySelector('meta[name="_csrf_header"]')?.content;
+        if (csrfToken && csrfHeader) headers[csrfHeader] = csrfToken;
+        return [url, { method: 'POST', body: archive, headers }];
+    }
+
     /**
      * Setup file upload validation and feedback
      * Provides real-time validation as user selects files
@@ -147,6 +147,17 @@ function exportExcel(rows) {
 }
 */
 
+function exportTable(format) {
+    const data = new FormData(document.getElementById('filterForm'));
+    const params = new URLSearchParams({ format });
+    for (const [key, value] of data.entries()) {
+        if (value) {
+            params.append(key, value);
+        }
+    }
+    window.location.href = '/fleet/refuels/export?' + params.toString();
+}
+
 async function exportPDF() {
     console.log("🔍 Inizio exportPDF...");
 	
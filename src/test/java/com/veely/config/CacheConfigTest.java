@@ -0,0 +1,73 @@
+package com.veely.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheConfigTest {
+
+    private static final CacheProperties.Spec DEFAULTS = new CacheProperties.Spec(
+            500L, null, null, null, Duration.ofMinutes(30), null, null, null);
+
+    @Test
+    void eachCacheGetsItsOwnLimitsAndInheritsTheRest() {
+        CacheProperties properties = new CacheProperties(DEFAULTS, Map.of(
+                "countries", new CacheProperties.Spec(null, 1000L, CacheProperties.Weigher.ELEMENTS,
+                        Duration.ofDays(1), null, null, null, null),
+                "vehicleDetails", new CacheProperties.Spec(null, null, null, null, null,
+                        Duration.ofMinutes(5), null, null)));
+
+        CaffeineCacheManager manager = CacheConfig.buildCacheManager(properties,
+                List.of(NamedCacheLoader.of("vehicleDetails", key -> "veicolo " + key)));
+
+        assertThat(manager.getCacheNames()).containsExactlyInAnyOrder("countries", "vehicleDetails");
+        assertThat(manager.getCache("employeeDetails")).isNull();
+
+        Policy<Object, Object> countries = nativeCache(manager, "countries").policy();
+        assertThat(countries.eviction().orElseThrow().isWeighted()).isTrue();
+        assertThat(countries.eviction().orElseThrow().getMaximum()).isEqualTo(1000L);
+        assertThat(countries.expireAfterWrite()).isPresent();
+        assertThat(countries.expireAfterAccess()).isEmpty();
+        assertThat(countries.isRecordingStats()).isTrue();
+
+        Cache<Object, Object> vehicles = nativeCache(manager, "vehicleDetails");
+        assertThat(vehicles).isInstanceOf(LoadingCache.class);
+        assertThat(vehicles.policy().eviction().orElseThrow().getMaximum()).isEqualTo(500L);
+        assertThat(vehicles.policy().expireAfterAccess()).isPresent();
+        assertThat(vehicles.policy().refreshAfterWrite()).isPresent();
+        assertThat(manager.getCache("vehicleDetails").get(7L, String.class)).isEqualTo("veicolo 7");
+    }
+
+    @Test
+    void refreshWithoutLoaderIsRejected() {
+        CacheProperties properties = new CacheProperties(DEFAULTS, Map.of(
+                "employeeDetails", new CacheProperties.Spec(null, null, null, null, null,
+                        Duration.ofMinutes(5), null, null)));
+
+        assertThatThrownBy(() -> CacheConfig.buildCacheManager(properties, List.of()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("employeeDetails");
+    }
+
+    @Test
+    void collectionsWeighTheirElements() {
+        assertThat(CacheConfig.elements(List.of("IT", "FR", "DE"))).isEqualTo(3);
+        assertThat(CacheConfig.elements(List.of())).isEqualTo(1);
+        assertThat(CacheConfig.elements(new String[]{"a", "b"})).isEqualTo(2);
+        assertThat(CacheConfig.elements("valore")).isEqualTo(1);
+    }
+
+    private static Cache<Object, Object> nativeCache(CaffeineCacheManager manager, String name) {
+        return ((CaffeineCache) manager.getCache(name)).getNativeCache();
+    }
+}
@@ -3,9 +3,13 @@ package com.veely.controller;
 import com.veely.entity.ExpenseItem;
 import com.veely.service.DocumentService;
 import com.veely.service.EmployeeService;
+import com.veely.service.ExpenseReportBatchExportService;
 import com.veely.service.ExpenseReportService;
 import com.veely.service.ProjectService;
 import com.veely.service.SupplierService;
+import com.veely.service.export.StreamingExportService;
+import com.veely.service.pdf.PdfStreamingService;
+import com.veely.service.storage.FileDownloadService;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Method;
@@ -27,7 +31,11 @@ class ExpenseReportControllerTest {
                 mock(EmployeeService.class),
                 mock(SupplierService.class),
                 mock(ProjectService.class),
-                mock(DocumentService.class)
+                mock(DocumentService.class),
+                mock(StreamingExportService.class),
+                mock(FileDownloadService.class),
+                mock(PdfStreamingService.class),
+                mock(ExpenseReportBatchExportService.class)
         );
 
         List<String> ids = Collections.emptyList();
@@ -57,7 +65,11 @@ class ExpenseReportControllerTest {
                 mock(EmployeeService.class),
                 mock(SupplierService.class),
                 mock(ProjectService.class),
-                mock(DocumentService.class)
+                mock(DocumentService.class),
+                mock(StreamingExportService.class),
+                mock(FileDownloadService.class),
+                mock(PdfStreamingService.class),
+                mock(ExpenseReportBatchExportService.class)
         );
 
         Method m = ExpenseReportController.class.getDeclaredMethod("buildItems", List.class, List.class, List.class, List.class, List.class, List.class, List.class);
@@ -0,0 +1,233 @@
+package com.veely.integration;
+
+import com.veely.dto.dashboard.DashboardSnapshot;
+import com.veely.entity.AdminDocument;
+import com.veely.entity.ComplianceItem;
+import com.veely.entity.Employee;
+import com.veely.entity.Insurance;
+import com.veely.entity.Project;
+import com.veely.model.AssignmentStatus;
+import com.veely.model.DashboardSection;
+import com.veely.model.ExpenseStatus;
+import com.veely.model.SupplierContractStatus;
+import com.veely.model.TaskStatus;
+import com.veely.model.VehicleStatus;
+import com.veely.repository.AssignmentRepository;
+import com.veely.repository.ContractRepository;
+import com.veely.repository.ExpenseReportRepository;
+import com.veely.repository.InsuranceRepository;
+import com.veely.repository.RefuelRepository;
+import com.veely.repository.VehicleRepository;
+import com.veely.repository.VehicleTaskRepository;
+import com.veely.service.AdminDocumentService;
+import com.veely.service.ComplianceItemService;
+import com.veely.service.CorrespondenceService;
+import com.veely.service.DashboardSnapshotService;
+import com.veely.service.ProjectService;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Confronta la pagina di benvenuto calcolata a ogni richiesta con le query
+ * del vecchio {@code HomeController} (tabelle caricate per intero e
+ * associazioni lette dal template) e servita dallo snapshot in memoria.
+ * Si verificano solo i conteggi degli statement SQL; le latenze vengono
+ * scritte nel log, perché dipendono dalla macchina.
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+class DashboardSnapshotBenchmarkTest {
+
+    private static final int ITERATIONS = 50;
+    private static final int LIMIT = 5;
+    private static final int MONTHS = 6;
+
+    @Autowired
+    private DashboardSnapshotService dashboardSnapshotService;
+
+    @Autowired
+    private VehicleRepository vehicleRepo;
+
+    @Autowired
+    private AssignmentRepository assignmentRepo;
+
+    @Autowired
+    private CorrespondenceService correspondenceService;
+
+    @Autowired
+    private ExpenseReportRepository expenseReportRepo;
+
+    @Autowired
+    private RefuelRepository refuelRepo;
+
+    @Autowired
+    private VehicleTaskRepository vehicleTaskRepo;
+
+    @Autowired
+    private ContractRepository contractRepo;
+
+    @Autowired
+    private ComplianceItemService complianceItemService;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private AdminDocumentService adminDocumentService;
+
+    @Autowired
+    private InsuranceRepository insuranceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    private Statistics stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.setStatisticsEnabled(true);
+        dashboardSnapshotService.invalidateAll();
+    }
+
+    @Test
+    void snapshotServesWelcomePageWithoutQueries() {
+        TransactionTemplate request = new TransactionTemplate(transactionManager);
+        request.setReadOnly(true);
+
+        request.executeWithoutResult(status -> legacyWelcomePage()); // riscaldamento
+        stats.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            request.executeWithoutResult(status -> legacyWelcomePage());
+        }
+        long legacyMicros = (System.nanoTime() - start) / 1_000 / ITERATIONS;
+        long legacyStatements = stats.getPrepareStatementCount() / ITERATIONS;
+
+        dashboardSnapshotService.current(); // riempie lo snapshot
+        stats.clear();
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            dashboardSnapshotService.current();
+        }
+        long snapshotMicros = (System.nanoTime() - start) / 1_000 / ITERATIONS;
+        long snapshotStatements = stats.getPrepareStatementCount();
+
+        log.info("Pagina di benvenuto, media su {} richieste: per richiesta {} statement e {} µs, "
+                + "da snapshot {} statement e {} µs", ITERATIONS, legacyStatements, legacyMicros,
+                snapshotStatements, snapshotMicros);
+        assertThat(legacyStatements).isPositive();
+        assertThat(snapshotStatements).isZero();
+    }
+
+    @Test
+    void invalidatedSectionIsRecomputedAlone() {
+        DashboardSnapshot first = dashboardSnapshotService.current();
+
+        stats.clear();
+        dashboardSnapshotService.invalidate(EnumSet.of(DashboardSection.FUEL_COSTS));
+        DashboardSnapshot second = dashboardSnapshotService.current();
+
+        assertThat(second.version()).isGreaterThan(first.version());
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(second.upcomingTasks()).isSameAs(first.upcomingTasks());
+        assertThat(second.metrics()).isSameAs(first.metrics());
+    }
+
+    /**
+     * Query eseguite dal vecchio {@code HomeController} a ogni richiesta, più
+     * le associazioni che il template leggeva dalle entità.
+     */
+    private void legacyWelcomePage() {
+        LocalDate today = LocalDate.now();
+        YearMonth month = YearMonth.now();
+        LocalDate chartStart = month.minusMonths(MONTHS - 1).atDay(1);
+
+        vehicleRepo.count();
+        vehicleRepo.countByStatus(VehicleStatus.IN_SERVICE);
+        assignmentRepo.countDistinctVehicleByStatus(AssignmentStatus.ASSIGNED);
+        assignmentRepo.count();
+        correspondenceService.getLastIncomingProtocol();
+        correspondenceService.getLastOutgoingProtocol();
+        refuelRepo.sumAmountBetween(month.atDay(1), month.atEndOfMonth());
+        projectService.findActive().stream()
+                .map(Project::getValue)
+                .filter(Objects::nonNull)
+                .count();
+        contractRepo.countByStatus(SupplierContractStatus.IN_ESECUZIONE);
+        // la mappa degli stati veniva calcolata due volte (etichette e valori)
+        for (int i = 0; i < 2; i++) {
+            for (VehicleStatus status : VehicleStatus.values()) {
+                vehicleRepo.countByStatus(status);
+            }
+        }
+        refuelRepo.sumAmountByMonth(chartStart, today);
+        expenseReportRepo.sumBalancesByMonth(chartStart, today);
+        expenseReportRepo.findTop5ByExpenseStatusOrderByReportSubmitDateDesc(ExpenseStatus.Submitted);
+
+        vehicleTaskRepo.findByStatusOrderByDueDateAsc(TaskStatus.OPEN).stream()
+                .limit(LIMIT)
+                .forEach(t -> {
+                    t.getVehicle().getPlate();
+                    if (t.getType() != null) {
+                        t.getType().getDescription();
+                    }
+                });
+        complianceItemService.search(null, null, null, null, null, false).stream()
+                .filter(item -> item.getDueDate() != null)
+                .sorted(Comparator.comparing(ComplianceItem::getDueDate))
+                .limit(LIMIT)
+                .forEach(item -> {
+                    item.getCategory().getName();
+                    name(item.getEmployee());
+                });
+        adminDocumentService.findAll().stream()
+                .filter(d -> d.getExpiryDate() != null && !d.getExpiryDate().isBefore(today))
+                .sorted(Comparator.comparing(AdminDocument::getExpiryDate))
+                .limit(LIMIT)
+                .forEach(d -> {
+                    name(d.getResponsible());
+                    if (d.getType() != null) {
+                        d.getType().getName();
+                    }
+                });
+        List<Insurance> policies = insuranceRepository.findAll(Sort.by(Sort.Direction.ASC, "expiryDate"));
+        policies.stream()
+                .filter(p -> p.getExpiryDate() != null && !p.getExpiryDate().isBefore(today))
+                .limit(LIMIT)
+                .forEach(p -> {
+                    if (p.getProject() != null) {
+                        p.getProject().getName();
+                    }
+                });
+    }
+
+    private static void name(Employee employee) {
+        if (employee != null) {
+            employee.getFirstName();
+        }
+    }
+}
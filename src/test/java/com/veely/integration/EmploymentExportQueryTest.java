@@ -0,0 +1,106 @@
+package com.veely.integration;
+
+import com.veely.dto.employee.EmploymentExportRow;
+import com.veely.entity.Employee;
+import com.veely.entity.Employment;
+import com.veely.entity.EmploymentWorkplace;
+import com.veely.entity.Project;
+import com.veely.model.EmploymentStatus;
+import com.veely.service.EmploymentService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * La commessa attuale stampata nell'export dei rapporti di lavoro arriva
+ * dalla query dell'export: il numero di statement non cresce con le righe.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class EmploymentExportQueryTest {
+
+    private static final int EMPLOYMENTS = 5;
+
+    @Autowired
+    private EmploymentService employmentService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    private Statistics stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.setStatisticsEnabled(true);
+
+        Employee employee = Employee.builder()
+                .firstName("Export")
+                .lastName("Commesse")
+                .birthDate(LocalDate.of(1980, 1, 1))
+                .fiscalCode("XPRCMM80A01H501X")
+                .email("export.commesse@example.com")
+                .password("password")
+                .build();
+        entityManager.persist(employee);
+        for (int i = 1; i <= EMPLOYMENTS; i++) {
+            Project project = Project.builder().code("XPDF-" + i).name("Commessa " + i).build();
+            entityManager.persist(project);
+            Employment employment = Employment.builder()
+                    .employee(employee)
+                    .matricola("XPDF" + i)
+                    .status(EmploymentStatus.ACTIVE)
+                    .startDate(LocalDate.now().minusYears(1))
+                    .build();
+            entityManager.persist(employment);
+            entityManager.persist(EmploymentWorkplace.builder()
+                    .employment(employment)
+                    .project(project)
+                    .startDate(LocalDate.now().minusMonths(1))
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void currentProjectIsReadWithTheRows() {
+        stats.clear();
+        List<EmploymentExportRow> one = export("XPDF1");
+        long statementsForOne = stats.getPrepareStatementCount();
+
+        entityManager.clear();
+        stats.clear();
+        List<EmploymentExportRow> all = export("XPDF");
+        long statementsForAll = stats.getPrepareStatementCount();
+
+        assertThat(one).extracting(EmploymentExportRow::currentProjectName).containsExactly("Commessa 1");
+        assertThat(all).hasSize(EMPLOYMENTS)
+                .extracting(EmploymentExportRow::currentProjectName)
+                .containsExactlyInAnyOrder("Commessa 1", "Commessa 2", "Commessa 3", "Commessa 4", "Commessa 5");
+        assertThat(statementsForAll).isEqualTo(statementsForOne);
+    }
+
+    private List<EmploymentExportRow> export(String keyword) {
+        try (Stream<EmploymentExportRow> rows = employmentService.streamForExport(keyword, null, null)) {
+            return rows.toList();
+        }
+    }
+}
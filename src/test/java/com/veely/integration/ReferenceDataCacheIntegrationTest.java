@@ -0,0 +1,106 @@
+package com.veely.integration;
+
+import com.veely.entity.Supplier;
+import com.veely.entity.SupplierReferent;
+import com.veely.entity.TaskType;
+import com.veely.service.SupplierService;
+import com.veely.service.TaskTypeService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Le tabelle di riferimento vengono lette dalla cache di secondo livello e
+ * delle query; una modifica tramite JPA rende la cache delle query non più
+ * valida.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ReferenceDataCacheIntegrationTest {
+
+    @Autowired
+    private TaskTypeService taskTypeService;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    private Statistics stats;
+    private final List<Runnable> cleanup = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanup.forEach(Runnable::run);
+    }
+
+    @Test
+    void taskTypesAreServedFromTheQueryCacheUntilOneChanges() {
+        TaskType type = taskTypeService.save(TaskType.builder()
+                .code("CACHE_TEST")
+                .description("Prima")
+                .byDate(true)
+                .monthsInterval(12)
+                .build());
+        cleanup.add(() -> taskTypeService.delete(type.getId()));
+
+        taskTypeService.findAll(); // riempie la cache
+        stats.clear();
+        List<TaskType> cached = taskTypeService.findAll();
+        assertThat(stats.getPrepareStatementCount()).isZero();
+        assertThat(stats.getQueryCacheHitCount()).isEqualTo(1);
+        assertThat(cached).extracting(TaskType::getCode).contains("CACHE_TEST");
+
+        TaskType payload = TaskType.builder()
+                .code("CACHE_TEST")
+                .description("Dopo")
+                .byDate(true)
+                .monthsInterval(6)
+                .build();
+        taskTypeService.update(type.getId(), payload);
+
+        List<TaskType> reloaded = taskTypeService.findAll();
+        assertThat(reloaded).filteredOn(t -> t.getId().equals(type.getId()))
+                .extracting(TaskType::getDescription)
+                .containsExactly("Dopo");
+    }
+
+    @Test
+    void suppliersAndReferentsAreServedFromTheCache() {
+        Supplier supplier = Supplier.builder()
+                .name("Fornitore cache")
+                .referents(new ArrayList<>())
+                .build();
+        supplier.getReferents().add(SupplierReferent.builder().name("Mario Rossi").build());
+        Supplier saved = supplierService.create(supplier);
+        cleanup.add(() -> supplierService.delete(saved.getId()));
+
+        supplierService.findAll(); // riempie la cache
+        stats.clear();
+        List<Supplier> cached = supplierService.findAll();
+
+        assertThat(stats.getPrepareStatementCount()).isZero();
+        assertThat(cached).filteredOn(s -> s.getId().equals(saved.getId()))
+                .singleElement()
+                .satisfies(s -> assertThat(s.getReferents()).extracting(SupplierReferent::getName)
+                        .containsExactly("Mario Rossi"));
+    }
+}
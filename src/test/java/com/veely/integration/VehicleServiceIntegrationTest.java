@@ -1,5 +1,7 @@
 package com.veely.integration;
 
+import com.veely.dto.vehicle.BulkStatusUpdateResult;
+import com.veely.dto.vehicle.BulkStatusUpdateResult.Outcome;
 import com.veely.entity.Vehicle;
 import com.veely.model.FuelType;
 import com.veely.model.VehicleStatus;
@@ -81,4 +83,25 @@ class VehicleServiceIntegrationTest {
         // Then
         assertThat(updated.getCurrentMileage()).isEqualTo(15000);
     }
+    
+    @Test
+    void shouldBulkUpdateStatusWithPerVehicleReport() {
+        // Given
+        Vehicle first = vehicleService.create(Vehicle.builder()
+            .plate("EE345FF").brand("Fiat").model("Panda").year(2022).build());
+        Vehicle second = vehicleService.create(Vehicle.builder()
+            .plate("GG456HH").brand("Fiat").model("Doblo").year(2020).build());
+        vehicleService.bulkUpdateStatus(List.of(second.getId()), VehicleStatus.UNDER_MAINTENANCE);
+        
+        // When
+        BulkStatusUpdateResult result = vehicleService.bulkUpdateStatus(
+            List.of(first.getId(), second.getId(), -1L), VehicleStatus.UNDER_MAINTENANCE);
+        
+        // Then
+        assertThat(result.items()).extracting(BulkStatusUpdateResult.Item::outcome)
+            .containsExactly(Outcome.UPDATED, Outcome.UNCHANGED, Outcome.NOT_FOUND);
+        assertThat(result.items().get(0).previousStatus()).isEqualTo(VehicleStatus.IN_SERVICE);
+        assertThat(vehicleRepository.findById(first.getId()).orElseThrow().getStatus())
+            .isEqualTo(VehicleStatus.UNDER_MAINTENANCE);
+    }
 }
@@ -8,6 +8,7 @@ import com.veely.repository.ComplianceItemRepository;
 import com.veely.repository.DocumentRepository;
 import com.veely.repository.EmployeeRepository;
 import com.veely.repository.FuelCardRepository;
+import com.veely.service.storage.FileDeletionOutbox;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -36,6 +37,8 @@ class EmployeeServiceTest {
     @Mock
     private FileSystemStorageService fileStorage;
     @Mock
+    private FileDeletionOutbox fileDeletions;
+    @Mock
     private PasswordEncoder passwordEncoder;
     @Mock
     private PdfEmployeeService pdfEmployeeService;
@@ -66,5 +69,7 @@ class EmployeeServiceTest {
         verify(expenseReportService).delete(3L);
         verify(complianceItemRepo).deleteByEmployeeId(1L);
         verify(employeeRepo).delete(employee);
+        verify(fileDeletions).deleteDirectory("employees/1/docs");
+        verifyNoInteractions(fileStorage);
     }
 }
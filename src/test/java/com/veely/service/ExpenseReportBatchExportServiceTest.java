@@ -0,0 +1,150 @@
+package com.veely.service;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.dto.expense.ExpenseBatchExportProgress;
+import com.veely.model.DispatchJobStatus;
+import com.veely.model.ExpenseStatus;
+import com.veely.repository.ExpenseReportRepository;
+import com.veely.service.pdf.PdfBrandingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExpenseReportBatchExportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 3, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 3, 31);
+
+    @TempDir
+    Path directory;
+
+    private ExpenseReportRepository reportRepo;
+    private ExpenseReportService reportService;
+    private PdfBrandingService brandingService;
+    private ThreadPoolTaskExecutor coordinator;
+    private ThreadPoolTaskExecutor renderers;
+    private ExpenseReportBatchExportService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        reportRepo = mock(ExpenseReportRepository.class);
+        reportService = mock(ExpenseReportService.class);
+        brandingService = mock(PdfBrandingService.class);
+        doAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            OutputStream out = invocation.getArgument(1);
+            out.write(("%PDF nota " + id).getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(reportService).exportPdf(any(), any());
+        coordinator = ExecutorConfig.virtual("expense-batch-export", 1);
+        coordinator.initialize();
+        renderers = ExecutorConfig.platform("expense-batch-export", 2);
+        renderers.initialize();
+        service = new ExpenseReportBatchExportService(reportRepo, reportService, brandingService,
+                directory.toString(), 2, 10, Duration.ofHours(1), coordinator, renderers);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+        renderers.shutdown();
+    }
+
+    @Test
+    void reportsAreRenderedIntoOneArchiveAndFailuresAreListed() throws Exception {
+        when(reportRepo.findBatchExportEntries(FROM, TO, ExpenseStatus.Approved, null, null)).thenReturn(List.of(
+                new Object[]{1L, "NS-001", "Rossi", "Mario"},
+                new Object[]{2L, null, "Rossi", "Mario"},
+                new Object[]{3L, "NS-003", "Bianchi", "Anna"}));
+        doThrow(new IllegalStateException("voce senza importo")).when(reportService).exportPdf(eq(2L), any());
+
+        String jobId = service.submit(new ExpenseReportBatchExportService.Filter(
+                FROM, TO, ExpenseStatus.Approved, null, null), "admin");
+        ExpenseBatchExportProgress progress = awaitFinished(jobId);
+
+        assertThat(progress.status()).isEqualTo(DispatchJobStatus.COMPLETED);
+        assertThat(progress.requested()).isEqualTo(3);
+        assertThat(progress.rendered()).isEqualTo(2);
+        assertThat(progress.failed()).isEqualTo(1);
+        assertThat(progress.percent()).isEqualTo(100);
+        assertThat(progress.downloadable()).isTrue();
+        assertThat(progress.messages()).hasSize(1);
+        assertThat(progress.messages().get(0)).contains("voce senza importo");
+        verify(brandingService).current();
+
+        Resource archive = service.getArchive(jobId);
+        assertThat(archive.getFilename()).isEqualTo("note_spese_2025-03-01_2025-03-31.zip");
+        Map<String, String> entries = unzip(archive);
+        assertThat(entries).containsOnlyKeys("Rossi_Mario_NS-001.pdf", "Bianchi_Anna_NS-003.pdf",
+                ExpenseReportBatchExportService.ERRORS_ENTRY);
+        assertThat(entries.get("Bianchi_Anna_NS-003.pdf")).isEqualTo("%PDF nota 3");
+        assertThat(entries.get(ExpenseReportBatchExportService.ERRORS_ENTRY)).contains("Rossi_Mario_2");
+    }
+
+    @Test
+    void emptyOrTooLargeSelectionsAreRejected() {
+        ExpenseReportBatchExportService.Filter filter =
+                new ExpenseReportBatchExportService.Filter(FROM, TO, null, null, null);
+        when(reportRepo.findBatchExportEntries(FROM, TO, null, null, null)).thenReturn(List.of());
+        assertThatThrownBy(() -> service.submit(filter, "admin")).isInstanceOf(IllegalArgumentException.class);
+
+        Object[][] rows = new Object[11][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i, null, "Rossi", "Mario"};
+        }
+        when(reportRepo.findBatchExportEntries(FROM, TO, null, null, null)).thenReturn(List.of(rows));
+        assertThatThrownBy(() -> service.submit(filter, "admin"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("massimo 10");
+
+        assertThatThrownBy(() -> service.submit(
+                new ExpenseReportBatchExportService.Filter(TO, FROM, null, null, null), "admin"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ExpenseBatchExportProgress awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        ExpenseBatchExportProgress progress = service.getProgress(jobId);
+        while (!progress.finished() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            progress = service.getProgress(jobId);
+        }
+        assertThat(progress.finished()).isTrue();
+        return progress;
+    }
+
+    private static Map<String, String> unzip(Resource archive) throws Exception {
+        Map<String, String> entries = new HashMap<>();
+        try (InputStream in = archive.getInputStream(); ZipInputStream zip = new ZipInputStream(in)) {
+            for (ZipEntry e; (e = zip.getNextEntry()) != null; ) {
+                entries.put(e.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,91 @@
+package com.veely.service;
+
+import com.veely.model.AssignmentStatus;
+import com.veely.model.VehicleStatus;
+import com.veely.repository.AssignmentRepository;
+import com.veely.repository.VehicleRepository;
+import com.veely.service.FleetCounterService.AssignmentChanged;
+import com.veely.service.FleetCounterService.VehicleChanged;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class FleetCounterServiceTest {
+
+    private VehicleRepository vehicleRepo;
+    private AssignmentRepository assignmentRepo;
+    private PlatformTransactionManager transactionManager;
+    private FleetCounterService service;
+
+    @BeforeEach
+    void setUp() {
+        vehicleRepo = mock(VehicleRepository.class);
+        assignmentRepo = mock(AssignmentRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(vehicleRepo.findAllStatuses()).thenReturn(List.of(
+                new Object[]{1L, VehicleStatus.IN_SERVICE},
+                new Object[]{2L, VehicleStatus.IN_SERVICE},
+                new Object[]{3L, VehicleStatus.UNDER_MAINTENANCE}));
+        when(assignmentRepo.findVehicleIdsByStatus(AssignmentStatus.ASSIGNED)).thenReturn(List.of(
+                new Object[]{10L, 1L},
+                new Object[]{11L, 1L}));
+        service = new FleetCounterService(vehicleRepo, assignmentRepo, transactionManager);
+    }
+
+    @Test
+    void reconcileReloadsInsideAReadOnlyTransaction() {
+        service.reconcile();
+
+        verify(transactionManager).getTransaction(argThat(definition -> definition != null && definition.isReadOnly()));
+        assertThat(service.totalVehicles()).isEqualTo(3);
+        assertThat(service.countByStatus(VehicleStatus.IN_SERVICE)).isEqualTo(2);
+        assertThat(service.assignedVehicles()).isEqualTo(1);
+    }
+
+    @Test
+    void vehicleEventsMoveCountsBetweenStatuses() {
+        service.reload();
+
+        service.onVehicleChanged(new VehicleChanged(1L, VehicleStatus.OUT_OF_SERVICE, false));
+        service.onVehicleChanged(new VehicleChanged(4L, VehicleStatus.IN_SERVICE, false));
+        service.onVehicleChanged(new VehicleChanged(3L, VehicleStatus.UNDER_MAINTENANCE, true));
+
+        assertThat(service.totalVehicles()).isEqualTo(3);
+        assertThat(service.countByStatus(VehicleStatus.IN_SERVICE)).isEqualTo(2);
+        assertThat(service.countByStatus(VehicleStatus.OUT_OF_SERVICE)).isEqualTo(1);
+        assertThat(service.countByStatus(VehicleStatus.UNDER_MAINTENANCE)).isZero();
+    }
+
+    @Test
+    void assignmentEventsCountEachVehicleOnce() {
+        service.reload();
+
+        service.onAssignmentChanged(new AssignmentChanged(12L, 2L, AssignmentStatus.ASSIGNED, false));
+        assertThat(service.assignedVehicles()).isEqualTo(2);
+
+        service.onAssignmentChanged(new AssignmentChanged(10L, 1L, AssignmentStatus.RETURNED, false));
+        assertThat(service.assignedVehicles()).isEqualTo(2);
+
+        service.onAssignmentChanged(new AssignmentChanged(11L, 1L, AssignmentStatus.ASSIGNED, true));
+        assertThat(service.assignedVehicles()).isEqualTo(1);
+    }
+
+    @Test
+    void eventsBeforeTheFirstLoadAreLeftToTheDatabase() {
+        service.onVehicleChanged(new VehicleChanged(5L, VehicleStatus.IN_SERVICE, false));
+        service.onAssignmentChanged(new AssignmentChanged(13L, 5L, AssignmentStatus.ASSIGNED, false));
+        verifyNoInteractions(vehicleRepo, assignmentRepo);
+
+        assertThat(service.totalVehicles()).isEqualTo(3);
+        assertThat(service.assignedVehicles()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,193 @@
+package com.veely.service;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.entity.Employee;
+import com.veely.entity.Payslip;
+import com.veely.entity.PayslipDispatchJob;
+import com.veely.model.DispatchJobStatus;
+import com.veely.model.PayslipStatus;
+import com.veely.repository.PayslipDispatchJobRepository;
+import com.veely.repository.PayslipRepository;
+import com.veely.service.mail.MailDispatcher;
+import com.veely.service.mail.SmtpStandIn;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@Timeout(30)
+class PayslipDispatchServiceTest {
+
+    @Mock
+    private PayslipDispatchJobRepository jobRepository;
+    @Mock
+    private PayslipRepository payslipRepository;
+    @Mock
+    private FileSystemStorageService storageService;
+
+    private SmtpStandIn smtp;
+    private MailDispatcher mailDispatcher;
+    private ThreadPoolTaskExecutor coordinator;
+    private ThreadPoolTaskExecutor workers;
+    private PayslipDispatchService service;
+    private final Map<Long, Payslip> payslips = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStandIn();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.port());
+        mailDispatcher = new MailDispatcher(mailSender, new SimpleMeterRegistry(), "hr@example.com",
+                2, Duration.ofSeconds(30), 100, 0, Duration.ofSeconds(1));
+        PayslipEmailService emailService = new PayslipEmailService(mailDispatcher, storageService);
+
+        coordinator = ExecutorConfig.virtual("payslip-dispatch", 1);
+        coordinator.initialize();
+        workers = ExecutorConfig.platform("payslip-dispatch-worker", 1);
+        workers.initialize();
+        service = new PayslipDispatchService(jobRepository, payslipRepository, emailService, mailDispatcher,
+                mock(PdfPayslipDispatchReportService.class), mock(PlatformTransactionManager.class), 1, 3, Duration.ofMillis(10),
+                Duration.ofSeconds(5), coordinator, workers);
+
+        lenient().when(storageService.loadAsResource(anyString(), anyString()))
+                .thenReturn(new ByteArrayResource("%PDF-1.4".getBytes()) {
+                    @Override
+                    public String getFilename() {
+                        return "cedolino.pdf";
+                    }
+                });
+        lenient().when(payslipRepository.findWithEmployeeById(anyLong()))
+                .thenAnswer(inv -> Optional.ofNullable(payslips.get(inv.<Long>getArgument(0))));
+        lenient().when(payslipRepository.findById(anyLong()))
+                .thenAnswer(inv -> Optional.ofNullable(payslips.get(inv.<Long>getArgument(0))));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        coordinator.shutdown();
+        workers.shutdown();
+        mailDispatcher.shutdown();
+        smtp.close();
+    }
+
+    @Test
+    void sendsAllPayslipsOverOneConnectionAndUpdatesStatuses() {
+        payslip(1L, "mario.rossi@example.com");
+        payslip(2L, "anna.bianchi@example.com");
+        payslip(3L, null);
+        job(1L, List.of(1L, 2L, 3L));
+
+        service.run(1L);
+
+        assertThat(smtp.messages()).hasSize(2);
+        assertThat(smtp.connections()).isEqualTo(1);
+        assertThat(payslips.get(1L).getStatus()).isEqualTo(PayslipStatus.SENT);
+        assertThat(payslips.get(1L).getSentTo()).isEqualTo("mario.rossi@example.com");
+        assertThat(payslips.get(2L).getStatus()).isEqualTo(PayslipStatus.SENT);
+        assertThat(payslips.get(3L).getStatus()).isEqualTo(PayslipStatus.UNMATCHED);
+        verify(jobRepository, times(2)).addProgress(1L, 1, 0, 0);
+        verify(jobRepository).addProgress(1L, 0, 1, 0);
+        verify(jobRepository).markFinished(eq(1L), eq(DispatchJobStatus.COMPLETED), any(), isNull());
+        assertThat(service.getProgress(1L).messages()).hasSize(1);
+    }
+
+    @Test
+    void transientFailuresAreRetriedOnAFreshConnection() {
+        payslip(1L, "mario.rossi@example.com");
+        job(1L, List.of(1L));
+        smtp.failNext(2);
+
+        service.run(1L);
+
+        assertThat(smtp.messages()).hasSize(1);
+        assertThat(smtp.connections()).isEqualTo(3);
+        assertThat(payslips.get(1L).getStatus()).isEqualTo(PayslipStatus.SENT);
+    }
+
+    @Test
+    void payslipFailsAfterMaxAttempts() {
+        payslip(1L, "mario.rossi@example.com");
+        job(1L, List.of(1L));
+        smtp.failNext(3);
+
+        service.run(1L);
+
+        assertThat(smtp.messages()).isEmpty();
+        assertThat(payslips.get(1L).getStatus()).isEqualTo(PayslipStatus.FAILED);
+        assertThat(payslips.get(1L).getLastError()).contains("451");
+        verify(jobRepository).addProgress(1L, 0, 0, 1);
+    }
+
+    @Test
+    void unresponsiveServerFailsThePayslipInsteadOfBlockingTheJob() {
+        payslip(1L, "mario.rossi@example.com");
+        job(1L, List.of(1L));
+        smtp.stopReplying();
+
+        service.run(1L);
+
+        assertThat(payslips.get(1L).getStatus()).isEqualTo(PayslipStatus.FAILED);
+        verify(jobRepository).addProgress(1L, 0, 0, 1);
+        verify(jobRepository).markFinished(eq(1L), eq(DispatchJobStatus.COMPLETED), any(), isNull());
+    }
+
+    private void payslip(Long id, String email) {
+        Employee employee = null;
+        if (email != null) {
+            employee = new Employee();
+            employee.setEmail(email);
+        }
+        payslips.put(id, Payslip.builder()
+                .id(id)
+                .employee(employee)
+                .fiscalCode("RSSMRA80A01H501" + id)
+                .referenceMonth(LocalDate.of(2025, 1, 1))
+                .storagePath("payslips/2025-01/" + id + ".pdf")
+                .uploadedAt(LocalDateTime.now())
+                .status(PayslipStatus.PENDING)
+                .build());
+    }
+
+    private void job(Long id, List<Long> payslipIds) {
+        PayslipDispatchJob job = PayslipDispatchJob.builder()
+                .id(id)
+                .status(DispatchJobStatus.QUEUED)
+                .subject("Cedolino paga")
+                .body("In allegato il cedolino.")
+                .requested(payslipIds.size())
+                .createdAt(LocalDateTime.now())
+                .build();
+        when(jobRepository.findById(id)).thenReturn(Optional.of(job));
+        when(jobRepository.findPayslipIds(id)).thenReturn(payslipIds);
+    }
+}
@@ -0,0 +1,107 @@
+package com.veely.service;
+
+import com.veely.entity.Vehicle;
+import com.veely.repository.VehicleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VehicleSearchIndexTest {
+
+    @Mock
+    private VehicleRepository vehicleRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private VehicleSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        index = new VehicleSearchIndex(vehicleRepository, meterRegistry, DataSize.ofMegabytes(1));
+        when(vehicleRepository.findSearchFields()).thenReturn(List.of(
+                new Object[] {1L, "AB123CD", "Fiat", "Panda", "ZFA31200000123456"},
+                new Object[] {2L, "EF456GH", "Alfa Romeo", "Giulia", "ZAR95200000654321"},
+                new Object[] {3L, "GH789IJ", "Fiat", "Doblò", "ZFA26300000999999"}));
+        index.rebuild();
+    }
+
+    @Test
+    void searchRanksPlatePrefixBeforeOtherFields() {
+        List<VehicleSearchIndex.Hit> hits = index.search("gh", 10);
+
+        assertThat(hits).extracting(VehicleSearchIndex.Hit::id).containsExactly(3L, 2L);
+        verify(vehicleRepository, never()).searchVehicles(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void searchIgnoresCaseAccentsAndSpaces() {
+        assertThat(index.search("ALFA rom", 10)).extracting(VehicleSearchIndex.Hit::id).containsExactly(2L);
+        assertThat(index.search("doblo", 10)).extracting(VehicleSearchIndex.Hit::id).containsExactly(3L);
+        assertThat(index.search("ab 123", 10)).extracting(VehicleSearchIndex.Hit::displayText)
+                .containsExactly("AB123CD - Fiat Panda");
+    }
+
+    @Test
+    void updatesAndRemovalsAreApplied() {
+        Vehicle renamed = new Vehicle();
+        renamed.setId(1L);
+        renamed.setPlate("ZZ000ZZ");
+        renamed.setBrand("Ford");
+        renamed.setModel("Transit");
+        index.index(renamed);
+        index.remove(3L);
+
+        assertThat(index.search("fiat", 10)).isEmpty();
+        assertThat(index.search("trans", 10)).extracting(VehicleSearchIndex.Hit::id).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void indexOverBudgetFallsBackToDatabase() {
+        index = new VehicleSearchIndex(vehicleRepository, new SimpleMeterRegistry(), DataSize.ofBytes(100));
+        index.rebuild();
+        when(vehicleRepository.searchVehicles("fiat", null, null, null, 10))
+                .thenReturn(new SliceImpl<>(List.of()));
+
+        assertThat(index.isReady()).isFalse();
+        index.search("fiat", 10);
+        verify(vehicleRepository).searchVehicles("fiat", null, null, null, 10);
+    }
+
+    @Test
+    void disabledIndexIsRebuiltOnceBackWithinBudget() {
+        index = new VehicleSearchIndex(vehicleRepository, new SimpleMeterRegistry(), DataSize.ofBytes(100));
+        index.rebuild();
+        assertThat(index.isReady()).isFalse();
+
+        when(vehicleRepository.findSearchFields()).thenReturn(List.of());
+        index.retryIfDisabled();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void metricsAreRegistered() {
+        index.search("fiat", 10);
+
+        assertThat(meterRegistry.get("veely.vehicles.search-index.entries").gauge().value()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("veely.vehicles.search-index.memory").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("veely.vehicles.search-index.query").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,133 @@
+package com.veely.service.attachment;
+
+import com.veely.entity.ComplianceItem;
+import com.veely.entity.Document;
+import com.veely.entity.Employee;
+import com.veely.entity.ExpenseItem;
+import com.veely.exception.ResourceNotFoundException;
+import com.veely.model.AttachmentOwner;
+import com.veely.model.DocumentType;
+import com.veely.repository.DocumentRepository;
+import com.veely.service.FileSystemStorageService;
+import com.veely.service.storage.ImageDerivativeService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AttachmentServiceTest {
+
+    private EntityManager entityManager;
+    private DocumentRepository documentRepo;
+    private FileSystemStorageService fileStorage;
+    private AttachmentService service;
+
+    @BeforeEach
+    void setUp() {
+        entityManager = mock(EntityManager.class);
+        documentRepo = mock(DocumentRepository.class);
+        fileStorage = mock(FileSystemStorageService.class);
+        when(fileStorage.store(any(MultipartFile.class), anyString()))
+                .thenAnswer(inv -> "1_" + inv.<MultipartFile>getArgument(0).getOriginalFilename());
+        when(documentRepo.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        service = new AttachmentService(new AttachmentOwnerRegistry(), documentRepo, fileStorage,
+                mock(ImageDerivativeService.class));
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+    }
+
+    @Test
+    void batchUploadResolvesTheOwnerOnceAndSavesAllFilesTogether() {
+        Employee employee = new Employee();
+        employee.setId(7L);
+        ComplianceItem item = new ComplianceItem();
+        item.setId(3L);
+        item.setEmployee(employee);
+        when(entityManager.find(ComplianceItem.class, 3L)).thenReturn(item);
+
+        List<Document> docs = service.upload(AttachmentOwner.COMPLIANCE_ITEM, 3L,
+                List.of(file("corso.pdf"), file("vuoto.pdf", new byte[0]), file("attestato.pdf")),
+                DocumentType.OTHER, LocalDate.of(2025, 1, 1), null);
+
+        verify(entityManager, times(1)).find(ComplianceItem.class, 3L);
+        verify(documentRepo, times(1)).saveAll(anyList());
+        assertThat(docs).extracting(Document::getPath)
+                .containsExactly("employees/7/docs/1_corso.pdf", "employees/7/docs/1_attestato.pdf");
+        assertThat(docs).allSatisfy(doc -> {
+            assertThat(doc.getComplianceItem()).isSameAs(item);
+            assertThat(doc.getEmployee()).isSameAs(employee);
+        });
+    }
+
+    @Test
+    void uploadForAMissingOwnerStoresNothing() {
+        assertThatThrownBy(() -> service.upload(AttachmentOwner.SUPPLIER, 99L, List.of(file("offerta.pdf")),
+                DocumentType.OTHER, null, null))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("99");
+        verify(fileStorage, never()).store(any(MultipartFile.class), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void documentsOfManyOwnersAreListedWithOneQuery() {
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery(anyString(), eq(Object[].class))).thenReturn(query);
+        when(query.setParameter(eq("ids"), any())).thenReturn(query);
+        Document receipt = document(10L, 1L);
+        Document invoice = document(11L, 1L);
+        Document other = document(12L, 2L);
+        when(query.getResultList()).thenReturn(List.of(
+                new Object[]{1L, receipt}, new Object[]{1L, invoice}, new Object[]{2L, other}));
+
+        Map<Long, List<Document>> byItem = service.listForOwners(AttachmentOwner.EXPENSE_ITEM, List.of(1L, 2L, 3L));
+
+        verify(entityManager, times(1)).createQuery(
+                "SELECT d.expenseItem.id, d FROM Document d WHERE d.expenseItem.id IN :ids ORDER BY d.id",
+                Object[].class);
+        assertThat(byItem).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(byItem.get(1L)).containsExactly(receipt, invoice);
+        assertThat(byItem.get(2L)).containsExactly(other);
+        assertThat(byItem.get(3L)).isEmpty();
+    }
+
+    @Test
+    void downloadsOfOwnersWithFixedFoldersDoNotLoadTheOwner() {
+        service.load(AttachmentOwner.CONTRACT, 5L, "1_contratto.pdf");
+
+        verify(fileStorage).loadAsResource("1_contratto.pdf", "contracts/5/docs");
+        verify(entityManager, never()).find(any(), any());
+    }
+
+    private static MockMultipartFile file(String name) {
+        return file(name, new byte[]{1, 2, 3});
+    }
+
+    private static MockMultipartFile file(String name, byte[] content) {
+        return new MockMultipartFile("file", name, "application/pdf", content);
+    }
+
+    private static Document document(Long id, Long itemId) {
+        ExpenseItem item = new ExpenseItem();
+        item.setId(itemId);
+        return Document.builder().id(id).expenseItem(item).type(DocumentType.RECEIPT).build();
+    }
+}
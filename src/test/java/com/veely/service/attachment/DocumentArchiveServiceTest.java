@@ -0,0 +1,102 @@
+package com.veely.service.attachment;
+
+import com.veely.repository.PayslipRepository;
+import com.veely.service.FileSystemStorageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentArchiveServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void entryNamesAreSanitizedAndDeduplicated() {
+        DocumentArchiveService.EntryNames names = new DocumentArchiveService.EntryNames();
+
+        assertThat(names.next("Libretto circolazione_2024-03-01", ".pdf"))
+                .isEqualTo("Libretto_circolazione_2024-03-01.pdf");
+        assertThat(names.next("Libretto circolazione_2024-03-01", ".pdf"))
+                .isEqualTo("Libretto_circolazione_2024-03-01_2.pdf");
+        assertThat(names.next("Carta/Patente: fronte", ".jpg")).isEqualTo("Carta-Patente-_fronte.jpg");
+    }
+
+    @Test
+    void archiveStreamsLocalAndRemoteFilesAndListsMissingOnes() throws IOException {
+        byte[] pdf = new byte[200_000];
+        for (int i = 0; i < pdf.length; i++) {
+            pdf[i] = (byte) (i % 251);
+        }
+        Path local = Files.write(tempDir.resolve("1_libretto.pdf"), pdf);
+
+        FileSystemStorageService storage = mock(FileSystemStorageService.class);
+        when(storage.find("vehicles/1/docs/1_libretto.pdf")).thenReturn(Optional.of(new FileSystemResource(local)));
+        when(storage.find("vehicles/1/docs/2_polizza.pdf"))
+                .thenReturn(Optional.of(new ByteArrayResource("polizza".getBytes(StandardCharsets.UTF_8))));
+        when(storage.find("vehicles/1/docs/3_perso.pdf")).thenReturn(Optional.empty());
+        DocumentArchiveService service = new DocumentArchiveService(new AttachmentOwnerRegistry(), storage,
+                mock(PayslipRepository.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = service.write(List.of(
+                new DocumentArchiveService.ArchiveEntry("Libretto_circolazione.pdf", "vehicles/1/docs/1_libretto.pdf"),
+                new DocumentArchiveService.ArchiveEntry("Assicurazione.pdf", "vehicles/1/docs/2_polizza.pdf"),
+                new DocumentArchiveService.ArchiveEntry("Altro.pdf", "vehicles/1/docs/3_perso.pdf")), out);
+
+        Map<String, byte[]> entries = unzip(out.toByteArray());
+        assertThat(written).isEqualTo(2);
+        assertThat(entries).containsOnlyKeys("Libretto_circolazione.pdf", "Assicurazione.pdf",
+                DocumentArchiveService.MISSING_ENTRY);
+        assertThat(entries.get("Libretto_circolazione.pdf")).isEqualTo(pdf);
+        assertThat(new String(entries.get("Assicurazione.pdf"), StandardCharsets.UTF_8)).isEqualTo("polizza");
+        assertThat(new String(entries.get(DocumentArchiveService.MISSING_ENTRY), StandardCharsets.UTF_8))
+                .contains("Altro.pdf", "vehicles/1/docs/3_perso.pdf");
+    }
+
+    @Test
+    void fileShortenedDuringTheCopyStopsTheTransfer() throws IOException {
+        FileChannel source = mock(FileChannel.class);
+        when(source.transferTo(anyLong(), anyLong(), any())).thenReturn(4L, 0L);
+
+        boolean complete = DocumentArchiveService.transfer(source, 10, Channels.newChannel(new ByteArrayOutputStream()));
+
+        assertThat(complete).isFalse();
+        verify(source, times(2)).transferTo(anyLong(), anyLong(), any());
+    }
+
+    private static Map<String, byte[]> unzip(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,113 @@
+package com.veely.service.export;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class StreamingExportServiceTest {
+
+    record Row(String name, BigDecimal amount, LocalDate date) {}
+
+    private static final List<ExportColumn<Row>> COLUMNS = List.of(
+            ExportColumn.of("Nome", Row::name),
+            ExportColumn.of("Importo", Row::amount),
+            ExportColumn.of("Data", Row::date));
+
+    private final StreamingExportService service =
+            new StreamingExportService(mock(PlatformTransactionManager.class));
+
+    @Test
+    void csvQuotesFieldsWithSeparatorsQuotesAndNewlines() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TableWriter writer = ExportFormat.CSV.open(out, "test")) {
+            long count = service.write(writer, COLUMNS, () -> Stream.of(
+                    new Row("Rossi, Mario", new BigDecimal("12.50"), LocalDate.of(2025, 3, 1)),
+                    new Row("Fiat \"Panda\"\nbianca", null, null)));
+            assertThat(count).isEqualTo(2);
+        }
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(csv).isEqualTo("\uFEFFNome,Importo,Data\r\n"
+                + "\"Rossi, Mario\",12.50,2025-03-01\r\n"
+                + "\"Fiat \"\"Panda\"\"\nbianca\",,\r\n");
+    }
+
+    @Test
+    void csvNeutralizesFormulasButKeepsNegativeNumbers() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TableWriter writer = ExportFormat.CSV.open(out, "test")) {
+            service.write(writer, COLUMNS, () -> Stream.of(
+                    new Row("=HYPERLINK(\"http://x\")", new BigDecimal("-3.20"), null),
+                    new Row("@SUM(A1)", null, null),
+                    new Row("\tcmd", null, null)));
+        }
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("\uFEFFNome,Importo,Data\r\n"
+                + "\"'=HYPERLINK(\"\"http://x\"\")\",-3.20,\r\n"
+                + "\"'@SUM(A1)\",,\r\n"
+                + "\"'\tcmd\",,\r\n");
+    }
+
+    @Test
+    void xlsxIsAValidPackageWithTypedCells() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TableWriter writer = ExportFormat.XLSX.open(out, "Veicoli")) {
+            service.write(writer, COLUMNS, () -> Stream.of(
+                    new Row("A & B <srl>", new BigDecimal("1234.5"), LocalDate.of(2025, 1, 1))));
+        }
+
+        Map<String, byte[]> parts = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry e; (e = zip.getNextEntry()) != null; ) {
+                parts.put(e.getName(), zip.readAllBytes());
+            }
+        }
+        assertThat(parts).containsKeys("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+                "xl/_rels/workbook.xml.rels", "xl/styles.xml", "xl/worksheets/sheet1.xml");
+        for (byte[] xml : parts.values()) {
+            parse(xml); // ogni parte deve essere XML ben formato
+        }
+
+        Document sheet = parse(parts.get("xl/worksheets/sheet1.xml"));
+        assertThat(sheet.getElementsByTagName("row").getLength()).isEqualTo(2);
+        String sheetXml = new String(parts.get("xl/worksheets/sheet1.xml"), StandardCharsets.UTF_8);
+        assertThat(sheetXml).contains("A &amp; B &lt;srl&gt;")
+                .contains("<c r=\"B2\"><v>1234.5</v></c>")
+                .contains("<c r=\"C2\" s=\"2\"><v>45658</v></c>");
+    }
+
+    @Test
+    void columnNamesFollowExcelConvention() {
+        assertThat(XlsxTableWriter.columnName(0)).isEqualTo("A");
+        assertThat(XlsxTableWriter.columnName(25)).isEqualTo("Z");
+        assertThat(XlsxTableWriter.columnName(26)).isEqualTo("AA");
+        assertThat(XlsxTableWriter.columnName(701)).isEqualTo("ZZ");
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThat(ExportFormat.from("XLSX")).isEqualTo(ExportFormat.XLSX);
+        assertThatThrownBy(() -> ExportFormat.from("pdf")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Document parse(byte[] xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+}
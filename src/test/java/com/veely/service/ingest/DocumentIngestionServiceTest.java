@@ -0,0 +1,148 @@
+package com.veely.service.ingest;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.dto.payslip.PayslipUploadResult;
+import com.veely.repository.EmployeeRepository;
+import com.veely.service.FileSystemStorageService;
+import com.veely.service.SecureFileUploadService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentIngestionServiceTest {
+
+    @Mock
+    private EmployeeRepository employeeRepository;
+    @Mock
+    private SecureFileUploadService uploadService;
+    @Mock
+    private FileSystemStorageService storageService;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ThreadPoolTaskExecutor writers;
+    private DocumentIngestionService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        writers = ExecutorConfig.virtual("document-ingest", 2);
+        writers.initialize();
+        service = new DocumentIngestionService(employeeRepository, uploadService, storageService, jdbcTemplate,
+                mock(PlatformTransactionManager.class), 100, "", writers);
+        lenient().when(uploadService.uploadDocument(any(MultipartFile.class), anyString()))
+                .thenAnswer(inv -> "stored-" + inv.<MultipartFile>getArgument(0).getOriginalFilename());
+    }
+
+    @AfterEach
+    void tearDown() {
+        writers.shutdown();
+    }
+
+    @Test
+    void resolvesEmployeesInOneQueryAndInsertsInOneBatch() {
+        when(employeeRepository.findIdsByFiscalCodes(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{7L, "RSSMRA80A01H501U"}));
+        List<IngestProgress> events = new ArrayList<>();
+
+        PayslipUploadResult result = service.ingest(IngestTarget.payslips(YearMonth.of(2025, 3)), new MultipartFile[]{
+                pdf("RSSMRA80A01H501U.pdf"), pdf("BNCNNA85B41F205X.pdf"), pdf("---.pdf")}, events::add);
+
+        assertThat(result.getProcessed()).isEqualTo(3);
+        assertThat(result.getStored()).isEqualTo(2);
+        assertThat(result.getUnmatchedCodes()).containsExactly("BNCNNA85B41F205X (BNCNNA85B41F205X.pdf)");
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(events).hasSize(3);
+        assertThat(events.get(2).done()).isEqualTo(3);
+        verify(employeeRepository).findIdsByFiscalCodes(anyCollection());
+        verify(jdbcTemplate).batchUpdate(eq(IngestTarget.payslips(YearMonth.of(2025, 3)).insertSql()),
+                argThat(files -> files.size() == 2), eq(DocumentIngestionService.BATCH_SIZE), any());
+    }
+
+    @Test
+    void storedFilesAreRemovedWhenTheBatchFails() {
+        when(employeeRepository.findIdsByFiscalCodes(anyCollection())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        PayslipUploadResult result = service.ingest(IngestTarget.payslips(YearMonth.of(2025, 3)),
+                new MultipartFile[]{pdf("RSSMRA80A01H501U.pdf")});
+
+        assertThat(result.getStored()).isZero();
+        assertThat(result.getErrors()).containsExactly("RSSMRA80A01H501U.pdf: registrazione non riuscita");
+        verify(storageService).delete("payslips/2025/03/stored-RSSMRA80A01H501U.pdf");
+    }
+
+    @Test
+    void archiveEntriesAreStoredWithoutExtraction() throws Exception {
+        when(employeeRepository.findIdsByFiscalCodes(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{7L, "RSSMRA80A01H501U"}));
+        when(uploadService.uploadDocument(any(InputStream.class), anyString(), eq("application/pdf"), anyString()))
+                .thenAnswer(inv -> "stored-" + inv.<String>getArgument(1));
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            for (String name : List.of("marzo/", "marzo/RSSMRA80A01H501U.pdf", "marzo/BNCNNA85B41F205X.pdf",
+                    "__MACOSX/marzo/._RSSMRA80A01H501U.pdf", "leggimi.txt")) {
+                out.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/")) {
+                    out.write("%PDF-1.4".getBytes());
+                }
+                out.closeEntry();
+            }
+        }
+        List<IngestProgress> events = new ArrayList<>();
+
+        PayslipUploadResult result = service.ingestArchive(IngestTarget.certifications(Year.of(2024)),
+                new ByteArrayInputStream(zip.toByteArray()), events::add);
+
+        assertThat(result.getProcessed()).isEqualTo(3);
+        assertThat(result.getStored()).isEqualTo(2);
+        assertThat(result.getUnmatchedCodes()).containsExactly("BNCNNA85B41F205X (BNCNNA85B41F205X.pdf)");
+        assertThat(result.getErrors()).containsExactly("leggimi.txt: sono ammessi solo file PDF");
+        assertThat(events).extracting(IngestProgress::total).containsOnly(0);
+        verify(uploadService).uploadDocument(any(InputStream.class), eq("RSSMRA80A01H501U.pdf"),
+                eq("application/pdf"), eq("unique-certifications/2024"));
+    }
+
+    @Test
+    void fiscalCodeIsReadFromTheFileName() {
+        assertThat(DocumentIngestionService.extractFiscalCode("rss mra-80a01h501u_marzo.pdf"))
+                .isEqualTo("RSSMRA80A01H501U");
+        assertThat(DocumentIngestionService.extractFiscalCode(null)).isNull();
+    }
+
+    private static MockMultipartFile pdf(String name) {
+        return new MockMultipartFile("files", name, "application/pdf", "%PDF-1.4".getBytes());
+    }
+}
@@ -0,0 +1,110 @@
+package com.veely.service.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Timeout(30)
+class MailDispatcherTest {
+
+    private SmtpStandIn smtp;
+    private SimpleMeterRegistry meterRegistry;
+    private MailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStandIn();
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = dispatcher(100);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dispatcher.shutdown();
+        smtp.close();
+    }
+
+    @Test
+    void connectionIsReusedAcrossSends() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            dispatcher.send(message(i));
+        }
+
+        assertThat(smtp.messages()).hasSize(3);
+        assertThat(smtp.connections()).isEqualTo(1);
+        assertThat(meterRegistry.get("veely.mail.connections.opened").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("veely.mail.connections.reused").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("veely.mail.messages").tag("outcome", "sent").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("veely.mail.throughput").gauge().value()).isPositive();
+    }
+
+    @Test
+    void pipelineRenewsConnectionAfterMessageLimit() throws Exception {
+        dispatcher.shutdown();
+        dispatcher = dispatcher(2);
+
+        try (MailDispatcher.Pipeline pipeline = dispatcher.openPipeline()) {
+            for (int i = 0; i < 3; i++) {
+                pipeline.send(message(i));
+            }
+        }
+
+        assertThat(smtp.messages()).hasSize(3);
+        assertThat(smtp.connections()).isEqualTo(2);
+    }
+
+    @Test
+    void failedSendDiscardsConnection() throws Exception {
+        smtp.failNext(1);
+
+        assertThatThrownBy(() -> dispatcher.send(message(1))).isInstanceOf(MessagingException.class);
+        dispatcher.send(message(2));
+
+        assertThat(smtp.messages()).hasSize(1);
+        assertThat(smtp.connections()).isEqualTo(2);
+        assertThat(meterRegistry.get("veely.mail.messages").tag("outcome", "failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void unresponsiveServerFailsTheSendInsteadOfHanging() throws Exception {
+        dispatcher.send(message(1));
+        smtp.stopReplying();
+
+        assertThatThrownBy(() -> dispatcher.send(message(2))).isInstanceOf(MessagingException.class);
+        assertThat(smtp.messages()).hasSize(1);
+    }
+
+    @Test
+    void composedMessageCarriesSenderAndAttachment() throws Exception {
+        dispatcher.send(message(1));
+
+        assertThat(smtp.messages().get(0))
+                .contains("From: hr@example.com")
+                .contains("To: mario.rossi@example.com")
+                .contains("filename=documento.pdf");
+    }
+
+    private MailDispatcher dispatcher(int maxMessagesPerConnection) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.port());
+        return new MailDispatcher(mailSender, meterRegistry, "hr@example.com",
+                2, Duration.ofSeconds(30), maxMessagesPerConnection, 0, Duration.ofSeconds(1));
+    }
+
+    private MimeMessage message(int n) throws MessagingException {
+        return dispatcher.compose("mario.rossi@example.com", "Documento " + n, "In allegato il documento.",
+                "documento.pdf", new ByteArrayResource("%PDF-1.4".getBytes()));
+    }
+}
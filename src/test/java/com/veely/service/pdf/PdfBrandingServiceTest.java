@@ -0,0 +1,110 @@
+package com.veely.service.pdf;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.PageSize;
+import com.veely.entity.CompanyInfo;
+import com.veely.service.CompanyInfoService;
+import com.veely.service.FileSystemStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PdfBrandingServiceTest {
+
+    private CompanyInfoService companyInfoService;
+    private FileSystemStorageService storage;
+    private PdfBrandingService service;
+    private CompanyInfo company;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        company = new CompanyInfo();
+        company.setCompanyName("Singol S.r.l.");
+        company.setPrimaryColor("#2c5f5f");
+        company.setVatNumber("01234567890");
+        company.setPrimaryPhone("0123 456789");
+        company.setLogoPath("company/logos/logo_1.png");
+        company.setShowLogoInDocuments(true);
+        company.setShowContactsInDocuments(true);
+        company.setShowTaxInfoInDocuments(true);
+        company.setShowAddressInDocuments(false);
+
+        companyInfoService = mock(CompanyInfoService.class);
+        when(companyInfoService.getPrimaryCompanyInfoOptional()).thenReturn(Optional.of(company));
+        storage = mock(FileSystemStorageService.class);
+        when(storage.find("company/logos/logo_1.png")).thenReturn(Optional.of(new ByteArrayResource(png())));
+        service = new PdfBrandingService(companyInfoService, storage, Duration.ofHours(1));
+    }
+
+    @Test
+    void brandingIsLoadedOnceAndImagesAreDecodedOnce() {
+        PdfBranding first = service.current();
+        PdfBranding second = service.current();
+
+        assertThat(second).isSameAs(first);
+        verify(companyInfoService, times(1)).getPrimaryCompanyInfoOptional();
+        verify(storage, times(1)).find("company/logos/logo_1.png");
+
+        assertThat(first.companyName()).isEqualTo("Singol S.r.l.");
+        assertThat(first.primaryColor()).isEqualTo(Color.decode("#2c5f5f"));
+        assertThat(first.footerColumns()).containsExactly("",
+                "CONTATTI\nTel: 0123 456789", "DATI FISCALI\nP.IVA: 01234567890");
+        assertThat(first.hasLogo()).isTrue();
+        assertThat(first.hasWatermark()).isFalse();
+        // ogni documento riceve la propria copia dell'immagine
+        assertThat(first.logo()).isNotSameAs(first.logo());
+    }
+
+    @Test
+    void companyChangesInvalidateTheCachedBranding() {
+        PdfBranding before = service.current();
+
+        company.setCompanyName("Singol S.p.A.");
+        company.setShowLogoInDocuments(false);
+        service.onBrandingChanged(new PdfBrandingService.BrandingChanged());
+        PdfBranding after = service.current();
+
+        assertThat(after).isNotSameAs(before);
+        assertThat(after.companyName()).isEqualTo("Singol S.p.A.");
+        assertThat(after.hasLogo()).isFalse();
+        verify(companyInfoService, times(2)).getPrimaryCompanyInfoOptional();
+    }
+
+    @Test
+    void missingConfigurationRendersWithPlaceholders() throws Exception {
+        when(companyInfoService.getPrimaryCompanyInfoOptional()).thenReturn(Optional.empty());
+
+        PdfBranding branding = service.current();
+        assertThat(branding).isSameAs(PdfBranding.NONE);
+        assertThat(branding.companyName()).isEqualTo("-----");
+        assertThat(branding.footerColumns()).isEmpty();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = PdfLayout.open(out, PageSize.A4, 30, 35, branding, true);
+        PdfLayout.addLogoHeader(document, branding);
+        PdfLayout.addTitleHeader(document, branding, "TITOLO", null);
+        document.close();
+        assertThat(out.toByteArray()).startsWith("%PDF".getBytes());
+    }
+
+    private static byte[] png() throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,85 @@
+package com.veely.service.pdf;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.veely.dto.employee.EmploymentExportRow;
+import com.veely.entity.Employee;
+import com.veely.entity.Employment;
+import com.veely.model.EmploymentStatus;
+import com.veely.service.PdfEmploymentService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PdfStreamingServiceTest {
+
+    private EntityManager entityManager;
+    private PdfStreamingService service;
+
+    @BeforeEach
+    void setUp() {
+        entityManager = mock(EntityManager.class);
+        service = new PdfStreamingService(mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+    }
+
+    @Test
+    void rowsAreDetachedInBatchesAndTheStreamIsClosed() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Long> rows = LongStream.rangeClosed(1, 1_200).boxed().onClose(() -> closed.set(true));
+
+        long[] lastIndex = {0};
+        long count = service.forEach(rows, (row, index) -> {
+            assertThat(index).isEqualTo(row);
+            lastIndex[0] = index;
+        });
+
+        assertThat(count).isEqualTo(1_200);
+        assertThat(lastIndex[0]).isEqualTo(1_200);
+        assertThat(closed).isTrue();
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void employmentReportIsWrittenIncrementallyAcrossPages() throws Exception {
+        PdfBrandingService brandingService = mock(PdfBrandingService.class);
+        when(brandingService.current()).thenReturn(PdfBranding.NONE);
+        PdfEmploymentService pdfService = new PdfEmploymentService(brandingService, service);
+
+        Employee employee = Employee.builder().firstName("Mario").lastName("Rossi").build();
+        Stream<EmploymentExportRow> employments = LongStream.rangeClosed(1, 600).mapToObj(i -> new EmploymentExportRow(
+                Employment.builder()
+                        .id(i)
+                        .employee(employee)
+                        .matricola(String.valueOf(i))
+                        .startDate(LocalDate.of(2024, 1, 1))
+                        .status(i % 3 == 0 ? EmploymentStatus.TERMINATED : EmploymentStatus.ACTIVE)
+                        .build(),
+                i % 2 == 0 ? "Commessa " + i : null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pdfService.writeStyledPdf(employments, true, out);
+
+        assertThat(out.toByteArray()).startsWith("%PDF".getBytes());
+        PdfReader reader = new PdfReader(out.toByteArray());
+        try {
+            assertThat(reader.getNumberOfPages()).isGreaterThan(10);
+        } finally {
+            reader.close();
+        }
+        verify(entityManager, times(1)).clear();
+    }
+}
@@ -0,0 +1,72 @@
+package com.veely.service.pdf;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RenderedPdfCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Test
+    void pdfIsRenderedOncePerVersion() throws Exception {
+        RenderedPdfCache cache = cache(DataSize.ofMegabytes(1));
+        RenderedPdfCache.Key v1 = RenderedPdfCache.Key.of("expense-reports", 7L, RenderedPdfCache.fingerprint("v1"));
+        RenderedPdfCache.Key v2 = RenderedPdfCache.Key.of("expense-reports", 7L, RenderedPdfCache.fingerprint("v2"));
+
+        assertThat(read(cache, v1)).isEqualTo("%PDF 1");
+        assertThat(read(cache, v1)).isEqualTo("%PDF 1");
+        assertThat(read(cache, v2)).isEqualTo("%PDF 2");
+        assertThat(renders).hasValue(2);
+
+        cache.invalidate("expense-reports", 7L);
+        assertThat(read(cache, v2)).isEqualTo("%PDF 3");
+    }
+
+    @Test
+    void pdfEvictedFromMemoryIsReadBackFromDisk() throws Exception {
+        // nessun PDF entra in memoria: ognuno viene scritto subito su disco
+        RenderedPdfCache cache = cache(DataSize.ofBytes(4));
+        RenderedPdfCache.Key key = RenderedPdfCache.Key.of("payslip-dispatch-reports", "2025-03",
+                RenderedPdfCache.fingerprint("marzo"));
+
+        assertThat(read(cache, key)).isEqualTo("%PDF 1");
+        assertThat(read(cache, key)).isEqualTo("%PDF 1");
+        assertThat(renders).hasValue(1);
+        Path folder = directory.resolve("payslip-dispatch-reports").resolve("2025-03");
+        assertThat(folder).isDirectory();
+
+        cache.invalidate("payslip-dispatch-reports", "2025-03");
+        assertThat(folder).doesNotExist();
+        assertThat(read(cache, key)).isEqualTo("%PDF 2");
+    }
+
+    @Test
+    void fingerprintDistinguishesNullFromText() {
+        assertThat(RenderedPdfCache.fingerprint("a", null)).isNotEqualTo(RenderedPdfCache.fingerprint("a", "null"));
+        assertThat(RenderedPdfCache.fingerprint("ab", "c")).isNotEqualTo(RenderedPdfCache.fingerprint("a", "bc"));
+    }
+
+    private RenderedPdfCache cache(DataSize memory) {
+        return new RenderedPdfCache(new SimpleMeterRegistry(), true, directory.toString(), memory,
+                DataSize.ofMegabytes(10), Duration.ofDays(1));
+    }
+
+    private String read(RenderedPdfCache cache, RenderedPdfCache.Key key) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(key, out, pdf -> pdf.write(("%PDF " + renders.incrementAndGet()).getBytes(StandardCharsets.UTF_8)));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
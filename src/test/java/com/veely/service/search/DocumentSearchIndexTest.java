@@ -0,0 +1,174 @@
+package com.veely.service.search;
+
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+import com.veely.repository.DocumentRepository;
+import com.veely.service.FileSystemStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentSearchIndexTest {
+
+    @TempDir
+    Path indexDir;
+
+    private final Map<String, byte[]> files = new HashMap<>();
+    private DocumentRepository documentRepo;
+    private FileSystemStorageService storage;
+    private DocumentSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        documentRepo = mock(DocumentRepository.class);
+        storage = mock(FileSystemStorageService.class);
+        when(storage.find(anyString())).thenAnswer(inv -> Optional.ofNullable(files.get(inv.<String>getArgument(0)))
+                .map(ByteArrayResource::new));
+        index = newIndex();
+        index.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void pdfTextAndFileNameAreSearchable() throws Exception {
+        files.put("contracts/1/docs/1700000000000_noleggio.pdf", pdf("Contratto di noleggio con Rossi Autonoleggi"));
+        files.put("suppliers/2/docs/1700000000001_offerta.txt",
+                "Offerta della società Bianchi".getBytes(StandardCharsets.UTF_8));
+
+        index.index(10L, "contracts/1/docs/1700000000000_noleggio.pdf");
+        index.index(11L, "suppliers/2/docs/1700000000001_offerta.txt");
+
+        assertThat(index.search("ROSSI noleggio", 10)).containsExactly(10L);
+        assertThat(index.search("contr", 10)).containsExactly(10L);
+        assertThat(index.search("societa", 10)).containsExactly(11L);
+        assertThat(index.search("offerta", 10)).containsExactly(11L);
+        assertThat(index.search("rossi bianchi", 10)).isEmpty();
+        assertThat(index.search("1700000000000", 10)).isEmpty();
+    }
+
+    @Test
+    void indexSurvivesARestartWithRemovalsApplied() {
+        files.put("a/1_uno.txt", "fattura carburante".getBytes(StandardCharsets.UTF_8));
+        files.put("a/2_due.txt", "fattura manutenzione".getBytes(StandardCharsets.UTF_8));
+        index.index(1L, "a/1_uno.txt");
+        index.index(2L, "a/2_due.txt");
+        index.remove(1L);
+        index.shutdown();
+
+        index = newIndex();
+        index.load();
+
+        assertThat(index.search("fattura", 10)).containsExactly(2L);
+        assertThat(index.status().documents()).isEqualTo(1);
+        assertThat(index.status().rebuildCheckpoint()).isNull();
+    }
+
+    @Test
+    void interruptedRebuildResumesFromTheCheckpointAndDropsDeletedDocuments() throws Exception {
+        files.put("a/5_vecchio.txt", "verbale".getBytes(StandardCharsets.UTF_8));
+        index.index(5L, "a/5_vecchio.txt");
+        index.shutdown();
+        Files.writeString(indexDir.resolve(DocumentSearchIndex.CHECKPOINT_FILE), "3");
+        files.put("a/4_nuovo.txt", "verbale consegna".getBytes(StandardCharsets.UTF_8));
+        when(documentRepo.findIdAndPathAfter(eq(3L), any(Pageable.class)))
+                .thenReturn(List.<Object[]>of(new Object[]{4L, "a/4_nuovo.txt"}));
+        when(documentRepo.findIdAndPathAfter(eq(4L), any(Pageable.class))).thenReturn(List.of());
+
+        index = newIndex();
+        index.load();
+        assertThat(index.status().rebuildCheckpoint()).isEqualTo(3L);
+        index.runRebuild(index.status().rebuildCheckpoint());
+
+        verify(documentRepo, never()).findIdAndPathAfter(eq(0L), any(Pageable.class));
+        assertThat(index.search("verbale", 10)).containsExactly(4L);
+        assertThat(index.status().rebuildCheckpoint()).isNull();
+        assertThat(indexDir.resolve(DocumentSearchIndex.CHECKPOINT_FILE)).doesNotExist();
+    }
+
+    @Test
+    void interruptedLastRecordIsDroppedOnLoad() throws Exception {
+        files.put("a/1_uno.txt", "libretto".getBytes(StandardCharsets.UTF_8));
+        index.index(1L, "a/1_uno.txt");
+        index.shutdown();
+        Files.writeString(indexDir.resolve(DocumentSearchIndex.LOG_FILE), "+2 libre",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        index = newIndex();
+        index.load();
+        files.put("a/3_tre.txt", "libretto".getBytes(StandardCharsets.UTF_8));
+        index.index(3L, "a/3_tre.txt");
+        index.shutdown();
+        index = newIndex();
+        index.load();
+
+        assertThat(index.search("libretto", 10)).containsExactly(3L, 1L);
+        assertThat(index.search("libre", 10)).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void changesArrivedDuringARebuildAreAppliedAgainAfterIt() {
+        index.shutdown();
+        index = newIndex(Runnable::run);
+        index.load();
+        files.put("a/7_sette.txt", "preventivo".getBytes(StandardCharsets.UTF_8));
+        when(documentRepo.findIdAndPathAfter(eq(0L), any(Pageable.class))).thenAnswer(inv -> {
+            // il documento viene eliminato mentre la ricostruzione ne ha già letto il percorso
+            index.onDocumentChanged(new DocumentSearchIndex.DocumentChanged(7L, "a/7_sette.txt", true));
+            return List.<Object[]>of(new Object[]{7L, "a/7_sette.txt"});
+        });
+        when(documentRepo.findIdAndPathAfter(eq(7L), any(Pageable.class))).thenReturn(List.of());
+
+        assertThat(index.rebuild()).isTrue();
+
+        assertThat(index.search("preventivo", 10)).isEmpty();
+        assertThat(index.status().rebuildCheckpoint()).isNull();
+    }
+
+    private DocumentSearchIndex newIndex() {
+        return newIndex(mock(TaskExecutor.class));
+    }
+
+    private DocumentSearchIndex newIndex(TaskExecutor executor) {
+        return new DocumentSearchIndex(documentRepo, storage,
+                new DocumentTextExtractor(10, DataSize.ofKilobytes(64)), indexDir.toString(), 2, 1000,
+                executor, executor);
+    }
+
+    private static byte[] pdf(String text) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        com.lowagie.text.Document document = new com.lowagie.text.Document();
+        PdfWriter.getInstance(document, out);
+        document.open();
+        document.add(new Paragraph(text));
+        document.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,212 @@
+package com.veely.service.storage;
+
+import com.veely.entity.FileDeletion;
+import com.veely.entity.StorageBlob;
+import com.veely.entity.StorageObject;
+import com.veely.repository.FileDeletionRepository;
+import com.veely.repository.StorageBlobRepository;
+import com.veely.repository.StorageObjectRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContentAddressedBlobStoreTest {
+
+    @TempDir
+    Path storage;
+
+    private final Map<String, StorageObject> objects = new HashMap<>();
+    private final Map<String, StorageBlob> blobs = new HashMap<>();
+    private final List<FileDeletion> deletions = new ArrayList<>();
+    private ContentAddressedBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        StorageObjectRepository objectRepository = mock(StorageObjectRepository.class);
+        when(objectRepository.findBlobHash(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(objects.get(inv.<String>getArgument(0)))
+                        .map(StorageObject::getBlobHash));
+        when(objectRepository.existsById(anyString())).thenAnswer(inv -> objects.containsKey(inv.<String>getArgument(0)));
+        doAnswer(inv -> {
+            String path = inv.getArgument(0);
+            if (objects.containsKey(path)) {
+                throw duplicateKey(ContentAddressedBlobStore.PATH_CONSTRAINT);
+            }
+            objects.put(path, StorageObject.builder().path(path).blobHash(inv.getArgument(1))
+                    .createdAt(inv.getArgument(2)).build());
+            return null;
+        }).when(objectRepository).insert(anyString(), anyString(), any(LocalDateTime.class));
+        when(objectRepository.deletePath(anyString()))
+                .thenAnswer(inv -> objects.remove(inv.<String>getArgument(0)) != null ? 1 : 0);
+
+        StorageBlobRepository blobRepository = mock(StorageBlobRepository.class);
+        FileDeletionRepository deletionRepository = mock(FileDeletionRepository.class);
+        when(deletionRepository.save(any(FileDeletion.class))).thenAnswer(inv -> {
+            deletions.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(blobRepository.addReferences(anyString(), anyInt())).thenAnswer(inv -> {
+            StorageBlob blob = blobs.get(inv.<String>getArgument(0));
+            if (blob == null) {
+                return 0;
+            }
+            blob.setRefCount(blob.getRefCount() + inv.<Integer>getArgument(1));
+            return 1;
+        });
+        when(blobRepository.insertOrAddReference(anyString(), anyLong(), any(LocalDateTime.class))).thenAnswer(inv -> {
+            StorageBlob blob = blobs.computeIfAbsent(inv.getArgument(0), hash -> StorageBlob.builder()
+                    .hash(hash).size(inv.getArgument(1)).createdAt(inv.getArgument(2)).build());
+            blob.setRefCount(blob.getRefCount() + 1);
+            return 1;
+        });
+        when(blobRepository.findRefCountForUpdate(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(blobs.get(inv.<String>getArgument(0)))
+                        .map(StorageBlob::getRefCount));
+        when(blobRepository.lockOrCreate(anyString(), any(LocalDateTime.class))).thenAnswer(inv -> {
+            blobs.computeIfAbsent(inv.getArgument(0), hash -> StorageBlob.builder().hash(hash).build());
+            return 1;
+        });
+        when(blobRepository.deleteIfUnreferenced(anyString())).thenAnswer(inv -> {
+            String hash = inv.getArgument(0);
+            return blobs.get(hash).getRefCount() <= 0 && blobs.remove(hash) != null ? 1 : 0;
+        });
+
+        store = new ContentAddressedBlobStore(blobRepository, objectRepository,
+                mock(PlatformTransactionManager.class), new LocalStorageBackend(storage.toString()),
+                mock(StorageUsageService.class), deletionRepository, storage.toString());
+    }
+
+    @Test
+    void identicalContentIsStoredOnceAndFreedWithTheLastReference() throws Exception {
+        store.link(store.stage(content("polizza")), "vehicles/1/docs/polizza.pdf");
+        store.link(store.stage(content("polizza")), "vehicles/2/docs/polizza.pdf");
+
+        assertThat(blobFiles()).hasSize(1);
+        StorageBlob blob = blobs.values().iterator().next();
+        assertThat(blob.getRefCount()).isEqualTo(2);
+        assertThat(blob.getSize()).isEqualTo(7);
+        assertThat(store.hashOf("vehicles/1/docs/polizza.pdf")).isEqualTo(store.hashOf("vehicles/2/docs/polizza.pdf"));
+
+        assertThat(store.remove("vehicles/1/docs/polizza.pdf")).isTrue();
+        assertThat(deletions).isEmpty();
+        assertThat(store.remove("vehicles/2/docs/polizza.pdf")).isTrue();
+        assertThat(store.remove("vehicles/2/docs/polizza.pdf")).isFalse();
+
+        // il file resta finché la coda eliminazioni non lo elimina
+        assertThat(blobFiles()).hasSize(1);
+        assertThat(deletions).singleElement()
+                .satisfies(deletion -> assertThat(deletion.getBlobHash()).isEqualTo(blob.getHash()));
+        assertThat(store.purge(blob.getHash())).isTrue();
+        assertThat(blobFiles()).isEmpty();
+        assertThat(blobs).isEmpty();
+    }
+
+    @Test
+    void contentLinkedAgainBeforeThePurgeIsKept() throws Exception {
+        store.link(store.stage(content("libretto")), "vehicles/1/docs/libretto.pdf");
+        String hash = store.hashOf("vehicles/1/docs/libretto.pdf").orElseThrow();
+        store.remove("vehicles/1/docs/libretto.pdf");
+        store.link(store.stage(content("libretto")), "vehicles/9/docs/libretto.pdf");
+
+        assertThat(deletions).hasSize(1);
+        assertThat(store.purge(hash)).isFalse();
+        assertThat(blobFiles()).hasSize(1);
+        assertThat(store.find("vehicles/9/docs/libretto.pdf", "libretto.pdf").orElseThrow()
+                .getContentAsString(StandardCharsets.UTF_8)).isEqualTo("libretto");
+    }
+
+    @Test
+    void contentPurgedBeforeANewLinkIsUploadedAgain() throws Exception {
+        store.link(store.stage(content("verbale")), "a/verbale.pdf");
+        String hash = store.hashOf("a/verbale.pdf").orElseThrow();
+        store.remove("a/verbale.pdf");
+        assertThat(store.purge(hash)).isTrue();
+
+        store.link(store.stage(content("verbale")), "b/verbale.pdf");
+
+        assertThat(blobFiles()).hasSize(1);
+        assertThat(blobs.get(hash).getRefCount()).isEqualTo(1);
+    }
+
+    @Test
+    void pathInUseIsRejectedAndTheStagedContentCanBeRelinked() throws Exception {
+        store.link(store.stage(content("a")), "docs/x.pdf");
+        ContentAddressedBlobStore.StagedContent second = store.stage(content("b"));
+
+        assertThatThrownBy(() -> store.link(second, "docs/x.pdf")).isInstanceOf(FileAlreadyExistsException.class);
+        store.link(second, "docs/x-1.pdf");
+
+        assertThat(store.find("docs/x-1.pdf", "x-1.pdf").orElseThrow().getContentAsString(StandardCharsets.UTF_8))
+                .isEqualTo("b");
+        assertThat(blobFiles()).hasSize(2);
+    }
+
+    @Test
+    void legacyFilesAreAdoptedUnderTheirOriginalPath() throws Exception {
+        Path legacy = Files.createDirectories(storage.resolve("employees/3/docs")).resolve("1700000000000_ci.pdf");
+        Files.writeString(legacy, "carta");
+        store.link(store.stage(content("carta")), "employees/4/docs/ci.pdf");
+
+        store.adopt(legacy, "employees/3/docs/1700000000000_ci.pdf");
+
+        assertThat(legacy).doesNotExist();
+        assertThat(blobFiles()).hasSize(1);
+        assertThat(blobs.values().iterator().next().getRefCount()).isEqualTo(2);
+        assertThat(store.find("employees/3/docs/1700000000000_ci.pdf", "1700000000000_ci.pdf").orElseThrow()
+                .getContentAsString(StandardCharsets.UTF_8)).isEqualTo("carta");
+    }
+
+    @Test
+    void onlyThePathConstraintMeansThePathIsInUse() {
+        assertThat(ContentAddressedBlobStore.isPathInUse(duplicateKey("storage_objects.PRIMARY"))).isTrue();
+        assertThat(ContentAddressedBlobStore.isPathInUse(duplicateKey("storage_blobs.PRIMARY"))).isFalse();
+        assertThat(ContentAddressedBlobStore.isPathInUse(
+                new DataIntegrityViolationException("colonna blob_hash nulla"))).isFalse();
+    }
+
+    private List<Path> blobFiles() throws Exception {
+        Path root = store.blobRoot();
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).filter(p -> !p.startsWith(root.resolve("tmp"))).toList();
+        }
+    }
+
+    private static DataIntegrityViolationException duplicateKey(String constraint) {
+        SQLException cause = new SQLIntegrityConstraintViolationException(
+                "Duplicate entry for key '" + constraint + "'", "23000", 1062);
+        return new DataIntegrityViolationException("duplicato",
+                new ConstraintViolationException("duplicato", cause, "insert into ...", constraint));
+    }
+
+    private static ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
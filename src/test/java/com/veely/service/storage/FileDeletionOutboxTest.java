@@ -0,0 +1,149 @@
+package com.veely.service.storage;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.entity.FileDeletion;
+import com.veely.repository.FileDeletionRepository;
+import com.veely.service.FileSystemStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class FileDeletionOutboxTest {
+
+    private FileDeletionRepository repository;
+    private FileSystemStorageService storage;
+    private ContentAddressedBlobStore blobStore;
+    private ThreadPoolTaskExecutor worker;
+    private FileDeletionOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(FileDeletionRepository.class);
+        storage = mock(FileSystemStorageService.class);
+        blobStore = mock(ContentAddressedBlobStore.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        worker = ExecutorConfig.virtual("file-deletions", 1);
+        worker.initialize();
+        outbox = new FileDeletionOutbox(repository, storage, blobStore, transactionManager, 10,
+                Duration.ofMinutes(1), Duration.ofHours(1), worker);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void deletionsInsideATransactionAreOnlyQueuedUntilCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        outbox.delete("vehicles/3/docs/1_libretto.pdf");
+        outbox.deleteDirectory("vehicles/3");
+
+        ArgumentCaptor<FileDeletion> queued = ArgumentCaptor.forClass(FileDeletion.class);
+        verify(repository, times(2)).save(queued.capture());
+        assertThat(queued.getAllValues()).extracting(FileDeletion::getPath, FileDeletion::isDirectory)
+                .containsExactly(tuple("vehicles/3/docs/1_libretto.pdf", false),
+                        tuple("vehicles/3", true));
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(2);
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    void drainRemovesFilesThumbnailsAndFoldersThenTheRows() {
+        FileDeletion photo = deletion(1L, "vehicles/3/photos/1_fronte.png", false);
+        FileDeletion folder = deletion(2L, "employees/7/docs", true);
+        when(repository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(photo, folder), List.of());
+
+        assertThat(outbox.drain()).isEqualTo(2);
+
+        verify(storage).delete("vehicles/3/photos/1_fronte.png");
+        verify(storage).delete("vehicles/3/photos/thumbs/1_fronte.png.jpg");
+        verify(storage).deleteDirectory("employees/7/docs");
+        verify(repository).deleteById(1L);
+        verify(repository).deleteById(2L);
+    }
+
+    @Test
+    void failedDeletionStaysQueuedAndIsRetriedLater() {
+        FileDeletion doc = deletion(5L, "contracts/1/docs/1_contratto.pdf", false);
+        doc.setAttempts(2);
+        when(repository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(doc), List.of());
+        doThrow(new RuntimeException("disco non disponibile")).when(storage).delete(doc.getPath());
+
+        LocalDateTime before = LocalDateTime.now();
+        assertThat(outbox.drain()).isZero();
+
+        ArgumentCaptor<LocalDateTime> next = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).markFailed(eq(5L), next.capture(), anyString());
+        // terzo tentativo fallito: 1 minuto raddoppiato due volte
+        assertThat(next.getValue()).isAfterOrEqualTo(before.plusMinutes(4));
+        verify(repository, never()).deleteById(any());
+        assertThat(outbox.backoff(30)).isEqualTo(Duration.ofHours(1));
+    }
+
+    @Test
+    void unreferencedContentIsPurgedThroughTheBlobStore() throws Exception {
+        FileDeletion blob = deletion(8L, "blobs/ab/cd/abcd", false);
+        blob.setBlobHash("abcd");
+        FileDeletion relinked = deletion(9L, "blobs/ef/01/ef01", false);
+        relinked.setBlobHash("ef01");
+        when(repository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(blob, relinked), List.of());
+        when(blobStore.purge("abcd")).thenReturn(true);
+        when(blobStore.purge("ef01")).thenReturn(false);
+
+        assertThat(outbox.drain()).isEqualTo(2);
+
+        verify(repository).deleteById(8L);
+        verify(repository).deleteById(9L);
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    void thumbnailsHaveNoFurtherThumbnail() {
+        assertThat(FileDeletionOutbox.thumbnailPath("employees/7/docs/1_foto.jpg"))
+                .isEqualTo("employees/7/docs/thumbs/1_foto.jpg.jpg");
+        assertThat(FileDeletionOutbox.thumbnailPath("employees/7/docs/thumbs/1_foto.jpg.jpg")).isNull();
+        assertThat(FileDeletionOutbox.thumbnailPath("senza-cartella.pdf")).isNull();
+    }
+
+    private static FileDeletion deletion(Long id, String path, boolean directory) {
+        return FileDeletion.builder()
+                .id(id)
+                .path(path)
+                .directory(directory)
+                .createdAt(LocalDateTime.now())
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,185 @@
+package com.veely.service.storage;
+
+import com.veely.repository.FileDeletionRepository;
+import com.veely.repository.StorageBlobRepository;
+import com.veely.repository.StorageObjectRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileDownloadServiceTest {
+
+    private static final String CONTENT = "%PDF-1.4 contenuto di prova";
+
+    @TempDir
+    Path storage;
+
+    private ContentAddressedBlobStore blobStore;
+    private FileDownloadService service;
+    private FileSystemResource document;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStore = new ContentAddressedBlobStore(mock(StorageBlobRepository.class),
+                mock(StorageObjectRepository.class), mock(PlatformTransactionManager.class),
+                new LocalStorageBackend(storage.toString()), mock(StorageUsageService.class),
+                mock(FileDeletionRepository.class), storage.toString());
+        service = new FileDownloadService(blobStore, Duration.ZERO, Duration.ofMinutes(5));
+        Path file = Files.writeString(storage.resolve("contratto.pdf"), CONTENT);
+        document = new FileSystemResource(file);
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = get(new MockHttpServletRequest("GET", "/docs"));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+        assertThat(response.getContentType()).isEqualTo("application/pdf");
+        assertThat(response.getContentLengthLong()).isEqualTo(CONTENT.length());
+        assertThat(response.getHeader("Content-Disposition")).startsWith("attachment;").contains("contratto.pdf");
+        assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+        assertThat(response.getHeader("ETag")).startsWith("W/\"");
+        assertThat(response.getHeader("Cache-Control")).contains("private").contains("no-cache");
+    }
+
+    @Test
+    void blobsUseTheContentHashAsStrongEtag() throws Exception {
+        String hash = "ab".repeat(32);
+        Path blob = storage.resolve(ContentAddressedBlobStore.blobKey(hash));
+        Files.createDirectories(blob.getParent());
+        Files.writeString(blob, CONTENT);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.inline(new FileSystemResource(blob), new MockHttpServletRequest("GET", "/docs"), response);
+
+        assertThat(response.getHeader("ETag")).isEqualTo("\"" + hash + "\"");
+        assertThat(response.getHeader("Content-Disposition")).startsWith("inline;");
+    }
+
+    @Test
+    void repeatedViewsAreNotModified() throws Exception {
+        MockHttpServletResponse first = get(new MockHttpServletRequest("GET", "/docs"));
+
+        MockHttpServletRequest byEtag = new MockHttpServletRequest("GET", "/docs");
+        byEtag.addHeader("If-None-Match", first.getHeader("ETag"));
+        MockHttpServletResponse second = get(byEtag);
+        assertThat(second.getStatus()).isEqualTo(304);
+        assertThat(second.getContentAsByteArray()).isEmpty();
+
+        MockHttpServletRequest byDate = new MockHttpServletRequest("GET", "/docs");
+        byDate.addHeader("If-Modified-Since", first.getHeader("Last-Modified"));
+        assertThat(get(byDate).getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/docs");
+        request.addHeader("Range", "bytes=0-7");
+
+        MockHttpServletResponse response = get(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsString()).isEqualTo("%PDF-1.4");
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 0-7/" + CONTENT.length());
+        assertThat(response.getContentLengthLong()).isEqualTo(8);
+    }
+
+    @Test
+    void suffixRangeReturnsTheTail() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/docs");
+        request.addHeader("Range", "bytes=-5");
+
+        MockHttpServletResponse response = get(request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsString()).isEqualTo("prova");
+    }
+
+    @Test
+    void rangeBeyondTheEndIsNotSatisfiable() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/docs");
+        request.addHeader("Range", "bytes=1000-");
+
+        MockHttpServletResponse response = get(request);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */" + CONTENT.length());
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void staleIfRangeServesTheWholeFile() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/docs");
+        request.addHeader("Range", "bytes=0-7");
+        request.addHeader("If-Range", "\"versione-precedente\"");
+
+        MockHttpServletResponse response = get(request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void largeFilesAreHandedToTomcatSendfile() throws Exception {
+        Path large = Files.write(storage.resolve("foto.jpg"), new byte[(int) FileDownloadService.SENDFILE_MIN_SIZE]);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/docs");
+        request.setAttribute(FileDownloadService.SENDFILE_SUPPORT, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.inline(new FileSystemResource(large), request, response);
+
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(response.getContentType()).isEqualTo("image/jpeg");
+        assertThat(request.getAttribute(FileDownloadService.SENDFILE_FILENAME)).isEqualTo(large.toRealPath().toString());
+        assertThat(request.getAttribute(FileDownloadService.SENDFILE_START)).isEqualTo(0L);
+        assertThat(request.getAttribute(FileDownloadService.SENDFILE_END)).isEqualTo(FileDownloadService.SENDFILE_MIN_SIZE);
+    }
+
+    @Test
+    void remoteBlobsRedirectToAPresignedUrl() throws Exception {
+        String hash = "cd".repeat(32);
+        StorageBackend backend = mock(StorageBackend.class);
+        when(backend.localFile(anyString())).thenReturn(Optional.empty());
+        when(backend.presignedDownload(anyString(), eq("application/pdf"), startsWith("attachment;"), any()))
+                .thenReturn(Optional.of(URI.create("https://s3.example/veely/blobs/cd?X-Amz-Signature=abc")));
+        BlobResource remote = new BlobResource(backend, ContentAddressedBlobStore.blobKey(hash), hash, "contratto.pdf");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.attachment(remote, new MockHttpServletRequest("GET", "/docs"), response);
+
+        assertThat(response.getStatus()).isEqualTo(302);
+        assertThat(response.getRedirectedUrl()).isEqualTo("https://s3.example/veely/blobs/cd?X-Amz-Signature=abc");
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("no-store");
+
+        MockHttpServletRequest revalidation = new MockHttpServletRequest("GET", "/docs");
+        revalidation.addHeader("If-None-Match", "\"" + hash + "\"");
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        service.attachment(remote, revalidation, notModified);
+        assertThat(notModified.getStatus()).isEqualTo(304);
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.attachment(document, request, response);
+        return response;
+    }
+}
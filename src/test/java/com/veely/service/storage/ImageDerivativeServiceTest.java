@@ -0,0 +1,117 @@
+package com.veely.service.storage;
+
+import com.veely.config.ExecutorConfig;
+import com.veely.exception.ResourceNotFoundException;
+import com.veely.model.DocumentType;
+import com.veely.service.FileSystemStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageDerivativeServiceTest {
+
+    private static final String DIR = "vehicles/1/photos";
+
+    @TempDir
+    Path uploads;
+
+    private FileSystemStorageService storage;
+    private ThreadPoolTaskExecutor workers;
+    private ImageDerivativeService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = mock(FileSystemStorageService.class);
+        when(storage.exists(anyString())).thenAnswer(inv -> Files.isRegularFile(uploads.resolve(inv.<String>getArgument(0))));
+        when(storage.find(anyString())).thenAnswer(inv -> {
+            Path file = uploads.resolve(inv.<String>getArgument(0));
+            return Files.isRegularFile(file) ? Optional.of(new FileSystemResource(file)) : Optional.empty();
+        });
+        when(storage.store(any(InputStream.class), anyString(), anyString())).thenAnswer(inv -> {
+            Path dir = Files.createDirectories(uploads.resolve(inv.<String>getArgument(1)));
+            return Files.copy(inv.<InputStream>getArgument(0), dir.resolve(inv.<String>getArgument(2)));
+        });
+        when(storage.loadAsResource(anyString(), anyString())).thenAnswer(inv -> {
+            Path file = uploads.resolve(inv.<String>getArgument(1)).resolve(inv.<String>getArgument(0));
+            if (!Files.isRegularFile(file)) {
+                throw new ResourceNotFoundException("File non trovato");
+            }
+            return new FileSystemResource(file);
+        });
+        workers = ExecutorConfig.platform("image-derivatives", 1);
+        workers.initialize();
+        service = new ImageDerivativeService(storage, 320, workers);
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdown();
+    }
+
+    @Test
+    void thumbnailFitsTheBoxAndKeepsProportions() throws Exception {
+        writeImage("123_auto.png", 1600, 1200);
+
+        assertThat(service.generate("123_auto.png", DIR).get()).isTrue();
+
+        Path thumb = uploads.resolve(DIR).resolve("thumbs/123_auto.png.jpg");
+        BufferedImage image = ImageIO.read(thumb.toFile());
+        assertThat(image.getWidth()).isEqualTo(320);
+        assertThat(image.getHeight()).isEqualTo(240);
+    }
+
+    @Test
+    void missingThumbnailServesTheOriginalWhileItIsGenerated() throws Exception {
+        writeImage("123_auto.png", 800, 400);
+
+        Resource first = service.loadThumbnail("123_auto.png", DIR);
+        service.generate("123_auto.png", DIR).get();
+        Resource second = service.loadThumbnail("123_auto.png", DIR);
+
+        assertThat(first.getFile().toPath()).isEqualTo(uploads.resolve(DIR).resolve("123_auto.png"));
+        assertThat(second.getFile().toPath()).isEqualTo(uploads.resolve(DIR).resolve("thumbs/123_auto.png.jpg"));
+        verify(storage, times(1)).store(any(InputStream.class), anyString(), anyString());
+    }
+
+    @Test
+    void unreadableImagesFallBackToTheOriginalWithoutRetrying() throws Exception {
+        Path original = Files.createDirectories(uploads.resolve(DIR)).resolve("123_foto.heic");
+        Files.writeString(original, "non un'immagine");
+
+        assertThat(service.generate("123_foto.heic", DIR).get()).isFalse();
+        assertThat(service.loadThumbnail("123_foto.heic", DIR).getFile().toPath()).isEqualTo(original);
+        assertThat(service.generate("123_foto.heic", DIR).get()).isFalse();
+        verify(storage, times(1)).find(DIR + "/123_foto.heic");
+    }
+
+    @Test
+    void onlyPhotosGetThumbnails() {
+        assertThat(ImageDerivativeService.hasThumbnail(DocumentType.VEHICLE_IMAGE)).isTrue();
+        assertThat(ImageDerivativeService.hasThumbnail(DocumentType.IDENTITY_PHOTO)).isTrue();
+        assertThat(ImageDerivativeService.hasThumbnail(DocumentType.OTHER)).isFalse();
+    }
+
+    private void writeImage(String name, int width, int height) throws Exception {
+        Path dir = Files.createDirectories(uploads.resolve(DIR));
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", dir.resolve(name).toFile());
+    }
+}
@@ -0,0 +1,288 @@
+package com.veely.service.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Server S3 minimale in-process per i test, sul modello di MinIO (bucket
+ * unico, indirizzi path-style, oggetti in memoria): PUT, GET, HEAD, DELETE e
+ * caricamento multipart. Ogni richiesta deve avere una firma V4 valida, in
+ * intestazione o nell'URL firmato (di cui si controlla anche la scadenza);
+ * la prossima parte multipart può essere rifiutata con un errore 500.
+ */
+public class S3StandIn implements AutoCloseable {
+
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, SortedMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger partsReceived = new AtomicInteger();
+    private final AtomicInteger partFailures = new AtomicInteger();
+
+    public S3StandIn(String bucket, String accessKey, String secretKey) throws IOException {
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public URI endpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    public Map<String, byte[]> objects() {
+        return objects;
+    }
+
+    public int pendingUploads() {
+        return uploads.size();
+    }
+
+    public int partsReceived() {
+        return partsReceived.get();
+    }
+
+    public void failNextPart() {
+        partFailures.incrementAndGet();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            URI uri = exchange.getRequestURI();
+            Map<String, String> query = parseQuery(uri.getRawQuery());
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (!authorized(exchange, method, uri.getRawPath(), query)) {
+                respond(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                return;
+            }
+            String prefix = "/" + bucket + "/";
+            if (!uri.getPath().startsWith(prefix)) {
+                respond(exchange, 404, "<Error><Code>NoSuchBucket</Code></Error>");
+                return;
+            }
+            String key = uri.getPath().substring(prefix.length());
+            String uploadId = query.get("uploadId");
+            switch (method) {
+                case "PUT" -> {
+                    if (uploadId == null) {
+                        objects.put(key, body);
+                        exchange.getResponseHeaders().set("ETag", "\"" + Integer.toHexString(key.hashCode()) + "\"");
+                        respond(exchange, 200, "");
+                    } else if (partFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        respond(exchange, 500, "<Error><Code>InternalError</Code></Error>");
+                    } else {
+                        int partNumber = Integer.parseInt(query.get("partNumber"));
+                        uploads.get(uploadId).put(partNumber, body);
+                        partsReceived.incrementAndGet();
+                        exchange.getResponseHeaders().set("ETag", "\"part-" + partNumber + "\"");
+                        respond(exchange, 200, "");
+                    }
+                }
+                case "POST" -> {
+                    if (query.containsKey("uploads")) {
+                        String id = UUID.randomUUID().toString();
+                        uploads.put(id, new TreeMap<>());
+                        respond(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>"
+                                + key + "</Key><UploadId>" + id + "</UploadId></InitiateMultipartUploadResult>");
+                    } else {
+                        SortedMap<Integer, byte[]> parts = uploads.remove(uploadId);
+                        String manifest = new String(body, StandardCharsets.UTF_8);
+                        ByteArrayOutputStream content = new ByteArrayOutputStream();
+                        for (Map.Entry<Integer, byte[]> part : parts.entrySet()) {
+                            if (!manifest.contains("<PartNumber>" + part.getKey() + "</PartNumber>")) {
+                                respond(exchange, 400, "<Error><Code>InvalidPart</Code></Error>");
+                                return;
+                            }
+                            content.writeBytes(part.getValue());
+                        }
+                        objects.put(key, content.toByteArray());
+                        respond(exchange, 200, "<CompleteMultipartUploadResult><Key>" + key
+                                + "</Key></CompleteMultipartUploadResult>");
+                    }
+                }
+                case "DELETE" -> {
+                    if (uploadId != null) {
+                        uploads.remove(uploadId);
+                    } else {
+                        objects.remove(key);
+                    }
+                    respond(exchange, 204, "");
+                }
+                case "HEAD" -> {
+                    byte[] object = objects.get(key);
+                    if (object == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        exchange.getResponseHeaders().set("Content-Length", Integer.toString(object.length));
+                        exchange.getResponseHeaders().set("Last-Modified",
+                                DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.now().atZone(ZoneOffset.UTC)));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                }
+                case "GET" -> {
+                    byte[] object = objects.get(key);
+                    if (object == null) {
+                        respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                        return;
+                    }
+                    if (query.containsKey("response-content-type")) {
+                        exchange.getResponseHeaders().set("Content-Type", query.get("response-content-type"));
+                    }
+                    if (query.containsKey("response-content-disposition")) {
+                        exchange.getResponseHeaders().set("Content-Disposition",
+                                query.get("response-content-disposition"));
+                    }
+                    exchange.sendResponseHeaders(200, object.length == 0 ? -1 : object.length);
+                    exchange.getResponseBody().write(object);
+                }
+                default -> respond(exchange, 405, "");
+            }
+        }
+    }
+
+    /** Ricalcola la firma V4 dalla richiesta ricevuta, indipendentemente dal client. */
+    private boolean authorized(HttpExchange exchange, String method, String rawPath, Map<String, String> query) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String date;
+        String credential;
+        String signedHeaders;
+        String signature;
+        String payloadHash;
+        Map<String, String> canonicalParams = new TreeMap<>(query);
+        if (authorization != null) {
+            Map<String, String> parts = new TreeMap<>();
+            for (String part : authorization.substring(authorization.indexOf(' ') + 1).split(",\\s*")) {
+                int eq = part.indexOf('=');
+                parts.put(part.substring(0, eq), part.substring(eq + 1));
+            }
+            credential = parts.get("Credential");
+            signedHeaders = parts.get("SignedHeaders");
+            signature = parts.get("Signature");
+            date = exchange.getRequestHeaders().getFirst("x-amz-date");
+            payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        } else if (query.containsKey("X-Amz-Signature")) {
+            credential = query.get("X-Amz-Credential");
+            signedHeaders = query.get("X-Amz-SignedHeaders");
+            signature = canonicalParams.remove("X-Amz-Signature");
+            date = query.get("X-Amz-Date");
+            payloadHash = "UNSIGNED-PAYLOAD";
+            Instant expires = Instant.from(AMZ_DATE.parse(date)).plus(Duration.ofSeconds(Long.parseLong(query.get("X-Amz-Expires"))));
+            if (Instant.now().isAfter(expires)) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+        if (credential == null || !credential.startsWith(accessKey + "/") || date == null) {
+            return false;
+        }
+        String scope = credential.substring(accessKey.length() + 1);
+        String region = scope.split("/")[1];
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (String name : signedHeaders.split(";")) {
+            canonicalHeaders.append(name).append(':').append(exchange.getRequestHeaders().getFirst(name).trim()).append('\n');
+        }
+        String canonicalQuery = canonicalParams.entrySet().stream()
+                .map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+                .sorted()
+                .collect(Collectors.joining("&"));
+        String canonicalRequest = method + "\n" + rawPath + "\n" + canonicalQuery + "\n" + canonicalHeaders
+                + "\n" + signedHeaders + "\n" + payloadHash;
+        String stringToSign = "AWS4-HMAC-SHA256\n" + date + "\n" + scope + "\n" + sha256(canonicalRequest);
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date.substring(0, 8));
+        key = hmac(hmac(hmac(key, region), "s3"), "aws4_request");
+        return HexFormat.of().formatHex(hmac(key, stringToSign)).equals(signature);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String encode(String value) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xff;
+            if (Character.isLetterOrDigit(c) && c < 128 || c == '-' || c == '_' || c == '.' || c == '~') {
+                out.append((char) c);
+            } else {
+                out.append(String.format("%%%02X", c));
+            }
+        }
+        return out.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256(String data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
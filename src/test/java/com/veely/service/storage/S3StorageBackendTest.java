@@ -0,0 +1,122 @@
+package com.veely.service.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class S3StorageBackendTest {
+
+    private static final String KEY = "blobs/ab/cd/contratto firmato.pdf";
+
+    @TempDir
+    Path temp;
+
+    private S3StandIn s3;
+    private S3StorageBackend backend;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        s3 = new S3StandIn("veely", "chiave", "segreto");
+        backend = backend("segreto", Clock.systemUTC());
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3.close();
+    }
+
+    @Test
+    void smallObjectsRoundTripWithSignedRequests() throws Exception {
+        Path source = Files.writeString(temp.resolve("upload.tmp"), "contenuto");
+
+        backend.putFile(KEY, source);
+
+        assertThat(source).doesNotExist();
+        assertThat(s3.partsReceived()).isZero();
+        assertThat(backend.stat(KEY)).get().extracting(StorageBackend.ObjectInfo::size).isEqualTo(9L);
+        try (InputStream in = backend.open(KEY)) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("contenuto");
+        }
+        backend.delete(KEY);
+        backend.delete(KEY);
+        assertThat(backend.exists(KEY)).isFalse();
+        assertThatThrownBy(() -> backend.open(KEY)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void streamsAreUploadedOnePartAtATime() throws Exception {
+        byte[] content = new byte[2500];
+        new Random(7).nextBytes(content);
+
+        backend.put(KEY, new ByteArrayInputStream(content));
+
+        assertThat(s3.partsReceived()).isEqualTo(3);
+        assertThat(s3.pendingUploads()).isZero();
+        assertThat(s3.objects().get(KEY)).isEqualTo(content);
+    }
+
+    @Test
+    void failedPartAbortsTheUpload() {
+        s3.failNextPart();
+
+        assertThatThrownBy(() -> backend.put(KEY, new ByteArrayInputStream(new byte[2500])))
+                .isInstanceOf(IOException.class);
+        assertThat(s3.pendingUploads()).isZero();
+        assertThat(s3.objects()).isEmpty();
+    }
+
+    @Test
+    void presignedUrlsDownloadWithoutCredentialsUntilTheyExpire() throws Exception {
+        backend.put(KEY, new ByteArrayInputStream("%PDF".getBytes(StandardCharsets.UTF_8)));
+        HttpClient client = HttpClient.newHttpClient();
+
+        URI url = backend.presignedDownload(KEY, "application/pdf", "attachment; filename=\"contratto.pdf\"",
+                Duration.ofMinutes(5)).orElseThrow();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(url).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("%PDF");
+        assertThat(response.headers().firstValue("Content-Disposition")).hasValue("attachment; filename=\"contratto.pdf\"");
+
+        Clock anHourAgo = Clock.fixed(Instant.now().minus(Duration.ofHours(1)), ZoneOffset.UTC);
+        URI expired = backend("segreto", anHourAgo)
+                .presignedDownload(KEY, null, null, Duration.ofMinutes(5)).orElseThrow();
+        assertThat(client.send(HttpRequest.newBuilder(expired).build(), HttpResponse.BodyHandlers.discarding())
+                .statusCode()).isEqualTo(403);
+    }
+
+    @Test
+    void requestsSignedWithTheWrongSecretAreRejected() {
+        S3StorageBackend wrong = backend("sbagliato", Clock.systemUTC());
+
+        assertThatThrownBy(() -> wrong.put(KEY, new ByteArrayInputStream(new byte[1])))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("403");
+    }
+
+    private S3StorageBackend backend(String secret, Clock clock) {
+        return new S3StorageBackend(s3.endpoint(), "eu-south-1", "veely", "chiave", secret, true, 1024, clock);
+    }
+}
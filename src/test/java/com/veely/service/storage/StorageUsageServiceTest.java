@@ -0,0 +1,140 @@
+package com.veely.service.storage;
+
+import com.veely.entity.StorageUsage;
+import com.veely.exception.StorageQuotaExceededException;
+import com.veely.repository.StorageBlobRepository;
+import com.veely.repository.StorageObjectRepository;
+import com.veely.repository.StorageUsageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StorageUsageServiceTest {
+
+    private final Map<String, StorageUsage> rows = new HashMap<>();
+    private StorageObjectRepository objectRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private StorageUsageService service;
+
+    @BeforeEach
+    void setUp() {
+        StorageUsageRepository usageRepository = mock(StorageUsageRepository.class);
+        when(usageRepository.addUsage(anyString(), anyString(), anyLong(), anyLong())).thenAnswer(inv -> {
+            long bytes = inv.<Long>getArgument(2);
+            long files = inv.<Long>getArgument(3);
+            StorageUsage row = rows.get(inv.<String>getArgument(0));
+            if (row == null) {
+                rows.put(inv.getArgument(0), new StorageUsage(inv.getArgument(0), inv.getArgument(1),
+                        Math.max(0, bytes), Math.max(0, files)));
+                return 1;
+            }
+            row.setBytes(row.getBytes() + bytes);
+            row.setFiles(row.getFiles() + files);
+            return 2;
+        });
+        when(usageRepository.findAll()).thenAnswer(inv -> rows.values().stream()
+                .map(row -> new StorageUsage(row.getOwner(), row.getArea(), row.getBytes(), row.getFiles()))
+                .toList());
+        when(usageRepository.deleteEmpty()).thenAnswer(inv -> {
+            rows.values().removeIf(row -> row.getBytes() == 0 && row.getFiles() == 0);
+            return 0;
+        });
+
+        objectRepository = mock(StorageObjectRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new StorageUsageService(usageRepository, objectRepository, mock(StorageBlobRepository.class),
+                mock(PlatformTransactionManager.class), meterRegistry,
+                "payslips=1MB", "vehicles=1KB", 2, mock(TaskExecutor.class));
+    }
+
+    @Test
+    void pathsAreGroupedByAreaAndOwner() {
+        assertThat(StorageUsageService.area("vehicles/12/docs/1_libretto.pdf")).isEqualTo("vehicles");
+        assertThat(StorageUsageService.owner("vehicles/12/docs/1_libretto.pdf")).isEqualTo("vehicles/12");
+        assertThat(StorageUsageService.owner("employments/MAT001/docs/1_contratto.pdf"))
+                .isEqualTo("employments/MAT001");
+        assertThat(StorageUsageService.owner("payslips/2025/03/20250301_ab12cd34.pdf")).isEqualTo("payslips/2025/03");
+        assertThat(StorageUsageService.owner("unique-certifications/2024/x.pdf"))
+                .isEqualTo("unique-certifications/2024");
+        assertThat(StorageUsageService.owner("company/logo.png")).isEqualTo("company");
+        assertThat(StorageUsageService.owner("leftover.pdf")).isEqualTo(StorageUsageService.ROOT_AREA);
+    }
+
+    @Test
+    void storesAndDeletionsUpdateCountersAndGauges() {
+        service.record("vehicles/1/docs/a.pdf", 600, 1);
+        service.record("vehicles/1/photos/b.jpg", 300, 1);
+        service.record("vehicles/2/docs/c.pdf", 100, 1);
+        service.record("vehicles/1/docs/a.pdf", -600, -1);
+
+        assertThat(service.ownerUsage("vehicles/1")).isEqualTo(new StorageUsageService.Usage(300, 1));
+        assertThat(service.areaUsage("vehicles")).isEqualTo(new StorageUsageService.Usage(400, 2));
+        assertThat(rows.get("vehicles/1").getBytes()).isEqualTo(300);
+        assertThat(meterRegistry.get("veely.storage.usage").tag("area", "vehicles").gauge().value()).isEqualTo(400);
+        assertThat(meterRegistry.get("veely.storage.files").tag("area", "vehicles").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void quotasAreCheckedPerOwnerAndPerArea() {
+        service.record("vehicles/1/docs/a.pdf", 800, 1);
+        service.record("payslips/2025/03/a.pdf", 1024 * 1024 - 10, 1);
+
+        assertThatThrownBy(() -> service.checkQuota("vehicles/1/docs/b.pdf", 300))
+                .isInstanceOf(StorageQuotaExceededException.class)
+                .hasMessageContaining("vehicles/1");
+        assertThatCode(() -> service.checkQuota("vehicles/2/docs/b.pdf", 300)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> service.checkQuota("payslips/2025/04/b.pdf", 100))
+                .isInstanceOf(StorageQuotaExceededException.class);
+        assertThatCode(() -> service.checkQuota("employees/3/docs/big.pdf", 1L << 40)).doesNotThrowAnyException();
+        assertThat(meterRegistry.get("veely.storage.quota.rejected").tag("area", "vehicles").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void rebuildRecomputesCountersFromTheArchiveInPages() {
+        service.record("vehicles/9/docs/stale.pdf", 999, 1);
+        when(objectRepository.findPathsAndSizesAfter(eq(""), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                new Object[]{"employees/3/docs/a.pdf", 10L}, new Object[]{"employees/3/docs/b.pdf", 20L}));
+        when(objectRepository.findPathsAndSizesAfter(eq("employees/3/docs/b.pdf"), any(Pageable.class)))
+                .thenReturn(List.<Object[]>of(new Object[]{"vehicles/1/docs/c.pdf", 5L}));
+
+        service.rebuild();
+
+        assertThat(rows).containsOnlyKeys("employees/3", "vehicles/1");
+        assertThat(service.ownerUsage("employees/3")).isEqualTo(new StorageUsageService.Usage(30, 2));
+        assertThat(service.ownerUsage("vehicles/9").bytes()).isZero();
+        assertThat(service.areaUsage("vehicles")).isEqualTo(new StorageUsageService.Usage(5, 1));
+    }
+
+    @Test
+    void rebuildOnlyCorrectsTheDifferenceSoConcurrentChangesAreKept() {
+        service.record("vehicles/1/docs/a.pdf", 100, 1);
+        when(objectRepository.findPathsAndSizesAfter(eq(""), any(Pageable.class))).thenAnswer(inv -> {
+            // un altro nodo registra un file dopo la lettura dei contatori
+            service.record("vehicles/1/docs/b.pdf", 50, 1);
+            return List.<Object[]>of(new Object[]{"vehicles/1/docs/a.pdf", 80L});
+        });
+
+        service.rebuild();
+
+        assertThat(rows.get("vehicles/1").getBytes()).isEqualTo(130);
+        assertThat(rows.get("vehicles/1").getFiles()).isEqualTo(2);
+    }
+}